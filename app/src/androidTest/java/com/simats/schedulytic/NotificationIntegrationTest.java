@@ -36,15 +36,16 @@ public class NotificationIntegrationTest {
             Log.d(TAG, "Test 4: Testing sample task notification scheduling...");
             
             // Create a simple test task
-            Task testTask = new Task();
-            testTask.setTaskId("integration_test_001");
-            testTask.setTitle("Integration Test Task");
-            testTask.setDescription("This is a test task for notification integration");
-            testTask.setType("workflow");
-            testTask.setDueDate("2025-06-02");
-            testTask.setStartTime("14:00");
-            testTask.setEndTime("15:00");
-            testTask.setCompleted(false);
+            Task testTask = Task.builder()
+                    .taskId("integration_test_001")
+                    .title("Integration Test Task")
+                    .description("This is a test task for notification integration")
+                    .type("workflow")
+                    .dueDate("2025-06-02")
+                    .startTime("14:00")
+                    .endTime("15:00")
+                    .completed(false)
+                    .build();
             
             // Try to schedule notification (this will be in the past for testing)
             try {
@@ -83,13 +84,14 @@ public class NotificationIntegrationTest {
             java.text.SimpleDateFormat dateFormat = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault());
             java.text.SimpleDateFormat timeFormat = new java.text.SimpleDateFormat("HH:mm", java.util.Locale.getDefault());
             
-            Task futureTask = new Task();
-            futureTask.setTaskId("future_test_001");
-            futureTask.setTitle("Future Test Task");
-            futureTask.setType("reminder");
-            futureTask.setDueDate(dateFormat.format(futureTime.getTime()));
-            futureTask.setStartTime(timeFormat.format(futureTime.getTime()));
-            futureTask.setCompleted(false);
+            Task futureTask = Task.builder()
+                    .taskId("future_test_001")
+                    .title("Future Test Task")
+                    .type("reminder")
+                    .dueDate(dateFormat.format(futureTime.getTime()))
+                    .startTime(timeFormat.format(futureTime.getTime()))
+                    .completed(false)
+                    .build();
             
             handler.scheduleTaskNotification(futureTask);
             Log.d(TAG, "✓ Future task notification scheduled successfully");
@@ -112,14 +114,15 @@ public class NotificationIntegrationTest {
         try {
             // Test 1: Reminder notification with 3 buttons (Got it, Skip, Tomorrow)
             Log.d(TAG, "Testing reminder notification with 3 buttons...");
-            Task reminderTask = new Task();
-            reminderTask.setTaskId("reminder_test_001");
-            reminderTask.setTitle("Reminder Test - 3 Button Layout");
-            reminderTask.setDescription("Testing the reminder notification with Got it, Skip, Tomorrow buttons");
-            reminderTask.setType("reminder");
-            reminderTask.setDueDate("2025-01-15");
-            reminderTask.setStartTime("12:00");
-            reminderTask.setCompleted(false);
+            Task reminderTask = Task.builder()
+                    .taskId("reminder_test_001")
+                    .title("Reminder Test - 3 Button Layout")
+                    .description("Testing the reminder notification with Got it, Skip, Tomorrow buttons")
+                    .type("reminder")
+                    .dueDate("2025-01-15")
+                    .startTime("12:00")
+                    .completed(false)
+                    .build();
             
             handler.scheduleTaskNotification(reminderTask);
             Log.d(TAG, "✓ Reminder notification scheduled with 3 buttons");
@@ -129,14 +132,15 @@ public class NotificationIntegrationTest {
             
             // Test 2: Workflow start notification with 2 buttons (Start Now, Can't Do)
             Log.d(TAG, "Testing workflow start notification with 2 buttons...");
-            Task workflowStartTask = new Task();
-            workflowStartTask.setTaskId("workflow_start_test_001");
-            workflowStartTask.setTitle("Workflow Start Test - 2 Button Layout");
-            workflowStartTask.setDescription("Testing the workflow start notification with Start Now, Can't Do buttons");
-            workflowStartTask.setType("workflow");
-            workflowStartTask.setDueDate("2025-01-15");
-            workflowStartTask.setStartTime("12:30");
-            workflowStartTask.setCompleted(false);
+            Task workflowStartTask = Task.builder()
+                    .taskId("workflow_start_test_001")
+                    .title("Workflow Start Test - 2 Button Layout")
+                    .description("Testing the workflow start notification with Start Now, Can't Do buttons")
+                    .type("workflow")
+                    .dueDate("2025-01-15")
+                    .startTime("12:30")
+                    .completed(false)
+                    .build();
             
             handler.scheduleTaskNotification(workflowStartTask);
             Log.d(TAG, "✓ Workflow start notification scheduled with 2 buttons");
@@ -146,15 +150,16 @@ public class NotificationIntegrationTest {
             
             // Test 3: Workflow end notification with 2 buttons (Completed, Extend Time)
             Log.d(TAG, "Testing workflow end notification with 2 buttons...");
-            Task workflowEndTask = new Task();
-            workflowEndTask.setTaskId("workflow_end_test_001");
-            workflowEndTask.setTitle("Workflow End Test - 2 Button Layout");
-            workflowEndTask.setDescription("Testing the workflow end notification with Completed, Extend Time buttons");
-            workflowEndTask.setType("workflow");
-            workflowEndTask.setDueDate("2025-01-15");
-            workflowEndTask.setStartTime("13:00");
-            workflowEndTask.setEndTime("14:00");
-            workflowEndTask.setCompleted(false);
+            Task workflowEndTask = Task.builder()
+                    .taskId("workflow_end_test_001")
+                    .title("Workflow End Test - 2 Button Layout")
+                    .description("Testing the workflow end notification with Completed, Extend Time buttons")
+                    .type("workflow")
+                    .dueDate("2025-01-15")
+                    .startTime("13:00")
+                    .endTime("14:00")
+                    .completed(false)
+                    .build();
             
             handler.scheduleTaskNotification(workflowEndTask);
             Log.d(TAG, "✓ Workflow end notification scheduled with 2 buttons");
@@ -178,14 +183,15 @@ public class NotificationIntegrationTest {
             
             // Test reminder notification buttons
             Log.d(TAG, "Testing reminder notification button actions...");
-            Task reminderTask = new Task();
-            reminderTask.setTaskId("button_test_reminder");
-            reminderTask.setTitle("Button Test - Reminder");
-            reminderTask.setDescription("Testing all three buttons: Got it, Skip, Tomorrow");
-            reminderTask.setType("reminder");
-            reminderTask.setDueDate("2025-01-15");
-            reminderTask.setStartTime("15:00");
-            reminderTask.setCompleted(false);
+            Task reminderTask = Task.builder()
+                    .taskId("button_test_reminder")
+                    .title("Button Test - Reminder")
+                    .description("Testing all three buttons: Got it, Skip, Tomorrow")
+                    .type("reminder")
+                    .dueDate("2025-01-15")
+                    .startTime("15:00")
+                    .completed(false)
+                    .build();
             
             handler.scheduleTaskNotification(reminderTask);
             Log.d(TAG, "✓ Reminder notification with buttons scheduled");
@@ -198,14 +204,15 @@ public class NotificationIntegrationTest {
             
             // Test workflow start notification buttons
             Log.d(TAG, "Testing workflow start notification button actions...");
-            Task workflowTask = new Task();
-            workflowTask.setTaskId("button_test_workflow");
-            workflowTask.setTitle("Button Test - Workflow Start");
-            workflowTask.setDescription("Testing workflow start buttons: Start Now, Can't Do");
-            workflowTask.setType("workflow");
-            workflowTask.setDueDate("2025-01-15");
-            workflowTask.setStartTime("15:30");
-            workflowTask.setCompleted(false);
+            Task workflowTask = Task.builder()
+                    .taskId("button_test_workflow")
+                    .title("Button Test - Workflow Start")
+                    .description("Testing workflow start buttons: Start Now, Can't Do")
+                    .type("workflow")
+                    .dueDate("2025-01-15")
+                    .startTime("15:30")
+                    .completed(false)
+                    .build();
             
             handler.scheduleTaskNotification(workflowTask);
             Log.d(TAG, "✓ Workflow start notification with buttons scheduled");
@@ -22,7 +22,8 @@ try {
     // Get all tasks for today including habits
     $stmt = $conn->prepare("
         SELECT 
-            t.id as task_id,
+            t.id as row_id,
+            COALESCE(t.client_id, t.id) as task_id,
             t.title,
             t.description,
             t.start_time,
@@ -54,6 +55,8 @@ try {
 
     $result = $stmt->get_result();
     $tasks = array();
+    // Numeric row IDs for the completion lookups; task_id may be a client UUID
+    $rowIds = array();
     
     while ($row = $result->fetch_assoc()) {
         // Format the task data
@@ -75,11 +78,12 @@ try {
         }
         
         $tasks[] = $task;
+        $rowIds[] = $row['row_id'];
     }
 
     // Get streak information for habits
     if (!empty($tasks)) {
-        foreach ($tasks as &$task) {
+        foreach ($tasks as $index => &$task) {
             if ($task['task_type'] === 'habit' && $task['repeat_frequency'] !== 'none') {
                 $streakStmt = $conn->prepare("
                     SELECT COUNT(*) as current_streak
@@ -97,7 +101,7 @@ try {
                     ORDER BY tc.completion_date DESC
                 ");
                 
-                $streakStmt->bind_param("iiss", $task['task_id'], $task['task_id'], $date, $date);
+                $streakStmt->bind_param("iiss", $rowIds[$index], $rowIds[$index], $date, $date);
                 $streakStmt->execute();
                 $streakResult = $streakStmt->get_result();
                 $streakData = $streakResult->fetch_assoc();
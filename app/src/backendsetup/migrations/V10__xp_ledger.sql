@@ -0,0 +1,19 @@
+-- XP changes only through entries in xp_ledger (see server/xp_ledger.php); users.xp_points
+-- is the running sum of the user's entries. Rewards such as 2.5 XP need a decimal balance.
+UPDATE users SET xp_points = 0 WHERE xp_points IS NULL;
+ALTER TABLE users MODIFY xp_points DECIMAL(10,2) NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS xp_ledger (
+    seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL,
+    entry_key VARCHAR(100) NOT NULL,  -- The completion the entry is for, unique per user
+    amount DECIMAL(7,2) NOT NULL,
+    reason VARCHAR(20) NOT NULL,  -- workflow, remainder, habit, penalty or opening
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uq_xp_ledger_entry (user_id, entry_key),
+    INDEX idx_xp_ledger_user_seq (user_id, seq)
+);
+
+-- One opening entry per user carries the balance earned before the ledger
+INSERT IGNORE INTO xp_ledger (user_id, entry_key, amount, reason)
+SELECT user_id, 'opening', xp_points, 'opening' FROM users WHERE xp_points <> 0;
@@ -0,0 +1,110 @@
+-- Delta sync support: every task/habit row carries the server version at which it
+-- last changed, deletions leave a tombstone, and clients ask for "changes since <cursor>".
+
+-- Single-row global version counter. Bumping it takes a row lock that is held until
+-- the writing transaction commits, so versions become visible in increasing order and
+-- a client cursor can never skip over a change that commits late.
+CREATE TABLE IF NOT EXISTS sync_sequence (
+    id TINYINT NOT NULL PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+ALTER TABLE tasks
+ADD COLUMN sync_version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE habits
+ADD COLUMN sync_version BIGINT NOT NULL DEFAULT 0;
+
+-- Give existing rows unique versions so the first sync (cursor 0) pages cleanly
+SET @sync_version := 0;
+UPDATE tasks SET sync_version = (@sync_version := @sync_version + 1) ORDER BY id;
+UPDATE habits SET sync_version = (@sync_version := @sync_version + 1) ORDER BY habit_id;
+INSERT INTO sync_sequence (id, version) VALUES (1, @sync_version);
+
+CREATE TABLE IF NOT EXISTS sync_tombstones (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL,
+    entity_type ENUM('task', 'habit') NOT NULL,
+    entity_id INT NOT NULL,
+    sync_version BIGINT NOT NULL,
+    deleted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_tasks_user_sync ON tasks(user_id, sync_version);
+CREATE INDEX idx_habits_user_sync ON habits(user_id, sync_version);
+CREATE INDEX idx_tombstones_user_sync ON sync_tombstones(user_id, sync_version);
+
+-- LAST_INSERT_ID() set inside a trigger is restored when the trigger ends, so the
+-- insert IDs seen by add_task.php / add_habit.php are unaffected.
+DELIMITER //
+CREATE TRIGGER tasks_sync_insert BEFORE INSERT ON tasks
+FOR EACH ROW
+BEGIN
+    UPDATE sync_sequence SET version = LAST_INSERT_ID(version + 1) WHERE id = 1;
+    SET NEW.sync_version = LAST_INSERT_ID();
+END //
+
+CREATE TRIGGER tasks_sync_update BEFORE UPDATE ON tasks
+FOR EACH ROW
+BEGIN
+    UPDATE sync_sequence SET version = LAST_INSERT_ID(version + 1) WHERE id = 1;
+    SET NEW.sync_version = LAST_INSERT_ID();
+END //
+
+CREATE TRIGGER tasks_sync_delete AFTER DELETE ON tasks
+FOR EACH ROW
+BEGIN
+    UPDATE sync_sequence SET version = LAST_INSERT_ID(version + 1) WHERE id = 1;
+    INSERT INTO sync_tombstones (user_id, entity_type, entity_id, sync_version)
+    VALUES (OLD.user_id, 'task', OLD.id, LAST_INSERT_ID());
+END //
+
+CREATE TRIGGER habits_sync_insert BEFORE INSERT ON habits
+FOR EACH ROW
+BEGIN
+    UPDATE sync_sequence SET version = LAST_INSERT_ID(version + 1) WHERE id = 1;
+    SET NEW.sync_version = LAST_INSERT_ID();
+END //
+
+CREATE TRIGGER habits_sync_update BEFORE UPDATE ON habits
+FOR EACH ROW
+BEGIN
+    UPDATE sync_sequence SET version = LAST_INSERT_ID(version + 1) WHERE id = 1;
+    SET NEW.sync_version = LAST_INSERT_ID();
+END //
+
+CREATE TRIGGER habits_sync_delete AFTER DELETE ON habits
+FOR EACH ROW
+BEGIN
+    UPDATE sync_sequence SET version = LAST_INSERT_ID(version + 1) WHERE id = 1;
+    INSERT INTO sync_tombstones (user_id, entity_type, entity_id, sync_version)
+    VALUES (OLD.user_id, 'habit', OLD.habit_id, LAST_INSERT_ID());
+END //
+
+-- Completion status is derived from the completion tables, so touching the parent
+-- row re-versions it and the new status reaches other devices in the next delta.
+CREATE TRIGGER task_completions_sync_insert AFTER INSERT ON task_completions
+FOR EACH ROW
+BEGIN
+    UPDATE tasks SET sync_version = sync_version WHERE id = NEW.task_id;
+END //
+
+CREATE TRIGGER task_completions_sync_delete AFTER DELETE ON task_completions
+FOR EACH ROW
+BEGIN
+    UPDATE tasks SET sync_version = sync_version WHERE id = OLD.task_id;
+END //
+
+CREATE TRIGGER habit_completions_sync_insert AFTER INSERT ON habit_completions
+FOR EACH ROW
+BEGIN
+    UPDATE habits SET sync_version = sync_version WHERE habit_id = NEW.habit_id;
+END //
+
+CREATE TRIGGER habit_completions_sync_delete AFTER DELETE ON habit_completions
+FOR EACH ROW
+BEGIN
+    UPDATE habits SET sync_version = sync_version WHERE habit_id = OLD.habit_id;
+END //
+DELIMITER ;
+
@@ -0,0 +1,25 @@
+-- Idempotency log for replay_mutations.php: a client mutation is applied at most once
+-- per idempotency key, and a replay of an applied key returns the stored result.
+CREATE TABLE IF NOT EXISTS applied_mutations (
+    idempotency_key VARCHAR(64) NOT NULL PRIMARY KEY,
+    user_id INT NOT NULL,
+    operation VARCHAR(32) NOT NULL,
+    response TEXT,
+    applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Keys only need to outlive the longest offline window; old rows can be pruned by date
+CREATE INDEX idx_applied_mutations_applied_at ON applied_mutations(applied_at);
+
+-- update_habit.php creates this lazily; replayed habit completions write to it inside a
+-- transaction, where DDL would force an implicit commit, so make sure it exists up front
+CREATE TABLE IF NOT EXISTS user_activity_log (
+    log_id INT AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL,
+    activity_type VARCHAR(50) NOT NULL,
+    activity_data TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_user_id (user_id),
+    INDEX idx_activity_type (activity_type),
+    INDEX idx_created_at (created_at)
+);
@@ -0,0 +1,3 @@
+-- repeat_frequency now holds a recurrence rule, e.g. "weekly;days=MO,WE;until=2025-12-31".
+-- The plain values the enum allowed are still valid rules, so existing rows keep working.
+ALTER TABLE tasks MODIFY repeat_frequency VARCHAR(64) NOT NULL DEFAULT 'none';
@@ -0,0 +1,24 @@
+-- Tasks created on a device carry a client-generated UUID. It is stored next to the
+-- numeric id and is the ID the task is known by from then on: every endpoint accepts
+-- either, and reads return the UUID when there is one, so a task created offline
+-- keeps the ID it was created with. A replayed create with a UUID that already
+-- exists returns the existing task instead of inserting it again.
+ALTER TABLE tasks
+ADD COLUMN client_id CHAR(36) NULL;
+
+CREATE UNIQUE INDEX uq_tasks_user_client_id ON tasks(user_id, client_id);
+
+-- Tombstones of such tasks must carry the UUID the devices know them by
+ALTER TABLE sync_tombstones MODIFY entity_id VARCHAR(36) NOT NULL;
+
+DROP TRIGGER IF EXISTS tasks_sync_delete;
+
+DELIMITER //
+CREATE TRIGGER tasks_sync_delete AFTER DELETE ON tasks
+FOR EACH ROW
+BEGIN
+    UPDATE sync_sequence SET version = LAST_INSERT_ID(version + 1) WHERE id = 1;
+    INSERT INTO sync_tombstones (user_id, entity_type, entity_id, sync_version)
+    VALUES (OLD.user_id, 'task', COALESCE(OLD.client_id, OLD.id), LAST_INSERT_ID());
+END //
+DELIMITER ;
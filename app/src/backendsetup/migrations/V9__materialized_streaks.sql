@@ -0,0 +1,30 @@
+-- User streaks are kept on the users row by server/user_streaks.php instead of being
+-- recomputed from the whole activity log on reads. user_active_days has one row per
+-- user and day with any activity, so recording a day is a single keyed insert and a
+-- repair only reads that user's days.
+ALTER TABLE users
+ADD COLUMN longest_streak INT NOT NULL DEFAULT 0,
+ADD COLUMN last_active_date DATE NULL,
+ADD COLUMN streak_dirty TINYINT(1) NOT NULL DEFAULT 0;
+
+CREATE INDEX idx_users_streak_dirty ON users(streak_dirty);
+
+CREATE TABLE IF NOT EXISTS user_active_days (
+    user_id INT NOT NULL,
+    active_date DATE NOT NULL,
+    PRIMARY KEY (user_id, active_date)
+);
+
+-- Backfill from the existing activity
+INSERT IGNORE INTO user_active_days (user_id, active_date)
+SELECT DISTINCT user_id, DATE(created_at) FROM user_activity_log WHERE created_at IS NOT NULL;
+
+INSERT IGNORE INTO user_active_days (user_id, active_date)
+SELECT DISTINCT user_id, completion_date FROM task_completions WHERE completion_date IS NOT NULL;
+
+INSERT IGNORE INTO user_active_days (user_id, active_date)
+SELECT DISTINCT user_id, completion_date FROM habit_completions WHERE completion_date IS NOT NULL;
+
+-- The streak columns are filled by the next run of repair_streaks.php
+UPDATE users SET streak_dirty = 1
+WHERE user_id IN (SELECT user_id FROM user_active_days);
@@ -9,6 +9,7 @@ import android.location.Address;
 import android.location.Geocoder;
 import android.location.Location;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -30,6 +31,7 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.simats.schedulytic.model.Habit;
+import com.simats.schedulytic.service.HabitGeofenceManager;
 import com.simats.schedulytic.service.HabitManagerService;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationRequest;
@@ -56,6 +58,7 @@ public class AddHabitActivity extends AppCompatActivity {
     private static final String TAG = "AddHabitActivity";
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1001;
     private static final int MAP_LOCATION_REQUEST_CODE = 1002;
+    private static final int BACKGROUND_LOCATION_REQUEST_CODE = 1003;
     
     // UI components
     private EditText titleEditText;
@@ -96,11 +99,13 @@ public class AddHabitActivity extends AppCompatActivity {
     
     // Location services
     private FusedLocationProviderClient fusedLocationClient;
+    private TaskScope scope;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_add_habit);
+        scope = TaskScope.of(this);
         
         // Initialize UI components
         titleEditText = findViewById(R.id.habit_title_edit_text);
@@ -247,24 +252,28 @@ public class AddHabitActivity extends AppCompatActivity {
                 Log.d(TAG, String.format("Location selected: %.6f, %.6f", selectedLatitude, selectedLongitude));
                 
                 // Try to get address in background (optional)
-                new Thread(() -> {
+                double latitude = selectedLatitude;
+                double longitude = selectedLongitude;
+                scope.run(AppExecutors.getInstance().io(), () -> {
                     try {
                         Geocoder geocoder = new Geocoder(AddHabitActivity.this, Locale.getDefault());
-                        List<Address> addresses = geocoder.getFromLocation(selectedLatitude, selectedLongitude, 1);
+                        List<Address> addresses = geocoder.getFromLocation(latitude, longitude, 1);
                         if (addresses != null && !addresses.isEmpty()) {
-                            Address address = addresses.get(0);
-                            String addressText = address.getAddressLine(0);
-                            
-                            runOnUiThread(() -> {
-                                selectedLocationText.setText(String.format("Selected: %s\n(%.6f, %.6f)", 
-                                    addressText, selectedLatitude, selectedLongitude));
-                                selectedMarker[0].setSnippet(addressText);
-                            });
+                            return addresses.get(0).getAddressLine(0);
                         }
                     } catch (Exception ex) {
                         Log.w(TAG, "Geocoding failed (non-critical): " + ex.getMessage());
                     }
-                }).start();
+                    return null;
+                }, addressText -> {
+                    // Skip stale results if another point was picked meanwhile
+                    if (addressText == null || latitude != selectedLatitude || longitude != selectedLongitude) {
+                        return;
+                    }
+                    selectedLocationText.setText(String.format("Selected: %s\n(%.6f, %.6f)", 
+                        addressText, selectedLatitude, selectedLongitude));
+                    selectedMarker[0].setSnippet(addressText);
+                });
                 
                 return true;
             }
@@ -620,6 +629,15 @@ public class AddHabitActivity extends AppCompatActivity {
                 // Show success message
                 Toast.makeText(this, "Habit added successfully", Toast.LENGTH_SHORT).show();
                 
+                // Location habits are verified by a geofence, which needs background location
+                if (habit.isLocationBased() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                        && !HabitGeofenceManager.hasBackgroundPermission(this)) {
+                    ActivityCompat.requestPermissions(this,
+                        new String[]{Manifest.permission.ACCESS_BACKGROUND_LOCATION},
+                        BACKGROUND_LOCATION_REQUEST_CODE);
+                    return;  // Finished once the user has answered
+                }
+                
                 // Finish activity
                 finish();
             }
@@ -776,6 +794,14 @@ public class AddHabitActivity extends AppCompatActivity {
                 selectedVerificationMethod = Habit.VERIFICATION_CHECKBOX;
                 locationVerificationSection.setVisibility(View.GONE);
             }
+        } else if (requestCode == BACKGROUND_LOCATION_REQUEST_CODE) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                // Register the geofences that could not be registered without it
+                habitManager.refreshGeofences();
+            } else {
+                Toast.makeText(this, "Without background location, verify location habits from the habit list", Toast.LENGTH_LONG).show();
+            }
+            finish();
         }
     }
     
@@ -58,11 +58,13 @@ public class AddTaskActivity extends AppCompatActivity {
     private int fromMinute = 0;
     private int toHour = 10;
     private int toMinute = 0;
+    private TaskScope scope;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.add_task);
+        scope = TaskScope.of(this);
 
         // Initialize views
         fromTimeHours = findViewById(R.id.from_time_hours);
@@ -558,11 +560,9 @@ public class AddTaskActivity extends AppCompatActivity {
         final String finalRepeatFrequency = repeatFrequency;
         final String finalSelectedDate = selectedDate;
         
-        // Use a Handler to manage UI updates from the main thread
-        final Handler mainHandler = new Handler(getMainLooper());
-        
-        // Create a separate thread for network operation
-        Thread networkThread = new Thread(() -> {
+        // Save off the main thread. The save itself is not tied to this screen and
+        // completes even if it is closed; only the UI updates are dropped then.
+        AppExecutors.getInstance().db().execute(() -> {
             // Create a special TaskManager just for adding this task
             TaskManager networkTaskManager = new TaskManager(getApplicationContext(), new TaskManager.TaskListener() {
                 @Override
@@ -571,7 +571,7 @@ public class AddTaskActivity extends AppCompatActivity {
                 @Override
                 public void onTaskAdded(Task task) {
                     // Update UI on the main thread with success
-                    mainHandler.post(() -> {
+                    scope.post(() -> {
                         // Note: Reminder notifications are now scheduled by TaskManager
                         // No need to schedule here to avoid duplicate notifications
                         Log.d("AddTaskActivity", "Task added, notifications scheduled by TaskManager");
@@ -614,7 +614,7 @@ public class AddTaskActivity extends AppCompatActivity {
                 @Override
                 public void onError(String message) {
                     // Update UI on the main thread with error
-                    mainHandler.post(() -> {
+                    scope.post(() -> {
                         // Re-enable submit button
                         submitButton.setEnabled(true);
                         submitButton.setText("Add Task");
@@ -640,7 +640,7 @@ public class AddTaskActivity extends AppCompatActivity {
             } catch (Exception e) {
                 // Handle any unexpected exceptions
                 Log.e("AddTaskActivity", "Exception during task submission: " + e.getMessage(), e);
-                mainHandler.post(() -> {
+                scope.post(() -> {
                     // Re-enable submit button
                     submitButton.setEnabled(true);
                     submitButton.setText("Add Task");
@@ -657,7 +657,6 @@ public class AddTaskActivity extends AppCompatActivity {
                 });
             }
         });
-        networkThread.start();
     }
 
     /**
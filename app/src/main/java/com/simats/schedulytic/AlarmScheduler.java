@@ -0,0 +1,353 @@
+package com.simats.schedulytic;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Every notification alarm of the app, kept in the {@code scheduled_alarms} table.
+ *
+ * Only the earliest pending row is registered with AlarmManager, through a single
+ * PendingIntent. When it fires, {@link AlarmReceiver} broadcasts every row that is
+ * due to the receiver it was scheduled for, moves repeating rows to their next
+ * trigger, deletes the rest and arms the next earliest one. Scheduling or cancelling
+ * a task's alarms is a row write, however many alarms the task has.
+ *
+ * Rows are keyed by an alarm key (e.g. "task:42:workflow_start"), so scheduling the
+ * same key again replaces it, and carry the task or habit ID they belong to, so all
+ * alarms of one entity are cancelled together.
+ */
+public class AlarmScheduler {
+    private static final String TAG = "AlarmScheduler";
+    private static final int DISPATCH_REQUEST_CODE = 0x5ced;
+    // Rows due this close together are delivered by the same wake-up
+    private static final long DISPATCH_WINDOW_MS = 1000;
+    // Alarms missed by more than this (device off, app killed) are dropped, not shown late
+    private static final long STALE_AFTER_MS = 6 * 60 * 60 * 1000L;
+    private static AlarmScheduler instance;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final AlarmManager alarmManager;
+    // Serial, so schedules and cancels are applied in the order they were made
+    private final Executor executor = AppExecutors.getInstance().newSerialExecutor();
+    // Set while an arm is queued; writes queued before it run first, so a burst of
+    // schedules (e.g. a boot restore) sets the system alarm once, not once per row
+    private boolean armQueued;
+
+    private AlarmScheduler(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+    }
+
+    public static synchronized AlarmScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new AlarmScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Deliver the intent at the given time, replacing any alarm with the same key.
+     * @param intent Explicit broadcast intent; its action and String, int and boolean
+     * extras are stored and restored on delivery
+     */
+    public void schedule(String alarmKey, String entityId, long triggerAt, Intent intent) {
+        scheduleRepeating(alarmKey, entityId, triggerAt, 0, intent);
+    }
+
+    /**
+     * Like {@link #schedule}, then again every intervalMs after each delivery
+     */
+    public void scheduleRepeating(String alarmKey, String entityId, long triggerAt, long intervalMs, Intent intent) {
+        ComponentName component = intent.getComponent();
+        if (component == null) {
+            Log.e(TAG, "Alarm " + alarmKey + " has no target receiver, not scheduling");
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put("alarm_key", alarmKey);
+        values.put("entity_id", entityId);
+        values.put("trigger_at", triggerAt);
+        values.put("repeat_interval_ms", intervalMs);
+        values.put("receiver", component.getClassName());
+        values.put("action", intent.getAction());
+        values.put("extras", encodeExtras(intent.getExtras()).toString());
+
+        executor.execute(() -> {
+            try {
+                SQLiteDatabase db = dbHelper.getWritableDatabase();
+                db.insertWithOnConflict("scheduled_alarms", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                Log.d(TAG, "Scheduled " + alarmKey + " for " + new Date(triggerAt));
+                requestArm();
+            } catch (Exception e) {
+                Log.e(TAG, "Error scheduling alarm " + alarmKey + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    public void cancel(String alarmKey) {
+        executor.execute(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            if (db.delete("scheduled_alarms", "alarm_key = ?", new String[]{alarmKey}) > 0) {
+                requestArm();
+            }
+        });
+    }
+
+    /**
+     * Cancel every alarm whose key starts with the prefix, e.g. all occurrences of
+     * one kind of alarm of a repeating task
+     */
+    public void cancelPrefix(String keyPrefix) {
+        executor.execute(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            // substr rather than LIKE: keys contain '_', which LIKE treats as a wildcard
+            int removed = db.delete("scheduled_alarms", "substr(alarm_key, 1, ?) = ?",
+                    new String[]{String.valueOf(keyPrefix.length()), keyPrefix});
+            if (removed > 0) {
+                requestArm();
+            }
+        });
+    }
+
+    /**
+     * Cancel every alarm of a task or habit
+     */
+    public void cancelAll(String entityId) {
+        if (entityId == null) {
+            return;
+        }
+        executor.execute(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            int removed = db.delete("scheduled_alarms", "entity_id = ?", new String[]{entityId});
+            if (removed > 0) {
+                Log.d(TAG, "Cancelled " + removed + " alarms of " + entityId);
+                requestArm();
+            }
+        });
+    }
+
+    /**
+     * Register the earliest stored alarm with AlarmManager again, e.g. after a reboot
+     * cleared the system's alarms
+     */
+    public void rearm() {
+        requestArm();
+    }
+
+    /**
+     * Run the callback on the scheduler thread once every schedule and cancel made
+     * before this call has been written and armed
+     */
+    public void runWhenIdle(Runnable callback) {
+        executor.execute(callback);
+    }
+
+    /**
+     * @return IDs of the tasks and habits that have at least one stored alarm.
+     * Reads the database, so call it off the main thread.
+     */
+    public Set<String> getScheduledEntityIds() {
+        Set<String> entityIds = new HashSet<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(
+                "SELECT DISTINCT entity_id FROM scheduled_alarms WHERE entity_id IS NOT NULL", null)) {
+            while (cursor.moveToNext()) {
+                entityIds.add(cursor.getString(0));
+            }
+        }
+        return entityIds;
+    }
+
+    private void requestArm() {
+        synchronized (this) {
+            if (armQueued) {
+                return;
+            }
+            armQueued = true;
+        }
+        executor.execute(() -> {
+            synchronized (this) {
+                armQueued = false;
+            }
+            try {
+                armNext(dbHelper.getWritableDatabase());
+            } catch (Exception e) {
+                Log.e(TAG, "Error arming dispatcher: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Deliver every due row and arm the next one. Runs on the scheduler thread.
+     */
+    private void dispatchDue() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        List<Intent> due = new ArrayList<>();
+
+        db.beginTransaction();
+        try (Cursor cursor = db.query("scheduled_alarms",
+                new String[]{"id", "alarm_key", "trigger_at", "repeat_interval_ms", "receiver", "action", "extras"},
+                "trigger_at <= ?", new String[]{String.valueOf(now + DISPATCH_WINDOW_MS)},
+                null, null, "trigger_at")) {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                String alarmKey = cursor.getString(1);
+                long triggerAt = cursor.getLong(2);
+                long intervalMs = cursor.getLong(3);
+
+                if (now - triggerAt <= STALE_AFTER_MS) {
+                    Intent intent = new Intent();
+                    intent.setClassName(context, cursor.getString(4));
+                    intent.setAction(cursor.getString(5));
+                    intent.putExtras(decodeExtras(cursor.getString(6)));
+                    due.add(intent);
+                } else {
+                    Log.w(TAG, "Dropping stale alarm " + alarmKey + " due " + new Date(triggerAt));
+                }
+
+                if (intervalMs > 0) {
+                    // Skip the periods that were missed and keep the original time of day
+                    long periods = (now - triggerAt) / intervalMs + 1;
+                    ContentValues values = new ContentValues();
+                    values.put("trigger_at", triggerAt + periods * intervalMs);
+                    db.update("scheduled_alarms", values, "id = ?", new String[]{String.valueOf(id)});
+                } else {
+                    db.delete("scheduled_alarms", "id = ?", new String[]{String.valueOf(id)});
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        for (Intent intent : due) {
+            context.sendBroadcast(intent);
+        }
+        Log.d(TAG, "Dispatched " + due.size() + " due alarms");
+        armNext(db);
+    }
+
+    private void armNext(SQLiteDatabase db) {
+        long nextTrigger = -1;
+        try (Cursor cursor = db.rawQuery("SELECT MIN(trigger_at) FROM scheduled_alarms", null)) {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                nextTrigger = cursor.getLong(0);
+            }
+        }
+
+        PendingIntent pendingIntent = getDispatchIntent();
+        if (nextTrigger < 0) {
+            alarmManager.cancel(pendingIntent);
+            Log.d(TAG, "No alarms left, dispatcher disarmed");
+            return;
+        }
+
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, nextTrigger, pendingIntent);
+            } else {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, nextTrigger, pendingIntent);
+            }
+        } catch (SecurityException e) {
+            Log.w(TAG, "Exact alarm not allowed, using inexact: " + e.getMessage());
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, nextTrigger, pendingIntent);
+        }
+        Log.d(TAG, "Dispatcher armed for " + new Date(nextTrigger));
+    }
+
+    private PendingIntent getDispatchIntent() {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        return PendingIntent.getBroadcast(context, DISPATCH_REQUEST_CODE, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private static JSONObject encodeExtras(Bundle extras) {
+        JSONObject json = new JSONObject();
+        if (extras == null) {
+            return json;
+        }
+        for (String key : extras.keySet()) {
+            Object value = extras.get(key);
+            try {
+                if (value instanceof Integer || value instanceof Boolean) {
+                    json.put(key, value);
+                } else if (value != null) {
+                    json.put(key, value.toString());
+                }
+            } catch (JSONException e) {
+                Log.w(TAG, "Skipping alarm extra " + key + ": " + e.getMessage());
+            }
+        }
+        return json;
+    }
+
+    private static Bundle decodeExtras(String encoded) {
+        Bundle extras = new Bundle();
+        if (encoded == null) {
+            return extras;
+        }
+        try {
+            JSONObject json = new JSONObject(encoded);
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object value = json.get(key);
+                if (value instanceof Integer) {
+                    extras.putInt(key, (Integer) value);
+                } else if (value instanceof Boolean) {
+                    extras.putBoolean(key, (Boolean) value);
+                } else {
+                    extras.putString(key, value.toString());
+                }
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Corrupt alarm extras: " + e.getMessage());
+        }
+        return extras;
+    }
+
+    /**
+     * Target of the one registered alarm
+     */
+    public static class AlarmReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            AlarmScheduler scheduler = AlarmScheduler.getInstance(context);
+            PendingResult result = goAsync();
+            scheduler.executor.execute(() -> {
+                try {
+                    scheduler.dispatchDue();
+                } catch (Exception e) {
+                    Log.e(TAG, "Error dispatching alarms: " + e.getMessage(), e);
+                } finally {
+                    result.finish();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.simats.schedulytic;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The app's background threads, shared by every screen and manager instead of each
+ * starting threads of its own.
+ *
+ * <ul>
+ *   <li>{@link #io()}: blocking network and file work, a bounded pool</li>
+ *   <li>{@link #db()}: local database reads and writes, one thread, so they run in
+ *       the order they were queued and a read sees every write queued before it</li>
+ *   <li>{@link #compute()}: CPU-bound work such as parsing, on fewer threads than cores</li>
+ *   <li>{@link #main()}: the main thread</li>
+ * </ul>
+ *
+ * Components that need their own ordering (a sync run, an alarm queue) take a
+ * {@link #newSerialExecutor serial executor}: it runs one task at a time on the io
+ * pool and holds no thread while idle. Pool threads run at background priority and
+ * time out when unused. Work tied to a screen should go through a {@link TaskScope},
+ * which cancels it when the screen is destroyed.
+ */
+public final class AppExecutors {
+    private static final int IO_THREADS = 8;
+    private static final int COMPUTE_THREADS =
+            Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final String DB_POOL = "db";
+    // Name of the pool the current thread belongs to, if any
+    private static final ThreadLocal<String> POOL_NAME = new ThreadLocal<>();
+    private static AppExecutors instance;
+
+    private final ExecutorService io;
+    private final ExecutorService db;
+    private final ExecutorService compute;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor main = mainHandler::post;
+
+    private AppExecutors() {
+        io = newPool("io", IO_THREADS);
+        db = newPool(DB_POOL, 1);
+        compute = newPool("compute", COMPUTE_THREADS);
+    }
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    public ExecutorService io() {
+        return io;
+    }
+
+    public ExecutorService db() {
+        return db;
+    }
+
+    public ExecutorService compute() {
+        return compute;
+    }
+
+    public Executor main() {
+        return main;
+    }
+
+    /**
+     * Run on the main thread: immediately if already on it, otherwise posted
+     */
+    public void runOnMain(Runnable action) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            action.run();
+        } else {
+            mainHandler.post(action);
+        }
+    }
+
+    /**
+     * Run on the database thread: immediately if already on it, otherwise queued. Work
+     * already on the database thread sees its own writes before anything queued after it.
+     */
+    public void runOnDb(Runnable action) {
+        if (DB_POOL.equals(POOL_NAME.get())) {
+            action.run();
+        } else {
+            db.execute(action);
+        }
+    }
+
+    /**
+     * @return An executor running its tasks one at a time, in submission order, on the io pool
+     */
+    public Executor newSerialExecutor() {
+        return new SerialExecutor(io);
+    }
+
+    private static ExecutorService newPool(String name, int threads) {
+        // Fixed size with an unbounded queue: the pool grows to its limit, then queues
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                POOL_NAME.set(name);
+                runnable.run();
+            }, name + "-" + count.incrementAndGet());
+        }
+    }
+
+    private static final class SerialExecutor implements Executor {
+        private final Executor pool;
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private Runnable active;
+
+        SerialExecutor(Executor pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            queue.offer(() -> {
+                try {
+                    command.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            active = queue.poll();
+            if (active != null) {
+                pool.execute(active);
+            }
+        }
+    }
+}
@@ -3,127 +3,181 @@ package com.simats.schedulytic;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
+
+import com.simats.schedulytic.service.HabitGeofenceManager;
+
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * This BroadcastReceiver listens for the BOOT_COMPLETED action.
- * It's used to reschedule alarms, notifications, or other tasks
- * that need to persist across device restarts.
+ * This BroadcastReceiver listens for the BOOT_COMPLETED action and restores the
+ * app's alarms, without touching the network.
+ *
+ * The scheduled_alarms table survives the reboot, so re-arming AlarmScheduler brings
+ * back every stored reminder. Upcoming tasks in the local task cache that have no
+ * stored alarm (e.g. cached before alarms were stored) are scheduled in the same pass.
+ * All of it runs in the background through goAsync() and gives up at
+ * {@link #RESTORE_BUDGET_MS}, well inside the broadcast deadline. Only then is a
+ * delta sync with the server started, and tasks it brings in get their alarms too.
  */
 public class BootReceiver extends BroadcastReceiver {
 
-    private static final String TAG = "BootReceiver";    @Override
+    private static final String TAG = "BootReceiver";
+    // Broadcast receivers are given about 10 seconds; leave room for the arm itself
+    private static final long RESTORE_BUDGET_MS = 8000;
+    private static final Executor executor = AppExecutors.getInstance().newSerialExecutor();
+
+    @Override
     public void onReceive(Context context, Intent intent) {
         // Check if the received intent is the BOOT_COMPLETED action
-        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
-            Log.d(TAG, "Boot completed received. Rescheduling tasks...");
-
-            // Reschedule all active tasks' notifications
-            rescheduleAllTaskNotifications(context);
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            return;
         }
-    }
-    
-    /**
-     * Reschedule notifications for all active tasks
-     */
-    private void rescheduleAllTaskNotifications(Context context) {
-        // Use AsyncTask or Thread to handle database operations off main thread
-        Thread rescheduleThread = new Thread(() -> {
+        Log.d(TAG, "Boot completed received. Restoring alarms...");
+
+        Context appContext = context.getApplicationContext();
+        PendingResult result = goAsync();
+        AtomicBoolean finished = new AtomicBoolean(false);
+        Runnable finish = () -> {
+            if (finished.compareAndSet(false, true)) {
+                result.finish();
+                // Reconcile with the server only once the local restore is over
+                reconcileWithServer(appContext);
+            }
+        };
+
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        mainHandler.postDelayed(() -> {
+            if (!finished.get()) {
+                Log.w(TAG, "Alarm restore ran out of time, finishing the broadcast");
+            }
+            finish.run();
+        }, RESTORE_BUDGET_MS);
+
+        long deadline = SystemClock.elapsedRealtime() + RESTORE_BUDGET_MS;
+        executor.execute(() -> {
+            AlarmScheduler scheduler = AlarmScheduler.getInstance(appContext);
             try {
-                TaskManager taskManager = new TaskManager(context, new TaskManager.TaskListener() {
-                    @Override
-                    public void onTasksLoaded(java.util.List<Task> tasks) {
-                        NotificationHandler notificationHandler = new NotificationHandler(context);
-                        ReminderNotificationManager reminderManager = new ReminderNotificationManager(context);
-                        int rescheduledCount = 0;
-                        
-                        for (Task task : tasks) {
-                            // Only reschedule incomplete tasks for today and future dates
-                            if (!task.isCompleted() && isTaskRelevant(task)) {
-                                // Use appropriate notification manager based on task type
-                                if (task.isRemainder()) {
-                                    reminderManager.scheduleReminderNotifications(task);
-                                } else {
-                                    notificationHandler.scheduleTaskNotification(task);
-                                }
-                                rescheduledCount++;
-                            }
-                        }
-                        
-                        Log.d(TAG, "Rescheduled " + rescheduledCount + " task notifications");
-                    }
-                    
-                    @Override
-                    public void onTaskAdded(Task task) {}
-                    
-                    @Override
-                    public void onTaskUpdated(Task task) {}
-                    
-                    @Override
-                    public void onTaskDeleted(String taskId) {}
-                    
-                    @Override
-                    public void onError(String message) {
-                        Log.e(TAG, "Error rescheduling notifications: " + message);
-                    }
-                    
-                    @Override
-                    public void onHabitStreakUpdated(String taskId, int newStreak) {}
-                });
-                
-                // Load tasks for today and upcoming days
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-                String today = dateFormat.format(new Date());
-                taskManager.loadTasks(today);
-                
-                // Also load tomorrow's tasks
-                Calendar tomorrow = Calendar.getInstance();
-                tomorrow.add(Calendar.DAY_OF_YEAR, 1);
-                String tomorrowDate = dateFormat.format(tomorrow.getTime());
-                taskManager.loadTasks(tomorrowDate);
-                
+                // The alarm table survived the reboot; only its AlarmManager entry was lost
+                scheduler.rearm();
+                // Geofences are cleared by a reboot too
+                HabitGeofenceManager.getInstance(appContext).restore();
+                int scheduled = scheduleMissingAlarms(appContext, deadline);
+                Log.d(TAG, "Alarms re-armed, " + scheduled + " cached tasks scheduled");
             } catch (Exception e) {
-                Log.e(TAG, "Error in rescheduleAllTaskNotifications", e);
+                Log.e(TAG, "Error restoring alarms", e);
             }
+            // Writes are queued on the scheduler thread; finish once they are all applied
+            scheduler.runWhenIdle(() -> mainHandler.post(finish));
         });
-        
-        rescheduleThread.start();
     }
-    
+
+    /**
+     * Schedule cached tasks of today and tomorrow that are still ahead but have no
+     * stored alarm. Stops at the deadline; the rest is left to the next task load.
+     * @return Number of tasks scheduled
+     */
+    private static int scheduleMissingAlarms(Context context, long deadline) {
+        TaskCache taskCache = TaskCache.getInstance(context);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        String today = dateFormat.format(new Date());
+
+        Calendar tomorrow = Calendar.getInstance();
+        tomorrow.add(Calendar.DAY_OF_YEAR, 1);
+        String tomorrowDate = dateFormat.format(tomorrow.getTime());
+
+        // A repeating task can occur on both days; it is scheduled once for all its occurrences
+        Map<String, Task> tasksById = new LinkedHashMap<>();
+        for (Task task : taskCache.getTasksOccurringOn(today)) {
+            tasksById.put(task.getTaskId(), task);
+        }
+        for (Task task : taskCache.getTasksOccurringOn(tomorrowDate)) {
+            tasksById.putIfAbsent(task.getTaskId(), task);
+        }
+        List<Task> tasks = new ArrayList<>(tasksById.values());
+
+        Set<String> scheduledIds = AlarmScheduler.getInstance(context).getScheduledEntityIds();
+        NotificationHandler notificationHandler = null;
+        ReminderNotificationManager reminderManager = null;
+        long now = System.currentTimeMillis();
+        int scheduledCount = 0;
+
+        for (Task task : tasks) {
+            if (SystemClock.elapsedRealtime() > deadline) {
+                Log.w(TAG, "Restore deadline reached, " + (tasks.size() - scheduledCount) + " tasks left");
+                break;
+            }
+            if (task.isCompleted() || scheduledIds.contains(task.getTaskId())
+                    || lastTriggerMillis(task, now) <= now) {
+                continue;
+            }
+
+            // Use appropriate notification manager based on task type
+            if (task.isRemainder()) {
+                if (reminderManager == null) {
+                    reminderManager = new ReminderNotificationManager(context);
+                }
+                reminderManager.scheduleReminderNotifications(task);
+            } else {
+                if (notificationHandler == null) {
+                    notificationHandler = new NotificationHandler(context, false);
+                }
+                notificationHandler.scheduleTaskNotification(task);
+            }
+            scheduledCount++;
+        }
+        return scheduledCount;
+    }
+
     /**
-     * Check if a task is relevant for rescheduling (today or future)
+     * Time of the task's last notification (end of a workflow, start of a reminder),
+     * taken from its latest occurrence within the alarm horizon, or -1 if its times
+     * cannot be read
      */
-    private boolean isTaskRelevant(Task task) {
-        try {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            Date taskDate = dateFormat.parse(task.getDueDate());
-            Date today = new Date();
-            
-            // Reset time to start of day for comparison
-            Calendar taskCal = Calendar.getInstance();
-            taskCal.setTime(taskDate);
-            taskCal.set(Calendar.HOUR_OF_DAY, 0);
-            taskCal.set(Calendar.MINUTE, 0);
-            taskCal.set(Calendar.SECOND, 0);
-            taskCal.set(Calendar.MILLISECOND, 0);
-            
-            Calendar todayCal = Calendar.getInstance();
-            todayCal.setTime(today);
-            todayCal.set(Calendar.HOUR_OF_DAY, 0);
-            todayCal.set(Calendar.MINUTE, 0);
-            todayCal.set(Calendar.SECOND, 0);
-            todayCal.set(Calendar.MILLISECOND, 0);
-            
-            // Task is relevant if it's today or in the future
-            return taskCal.getTimeInMillis() >= todayCal.getTimeInMillis();
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking task relevance", e);
-            return false;
+    private static long lastTriggerMillis(Task task, long now) {
+        List<RecurrenceEngine.Occurrence> occurrences = RecurrenceEngine.getInstance()
+                .upcoming(task, now, NotificationHandler.ALARM_HORIZON_DAYS);
+        if (occurrences.isEmpty()) {
+            Log.w(TAG, "Unreadable time for task " + task.getTaskId() + ": " + task.getStartTime());
+            return -1;
         }
+        RecurrenceEngine.Occurrence next = occurrences.get(occurrences.size() - 1);
+        return task.isWorkflow() ? next.getEndMillis() : next.getStartMillis();
+    }
+
+    /**
+     * Pull server changes made while the device was off and schedule alarms for any
+     * task that arrived with them. Best effort: nothing is lost if it fails.
+     */
+    private static void reconcileWithServer(Context context) {
+        SyncEngine.getInstance(context).sync(new SyncEngine.SyncListener() {
+            @Override
+            public void onSyncComplete(int taskChanges, int habitChanges) {
+                if (taskChanges > 0) {
+                    executor.execute(() -> {
+                        int scheduled = scheduleMissingAlarms(context, SystemClock.elapsedRealtime() + RESTORE_BUDGET_MS);
+                        Log.d(TAG, "Scheduled " + scheduled + " tasks after boot sync");
+                    });
+                }
+            }
+
+            @Override
+            public void onSyncFailed(String message) {
+                Log.d(TAG, "Boot sync skipped: " + message);
+            }
+        });
     }
 }
@@ -1,35 +1,83 @@
 package com.simats.schedulytic;
 
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
-import android.widget.GridLayout;
-import android.widget.TextView;
+import android.view.ViewConfiguration;
+import android.view.animation.DecelerateInterpolator;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.HashSet;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Locale;
-import java.util.Set;
 
 /**
- * Custom calendar view that supports showing fire icons for streak days
+ * Streak calendar that draws a month, or a whole year, straight onto its canvas.
+ *
+ * Active days are bits in a {@link BitSet} indexed by days since the earliest active
+ * day, so years of history take a few hundred bytes and checking a day is one bit
+ * lookup. A whole set or range of days is applied in one call and one redraw. The view
+ * has no children: paging to another month just draws the neighbouring month beside
+ * the current one while the finger or the settle animation moves it.
  */
-public class CalendarViewWithFireIcons extends GridLayout implements HabitManager.CalendarViewWithFireIcons {
+public class CalendarViewWithFireIcons extends View implements HabitManager.CalendarViewWithFireIcons {
     private static final String TAG = "CalendarViewWithFire";
-    private final Set<String> markedDates = new HashSet<>();
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+    public static final int MODE_MONTH = 0;
+    public static final int MODE_YEAR = 1;
+
+    private static final int DAYS_PER_WEEK = 7;
+    private static final int WEEKS_PER_MONTH = 6;
+    private static final long PAGE_ANIMATION_MS = 250;
+    private static final String[] DAY_LABELS = new String[32];
+
+    static {
+        for (int day = 1; day < DAY_LABELS.length; day++) {
+            DAY_LABELS[day] = String.valueOf(day);
+        }
+    }
+
+    // Active days: bit i is activeBase + i, as epoch days
+    private final BitSet activeDays = new BitSet();
+    private long activeBase;
+
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint headerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mutedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint activePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint todayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final String[] weekdayLabels = new String[DAYS_PER_WEEK];
     private Drawable fireIcon;
 
+    private int mode = MODE_MONTH;
+    private YearMonth month = YearMonth.now();
+    private String monthTitle;
+
+    // Horizontal paging: offset of the shown page while dragging or settling
+    private float pageOffset;
+    private float downX;
+    private boolean dragging;
+    private int touchSlop;
+    private int minFlingVelocity;
+    private VelocityTracker velocityTracker;
+    private ValueAnimator pageAnimator;
+
     public CalendarViewWithFireIcons(@NonNull Context context) {
         super(context);
         init(context);
@@ -52,94 +100,414 @@ public class CalendarViewWithFireIcons extends GridLayout implements HabitManage
             // Only fallback if ic_fire is null
             fireIcon = ContextCompat.getDrawable(context, R.drawable.ic_streak_fire);
             Log.w(TAG, "Using fallback ic_streak_fire because ic_fire was not found");
-        } else {
-            Log.d(TAG, "Successfully loaded ic_fire drawable");
         }
-        
-        // Set fire icon size
         if (fireIcon != null) {
-            // Make the fire icon slightly larger for better visibility
-            fireIcon.setBounds(0, 0, 32, 32);
-        } else {
-            Log.e(TAG, "Failed to load any fire icon drawable");
+            // Own copy: the bounds and alpha set while drawing must not leak to other users
+            fireIcon = fireIcon.mutate();
         }
+
+        float density = getResources().getDisplayMetrics().density;
+        textPaint.setColor(ContextCompat.getColor(context, R.color.text_primary));
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setTextSize(14 * density);
+        headerPaint.setColor(ContextCompat.getColor(context, R.color.text_primary));
+        headerPaint.setTextAlign(Paint.Align.CENTER);
+        headerPaint.setTextSize(16 * density);
+        headerPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        mutedPaint.setColor(ContextCompat.getColor(context, R.color.text_secondary));
+        mutedPaint.setTextAlign(Paint.Align.CENTER);
+        mutedPaint.setTextSize(11 * density);
+        activePaint.setColor(ContextCompat.getColor(context, R.color.streak_fire));
+        todayPaint.setColor(ContextCompat.getColor(context, R.color.primary));
+        todayPaint.setStyle(Paint.Style.STROKE);
+        todayPaint.setStrokeWidth(2 * density);
+
+        // Weeks start on Monday, as in the rest of the app
+        for (int i = 0; i < DAYS_PER_WEEK; i++) {
+            weekdayLabels[i] = DayOfWeek.MONDAY.plus(i).getDisplayName(TextStyle.NARROW, Locale.getDefault());
+        }
+        monthTitle = titleOf(month);
+
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        touchSlop = configuration.getScaledTouchSlop();
+        minFlingVelocity = configuration.getScaledMinimumFlingVelocity() * 4;
     }
 
+    // --- Active days ---
+
     @Override
     public void markDateWithFireIcon(String dateStr) {
-        try {
-            // Validate the date format
-            dateFormat.parse(dateStr);
-            
-            // Add to marked dates
-            markedDates.add(dateStr);
-            
-            // Request redraw
-            post(() -> {
-                updateCalendarDisplay();
-                invalidate();
-            });
-            
-            Log.d(TAG, "Marked date with fire icon: " + dateStr);
-        } catch (ParseException e) {
-            Log.e(TAG, "Invalid date format: " + dateStr, e);
+        LocalDate date = parse(dateStr);
+        if (date != null) {
+            setActive(date.toEpochDay());
+            invalidate();
         }
     }
-    
+
+    /**
+     * Mark all the given "yyyy-MM-dd" dates, with a single redraw
+     */
+    @Override
+    public void markDatesWithFireIcon(Collection<String> dates) {
+        long[] epochDays = new long[dates.size()];
+        int count = 0;
+        long earliest = Long.MAX_VALUE;
+        for (String dateStr : dates) {
+            LocalDate date = parse(dateStr);
+            if (date != null) {
+                epochDays[count++] = date.toEpochDay();
+                earliest = Math.min(earliest, date.toEpochDay());
+            }
+        }
+        if (count > 0) {
+            // Rebase once for the earliest day rather than once per earlier day
+            ensureBase(earliest);
+            for (int i = 0; i < count; i++) {
+                activeDays.set((int) (epochDays[i] - activeBase));
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * Mark every day from first to last, both included
+     */
+    public void markRange(LocalDate first, LocalDate last) {
+        if (last.isBefore(first)) {
+            return;
+        }
+        ensureBase(first.toEpochDay());
+        activeDays.set((int) (first.toEpochDay() - activeBase), (int) (last.toEpochDay() - activeBase) + 1);
+        invalidate();
+    }
+
+    /**
+     * Replace the active days with the given ones
+     */
+    public void setActiveDates(Collection<String> dates) {
+        activeDays.clear();
+        markDatesWithFireIcon(dates);
+    }
+
     /**
      * Clear all marked dates
      */
     public void clearMarkedDates() {
-        markedDates.clear();
-        updateCalendarDisplay();
+        activeDays.clear();
         invalidate();
     }
-    
+
     /**
-     * Update the calendar display to show fire icons
+     * Check if a specific date is marked with a fire icon
+     * @param dateStr Date string in yyyy-MM-dd format
+     * @return true if the date is marked
      */
-    private void updateCalendarDisplay() {
-        // Find all day cells in the calendar
-        for (int i = 0; i < getChildCount(); i++) {
-            View child = getChildAt(i);
-            if (child instanceof TextView) {
-                TextView dayView = (TextView) child;
-                
-                // Get the date from the tag if available
-                Object tag = dayView.getTag();
-                if (tag instanceof String) {
-                    String dateStr = (String) tag;
-                    
-                    // Check if this date is marked
-                    if (markedDates.contains(dateStr)) {
-                        // Set compound drawable to show fire icon
-                        dayView.setCompoundDrawables(null, null, fireIcon, null);
-                    } else {
-                        // Clear compound drawable
-                        dayView.setCompoundDrawables(null, null, null, null);
-                    }
-                }
-            }
-        }
+    public boolean isDateMarked(String dateStr) {
+        LocalDate date = parse(dateStr);
+        return date != null && isActive(date.toEpochDay());
     }
-    
+
     /**
      * Convert day number to date string based on current month/year
      * @param dayOfMonth The day to convert
      * @return Date string in yyyy-MM-dd format
      */
     public String dayToDateString(int dayOfMonth) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(Calendar.DAY_OF_MONTH, dayOfMonth);
-        return dateFormat.format(calendar.getTime());
+        return LocalDate.now().withDayOfMonth(dayOfMonth).format(DateTimeFormatter.ISO_LOCAL_DATE);
     }
-    
+
+    private void setActive(long epochDay) {
+        ensureBase(epochDay);
+        activeDays.set((int) (epochDay - activeBase));
+    }
+
     /**
-     * Check if a specific date is marked with a fire icon
-     * @param dateStr Date string in yyyy-MM-dd format
-     * @return true if the date is marked
+     * Make sure the day can be stored, moving the base down to it if it is earlier
      */
-    public boolean isDateMarked(String dateStr) {
-        return markedDates.contains(dateStr);
+    private void ensureBase(long epochDay) {
+        if (activeDays.isEmpty()) {
+            activeBase = epochDay;
+        } else if (epochDay < activeBase) {
+            // Shift the bits up so that the new day becomes bit 0
+            int shift = (int) (activeBase - epochDay);
+            BitSet old = (BitSet) activeDays.clone();
+            activeDays.clear();
+            for (int i = old.nextSetBit(0); i >= 0; i = old.nextSetBit(i + 1)) {
+                activeDays.set(i + shift);
+            }
+            activeBase = epochDay;
+        }
+    }
+
+    private boolean isActive(long epochDay) {
+        return epochDay >= activeBase && activeDays.get((int) (epochDay - activeBase));
+    }
+
+    private static LocalDate parse(String dateStr) {
+        try {
+            return dateStr != null ? LocalDate.parse(dateStr.trim()) : null;
+        } catch (DateTimeParseException e) {
+            Log.e(TAG, "Invalid date format: " + dateStr, e);
+            return null;
+        }
+    }
+
+    // --- Paging ---
+
+    /**
+     * @param mode MODE_MONTH or MODE_YEAR
+     */
+    public void setMode(int mode) {
+        if (this.mode != mode) {
+            this.mode = mode;
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    public void showMonth(YearMonth month) {
+        cancelPageAnimation();
+        setMonth(month);
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    /**
+     * Slide to the next month, or the next year in year mode
+     */
+    public void next() {
+        settle(-getWidth(), 1);
+    }
+
+    /**
+     * Slide to the previous month, or the previous year in year mode
+     */
+    public void previous() {
+        settle(getWidth(), -1);
+    }
+
+    private void setMonth(YearMonth month) {
+        this.month = month;
+        monthTitle = titleOf(month);
+        pageOffset = 0;
+        invalidate();
+    }
+
+    private YearMonth pageAt(int delta) {
+        return mode == MODE_YEAR ? month.plusYears(delta) : month.plusMonths(delta);
+    }
+
+    private static String titleOf(YearMonth month) {
+        return month.getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault()) + " " + month.getYear();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (velocityTracker == null) {
+            velocityTracker = VelocityTracker.obtain();
+        }
+        velocityTracker.addMovement(event);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                cancelPageAnimation();
+                downX = event.getX() - pageOffset;
+                dragging = pageOffset != 0;
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                float dx = event.getX() - downX;
+                if (!dragging && Math.abs(dx) > touchSlop) {
+                    dragging = true;
+                    getParent().requestDisallowInterceptTouchEvent(true);
+                }
+                if (dragging) {
+                    pageOffset = dx;
+                    invalidate();
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                velocityTracker.computeCurrentVelocity(1000);
+                float velocity = velocityTracker.getXVelocity();
+                velocityTracker.recycle();
+                velocityTracker = null;
+                if (dragging) {
+                    dragging = false;
+                    if (pageOffset < -getWidth() / 3f || velocity < -minFlingVelocity) {
+                        settle(-getWidth(), 1);
+                    } else if (pageOffset > getWidth() / 3f || velocity > minFlingVelocity) {
+                        settle(getWidth(), -1);
+                    } else {
+                        settle(0, 0);
+                    }
+                } else if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+                    performClick();
+                }
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    /**
+     * Animate the page offset to target, then move by delta pages
+     */
+    private void settle(float target, int delta) {
+        cancelPageAnimation();
+        pageAnimator = ValueAnimator.ofFloat(pageOffset, target);
+        pageAnimator.setDuration(PAGE_ANIMATION_MS);
+        pageAnimator.setInterpolator(new DecelerateInterpolator());
+        pageAnimator.addUpdateListener(animation -> {
+            pageOffset = (float) animation.getAnimatedValue();
+            invalidate();
+            if (animation.getAnimatedFraction() >= 1f) {
+                setMonth(pageAt(delta));
+            }
+        });
+        pageAnimator.start();
+    }
+
+    private void cancelPageAnimation() {
+        if (pageAnimator != null) {
+            pageAnimator.cancel();
+            pageAnimator = null;
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        cancelPageAnimation();
+        super.onDetachedFromWindow();
+    }
+
+    // --- Drawing ---
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int contentWidth = width - getPaddingLeft() - getPaddingRight();
+        float contentHeight;
+        if (mode == MODE_YEAR) {
+            // Four rows of three months, each with a title row and six weeks
+            float cell = contentWidth / 3f / DAYS_PER_WEEK;
+            contentHeight = 4 * (WEEKS_PER_MONTH + 1.5f) * cell + headerHeight();
+        } else {
+            float cell = contentWidth / (float) DAYS_PER_WEEK;
+            contentHeight = headerHeight() + weekdayRowHeight() + WEEKS_PER_MONTH * cell;
+        }
+        int height = resolveSize(Math.round(contentHeight) + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int width = getWidth();
+        canvas.save();
+        canvas.clipRect(getPaddingLeft(), getPaddingTop(), width - getPaddingRight(), getHeight() - getPaddingBottom());
+        long today = LocalDate.now().toEpochDay();
+        if (pageOffset != 0) {
+            // The neighbouring page slides in from the side the finger moves away from
+            int neighbour = pageOffset < 0 ? 1 : -1;
+            drawPage(canvas, pageAt(neighbour), pageOffset + (pageOffset < 0 ? width : -width), today);
+        }
+        drawPage(canvas, month, pageOffset, today);
+        canvas.restore();
+    }
+
+    private void drawPage(Canvas canvas, YearMonth page, float offsetX, long today) {
+        float left = getPaddingLeft() + offsetX;
+        float top = getPaddingTop();
+        float contentWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        String title = page == month ? monthTitle : titleOf(page);
+        if (mode == MODE_YEAR) {
+            title = String.valueOf(page.getYear());
+        }
+        canvas.drawText(title, left + contentWidth / 2, top + headerHeight() * 0.7f, headerPaint);
+        top += headerHeight();
+
+        if (mode == MODE_YEAR) {
+            float monthWidth = contentWidth / 3f;
+            float cell = monthWidth / DAYS_PER_WEEK;
+            float monthHeight = (WEEKS_PER_MONTH + 1.5f) * cell;
+            for (int i = 0; i < 12; i++) {
+                YearMonth yearMonth = YearMonth.of(page.getYear(), i + 1);
+                float monthLeft = left + (i % 3) * monthWidth;
+                float monthTop = top + (i / 3) * monthHeight;
+                canvas.drawText(yearMonth.getMonth().getDisplayName(TextStyle.SHORT, Locale.getDefault()),
+                        monthLeft + monthWidth / 2, monthTop + cell, mutedPaint);
+                drawMiniMonth(canvas, yearMonth, monthLeft, monthTop + 1.5f * cell, cell, today);
+            }
+        } else {
+            float cell = contentWidth / DAYS_PER_WEEK;
+            for (int i = 0; i < DAYS_PER_WEEK; i++) {
+                canvas.drawText(weekdayLabels[i], left + (i + 0.5f) * cell, top + weekdayRowHeight() * 0.7f, mutedPaint);
+            }
+            drawMonth(canvas, page, left, top + weekdayRowHeight(), cell, today);
+        }
+    }
+
+    private void drawMonth(Canvas canvas, YearMonth page, float left, float top, float cell, long today) {
+        long firstDay = page.atDay(1).toEpochDay();
+        int leading = page.atDay(1).getDayOfWeek().getValue() - 1; // Monday first
+        int length = page.lengthOfMonth();
+        float textOffset = (textPaint.descent() + textPaint.ascent()) / 2;
+        int iconSize = Math.round(cell * 0.6f);
+        for (int day = 1; day <= length; day++) {
+            int index = leading + day - 1;
+            float centerX = left + (index % DAYS_PER_WEEK + 0.5f) * cell;
+            float centerY = top + (index / DAYS_PER_WEEK + 0.5f) * cell;
+            long epochDay = firstDay + day - 1;
+            if (isActive(epochDay)) {
+                if (fireIcon != null) {
+                    int iconLeft = Math.round(centerX - iconSize / 2f);
+                    int iconTop = Math.round(centerY - iconSize / 2f);
+                    fireIcon.setBounds(iconLeft, iconTop, iconLeft + iconSize, iconTop + iconSize);
+                    fireIcon.setAlpha(90);
+                    fireIcon.draw(canvas);
+                } else {
+                    canvas.drawCircle(centerX, centerY, cell * 0.38f, activePaint);
+                }
+            }
+            if (epochDay == today) {
+                canvas.drawCircle(centerX, centerY, cell * 0.42f, todayPaint);
+            }
+            canvas.drawText(DAY_LABELS[day], centerX, centerY - textOffset, textPaint);
+        }
+    }
+
+    private void drawMiniMonth(Canvas canvas, YearMonth page, float left, float top, float cell, long today) {
+        long firstDay = page.atDay(1).toEpochDay();
+        int leading = page.atDay(1).getDayOfWeek().getValue() - 1;
+        int length = page.lengthOfMonth();
+        float radius = cell * 0.3f;
+        for (int day = 1; day <= length; day++) {
+            int index = leading + day - 1;
+            float centerX = left + (index % DAYS_PER_WEEK + 0.5f) * cell;
+            float centerY = top + (index / DAYS_PER_WEEK + 0.5f) * cell;
+            long epochDay = firstDay + day - 1;
+            if (isActive(epochDay)) {
+                canvas.drawCircle(centerX, centerY, radius, activePaint);
+            } else {
+                canvas.drawCircle(centerX, centerY, radius * 0.35f, mutedPaint);
+            }
+            if (epochDay == today) {
+                canvas.drawCircle(centerX, centerY, radius * 1.3f, todayPaint);
+            }
+        }
+    }
+
+    private float headerHeight() {
+        return headerPaint.getTextSize() * 2;
+    }
+
+    private float weekdayRowHeight() {
+        return mutedPaint.getTextSize() * 2;
     }
-} 
\ No newline at end of file
+}
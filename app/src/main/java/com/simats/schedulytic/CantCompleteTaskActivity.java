@@ -299,17 +299,15 @@ public class CantCompleteTaskActivity extends Activity {
     }
 
     private Task createRescheduledTask(Date newDateTime) {
-        Task task = new Task();
-        task.setTaskId(taskId);
-        task.setTitle("Rescheduled Task"); // This would normally come from database
-        
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
         SimpleDateFormat datetimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
         
-        task.setDueDate(dateFormat.format(newDateTime));
-        task.setStartTime(datetimeFormat.format(newDateTime));
-        
-        return task;
+        return Task.builder()
+                .taskId(taskId)
+                .title("Rescheduled Task") // This would normally come from database
+                .dueDate(dateFormat.format(newDateTime))
+                .startTime(datetimeFormat.format(newDateTime))
+                .build();
     }
 
     private boolean isWorkflowTask() {
@@ -7,7 +7,116 @@ import android.util.Log;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "shedulytic.db";
-    private static final int DATABASE_VERSION = 6;
+    private static final int DATABASE_VERSION = 14;
+
+    private static final String CREATE_SYNC_STATE = "CREATE TABLE IF NOT EXISTS sync_state (" +
+            "user_id VARCHAR(36) PRIMARY KEY," +
+            "sync_cursor INTEGER NOT NULL DEFAULT 0," +
+            "last_synced_at INTEGER" +
+            ")";
+
+    // Entities whose local row may be out of date and must be fetched again by SyncEngine
+    private static final String CREATE_SYNC_REFETCH = "CREATE TABLE IF NOT EXISTS sync_refetch (" +
+            "user_id VARCHAR(36) NOT NULL," +
+            "entity_type VARCHAR(10) NOT NULL," +  // task or habit
+            "entity_id VARCHAR(36) NOT NULL," +
+            "PRIMARY KEY (user_id, entity_type, entity_id)" +
+            ")";
+
+    private static final String CREATE_OUTBOX = "CREATE TABLE IF NOT EXISTS outbox (" +
+            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "idempotency_key VARCHAR(36) NOT NULL UNIQUE," +
+            "user_id VARCHAR(36)," +
+            "entity_type VARCHAR(10) NOT NULL," +  // task or habit
+            "entity_id VARCHAR(36) NOT NULL," +
+            "operation VARCHAR(32) NOT NULL," +
+            "coalesce_key VARCHAR(100) NOT NULL," +
+            "payload TEXT NOT NULL," +  // JSON request body for the operation
+            "state INTEGER DEFAULT 0," +  // 0 = pending, 1 = sending, 2 = dead-lettered
+            "attempts INTEGER DEFAULT 0," +
+            "next_attempt_at INTEGER DEFAULT 0," +
+            "created_at INTEGER" +
+            ")";
+
+    private static final String CREATE_SCHEDULED_ALARMS = "CREATE TABLE IF NOT EXISTS scheduled_alarms (" +
+            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "alarm_key VARCHAR(100) NOT NULL UNIQUE," +
+            "entity_id VARCHAR(36)," +  // task or habit the alarm belongs to
+            "trigger_at INTEGER NOT NULL," +
+            "repeat_interval_ms INTEGER DEFAULT 0," +  // 0 = one-shot
+            "receiver TEXT NOT NULL," +  // class name of the BroadcastReceiver to deliver to
+            "action TEXT," +
+            "extras TEXT" +  // JSON of the intent extras
+            ")";
+
+    // One row per entity and year; days is a bitmap of the completed days (see StreakEngine)
+    private static final String CREATE_COMPLETION_DAYS = "CREATE TABLE IF NOT EXISTS completion_days (" +
+            "entity_type VARCHAR(10) NOT NULL," +  // task or habit
+            "entity_id VARCHAR(36) NOT NULL," +
+            "year INTEGER NOT NULL," +
+            "days BLOB NOT NULL," +
+            "PRIMARY KEY (entity_type, entity_id, year)" +
+            ")";
+
+    private static final String CREATE_STREAKS = "CREATE TABLE IF NOT EXISTS streaks (" +
+            "entity_type VARCHAR(10) NOT NULL," +
+            "entity_id VARCHAR(36) NOT NULL," +
+            "cadence VARCHAR(10) NOT NULL," +
+            "current_streak INTEGER DEFAULT 0," +
+            "longest_streak INTEGER DEFAULT 0," +
+            "last_period INTEGER," +  // Last period the current streak reached, null if none
+            "PRIMARY KEY (entity_type, entity_id)" +
+            ")";
+
+    // The tables above hold both entity types, so they cannot cascade through foreign keys
+    private static final String[] CREATE_STREAK_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS tasks_streak_delete AFTER DELETE ON tasks BEGIN " +
+                    "DELETE FROM completion_days WHERE entity_type = 'task' AND entity_id = OLD.task_id; " +
+                    "DELETE FROM streaks WHERE entity_type = 'task' AND entity_id = OLD.task_id; END",
+            "CREATE TRIGGER IF NOT EXISTS habits_streak_delete AFTER DELETE ON habits BEGIN " +
+                    "DELETE FROM completion_days WHERE entity_type = 'habit' AND entity_id = OLD.habit_id; " +
+                    "DELETE FROM streaks WHERE entity_type = 'habit' AND entity_id = OLD.habit_id; END"
+    };
+
+    // Counters per user and day kept by StatsRepository; day is the epoch day
+    private static final String CREATE_DAILY_STATS = "CREATE TABLE IF NOT EXISTS daily_stats (" +
+            "user_id VARCHAR(36) NOT NULL," +
+            "day INTEGER NOT NULL," +
+            "tasks_done INTEGER NOT NULL DEFAULT 0," +
+            "tasks_skipped INTEGER NOT NULL DEFAULT 0," +
+            "tasks_extended INTEGER NOT NULL DEFAULT 0," +
+            "habits_checkbox INTEGER NOT NULL DEFAULT 0," +
+            "habits_location INTEGER NOT NULL DEFAULT 0," +
+            "habits_pomodoro INTEGER NOT NULL DEFAULT 0," +
+            "xp_delta REAL NOT NULL DEFAULT 0," +
+            "PRIMARY KEY (user_id, day)" +
+            ")";
+
+    // XP entries kept by XpLedger; server_seq is null until the server has acknowledged one
+    private static final String CREATE_XP_LEDGER = "CREATE TABLE IF NOT EXISTS xp_ledger (" +
+            "user_id VARCHAR(36) NOT NULL," +
+            "entry_key VARCHAR(100) NOT NULL," +  // The completion the entry is for
+            "amount REAL NOT NULL," +
+            "reason VARCHAR(20) NOT NULL," +
+            "created_at INTEGER," +
+            "server_seq INTEGER," +
+            "PRIMARY KEY (user_id, entry_key)" +
+            ")";
+
+    private static final String CREATE_XP_TOTALS = "CREATE TABLE IF NOT EXISTS xp_totals (" +
+            "user_id VARCHAR(36) NOT NULL," +
+            "reason VARCHAR(20) NOT NULL," +
+            "amount REAL NOT NULL DEFAULT 0," +
+            "entries INTEGER NOT NULL DEFAULT 0," +
+            "PRIMARY KEY (user_id, reason)" +
+            ")";
+
+    private static final String CREATE_XP_STATE = "CREATE TABLE IF NOT EXISTS xp_state (" +
+            "user_id VARCHAR(36) PRIMARY KEY," +
+            "acked_seq INTEGER NOT NULL DEFAULT 0," +  // Last server entry received
+            "server_balance REAL NOT NULL DEFAULT 0" +  // Server balance at that point
+            ")";
+
     private static DatabaseHelper instance;
 
     private DatabaseHelper(Context context) {
@@ -79,6 +188,37 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL("CREATE INDEX idx_task_completions_date ON task_completions(task_id, completion_date)");
         db.execSQL("CREATE INDEX idx_habit_completions_date ON habit_completions(habit_id, completion_date)");
         db.execSQL("CREATE INDEX idx_habits_user ON habits(user_id)");
+        db.execSQL("CREATE INDEX idx_tasks_user_due ON tasks(user_id, due_date)");
+
+        // Create sync_state table holding each user's delta sync cursor
+        db.execSQL(CREATE_SYNC_STATE);
+        db.execSQL(CREATE_SYNC_REFETCH);
+
+        // Create outbox table for queued server mutations
+        db.execSQL(CREATE_OUTBOX);
+        db.execSQL("CREATE INDEX idx_outbox_coalesce ON outbox(coalesce_key)");
+        db.execSQL("CREATE INDEX idx_outbox_entity ON outbox(entity_id)");
+
+        // Create scheduled_alarms table read by AlarmScheduler
+        db.execSQL(CREATE_SCHEDULED_ALARMS);
+        db.execSQL("CREATE INDEX idx_alarms_trigger ON scheduled_alarms(trigger_at)");
+        db.execSQL("CREATE INDEX idx_alarms_entity ON scheduled_alarms(entity_id)");
+
+        // Create completion bitmaps and streaks kept by StreakEngine
+        db.execSQL(CREATE_COMPLETION_DAYS);
+        db.execSQL(CREATE_STREAKS);
+        for (String trigger : CREATE_STREAK_TRIGGERS) {
+            db.execSQL(trigger);
+        }
+
+        // Create daily_stats rollup read by StatsRepository
+        db.execSQL(CREATE_DAILY_STATS);
+
+        // Create XP ledger tables kept by XpLedger
+        db.execSQL(CREATE_XP_LEDGER);
+        db.execSQL("CREATE INDEX idx_xp_ledger_seq ON xp_ledger(user_id, server_seq)");
+        db.execSQL(CREATE_XP_TOTALS);
+        db.execSQL(CREATE_XP_STATE);
     }
 
     @Override
@@ -140,6 +280,59 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 Log.w("DatabaseHelper", "timestamp column may already exist: " + e.getMessage());
             }
         }
+
+        if (oldVersion < 7) {
+            // Index used by TaskRepository for per-day and date-range lookups
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_tasks_user_due ON tasks(user_id, due_date)");
+        }
+
+        if (oldVersion < 8) {
+            // Cursor for SyncEngine, written in the same transaction as each applied delta
+            db.execSQL(CREATE_SYNC_STATE);
+        }
+
+        if (oldVersion < 9) {
+            // Durable queue drained by MutationOutbox
+            db.execSQL(CREATE_OUTBOX);
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_outbox_coalesce ON outbox(coalesce_key)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_outbox_entity ON outbox(entity_id)");
+        }
+
+        if (oldVersion < 10) {
+            // Alarms dispatched by AlarmScheduler through a single AlarmManager entry
+            db.execSQL(CREATE_SCHEDULED_ALARMS);
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_alarms_trigger ON scheduled_alarms(trigger_at)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_alarms_entity ON scheduled_alarms(entity_id)");
+        }
+
+        if (oldVersion < 11) {
+            // Completion bitmaps and streaks for StreakEngine, built from the recorded completions
+            db.execSQL(CREATE_COMPLETION_DAYS);
+            db.execSQL(CREATE_STREAKS);
+            for (String trigger : CREATE_STREAK_TRIGGERS) {
+                db.execSQL(trigger);
+            }
+            StreakEngine.importCompletions(db);
+        }
+
+        if (oldVersion < 12) {
+            // Daily stats rollup for StatsRepository, started from the recorded completions
+            db.execSQL(CREATE_DAILY_STATS);
+            StatsRepository.importCompletions(db);
+        }
+
+        if (oldVersion < 13) {
+            // XP ledger for XpLedger; the totals are seeded from "UserPrefs" on first use
+            db.execSQL(CREATE_XP_LEDGER);
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_xp_ledger_seq ON xp_ledger(user_id, server_seq)");
+            db.execSQL(CREATE_XP_TOTALS);
+            db.execSQL(CREATE_XP_STATE);
+        }
+
+        if (oldVersion < 14) {
+            // Rows SyncEngine skipped or the server rejected, fetched again once the outbox drains
+            db.execSQL(CREATE_SYNC_REFETCH);
+        }
     }
 
     @Override
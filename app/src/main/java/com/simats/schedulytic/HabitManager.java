@@ -2,8 +2,6 @@ package com.simats.schedulytic;
 
 import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import java.time.LocalDate;
 import android.content.SharedPreferences;
 import android.util.Log;
@@ -12,11 +10,15 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import android.widget.TextView;
 import android.view.View;
+import com.simats.schedulytic.model.Habit;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -68,7 +70,23 @@ public class HabitManager {
             }
             
             // Get current date
-            String currentDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
+            LocalDate today = LocalDate.now();
+            String currentDate = today.toString();
+            
+            // Record the day locally first, so the streak is known without the server
+            AppExecutors.getInstance().db().execute(() -> {
+                try {
+                    Task task = TaskCache.getInstance(context).getTask(taskId);
+                    if (task != null && task.isCompleted() != isCompleted) {
+                        StatsRepository.getInstance(context).recordHabitVerified(Habit.VERIFICATION_CHECKBOX, isCompleted);
+                    }
+                    String frequency = task != null ? task.getRepeatFrequency() : null;
+                    StreakEngine.getInstance(context)
+                            .setCompleted(StreakEngine.TYPE_TASK, taskId, frequency, today, isCompleted);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error recording habit completion: " + e.getMessage());
+                }
+            });
             
             // Prepare request data
             JSONObject requestData = new JSONObject();
@@ -123,6 +141,8 @@ public class HabitManager {
                         if (listener != null) {
                             listener.onError("Error updating habit: " + message);
                         }
+                        // The server will get the change later; show the streak recorded here
+                        publishLocalStreak(taskId, today, isCompleted);
                     }
                 }
             );
@@ -134,26 +154,33 @@ public class HabitManager {
         }
     }
 
-    private int calculateStreak(SQLiteDatabase db, String taskId) {
-        int streak = 0;
-        LocalDate currentDate = LocalDate.now();
-        
-        String query = "SELECT COUNT(*) FROM task_completions " +
-                      "WHERE task_id = ? AND completion_date = ?";
-                      
-        while (true) {
-            try (Cursor cursor = db.rawQuery(query, 
-                    new String[]{taskId, currentDate.toString()})) {
-                if (cursor.moveToFirst()) {
-                    int completions = cursor.getInt(0);
-                    if (completions == 0) break;
-                    streak++;
-                }
+    /**
+     * Report the streak kept by {@link StreakEngine}, as computed from the completions on this device
+     */
+    private void publishLocalStreak(String taskId, LocalDate today, boolean isCompleted) {
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.db().execute(() -> {
+            int streak;
+            try {
+                Task task = TaskCache.getInstance(context).getTask(taskId);
+                String frequency = task != null ? task.getRepeatFrequency() : null;
+                streak = StreakEngine.getInstance(context)
+                        .getStreak(StreakEngine.TYPE_TASK, taskId, frequency).getCurrent(today);
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading local streak: " + e.getMessage());
+                return;
             }
-            currentDate = currentDate.minusDays(1);
-        }
-        
-        return streak;
+            executors.main().execute(() -> {
+                streakCache.put(taskId, streak);
+                if (listener != null) {
+                    if (isCompleted) {
+                        listener.onHabitCompleted(taskId, streak);
+                    } else {
+                        listener.onHabitUncompleted(taskId, streak);
+                    }
+                }
+            });
+        });
     }
 
     /**
@@ -206,14 +233,12 @@ public class HabitManager {
             calendar.add(Calendar.DAY_OF_MONTH, -30); // Go back 30 days
             String startDate = dateFormat.format(calendar.getTime());
             
-            // Get streak data using parallel requests for reliability
-            String[] endpoints = {
-                "get_user_streak.php?user_id=" + userId + "&start_date=" + startDate + "&end_date=" + endDate,
-                "streak.php?user_id=" + userId
-            };
-            
-            networkManager.makeBroadcastGetRequest(
-                endpoints,
+            // Get streak data from the current endpoint, falling back to the legacy one.
+            // Server selection and failover are handled by the network manager.
+            String streakEndpoint = "get_user_streak.php?user_id=" + userId + "&start_date=" + startDate + "&end_date=" + endDate;
+            String legacyStreakEndpoint = "streak.php?user_id=" + userId;
+
+            VolleyNetworkManager.JsonResponseListener streakListener =
                 new VolleyNetworkManager.JsonResponseListener() {
                     @Override
                     public void onSuccess(JSONObject response) {
@@ -260,6 +285,21 @@ public class HabitManager {
                         // Try to use cached data
                         useOfflineStreakData();
                     }
+                };
+
+            networkManager.makeGetRequest(
+                streakEndpoint,
+                new VolleyNetworkManager.JsonResponseListener() {
+                    @Override
+                    public void onSuccess(JSONObject response) {
+                        streakListener.onSuccess(response);
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        Log.d(TAG, "Streak endpoint failed, trying legacy endpoint: " + message);
+                        networkManager.makeGetRequest(legacyStreakEndpoint, streakListener);
+                    }
                 }
             );
         } catch (Exception e) {
@@ -304,12 +344,13 @@ public class HabitManager {
                             streakCountView.setText(String.valueOf(streakCount));
                         }
                         
-                        // Update calendar with fire icons for active days
+                        // Update calendar with fire icons for active days, all in one call
                         if (activeDays != null) {
+                            List<String> days = new ArrayList<>(activeDays.length());
                             for (int i = 0; i < activeDays.length(); i++) {
-                                String activeDay = activeDays.getString(i);
-                                markDayWithFireIcon(activity, activeDay);
+                                days.add(activeDays.getString(i));
                             }
+                            markDaysWithFireIcon(activity, days);
                         }
                     } catch (Exception e) {
                         Log.e(TAG, "Error updating streak UI: " + e.getMessage());
@@ -322,26 +363,17 @@ public class HabitManager {
     }
     
     /**
-     * Mark a specific day in the calendar with a fire icon
+     * Mark the given days in the streak calendar with a fire icon
      */
-    private void markDayWithFireIcon(MainActivity activity, String dateStr) {
+    private void markDaysWithFireIcon(MainActivity activity, List<String> dates) {
         try {
-            // This implementation would depend on your specific calendar view
-            // Send a message to highlight the specific date in the calendar
-            activity.runOnUiThread(() -> {
-                // Implementation depends on your calendar view
-                // This is a placeholder for the actual implementation
-                Log.d(TAG, "Marking day with fire icon: " + dateStr);
-                
-                // Find week calendar view from included layout
-                View weekCalendar = activity.findViewById(R.id.week_calendar);
-                if (weekCalendar != null) {
-                    // Calendar fire icons are now handled via layout_week_calendar.xml
-                    Log.d(TAG, "Week calendar found, fire icons handled by HomeFragment");
-                }
-            });
+            Log.d(TAG, "Marking " + dates.size() + " days with fire icon");
+            View calendar = activity.findViewById(R.id.streak_calendar);
+            if (calendar instanceof CalendarViewWithFireIcons) {
+                ((CalendarViewWithFireIcons) calendar).markDatesWithFireIcon(dates);
+            }
         } catch (Exception e) {
-            Log.e(TAG, "Error marking day with fire icon: " + e.getMessage());
+            Log.e(TAG, "Error marking days with fire icon: " + e.getMessage());
         }
     }
     
@@ -350,5 +382,10 @@ public class HabitManager {
      */
     public interface CalendarViewWithFireIcons {
         void markDateWithFireIcon(String dateStr);
+
+        /**
+         * Mark a whole set of "yyyy-MM-dd" dates at once
+         */
+        void markDatesWithFireIcon(Collection<String> dates);
     }
 }
\ No newline at end of file
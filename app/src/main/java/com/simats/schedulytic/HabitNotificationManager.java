@@ -42,15 +42,6 @@ public class HabitNotificationManager {
         intent.putExtra("taskTitle", habitTask.getTitle());
         intent.putExtra("currentStreak", habitTask.getCurrentStreak());
 
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-            context,
-            habitTask.getTaskId().hashCode(),
-            intent,
-            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        
         // Parse time from task
         String[] timeParts = habitTask.getStartTime().split(":");
         Calendar calendar = Calendar.getInstance();
@@ -79,25 +70,21 @@ public class HabitNotificationManager {
                 intervalMillis = AlarmManager.INTERVAL_DAY;
         }
 
-        alarmManager.setRepeating(
-            AlarmManager.RTC_WAKEUP,
+        AlarmScheduler.getInstance(context).scheduleRepeating(
+            alarmKey(habitTask.getTaskId()),
+            habitTask.getTaskId(),
             calendar.getTimeInMillis(),
             intervalMillis,
-            pendingIntent
+            intent
         );
     }
 
     public void cancelHabitReminder(Task habitTask) {
-        Intent intent = new Intent(context, HabitReminderReceiver.class);
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-            context,
-            habitTask.getTaskId().hashCode(),
-            intent,
-            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
+        AlarmScheduler.getInstance(context).cancel(alarmKey(habitTask.getTaskId()));
+    }
 
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        alarmManager.cancel(pendingIntent);
+    private static String alarmKey(String taskId) {
+        return "habit:" + taskId + ":reminder";
     }
 
     public void showStreakMilestoneNotification(String taskTitle, int streak) {
@@ -68,7 +68,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
     private View myDayEmptyState; // Added for MyDayMap empty state
     private TextView myDayTimelineEmptyText; // Added for timeline empty state
     private TodayActivitiesManager activitiesManager;
-    private List<TaskItem> todayActivities = new ArrayList<>();
+    private List<Task> todayActivities = new ArrayList<>();
     private List<Task> myDayTasks = new ArrayList<>(); // Added for MyDayMap
     
     // Habit-related fields
@@ -106,6 +106,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
     // private RequestQueue requestQueue; // Only if HomeFragment makes direct Volley calls
 
     private ProfileManager profileManager;
+    private TaskScope scope;
 
     // Calendar views
     private TextView[] weekDayTexts = new TextView[7];
@@ -120,25 +121,21 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
                 if (getContext() == null || !isAdded()) return; // Prevent action if fragment not attached
 
                 Log.d(TAG, "Task " + task.getTaskId() + " checked: " + isChecked);
-                task.setCompleted(isChecked);
                 String newStatus = isChecked ? "completed" : "pending";
                 
-                // Make sure we're preserving the original task type
-                String originalType = task.getType();
-                
                 // Assuming TaskManager is properly initialized and context is valid
                 TaskManager taskManager = new TaskManager(requireContext(), new TaskManager.TaskListener() {
                     @Override
                     public void onTasksLoaded(List<Task> tasks) {}
                     @Override
                     public void onTaskAdded(Task task) {
-                        Log.d(TAG, "TaskListener: onTaskAdded - refreshing activities");
-                        if (activitiesManager != null && userId != null) activitiesManager.loadTodayActivities();
+                        // Row changes are applied by applyTaskChange via TaskCache
+                        Log.d(TAG, "TaskListener: onTaskAdded - " + task.getTaskId());
                     }
                     @Override
                     public void onTaskUpdated(Task updatedTask) {
-                        Log.d(TAG, "TaskListener: onTaskUpdated - refreshing activities");
-                        if (activitiesManager != null && userId != null) activitiesManager.loadTodayActivities();
+                        // Row changes are applied by applyTaskChange via TaskCache
+                        Log.d(TAG, "TaskListener: onTaskUpdated - " + updatedTask.getTaskId());
                         
                         // Sort completed tasks to bottom of list
                         if (myDayTimelineRecycler != null && myDayTimelineRecycler.getAdapter() instanceof TaskAdapter) {
@@ -148,19 +145,8 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
                     }
                     @Override
                     public void onTaskDeleted(String taskId) {
-                        Log.d(TAG, "TaskListener: onTaskDeleted - refreshing activities");
-                        // Local removal is good for immediate UI feedback, then reload for sync.
-                        for (int i = 0; i < todayActivities.size(); i++) {
-                            if (todayActivities.get(i).getId().equals(taskId)) {
-                                todayActivities.remove(i);
-                                if (myDayTimelineRecycler != null && myDayTimelineRecycler.getAdapter() != null) {
-                                    myDayTimelineRecycler.getAdapter().notifyItemRemoved(i);
-                                    // Or notifyDataSetChanged() if positions are complex
-                                }
-                                break;
-                            }
-                        }
-                        if (activitiesManager != null && userId != null) activitiesManager.loadTodayActivities();
+                        // Row removal is applied by applyTaskChange via TaskCache
+                        Log.d(TAG, "TaskListener: onTaskDeleted - " + taskId);
                     }
                     @Override
                     public void onHabitStreakUpdated(String taskId, int newStreak) {
@@ -176,16 +162,12 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
                     }
                 });
                 
-                // Preserve the original task type when updating completion
-                task.setTaskType(originalType);
                 taskManager.updateTaskCompletion(task.getTaskId(), newStatus.equals("completed"));
                 
                 // Update UI immediately for better user experience
-                for (TaskItem item : todayActivities) {
-                    if (item.getId() != null && item.getId().equals(task.getTaskId())) {
-                        item.setStatus(newStatus);
-                        break;
-                    }
+                int index = indexOfActivity(task.getTaskId());
+                if (index >= 0) {
+                    todayActivities.set(index, todayActivities.get(index).withStatus(newStatus));
                 }
                 
                 // Update stats immediately for real-time feedback
@@ -204,16 +186,41 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
     };
 
     private void updateTaskStreakInList(String taskId, int newStreak) {
-        for (TaskItem task : todayActivities) {
-            if (task.getId() != null && task.getId().equals(taskId)) { // task.getId() was task.getTaskId()
-                task.setStreak(newStreak);
-                if (myDayTimelineRecycler != null && myDayTimelineRecycler.getAdapter() != null) {
-                    // Be careful with notifyDataSetChanged(), find specific item if possible
-                    myDayTimelineRecycler.getAdapter().notifyDataSetChanged();
-                }
-                break;
+        int index = indexOfActivity(taskId);
+        if (index >= 0) {
+            todayActivities.set(index, todayActivities.get(index).withCurrentStreak(newStreak));
+            if (myDayTimelineRecycler != null && myDayTimelineRecycler.getAdapter() instanceof TaskAdapter) {
+                ((TaskAdapter) myDayTimelineRecycler.getAdapter()).updateTask(todayActivities.get(index));
+            }
+        }
+    }
+
+    /**
+     * @return The timeline's adapter. It is created once and reused, so each new list is
+     * diffed against the rows on screen rather than replacing all of them.
+     */
+    private TaskAdapter timelineAdapter() {
+        if (myDayTimelineRecycler.getAdapter() instanceof TaskAdapter) {
+            return (TaskAdapter) myDayTimelineRecycler.getAdapter();
+        }
+        TaskAdapter adapter = new TaskAdapter(new ArrayList<>(), taskCheckListener, requireContext());
+        myDayTimelineRecycler.setAdapter(adapter);
+        return adapter;
+    }
+
+    /**
+     * @return Position of the task in todayActivities, or -1 if it is not there
+     */
+    private int indexOfActivity(String taskId) {
+        if (taskId == null) {
+            return -1;
+        }
+        for (int i = 0; i < todayActivities.size(); i++) {
+            if (taskId.equals(todayActivities.get(i).getTaskId())) {
+                return i;
             }
         }
+        return -1;
     }
 
     // Add missing updateHabitProgress method - Remove this as we no longer track habits
@@ -402,7 +409,9 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
     }
 
     /**
-     * Refresh all data displayed in the fragment
+     * Refresh all data displayed in the fragment. Local data is shown right away and
+     * every widget is then filled from one home snapshot request; the per-widget
+     * requests are only used if the snapshot cannot be loaded.
      */
     private void refreshAllData(boolean forceRefresh) {
         if (!isAdded() || getContext() == null) {
@@ -417,26 +426,61 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
             swipeRefresh.setRefreshing(true);
         }
         
+        if (activitiesManager == null) {
+            Log.e(TAG, "Activities manager is null, cannot load today's activities");
+            if (swipeRefresh != null) {
+                swipeRefresh.setRefreshing(false);
+            }
+            return;
+        }
+        
+        // Show what is stored locally while the snapshot is in flight
+        activitiesManager.showCachedActivities(scope());
+        if (habitManager != null) {
+            habitManager.loadLocalHabits();
+        }
+        
+        HomeSnapshotLoader.getInstance(requireContext()).load(new HomeSnapshotLoader.SnapshotListener() {
+            @Override
+            public void onSnapshotLoaded(HomeSnapshotLoader.HomeSnapshot snapshot) {
+                if (!isAdded() || activitiesManager == null) return;
+                activitiesManager.applySnapshot(snapshot);
+                if (swipeRefresh != null) {
+                    swipeRefresh.setRefreshing(false);
+                }
+            }
+            
+            @Override
+            public void onSnapshotFailed(String message) {
+                Log.w(TAG, "Home snapshot failed, loading widgets individually: " + message);
+                if (!isAdded()) return;
+                refreshAllDataIndividually(forceRefresh);
+            }
+        });
+    }
+
+    /**
+     * Load each home widget from its own endpoint (fallback when no snapshot is available)
+     */
+    private void refreshAllDataIndividually(boolean forceRefresh) {
+        if (!isAdded() || getContext() == null) {
+            Log.e(TAG, "Cannot refresh data: Fragment not attached");
+            return;
+        }
+        
         // Load data in sequence with optimizations
         try {
-            // Clear task cache in a background thread to avoid UI blocking
-            new Thread(() -> {
-                try {
-                    if (getContext() != null) {
-                        TaskManager tempManager = new TaskManager(getContext(), new TaskManager.TaskListener() {
-                            @Override public void onTasksLoaded(List<Task> tasks) {}
-                            @Override public void onTaskAdded(Task task) {}
-                            @Override public void onTaskUpdated(Task updatedTask) {}
-                            @Override public void onTaskDeleted(String taskId) {}
-                            @Override public void onHabitStreakUpdated(String taskId, int newStreak) {}
-                            @Override public void onError(String message) {}
-                        });
-                        tempManager.clearDeletedTasks();
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error clearing deleted tasks in background: " + e.getMessage());
-                }
-            }).start();
+            // Drop tasks deleted on the server; this only starts an asynchronous sync,
+            // which must be started from the main thread
+            TaskManager tempManager = new TaskManager(requireContext(), new TaskManager.TaskListener() {
+                @Override public void onTasksLoaded(List<Task> tasks) {}
+                @Override public void onTaskAdded(Task task) {}
+                @Override public void onTaskUpdated(Task updatedTask) {}
+                @Override public void onTaskDeleted(String taskId) {}
+                @Override public void onHabitStreakUpdated(String taskId, int newStreak) {}
+                @Override public void onError(String message) {}
+            });
+            tempManager.clearDeletedTasks();
             
             // Refresh today's activities with optimized loading
             if (activitiesManager != null) {
@@ -460,6 +504,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
             // This ensures the streak chip shows correct value when fragment loads
             if (activitiesManager != null) {
                 activitiesManager.loadStreakData();
+                activitiesManager.loadUserProfile();
             } else {
                 if (getActivity() != null) {
                     getActivity().runOnUiThread(this::loadUserStreakData);
@@ -798,7 +843,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
         
         // Count tasks and workflows from today's activities
         if (todayActivities != null) {
-            for (TaskItem item : todayActivities) {
+            for (Task item : todayActivities) {
                 if (item != null) {
                     String type = item.getType();
                     boolean isCompleted = item.isCompleted();
@@ -960,7 +1005,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
         }
     }
 
-    private void displayActivitiesInTimeline(List<TaskItem> activities) {
+    private void displayActivitiesInTimeline(List<Task> activities) {
         if (getContext() == null || !isAdded() || myDayTimelineRecycler == null) {
             Log.w(TAG, "Cannot display activities: context/view not available.");
             if (swipeRefresh != null) swipeRefresh.setRefreshing(false); // Stop refresh if it was running
@@ -971,8 +1016,8 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
         if (activities != null) {
             Log.d(TAG, "Received " + activities.size() + " activities to display");
             for (int i = 0; i < Math.min(activities.size(), 5); i++) { // Log first 5 activities max
-                TaskItem task = activities.get(i);
-                Log.d(TAG, "Activity " + i + ": " + task.getTitle() + ", Type: " + task.getType() + ", ID: " + task.getId());
+                Task task = activities.get(i);
+                Log.d(TAG, "Activity " + i + ": " + task.getTitle() + ", Type: " + task.getType() + ", ID: " + task.getTaskId());
             }
         } else {
             Log.w(TAG, "Received null activities list");
@@ -985,13 +1030,9 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
             todayActivities.addAll(activities);
             Log.i(TAG, "Displaying " + todayActivities.size() + " activities in timeline.");
             
-            // Convert TaskItems to Tasks for the adapter
-            List<Task> tasks = convertTaskItemsToTasks(activities);
-            
-            // Create and set the adapter for the main timeline
+            // Diff the activities into the main timeline
             if (myDayTimelineRecycler != null) {
-                TaskAdapter adapter = new TaskAdapter(tasks, taskCheckListener, requireContext());
-                myDayTimelineRecycler.setAdapter(adapter);
+                timelineAdapter().submitList(todayActivities);
                 myDayTimelineRecycler.setVisibility(View.VISIBLE);
                 
                 // Hide empty state container
@@ -1006,15 +1047,6 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
             if (emptyTimeline != null) {
                 emptyTimeline.setVisibility(View.GONE);
             }
-            
-            // Force a layout pass to ensure the RecyclerView updates
-            if (myDayTimelineRecycler != null) {
-                myDayTimelineRecycler.post(() -> {
-                    if (myDayTimelineRecycler.getAdapter() != null) {
-                        myDayTimelineRecycler.getAdapter().notifyDataSetChanged();
-                    }
-                });
-            }
         } else {
             Log.i(TAG, "No activities to display for today. Showing empty state.");
             displayEmptyTaskState();
@@ -1027,55 +1059,13 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
         if (swipeRefresh != null) swipeRefresh.setRefreshing(false); // Activities loaded (or empty state shown)
     }
 
-    private List<Task> convertTaskItemsToTasks(List<TaskItem> activities) {
-        List<Task> tasks = new ArrayList<>();
-        if (activities == null) return tasks;
-
-        String currentUserId = "";
-        if(getActivity() != null) { // Ensure activity context is available for SharedPreferences
-            SharedPreferences prefs = getActivity().getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
-            currentUserId = prefs.getString("user_id", ""); // Get current user ID
-        }
-
-        // Get today's date for due date
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        String todayDate = dateFormat.format(new Date());
-
-        for (TaskItem item : activities) {
-            // Ensure task type is either "workflow" or "remainder" 
-            String taskType = item.getType() != null ? item.getType().toLowerCase() : "";
-            if (!taskType.equals("workflow") && !taskType.equals("remainder")) {
-                taskType = "remainder"; // Default to remainder
-            }
-            
-            Task task = new Task(
-                    item.getId(),
-                    currentUserId, // Use fetched userId
-                    taskType,
-                    item.getTitle(),
-                    item.getDescription(),
-                    item.getStartTime(),
-                    item.getEndTime(),
-                    todayDate, // Always set due date to today for home screen tasks
-                    item.isCompleted() ? "completed" : "pending",
-                    item.getRepeatFrequency(),
-                    "medium" // Default priority - ensure your Task model handles this
-            );
-            task.setCurrentStreak(item.getStreak()); // Assuming Task class has set streak method
-            tasks.add(task);
-            
-            Log.d(TAG, "Converted task: " + task.getTitle() + ", Type: " + task.getType() + ", ID: " + task.getTaskId());
-        }
-        return tasks;
-    }
-
     private void displayEmptyTaskState() {
         // You might want a more user-friendly empty state, e.g., a specific layout in the RecyclerView
         todayActivities.clear();
         
         // Update MyDayMap timeline empty state
         if (myDayTimelineRecycler != null && getContext() != null) {
-            myDayTimelineRecycler.setAdapter(new TaskAdapter(new ArrayList<>(), taskCheckListener, requireContext()));
+            timelineAdapter().submitList(todayActivities);
             myDayTimelineRecycler.setVisibility(View.GONE);
             
             // Show the timeline empty state container
@@ -1115,7 +1105,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
 
     // TodayActivitiesManager.TodayActivitiesListener
     @Override
-    public void onActivitiesLoaded(List<TaskItem> activities) {
+    public void onActivitiesLoaded(List<Task> activities) {
         try {
             // Ensure this runs on the UI thread
             if (getActivity() == null || !isAdded()) return;
@@ -1123,19 +1113,17 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
             getActivity().runOnUiThread(() -> {
                 Log.d(TAG, "Received " + activities.size() + " activities to display");
                 
-                // Debug the activities to understand what's coming back from the server
+                // Store the activities for use in other parts of the fragment
+                todayActivities.clear();
                 for (int i = 0; i < activities.size(); i++) {
-                    TaskItem activity = activities.get(i);
+                    Task activity = activities.get(i);
                     // Ensure every activity has the correct type set
                     if (activity.getType() == null || activity.getType().isEmpty()) {
-                        activity.setType("remainder"); // Default to remainder if type is missing
+                        activity = activity.toBuilder().type(Task.TYPE_REMAINDER).build(); // Default to remainder if type is missing
                     }
-                    Log.d(TAG, "Activity " + i + ": " + activity.getTitle() + ", Type: " + activity.getType() + ", ID: " + activity.getId());
+                    Log.d(TAG, "Activity " + i + ": " + activity.getTitle() + ", Type: " + activity.getType() + ", ID: " + activity.getTaskId());
+                    todayActivities.add(activity);
                 }
-                
-                // Store the activities for use in other parts of the fragment
-                todayActivities.clear();
-                todayActivities.addAll(activities);
 
                 // Display the activities in the timeline
                 if (activities.isEmpty()) {
@@ -1143,19 +1131,15 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
                     displayEmptyTaskState();
                 } else {
                     Log.i(TAG, "Displaying " + activities.size() + " activities in timeline.");
-                    // Convert activities to task model for display
-                    List<Task> tasks = convertTaskItemsToTasks(activities);
-                    
                     // Display activities in timeline
                     if (myDayTimelineRecycler != null) {
-                        // Create and set the adapter
-                        TaskAdapter adapter = new TaskAdapter(tasks, taskCheckListener, requireContext());
+                        // Diff the activities into the timeline
+                        TaskAdapter adapter = timelineAdapter();
+                        adapter.submitList(todayActivities);
                         
                         // Sort to move completed tasks to the bottom
                         adapter.sortTasksByCompletionStatus();
                         
-                        myDayTimelineRecycler.setAdapter(adapter);
-                        
                         // Hide empty state
                         View emptyStateView = findTimelineEmptyStateContainer();
                         if (emptyStateView != null) {
@@ -1228,30 +1212,55 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
 
     @Override
     public void onTaskAdded(Task task) { // From a HomeFragment-owned TaskManager
+        // The timeline row is inserted by applyTaskChange via TaskCache
         Log.d(TAG, "HomeFragment's TaskManager: onTaskAdded - " + task.getTitle());
-        if (activitiesManager != null && userId != null) activitiesManager.loadTodayActivities(); // Refresh timeline
     }
 
     @Override
     public void onTaskUpdated(Task task) { // From a HomeFragment-owned TaskManager
+        // The timeline row is rebound by applyTaskChange via TaskCache
         Log.d(TAG, "HomeFragment's TaskManager: onTaskUpdated - " + task.getTitle());
-        if (activitiesManager != null && userId != null) activitiesManager.loadTodayActivities(); // Refresh timeline
     }
 
     @Override
     public void onTaskDeleted(String taskId) { // From a HomeFragment-owned TaskManager
+        // The timeline row is removed by applyTaskChange via TaskCache
         Log.d(TAG, "HomeFragment's TaskManager: onTaskDeleted - " + taskId);
-        // Local removal and refresh
-        for (int i = 0; i < todayActivities.size(); i++) {
-            if (todayActivities.get(i).getId().equals(taskId)) {
-                todayActivities.remove(i);
-                if (myDayTimelineRecycler != null && myDayTimelineRecycler.getAdapter() != null) {
-                    myDayTimelineRecycler.getAdapter().notifyItemRemoved(i);
-                }
-                break;
+    }
+
+    /**
+     * Apply one add/update/delete from the shared task cache to today's timeline
+     * without going back to TodayActivitiesManager or the network
+     */
+    private void applyTaskChange(TaskCache.TaskChange change) {
+        if (change == null || !isAdded() || getContext() == null) return;
+
+        String taskId = change.getTaskId();
+        TaskAdapter adapter = myDayTimelineRecycler != null && myDayTimelineRecycler.getAdapter() instanceof TaskAdapter
+                ? (TaskAdapter) myDayTimelineRecycler.getAdapter() : null;
+
+        int index = indexOfActivity(taskId);
+
+        if (change.getType() == TaskCache.TaskChange.Type.DELETED) {
+            if (index >= 0) {
+                todayActivities.remove(index);
+                if (adapter != null) adapter.removeTask(taskId);
+                calculateAndUpdateStats();
             }
+            return;
+        }
+
+        Task task = change.getTask();
+        String today = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
+        if (index >= 0) {
+            todayActivities.set(index, task);
+            if (adapter != null) adapter.updateTask(task);
+            calculateAndUpdateStats();
+        } else if (today.equals(task.getDueDate()) && !task.isHabit()) {
+            List<Task> updatedActivities = new ArrayList<>(todayActivities);
+            updatedActivities.add(task);
+            displayActivitiesInTimeline(updatedActivities);
         }
-        if (activitiesManager != null && userId != null) activitiesManager.loadTodayActivities();
     }
 
     @Override
@@ -1425,15 +1434,14 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
         
         // Also filter from todayActivities - exclude habits
         if (todayActivities != null && !todayActivities.isEmpty()) {
-            for (TaskItem item : todayActivities) {
+            for (Task item : todayActivities) {
                 // Skip habit-type items
                 if (!"habit".equalsIgnoreCase(item.getType())) {
                     // Only include workflow and remainder types
                     if (item.getType() == null || 
                         item.getType().equalsIgnoreCase("workflow") || 
                         item.getType().equalsIgnoreCase("remainder")) {
-                        Task task = createTaskFromTaskItem(item);
-                        filteredTasks.add(task);
+                        filteredTasks.add(item);
                     }
                 }
             }
@@ -1470,9 +1478,12 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
                 myDayEmptyState.setVisibility(View.GONE);
             }
             
-            // Create and set adapter for tasks
-            TaskAdapter adapter = new TaskAdapter(filteredTasks, taskCheckListener, requireContext());
-            myDayRecyclerView.setAdapter(adapter);
+            // Diff the tasks into the list, creating its adapter on first use
+            if (myDayRecyclerView.getAdapter() instanceof TaskAdapter) {
+                ((TaskAdapter) myDayRecyclerView.getAdapter()).submitList(filteredTasks);
+            } else {
+                myDayRecyclerView.setAdapter(new TaskAdapter(filteredTasks, taskCheckListener, requireContext()));
+            }
         }
         
         // Update the timeline section
@@ -1494,71 +1505,13 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
                     timelineEmptyState.setVisibility(View.GONE);
                 }
                 
-                TaskAdapter timelineAdapter = new TaskAdapter(filteredTasks, taskCheckListener, requireContext());
-                myDayTimelineRecycler.setAdapter(timelineAdapter);
+                timelineAdapter().submitList(filteredTasks);
             }
         }
         
         Log.d(TAG, "Updated MyDay Map - Tasks (workflow/remainder only): " + filteredTasks.size());
     }
     
-    /**
-     * Convert a single TaskItem to a Task
-     */
-    private Task createTaskFromTaskItem(TaskItem item) {
-        String userId = "";
-        if (getActivity() != null) {
-            SharedPreferences prefs = getActivity().getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
-            userId = prefs.getString("user_id", "");
-        }
-        
-        // Create new task with required parameters
-        Task task = new Task(
-            item.getId(), // task id
-            userId,      // user id
-            item.getType(), // type
-            item.getTitle(), // title
-            item.getDescription() != null ? item.getDescription() : "", // description
-            item.getStartTime() != null ? item.getStartTime() : "", // start time
-            item.getEndTime() != null ? item.getEndTime() : "", // end time
-            new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date()), // due date (today)
-            item.isCompleted() ? "completed" : "pending", // status
-            "", // repeat frequency
-            item.getPriority() != null ? item.getPriority() : "medium" // priority
-        );
-        
-        // Set completion status
-        task.setCompleted(item.isCompleted());
-        
-        // Handle extra properties if available
-        try {
-            if (item.getExtraProperties() != null) {
-                JSONObject extraProps = item.getExtraProperties();
-                
-                // Check for verification type
-                if (extraProps.has("trust_type")) {
-                    task.setTaskType(extraProps.getString("trust_type"));
-                }
-                
-                // Check for location data
-                if (extraProps.has("map_lat") && extraProps.has("map_lon")) {
-                    task.setLatitude(extraProps.getDouble("map_lat"));
-                    task.setLongitude(extraProps.getDouble("map_lon"));
-                }
-                
-                // Check for pomodoro data
-                if (extraProps.has("pomodoro_count") && extraProps.has("pomodoro_duration")) {
-                    task.setPomodoroCount(extraProps.getInt("pomodoro_count"));
-                    task.setPomodoroLength(extraProps.getInt("pomodoro_duration"));
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing extra properties: " + e.getMessage());
-        }
-        
-        return task;
-    }
-
     // Keep the old method signature for backward compatibility
     private void refreshAllData() {
         refreshAllData(true);
@@ -1621,7 +1574,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
                 }
                 
                 if (habitAdapter != null) {
-                    habitAdapter.notifyDataSetChanged();
+                    habitAdapter.submitList(habitList);
                 }
                 
                 updateHabitEmptyState();
@@ -1647,7 +1600,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
             try {
                 habitList.add(habit);
                 if (habitAdapter != null) {
-                    habitAdapter.notifyItemInserted(habitList.size() - 1);
+                    habitAdapter.submitList(habitList);
                 }
                 updateHabitEmptyState();
                 
@@ -1671,7 +1624,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
                     if (habitList.get(i).getHabitId().equals(habit.getHabitId())) {
                         habitList.set(i, habit);
                         if (habitAdapter != null) {
-                            habitAdapter.notifyItemChanged(i);
+                            habitAdapter.submitList(habitList);
                         }
                         Log.d(TAG, "Habit updated in home: " + habit.getTitle());
                         break;
@@ -1816,7 +1769,7 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
         
         // Refresh the adapter
         if (habitAdapter != null) {
-            habitAdapter.notifyDataSetChanged();
+            habitAdapter.submitList(habitList);
         }
     }
 
@@ -1902,6 +1855,10 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
         
         // Apply scroll optimizations to fix nested RecyclerView conflicts
         optimizeScrollingPerformance();
+        
+        // Keep the timeline in sync with task edits from any screen
+        TaskCache.getInstance(requireContext())
+                .observeChanges(getViewLifecycleOwner(), this::applyTaskChange);
     }
 
     /**
@@ -2074,11 +2031,13 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
         Log.d(TAG, "Starting notification integration tests from HomeFragment menu");
         Toast.makeText(getContext(), "Running notification integration tests...", Toast.LENGTH_SHORT).show();
         
-        // Run tests in background thread to avoid blocking UI
-        new Thread(() -> {
+        // Run tests in the background; results are dropped if the fragment is gone by then
+        Context appContext = requireContext().getApplicationContext();
+        TaskScope taskScope = scope();
+        taskScope.run(AppExecutors.getInstance().io(), () -> {
             try {
                 // Run basic integration tests using the helper
-                NotificationTestHelper helper = new NotificationTestHelper(getContext());
+                NotificationTestHelper helper = new NotificationTestHelper(appContext);
                 
                 // Test basic functionality
                 Log.d(TAG, "Running basic notification tests...");
@@ -2093,28 +2052,34 @@ public class HomeFragment extends Fragment implements ProfileManager.ProfileLoad
                 boolean reminderTestResult = helper.testReminderNotifications();
                 
                 // Show success message on UI thread
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        String message = String.format("Tests completed!\nBasic: %s\nWorkflow: %s\nReminder: %s",
-                            basicTestResult ? "✓" : "✗",
-                            workflowTestResult ? "✓" : "✗", 
-                            reminderTestResult ? "✓" : "✗");
-                        Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
-                    });
-                }
+                taskScope.post(() -> {
+                    String message = String.format("Tests completed!\nBasic: %s\nWorkflow: %s\nReminder: %s",
+                        basicTestResult ? "✓" : "✗",
+                        workflowTestResult ? "✓" : "✗", 
+                        reminderTestResult ? "✓" : "✗");
+                    Toast.makeText(appContext, message, Toast.LENGTH_LONG).show();
+                });
                 
             } catch (Exception e) {
                 Log.e(TAG, "Error running notification tests: " + e.getMessage(), e);
                 
                 // Show error message on UI thread
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(), "Notification tests failed: " + e.getMessage(), 
-                                     Toast.LENGTH_LONG).show();
-                    });
-                }
+                taskScope.post(() -> {
+                    Toast.makeText(appContext, "Notification tests failed: " + e.getMessage(), 
+                                 Toast.LENGTH_LONG).show();
+                });
             }
-        }).start();
+        });
+    }
+
+    /**
+     * Background work of this fragment, cancelled when it is destroyed
+     */
+    private TaskScope scope() {
+        if (scope == null) {
+            scope = TaskScope.of(this);
+        }
+        return scope;
     }
     
     /**
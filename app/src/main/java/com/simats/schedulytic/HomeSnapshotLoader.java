@@ -0,0 +1,314 @@
+package com.simats.schedulytic;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.simats.schedulytic.model.Habit;
+import com.simats.schedulytic.service.HabitManagerService;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads everything the home screen shows on open (profile and XP, today's tasks,
+ * habits and the streak window) with a single request to get_home_snapshot.php.
+ * Today's tasks and the habit list are authoritative in the snapshot, so they are
+ * written through to the shared caches, dropping local rows the server no longer
+ * has; rows with queued outbox writes keep their local state. Concurrent loads
+ * share one request.
+ */
+public class HomeSnapshotLoader {
+    private static final String TAG = "HomeSnapshotLoader";
+    private static final int STREAK_DAYS = 30;
+    private static final int SNAPSHOT_TIMEOUT_MS = 8000;
+    private static HomeSnapshotLoader instance;
+
+    /**
+     * Home screen data after the snapshot has been applied locally
+     */
+    public static final class HomeSnapshot {
+        private final String date;
+        private final List<Task> tasks;
+        private final JSONObject profile;
+        private final JSONObject streak;
+
+        HomeSnapshot(String date, List<Task> tasks, JSONObject profile, JSONObject streak) {
+            this.date = date;
+            this.tasks = tasks;
+            this.profile = profile;
+            this.streak = streak;
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        /**
+         * @return Today's tasks from the task cache, including unsent local ones
+         */
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        /**
+         * @return Profile in the get_user_profile.php shape (name, avatar_url, streak_count, xp_points)
+         */
+        public JSONObject getProfile() {
+            return profile;
+        }
+
+        /**
+         * @return Streak window in the get_user_streak.php shape (streak_count, streak_data, start_date, end_date)
+         */
+        public JSONObject getStreak() {
+            return streak;
+        }
+    }
+
+    /**
+     * Result of a snapshot load, delivered on the main thread. Habits are delivered
+     * separately through the HabitManagerService listener, like every other habit change.
+     */
+    public interface SnapshotListener {
+        void onSnapshotLoaded(HomeSnapshot snapshot);
+
+        /**
+         * The server could not be reached or does not support snapshots; the caller
+         * should fall back to loading each widget on its own
+         */
+        void onSnapshotFailed(String message);
+    }
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final VolleyNetworkManager networkManager;
+    private final Executor executor = AppExecutors.getInstance().db();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final List<SnapshotListener> pendingListeners = new ArrayList<>();
+    private boolean loadInFlight;
+
+    private HomeSnapshotLoader(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.networkManager = VolleyNetworkManager.getInstance(context);
+    }
+
+    public static synchronized HomeSnapshotLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new HomeSnapshotLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private String getUserId() {
+        SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
+        return prefs.getString("user_id", "");
+    }
+
+    /**
+     * Fetch and apply the snapshot for today. If a load is already running the
+     * listener is attached to it instead of starting another one.
+     */
+    public void load(SnapshotListener listener) {
+        String userId = getUserId();
+        if (userId.isEmpty()) {
+            mainHandler.post(() -> listener.onSnapshotFailed("User ID is empty"));
+            return;
+        }
+
+        synchronized (this) {
+            pendingListeners.add(listener);
+            if (loadInFlight) {
+                Log.d(TAG, "Snapshot already loading, joining it");
+                return;
+            }
+            loadInFlight = true;
+        }
+
+        String date = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
+        String url = networkManager.getHomeSnapshotUrl(userId, date, STREAK_DAYS);
+        Log.d(TAG, "Loading home snapshot for " + date);
+
+        networkManager.makeStreamingGetRequest(
+            url,
+            reader -> readResponse(reader, userId),
+            new VolleyNetworkManager.StreamResponseListener<SnapshotResponse>() {
+                @Override
+                public void onSuccess(SnapshotResponse response) {
+                    executor.execute(() -> applySnapshot(userId, date, response));
+                }
+
+                @Override
+                public void onError(String message) {
+                    finish(null, message);
+                }
+            },
+            SNAPSHOT_TIMEOUT_MS
+        );
+    }
+
+    private void applySnapshot(String userId, String date, SnapshotResponse response) {
+        try {
+            if (!"success".equals(response.status)) {
+                finish(null, response.message != null ? response.message : "Snapshot not supported by server");
+                return;
+            }
+
+            List<Task> tasks = response.tasks;
+            Set<String> taskIds = new HashSet<>();
+            for (Task task : tasks) {
+                taskIds.add(task.getTaskId());
+            }
+
+            List<Habit> habits = response.habits;
+            Set<String> habitIds = new HashSet<>();
+            for (Habit habit : habits) {
+                habitIds.add(habit.getHabitId());
+            }
+
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            Set<String> pendingTaskIds = MutationOutbox.pendingEntityIds(db, MutationOutbox.ENTITY_TASK);
+            Set<String> pendingHabitIds = MutationOutbox.pendingEntityIds(db, MutationOutbox.ENTITY_HABIT);
+            tasks.removeIf(task -> pendingTaskIds.contains(task.getTaskId()));
+            habits.removeIf(habit -> pendingHabitIds.contains(habit.getHabitId()));
+
+            // Today's tasks the server no longer has were deleted elsewhere
+            TaskCache taskCache = TaskCache.getInstance(context);
+            List<String> staleTaskIds = new ArrayList<>();
+            for (String taskId : taskCache.getTaskIdsForDate(date)) {
+                if (!taskIds.contains(taskId) && !pendingTaskIds.contains(taskId)) {
+                    staleTaskIds.add(taskId);
+                }
+            }
+            taskCache.removeAll(staleTaskIds);
+            taskCache.putAll(tasks);
+
+            List<String> staleHabitIds = new ArrayList<>();
+            try (Cursor cursor = db.query("habits", new String[]{"habit_id"}, "user_id = ?",
+                    new String[]{userId}, null, null, null)) {
+                while (cursor.moveToNext()) {
+                    String habitId = cursor.getString(0);
+                    if (!habitIds.contains(habitId) && !pendingHabitIds.contains(habitId)) {
+                        staleHabitIds.add(habitId);
+                    }
+                }
+            }
+
+            HabitManagerService habitManager = HabitManagerService.getInstance(context);
+            List<String> removedHabitIds;
+            db.beginTransaction();
+            try {
+                removedHabitIds = habitManager.writeHabitDelta(db, habits, staleHabitIds);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            mainHandler.post(() -> habitManager.onHabitsSynced(habits, removedHabitIds));
+
+            JSONObject profile = response.profile;
+            JSONObject streak = response.streak;
+            Log.d(TAG, "Applied home snapshot: " + tasks.size() + " tasks (" + staleTaskIds.size()
+                    + " removed), " + habits.size() + " habits (" + removedHabitIds.size() + " removed)");
+
+            finish(new HomeSnapshot(date, taskCache.getTasksForDate(date),
+                    profile != null ? profile : new JSONObject(),
+                    streak != null ? streak : new JSONObject()), null);
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying home snapshot: " + e.getMessage(), e);
+            finish(null, "Error applying home snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stream the snapshot body; tasks and habits are decoded row by row into models,
+     * the small profile and streak objects are kept as JSON for the existing widgets
+     */
+    private static SnapshotResponse readResponse(JsonReader reader, String userId) throws IOException, JSONException {
+        SnapshotResponse response = new SnapshotResponse();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "status":
+                    response.status = JsonStreams.readString(reader, null);
+                    break;
+                case "message":
+                    response.message = JsonStreams.readString(reader, null);
+                    break;
+                case "tasks":
+                    response.tasks.addAll(JsonStreams.readList(reader, r -> JsonStreams.readTask(r, userId)));
+                    break;
+                case "habits":
+                    response.habits.addAll(JsonStreams.readList(reader, r -> Habit.fromJson(JsonStreams.readObject(r))));
+                    break;
+                case "profile":
+                    response.profile = readOptionalObject(reader);
+                    break;
+                case "streak":
+                    response.streak = readOptionalObject(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return response;
+    }
+
+    private static JSONObject readOptionalObject(JsonReader reader) throws IOException, JSONException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        return JsonStreams.readObject(reader);
+    }
+
+    private void finish(HomeSnapshot snapshot, String errorMessage) {
+        List<SnapshotListener> listeners;
+        synchronized (this) {
+            listeners = new ArrayList<>(pendingListeners);
+            pendingListeners.clear();
+            loadInFlight = false;
+        }
+        mainHandler.post(() -> {
+            for (SnapshotListener listener : listeners) {
+                if (snapshot != null) {
+                    listener.onSnapshotLoaded(snapshot);
+                } else {
+                    listener.onSnapshotFailed(errorMessage);
+                }
+            }
+        });
+    }
+
+    /**
+     * Decoded get_home_snapshot.php body, before it is applied locally
+     */
+    private static final class SnapshotResponse {
+        String status;
+        String message;
+        final List<Task> tasks = new ArrayList<>();
+        final List<Habit> habits = new ArrayList<>();
+        JSONObject profile;
+        JSONObject streak;
+    }
+}
@@ -0,0 +1,102 @@
+package com.simats.schedulytic;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HurlStack;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * The single HTTP transport of the app. Every Volley request goes through one
+ * RequestQueue with a fixed number of network threads, and connections are kept
+ * alive and pooled by the platform HttpURLConnection instead of being closed after
+ * each request. Responses are gzip-compressed on the wire: HttpURLConnection asks
+ * for gzip and inflates it transparently as long as no caller overrides the
+ * Accept-Encoding header, so none of our requests set it.
+ */
+public class HttpTransport {
+    private static final String TAG = "HttpTransport";
+    private static final int NETWORK_THREADS = 4;
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final int CACHE_SIZE_BYTES = 10 * 1024 * 1024;
+    private static HttpTransport instance;
+
+    private final RequestQueue requestQueue;
+
+    private HttpTransport(Context context) {
+        // Keep-alive is the platform default; make sure nothing turned it off and
+        // allow a few more idle connections than the 5 it keeps by default
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+
+        DiskBasedCache cache = new DiskBasedCache(context.getCacheDir(), CACHE_SIZE_BYTES);
+        requestQueue = new RequestQueue(cache, new BasicNetwork(new HurlStack()), NETWORK_THREADS);
+        requestQueue.start();
+        Log.d(TAG, "Shared request queue started with " + NETWORK_THREADS + " network threads");
+    }
+
+    public static synchronized HttpTransport getInstance(Context context) {
+        if (instance == null) {
+            instance = new HttpTransport(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public RequestQueue getRequestQueue() {
+        return requestQueue;
+    }
+
+    public <T> Request<T> add(Request<T> request) {
+        return requestQueue.add(request);
+    }
+
+    /**
+     * Blocking GET used for reachability checks. The body is drained and the stream
+     * closed without disconnecting, so the connection goes back to the pool and the
+     * request that follows the check reuses it.
+     * @return HTTP status code, or -1 if the server could not be reached
+     */
+    public static int probe(String urlString, int timeoutMs) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(urlString).openConnection();
+            connection.setConnectTimeout(timeoutMs);
+            connection.setReadTimeout(timeoutMs);
+            connection.setRequestMethod("GET");
+            connection.setUseCaches(false);
+            connection.setRequestProperty("Accept", "*/*");
+            connection.setRequestProperty("Cache-Control", "no-cache");
+
+            int responseCode = connection.getResponseCode();
+            drain(responseCode < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return responseCode;
+        } catch (IOException e) {
+            Log.d(TAG, "Probe to " + urlString + " failed: " + e.getMessage());
+            if (connection != null) {
+                // A broken connection must not go back to the pool
+                connection.disconnect();
+            }
+            return -1;
+        }
+    }
+
+    private static void drain(InputStream stream) throws IOException {
+        if (stream == null) {
+            return;
+        }
+        try (InputStream in = stream) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // Discard; only the status code matters
+            }
+        }
+    }
+}
@@ -4,128 +4,25 @@ import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.util.Log;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.concurrent.TimeUnit;
 
 public class IpV4Connection {
     private static final String TAG = "IpV4Connection";
-    
-    // Use direct server connection URLs prioritizing your hosted server
-    private static final String BASE_URL = "http://14.139.187.229:8081/jan2025/Shedulytic/";
-    // Additional server URLs with your hosted server as priority
-    private static final String[] SERVER_URLS = {
-        "http://14.139.187.229:8081/jan2025/Shedulytic/",
-        "http://localhost/shedulytic/",
-        "http://10.0.2.2/shedulytic/"
-    };
-
-    private static String cachedWorkingUrl = null;
-    private static long lastConnectionCheck = 0;
-    private static final long CONNECTION_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(30); // Check every 30 seconds
-    private static int currentUrlIndex = 0;
 
     /**
-     * Get a working server URL, checking multiple options
+     * Get the currently healthiest server URL. Never blocks: server health is
+     * tracked by {@link EndpointRegistry} from real requests and background probes.
      */
     public static String getBaseUrl() {
-        long currentTime = System.currentTimeMillis();
-        
-        // Use cached URL only for a short time to avoid stale connections
-        if (cachedWorkingUrl != null && (currentTime - lastConnectionCheck) < CONNECTION_CHECK_INTERVAL) {
-            return cachedWorkingUrl;
-        }
-
-        // Try all URLs to find a working one
-        for (int i = 0; i < SERVER_URLS.length; i++) {
-            int index = (currentUrlIndex + i) % SERVER_URLS.length;
-            String url = SERVER_URLS[index];
-            
-            if (isUrlReachable(url)) {
-                cachedWorkingUrl = url;
-                lastConnectionCheck = currentTime;
-                currentUrlIndex = index;
-                Log.i(TAG, "Found working server: " + url);
-                return url;
-            }
-        }
-
-        // If no URLs worked, return the default but force a new URL next time
-        Log.e(TAG, "No servers reachable, using default URL");
-        currentUrlIndex = (currentUrlIndex + 1) % SERVER_URLS.length;
-        return BASE_URL;
+        return EndpointRegistry.getInstance().getBestBaseUrl();
     }
 
     /**
-     * Get a fallback URL different from the current base URL
+     * Get a fallback URL different from the current base URL, if another server is usable
      */
     public static String getFallbackUrl() {
-        // Force a server check
-        lastConnectionCheck = 0;
-        // Get a fresh working URL
-        return getBaseUrl();
-    }
-
-    /**
-     * Check if a server URL is reachable
-     */
-    private static boolean isUrlReachable(String urlString) {
-        HttpURLConnection connection = null;
-        try {
-            // Try with direct endpoint and ping.php
-            String[] pathsToTry = {
-                "ping.php",
-                ""
-            };
-            
-            for (String path : pathsToTry) {
-                if (connection != null) {
-                    connection.disconnect();
-                }
-                
-                String fullUrl = urlString + path;
-                
-                URL url = new URL(fullUrl);
-                Log.d(TAG, "Testing connection to: " + fullUrl);
-                
-                connection = (HttpURLConnection) url.openConnection();
-                connection.setConnectTimeout(3000); // Quick timeout for testing
-                connection.setReadTimeout(3000);
-                connection.setRequestMethod("GET");
-                connection.setDoOutput(false);
-                connection.setUseCaches(false);
-                connection.setInstanceFollowRedirects(true);
-                
-                // Set required headers
-                connection.setRequestProperty("Connection", "close");
-                connection.setRequestProperty("Accept", "*/*");
-                connection.setRequestProperty("Cache-Control", "no-cache");
-                
-                try {
-                    connection.connect();
-                    int responseCode = connection.getResponseCode();
-                    Log.d(TAG, "Response code from " + fullUrl + ": " + responseCode);
-                    
-                    // Accept any standard successful response
-                    if (responseCode >= 200 && responseCode < 400) {
-                        Log.i(TAG, "Successfully connected to " + fullUrl);
-                        return true;
-                    }
-                } catch (Exception e) {
-                    Log.d(TAG, "Connection error for " + fullUrl + ": " + e.getMessage());
-                    // Continue trying other paths
-                }
-            }
-            
-            return false;
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking URL: " + e.getMessage());
-            return false;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
+        String baseUrl = getBaseUrl();
+        String fallbackUrl = EndpointRegistry.getInstance().getFallbackUrl(baseUrl);
+        return fallbackUrl != null ? fallbackUrl : baseUrl;
     }
 
     // --- URL generation methods ---
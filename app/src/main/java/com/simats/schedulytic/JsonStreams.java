@@ -0,0 +1,255 @@
+package com.simats.schedulytic;
+
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming decode of server responses with Gson's JsonReader. Response bytes are
+ * read token by token straight into the target objects, so large task and habit
+ * lists are never held as a String or as a full org.json tree. Only if strict
+ * parsing fails is the body decoded to a String and passed through the HTML/PHP
+ * noise cleanup in {@link NetworkUtils}, then parsed again.
+ */
+public final class JsonStreams {
+    private static final String TAG = "JsonStreams";
+
+    /**
+     * Maps a JSON document (or part of one) to a result
+     */
+    public interface Parser<T> {
+        T read(JsonReader reader) throws IOException, JSONException;
+    }
+
+    private JsonStreams() {
+    }
+
+    /**
+     * Parse a response body, falling back to the cleanup path if it is not strict JSON
+     */
+    public static <T> T parse(byte[] data, String charset, Parser<T> parser) throws IOException, JSONException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data),
+                Charset.forName(charset)))) {
+            return parser.read(reader);
+        } catch (IOException | IllegalStateException | NumberFormatException | JSONException e) {
+            Log.w(TAG, "Strict JSON parse failed, cleaning response: " + e.getMessage());
+        }
+
+        String cleaned = NetworkUtils.cleanJsonResponse(decode(data, charset));
+        if (cleaned == null) {
+            throw new JSONException("Empty response");
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(cleaned))) {
+            reader.setLenient(true);
+            return parser.read(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new JSONException("Invalid response after cleaning: " + e.getMessage());
+        }
+    }
+
+    private static String decode(byte[] data, String charset) {
+        try {
+            return new String(data, charset);
+        } catch (UnsupportedEncodingException e) {
+            return new String(data);
+        }
+    }
+
+    /**
+     * Read the next value as an org.json object, for callers that still expect a tree
+     */
+    public static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            object.put(reader.nextName(), readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    public static JSONArray readArray(JsonReader reader) throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    /**
+     * Read any value with the same Java types org.json would produce
+     */
+    public static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            case NUMBER: {
+                String number = reader.nextString();
+                try {
+                    long value = Long.parseLong(number);
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        return (int) value;
+                    }
+                    return value;
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(number);
+                }
+            }
+            default:
+                return reader.nextString();
+        }
+    }
+
+    /**
+     * Read a scalar as a string (numbers and booleans included); null becomes the fallback
+     */
+    public static String readString(JsonReader reader, String fallback) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return fallback;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return fallback;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Read a number that PHP may have sent as a string; anything unparsable becomes the fallback
+     */
+    public static int readInt(JsonReader reader, int fallback) throws IOException {
+        String value = readString(reader, null);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return (int) Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    public static List<String> readStringList(JsonReader reader) throws IOException {
+        List<String> values = new ArrayList<>();
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return values;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String value = readString(reader, null);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        reader.endArray();
+        return values;
+    }
+
+    /**
+     * Read an array element by element with the given parser; null reads as empty
+     */
+    public static <T> List<T> readList(JsonReader reader, Parser<T> elementParser) throws IOException, JSONException {
+        List<T> values = new ArrayList<>();
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return values;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(elementParser.read(reader));
+        }
+        reader.endArray();
+        return values;
+    }
+
+    /**
+     * Read a task row in the shape get_today_tasks.php and sync_changes.php return
+     */
+    public static Task readTask(JsonReader reader, String userId) throws IOException {
+        String id = "";
+        String taskId = "";
+        String taskType = null;
+        String type = null;
+        String title = "Untitled Task";
+        String description = "";
+        String startTime = "";
+        String endTime = "";
+        String dueDate = "";
+        String status = "pending";
+        String repeatFrequency = "none";
+        String priority = "medium";
+        int currentStreak = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": id = readString(reader, ""); break;
+                case "task_id": taskId = readString(reader, ""); break;
+                case "task_type": taskType = readString(reader, null); break;
+                case "type": type = readString(reader, null); break;
+                case "title": title = readString(reader, title); break;
+                case "description": description = readString(reader, description); break;
+                case "start_time": startTime = readString(reader, startTime); break;
+                case "end_time": endTime = readString(reader, endTime); break;
+                case "due_date": dueDate = readString(reader, dueDate); break;
+                case "status": status = readString(reader, status); break;
+                case "repeat_frequency": repeatFrequency = readString(reader, repeatFrequency); break;
+                case "priority": priority = readString(reader, priority); break;
+                case "current_streak": currentStreak = readInt(reader, 0); break;
+                default: reader.skipValue(); break;
+            }
+        }
+        reader.endObject();
+
+        String resolvedType = taskType != null ? taskType : (type != null ? type : "remainder");
+        resolvedType = resolvedType.toLowerCase();
+        // Force type to be either "workflow" or "remainder" - never "task"
+        if (!resolvedType.equals("workflow") && !resolvedType.equals("remainder")) {
+            resolvedType = "remainder";
+        }
+
+        return Task.builder()
+            .taskId(!id.isEmpty() ? id : taskId)
+            .userId(userId)
+            .type(resolvedType)
+            .title(title)
+            .description(description)
+            .startTime(startTime)
+            .endTime(endTime)
+            .dueDate(dueDate)
+            .status(status)
+            .repeat(repeatFrequency)
+            .priority(priority)
+            .currentStreak(currentStreak)
+            .build();
+    }
+}
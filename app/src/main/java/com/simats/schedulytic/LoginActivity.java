@@ -11,10 +11,18 @@ import androidx.appcompat.app.AppCompatActivity;
 import org.json.JSONException;
 import org.json.JSONObject;
 import android.util.Log;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Scanner;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.StringRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class LoginActivity extends AppCompatActivity {
     private static final String TAG = "LoginActivity";
@@ -52,193 +60,143 @@ public class LoginActivity extends AppCompatActivity {
 
     private void loginUser(String email, String password) {
         // Show loading message
-        runOnUiThread(() -> Toast.makeText(this, "Logging in...", Toast.LENGTH_SHORT).show());
-
-        new Thread(() -> {
-            HttpURLConnection conn = null;
-            try {
-                // Try multiple server URLs in sequence - primary IP should match IpV4Connection
-                String[] serverUrls = {
-                    IpV4Connection.getBaseUrl(),  // Use centralized IP configuration
-                    "http://10.0.2.2/shedulytic/",
-                    "http://localhost/shedulytic/"
-                };
-                
-                boolean connected = false;
-                String responseData = "";
-                int responseCode = 0;
-                
-                // Try each URL until one works
-                for (String baseUrl : serverUrls) {
-                    try {
-                        Log.d(TAG, "Trying to connect to: " + baseUrl);
-                        URL url = new URL(baseUrl + "login.php");
-                        conn = (HttpURLConnection) url.openConnection();
-                        conn.setRequestMethod("POST");
-                        conn.setRequestProperty("Content-Type", "application/json");
-                        conn.setDoOutput(true);
-                        conn.setConnectTimeout(10000); // 10 seconds timeout
-                        conn.setReadTimeout(10000);
-
-                        JSONObject requestBody = new JSONObject();
-                        requestBody.put("email", email);
-                        requestBody.put("password", password);
-
-                        OutputStream os = conn.getOutputStream();
-                        os.write(requestBody.toString().getBytes("UTF-8"));
-                        os.close();
-
-                        responseCode = conn.getResponseCode();
-                        if (responseCode == HttpURLConnection.HTTP_OK) {
-                            Scanner scanner = new Scanner(conn.getInputStream(), "UTF-8");
-                            StringBuilder response = new StringBuilder();
-                            while (scanner.hasNextLine()) {
-                                response.append(scanner.nextLine());
-                            }
-                            scanner.close();
-                            
-                            responseData = response.toString();
-                            Log.d(TAG, "Response: " + responseData);
-                            connected = true;
-                            break; // Success, exit the loop
-                        } else {
-                            Log.d(TAG, "Server returned error code: " + responseCode);
-                            if (conn != null) conn.disconnect();
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error connecting to " + baseUrl + ": " + e.getMessage());
-                        if (conn != null) conn.disconnect();
-                    }
-                }
-                
-                if (!connected) {
-                    runOnUiThread(() -> Toast.makeText(LoginActivity.this, 
-                        "Could not connect to server. Please check your network connection.", 
-                        Toast.LENGTH_LONG).show());
+        Toast.makeText(this, "Logging in...", Toast.LENGTH_SHORT).show();
+
+        JSONObject requestBody = new JSONObject();
+        try {
+            requestBody.put("email", email);
+            requestBody.put("password", password);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building login request: " + e.getMessage(), e);
+            return;
+        }
+
+        // Try multiple server URLs in sequence - primary should match the network manager
+        Set<String> serverUrls = new LinkedHashSet<>();
+        serverUrls.add(VolleyNetworkManager.getInstance(this).getBaseUrl());
+        serverUrls.add("http://10.0.2.2/shedulytic/");
+        serverUrls.add("http://localhost/shedulytic/");
+        attemptLogin(new ArrayList<>(serverUrls), 0, requestBody);
+    }
+
+    /**
+     * Post the login to one server URL on the shared transport, moving on to the next
+     * URL only if this one could not be reached
+     */
+    private void attemptLogin(List<String> serverUrls, int index, JSONObject requestBody) {
+        if (index >= serverUrls.size()) {
+            Toast.makeText(LoginActivity.this,
+                "Could not connect to server. Please check your network connection.",
+                Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        String baseUrl = serverUrls.get(index);
+        Log.d(TAG, "Trying to connect to: " + baseUrl);
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(
+            Request.Method.POST, baseUrl + "login.php", requestBody, JsonStreams::readObject,
+            response -> {
+                Log.d(TAG, "Response: " + response);
+                handleLoginResponse(response);
+            },
+            error -> {
+                if (error instanceof ParseError) {
+                    Log.e(TAG, "Error parsing JSON: " + error.getMessage(), error);
+                    Toast.makeText(LoginActivity.this,
+                        "Server response error: " + error.getMessage(),
+                        Toast.LENGTH_LONG).show();
                     return;
                 }
+                Log.e(TAG, "Error connecting to " + baseUrl + ": " + error);
+                attemptLogin(serverUrls, index + 1, requestBody);
+            });
+        request.setRetryPolicy(new DefaultRetryPolicy(10000, 0, 1.0f)); // 10 seconds timeout
+        request.setShouldCache(false);
+        HttpTransport.getInstance(this).add(request);
+    }
+
+    private void handleLoginResponse(JSONObject jsonResponse) {
+        String status = jsonResponse.optString("status", "error");
+        try {
+            if ("success".equals(status)) {
+                JSONObject user = jsonResponse.getJSONObject("user");
+                String userId = user.getString("user_id");
+
+                // Store user_id in SharedPreferences with commit for immediate write
+                SharedPreferences prefs = getSharedPreferences("UserPrefs", MODE_PRIVATE);
+                SharedPreferences.Editor editor = prefs.edit();
+                editor.putString("user_id", userId);
                 
-                // Process the response
-                final String finalResponseData = responseData;
-                try {
-                    JSONObject jsonResponse = new JSONObject(finalResponseData);
-                    String status = jsonResponse.optString("status", "error");
-
-                    runOnUiThread(() -> {
-                        try {
-                            if ("success".equals(status)) {
-                                JSONObject user = jsonResponse.getJSONObject("user");
-                                String userId = user.getString("user_id");
-
-                                // Store user_id in SharedPreferences with commit for immediate write
-                                SharedPreferences prefs = getSharedPreferences("UserPrefs", MODE_PRIVATE);
-                                SharedPreferences.Editor editor = prefs.edit();
-                                editor.putString("user_id", userId);
-                                
-                                // Mark user as logged in for persistent login
-                                editor.putBoolean("is_logged_in", true);
-                                editor.putBoolean("onboarding_completed", true);
-
-                                // Get username from response with better fallback handling
-                                String username = "";
-                                if (user.has("username") && !user.isNull("username")) {
-                                    username = user.getString("username");
-                                } else if (user.has("name") && !user.isNull("name")) {
-                                    username = user.getString("name");
-                                } else if (user.has("email") && !user.isNull("email")) {
-                                    // Use email as last resort for display name
-                                    username = user.getString("email").split("@")[0];
-                                }
-
-                                // Store username in SharedPreferences
-                                if (!username.isEmpty()) {
-                                    editor.putString("username", username);
-                                    Log.d(TAG, "Stored username: " + username);
-                                }
-
-                                // Store XP points with default value if not available
-                                int xpPoints = 0;
-                                if (user.has("xp_points") && !user.isNull("xp_points")) {
-                                    xpPoints = user.getInt("xp_points");
-                                }
-                                editor.putInt("xp_points", xpPoints);
-                                Log.d(TAG, "Stored XP points: " + xpPoints);
-
-                                // Commit all changes at once
-                                editor.commit();
-                                
-                                // Log user activity for streak tracking
-                                logUserActivityForStreak(userId);
-
-                                Toast.makeText(this, "Login Successful!", Toast.LENGTH_SHORT).show();
-                                Intent intent = new Intent(LoginActivity.this, MainNavigationActivity.class);
-                                intent.putExtra("user_id", userId);
-                                intent.putExtra("username", username);
-                                intent.putExtra("xp_points", xpPoints);
-                                startActivity(intent);
-                                finish();
-                            } else {
-                                String message = jsonResponse.optString("message", "Invalid credentials!");
-                                Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error parsing user data: " + e.getMessage(), e);
-                            Toast.makeText(this, "Error parsing user data: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        }
-                    });
-                } catch (JSONException e) {
-                    Log.e(TAG, "Error parsing JSON: " + e.getMessage(), e);
-                    runOnUiThread(() -> Toast.makeText(LoginActivity.this, 
-                        "Server response error: " + e.getMessage(), 
-                        Toast.LENGTH_LONG).show());
+                // Mark user as logged in for persistent login
+                editor.putBoolean("is_logged_in", true);
+                editor.putBoolean("onboarding_completed", true);
+
+                // Get username from response with better fallback handling
+                String username = "";
+                if (user.has("username") && !user.isNull("username")) {
+                    username = user.getString("username");
+                } else if (user.has("name") && !user.isNull("name")) {
+                    username = user.getString("name");
+                } else if (user.has("email") && !user.isNull("email")) {
+                    // Use email as last resort for display name
+                    username = user.getString("email").split("@")[0];
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Network error: " + e.getMessage(), e);
-                runOnUiThread(() -> Toast.makeText(this, 
-                    "Network error: " + e.getMessage(), 
-                    Toast.LENGTH_LONG).show());
-            } finally {
-                if (conn != null) {
-                    conn.disconnect();
+
+                // Store username in SharedPreferences
+                if (!username.isEmpty()) {
+                    editor.putString("username", username);
+                    Log.d(TAG, "Stored username: " + username);
                 }
+
+                // Store XP points with default value if not available
+                int xpPoints = 0;
+                if (user.has("xp_points") && !user.isNull("xp_points")) {
+                    xpPoints = user.getInt("xp_points");
+                }
+                editor.putInt("xp_points", xpPoints);
+                Log.d(TAG, "Stored XP points: " + xpPoints);
+
+                // Commit all changes at once
+                editor.commit();
+                
+                // Log user activity for streak tracking
+                logUserActivityForStreak(userId);
+
+                Toast.makeText(this, "Login Successful!", Toast.LENGTH_SHORT).show();
+                Intent intent = new Intent(LoginActivity.this, MainNavigationActivity.class);
+                intent.putExtra("user_id", userId);
+                intent.putExtra("username", username);
+                intent.putExtra("xp_points", xpPoints);
+                startActivity(intent);
+                finish();
+            } else {
+                String message = jsonResponse.optString("message", "Invalid credentials!");
+                Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
             }
-        }).start();
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing user data: " + e.getMessage(), e);
+            Toast.makeText(this, "Error parsing user data: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
     }
-    
+
     /**
      * Log user activity for streak tracking when user logs in
      */
     private void logUserActivityForStreak(String userId) {
-        new Thread(() -> {
-            try {
-                String baseUrl = IpV4Connection.getBaseUrl();
-                // Ensure proper URL construction with / separator
-                String endpoint = baseUrl.endsWith("/") ? baseUrl + "update_user_activity.php" : baseUrl + "/update_user_activity.php";
-                URL url = new URL(endpoint);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("POST");
-                conn.setConnectTimeout(5000);
-                conn.setReadTimeout(5000);
-                conn.setDoOutput(true);
-                
-                // Send POST data
-                String postData = "user_id=" + userId + "&activity_type=login";
-                conn.getOutputStream().write(postData.getBytes("UTF-8"));
-                
-                int responseCode = conn.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    Scanner scanner = new Scanner(conn.getInputStream(), "UTF-8");
-                    StringBuilder response = new StringBuilder();
-                    while (scanner.hasNextLine()) {
-                        response.append(scanner.nextLine());
-                    }
-                    scanner.close();
-                    Log.d(TAG, "Activity logged for streak: " + response.toString());
-                }
-                conn.disconnect();
-            } catch (Exception e) {
-                Log.e(TAG, "Error logging activity for streak: " + e.getMessage());
+        String endpoint = VolleyNetworkManager.getInstance(this).getUpdateUserActivityUrl();
+        StringRequest request = new StringRequest(Request.Method.POST, endpoint,
+            response -> Log.d(TAG, "Activity logged for streak: " + response),
+            error -> Log.e(TAG, "Error logging activity for streak: " + error.getMessage())) {
+            @Override
+            protected Map<String, String> getParams() {
+                Map<String, String> params = new HashMap<>();
+                params.put("user_id", userId);
+                params.put("activity_type", "login");
+                return params;
             }
-        }).start();
+        };
+        request.setRetryPolicy(new DefaultRetryPolicy(5000, 0, 1.0f));
+        request.setShouldCache(false);
+        HttpTransport.getInstance(this).add(request);
     }
 }
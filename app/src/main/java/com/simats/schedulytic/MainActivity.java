@@ -17,7 +17,6 @@ import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -121,7 +120,7 @@ public class MainActivity extends AppCompatActivity {
                 }
             };
 
-            Volley.newRequestQueue(this).add(request);
+            HttpTransport.getInstance(this).add(request);
         }
     }
 
@@ -0,0 +1,744 @@
+package com.simats.schedulytic;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.simats.schedulytic.service.HabitManagerService;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Durable queue of task and habit writes bound for the server.
+ *
+ * Every mutation is first stored in the {@code outbox} table with its own idempotency
+ * key, so nothing is lost while offline or if the process dies. A background drainer
+ * replays the queue in batches through replay_mutations.php, which applies each key at
+ * most once. Writes that were never sent are coalesced as they are queued: a newer
+ * value replaces an older one of the same kind, edits of a not-yet-created task are
+ * folded into its add, and deleting such a task cancels both. A batch made up only of
+ * task status, completion and time changes goes to batch_update_tasks.php instead,
+ * which commits the whole batch in one server transaction. A row that still fails
+ * after {@link #MAX_ATTEMPTS} tries is dead-lettered: it stays in the table but is no
+ * longer sent, and its entity is fetched again from the server by {@link SyncEngine}.
+ */
+public class MutationOutbox {
+    private static final String TAG = "MutationOutbox";
+    private static MutationOutbox instance;
+
+    public static final String ENTITY_TASK = "task";
+    public static final String ENTITY_HABIT = "habit";
+
+    public static final String OP_ADD_TASK = "add_task";
+    public static final String OP_UPDATE_TASK = "update_task";
+    public static final String OP_UPDATE_TASK_STATUS = "update_task_status";
+    public static final String OP_TASK_COMPLETION = "task_completion";
+    public static final String OP_DELETE_TASK = "delete_task";
+    public static final String OP_ADD_HABIT = "add_habit";
+    public static final String OP_UPDATE_HABIT = "update_habit";
+    public static final String OP_HABIT_STREAK = "habit_streak";
+    public static final String OP_DELETE_HABIT = "delete_habit";
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SENDING = 1;
+    private static final int STATE_DEAD = 2;
+
+    private static final int BATCH_SIZE = 25;
+    private static final long COALESCE_WINDOW_MS = 1500;
+    private static final long BASE_BACKOFF_MS = 5000;
+    private static final long MAX_BACKOFF_MS = 10 * 60 * 1000;
+    // About an hour of retries with the backoff above
+    private static final int MAX_ATTEMPTS = 12;
+    private static final int REPLAY_TIMEOUT_MS = 15000;
+
+    private static final String ADD_OPERATIONS = "('" + OP_ADD_TASK + "', '" + OP_ADD_HABIT + "')";
+
+    /**
+     * A mutation handed to {@link #enqueueAll}
+     */
+    public static final class Write {
+        final String entityType;
+        final String entityId;
+        final String operation;
+        final JSONObject payload;
+
+        public Write(String entityType, String entityId, String operation, JSONObject payload) {
+            this.entityType = entityType;
+            this.entityId = entityId;
+            this.operation = operation;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * One queued row
+     */
+    private static final class Mutation {
+        long id;
+        String idempotencyKey;
+        String userId;
+        String entityType;
+        String entityId;
+        String operation;
+        JSONObject payload;
+        int attempts;
+    }
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final VolleyNetworkManager networkManager;
+    // Serial, so queue writes and batches never interleave
+    private final Executor executor = AppExecutors.getInstance().newSerialExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Delayed drains wait on the main looper and then hop onto the executor
+    private final Runnable scheduledDrain = () -> executor.execute(this::drain);
+
+    // Only touched on the executor
+    private boolean batchInFlight;
+
+    private MutationOutbox(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.networkManager = VolleyNetworkManager.getInstance(context);
+
+        // Rows left "sending" by a previous process never got an answer; retry them
+        executor.execute(() -> {
+            try {
+                ContentValues values = new ContentValues();
+                values.put("state", STATE_PENDING);
+                dbHelper.getWritableDatabase().update("outbox", values, "state = ?",
+                        new String[]{String.valueOf(STATE_SENDING)});
+            } catch (Exception e) {
+                Log.e(TAG, "Error resetting outbox state: " + e.getMessage(), e);
+            }
+            drain();
+        });
+        registerConnectivityCallback();
+    }
+
+    public static synchronized MutationOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new MutationOutbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private String getUserId() {
+        SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
+        return prefs.getString("user_id", "");
+    }
+
+    /**
+     * Queue a mutation for the server. Returns immediately; the row is written and
+     * coalesced on the outbox thread and replayed after a short batching window.
+     * @param entityType ENTITY_TASK or ENTITY_HABIT
+     * @param entityId ID of the task or habit (a new habit keeps a local ID until the server assigns one)
+     * @param operation One of the OP_ constants
+     * @param payload Request body for the operation
+     */
+    public void enqueue(String entityType, String entityId, String operation, JSONObject payload) {
+        String userId = getUserId();
+        executor.execute(() -> {
+            try {
+                enqueueInternal(userId, entityType, entityId, operation, payload);
+            } catch (Exception e) {
+                Log.e(TAG, "Error queueing " + operation + " for " + entityId + ": " + e.getMessage(), e);
+            }
+            scheduleDrain(COALESCE_WINDOW_MS);
+        });
+    }
+
+    /**
+     * Queue several mutations in one local transaction, e.g. a bulk action on many
+     * tasks. They share the batching window and are normally replayed in one request.
+     */
+    public void enqueueAll(List<Write> writes) {
+        if (writes == null || writes.isEmpty()) {
+            return;
+        }
+        String userId = getUserId();
+        List<Write> queued = new ArrayList<>(writes);
+        executor.execute(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (Write write : queued) {
+                    enqueueInternal(userId, write.entityType, write.entityId, write.operation, write.payload);
+                }
+                db.setTransactionSuccessful();
+            } catch (Exception e) {
+                Log.e(TAG, "Error queueing " + queued.size() + " writes: " + e.getMessage(), e);
+            } finally {
+                db.endTransaction();
+            }
+            scheduleDrain(COALESCE_WINDOW_MS);
+        });
+    }
+
+    /**
+     * Ask the drainer to replay whatever is due now (e.g. after the user pulls to refresh)
+     */
+    public void requestDrain() {
+        executor.execute(() -> scheduleDrain(0));
+    }
+
+    /**
+     * IDs of entities that still have queued writes. The delta sync must not overwrite
+     * these rows with server state that predates the queued writes. Dead-lettered rows
+     * do not count; they will never be sent.
+     */
+    static Set<String> pendingEntityIds(SQLiteDatabase db, String entityType) {
+        Set<String> ids = new HashSet<>();
+        try (Cursor cursor = db.query(true, "outbox", new String[]{"entity_id"}, "entity_type = ? AND state != ?",
+                new String[]{entityType, String.valueOf(STATE_DEAD)}, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+        }
+        return ids;
+    }
+
+    private void enqueueInternal(String userId, String entityType, String entityId,
+                                 String operation, JSONObject payload) throws JSONException {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (isDelete(operation)) {
+                // Writes that never left the device are moot once the entity is deleted
+                boolean hadUnsentAdd = hasUnsentAdd(db, entityType, entityId);
+                int dropped = db.delete("outbox", "entity_type = ? AND entity_id = ? AND state = ? AND attempts = 0",
+                        new String[]{entityType, entityId, String.valueOf(STATE_PENDING)});
+                if (dropped > 0) {
+                    Log.d(TAG, "Dropped " + dropped + " unsent writes for deleted " + entityType + " " + entityId);
+                }
+                if (hadUnsentAdd) {
+                    // The server never saw this entity, so there is nothing to delete
+                    db.setTransactionSuccessful();
+                    return;
+                }
+            } else if (!isAdd(operation) && mergeIntoUnsentAdd(db, entityType, entityId, operation, payload)) {
+                db.setTransactionSuccessful();
+                return;
+            }
+
+            String coalesceKey = entityType + ":" + entityId + ":" + coalesceClass(operation);
+            ContentValues values = new ContentValues();
+            values.put("idempotency_key", UUID.randomUUID().toString());
+            values.put("operation", operation);
+            values.put("payload", payload.toString());
+            values.put("created_at", System.currentTimeMillis());
+
+            // A newer write of the same kind replaces an unsent older one in place
+            int replaced = isAdd(operation) || isDelete(operation) ? 0 : db.update("outbox", values,
+                    "coalesce_key = ? AND state = ? AND attempts = 0",
+                    new String[]{coalesceKey, String.valueOf(STATE_PENDING)});
+            if (replaced == 0) {
+                values.put("user_id", userId);
+                values.put("entity_type", entityType);
+                values.put("entity_id", entityId);
+                values.put("coalesce_key", coalesceKey);
+                values.put("state", STATE_PENDING);
+                values.put("attempts", 0);
+                values.put("next_attempt_at", 0);
+                db.insert("outbox", null, values);
+                Log.d(TAG, "Queued " + operation + " for " + entityType + " " + entityId);
+            } else {
+                Log.d(TAG, "Coalesced " + operation + " for " + entityType + " " + entityId);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private boolean hasUnsentAdd(SQLiteDatabase db, String entityType, String entityId) {
+        try (Cursor cursor = db.query("outbox", new String[]{"id"},
+                "entity_type = ? AND entity_id = ? AND operation IN " + ADD_OPERATIONS + " AND state = ? AND attempts = 0",
+                new String[]{entityType, entityId, String.valueOf(STATE_PENDING)}, null, null, null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * Fold a task edit into the still-unsent add of that task
+     * @return true if the edit was merged and needs no row of its own
+     */
+    private boolean mergeIntoUnsentAdd(SQLiteDatabase db, String entityType, String entityId,
+                                       String operation, JSONObject payload) throws JSONException {
+        if (!ENTITY_TASK.equals(entityType)) {
+            return false;
+        }
+        try (Cursor cursor = db.query("outbox", new String[]{"id", "payload"},
+                "entity_type = ? AND entity_id = ? AND operation = ? AND state = ? AND attempts = 0",
+                new String[]{entityType, entityId, OP_ADD_TASK, String.valueOf(STATE_PENDING)},
+                null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return false;
+            }
+            JSONObject addPayload = new JSONObject(cursor.getString(1));
+            switch (operation) {
+                case OP_UPDATE_TASK:
+                    copyIfPresent(payload, addPayload, "start_time");
+                    copyIfPresent(payload, addPayload, "end_time");
+                    copyIfPresent(payload, addPayload, "status");
+                    copyIfPresent(payload, addPayload, "priority");
+                    break;
+                case OP_UPDATE_TASK_STATUS:
+                    copyIfPresent(payload, addPayload, "status");
+                    break;
+                case OP_TASK_COMPLETION:
+                    addPayload.put("status", "remove".equals(payload.optString("action")) ? "pending" : "completed");
+                    break;
+                default:
+                    return false;
+            }
+            ContentValues values = new ContentValues();
+            values.put("payload", addPayload.toString());
+            db.update("outbox", values, "id = ?", new String[]{String.valueOf(cursor.getLong(0))});
+            Log.d(TAG, "Merged " + operation + " into unsent add of task " + entityId);
+            return true;
+        }
+    }
+
+    private static void copyIfPresent(JSONObject from, JSONObject to, String field) throws JSONException {
+        if (from.has(field) && !from.isNull(field)) {
+            to.put(field, from.get(field));
+        }
+    }
+
+    private static boolean isAdd(String operation) {
+        return OP_ADD_TASK.equals(operation) || OP_ADD_HABIT.equals(operation);
+    }
+
+    private static boolean isDelete(String operation) {
+        return OP_DELETE_TASK.equals(operation) || OP_DELETE_HABIT.equals(operation);
+    }
+
+    private static boolean isTaskChange(String operation) {
+        return OP_UPDATE_TASK_STATUS.equals(operation) || OP_TASK_COMPLETION.equals(operation)
+                || OP_UPDATE_TASK.equals(operation);
+    }
+
+    /**
+     * Writes in the same class overwrite each other, so only the latest needs sending
+     */
+    private static String coalesceClass(String operation) {
+        switch (operation) {
+            case OP_UPDATE_TASK_STATUS:
+            case OP_TASK_COMPLETION:
+                return "status";
+            case OP_UPDATE_TASK:
+                return "time";
+            case OP_UPDATE_HABIT:
+                return "verify";
+            case OP_HABIT_STREAK:
+                return "streak";
+            default:
+                return operation;
+        }
+    }
+
+    private void scheduleDrain(long delayMs) {
+        mainHandler.removeCallbacks(scheduledDrain);
+        mainHandler.postDelayed(scheduledDrain, delayMs);
+    }
+
+    /**
+     * Send the next batch of due rows. Runs on the executor; one batch at a time.
+     */
+    private void drain() {
+        if (batchInFlight) {
+            return;
+        }
+        if (!isNetworkAvailable()) {
+            Log.d(TAG, "Offline, outbox will drain when the network returns");
+            return;
+        }
+
+        List<Mutation> batch;
+        try {
+            batch = selectBatch(System.currentTimeMillis());
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading outbox: " + e.getMessage(), e);
+            return;
+        }
+        if (batch.isEmpty()) {
+            scheduleNextRetry();
+            return;
+        }
+
+        // Status and time changes alone can be committed together in one transaction
+        boolean taskChangesOnly = true;
+        for (Mutation mutation : batch) {
+            if (!isTaskChange(mutation.operation)) {
+                taskChangesOnly = false;
+                break;
+            }
+        }
+        String url = taskChangesOnly ? networkManager.getBatchUpdateTasksUrl()
+                : networkManager.getReplayMutationsUrl();
+
+        JSONObject body = new JSONObject();
+        try {
+            JSONArray mutations = new JSONArray();
+            for (Mutation mutation : batch) {
+                JSONObject item = new JSONObject();
+                item.put("idempotency_key", mutation.idempotencyKey);
+                item.put("operation", mutation.operation);
+                item.put("payload", mutation.payload);
+                mutations.put(item);
+            }
+            body.put("user_id", batch.get(0).userId);
+            body.put(taskChangesOnly ? "changes" : "mutations", mutations);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building replay batch: " + e.getMessage(), e);
+            return;
+        }
+
+        setState(batch, STATE_SENDING);
+        batchInFlight = true;
+        Log.d(TAG, "Replaying " + batch.size() + " queued mutations"
+                + (taskChangesOnly ? " as one task batch" : ""));
+
+        networkManager.makePostRequestWithTimeout(
+            url,
+            body,
+            new VolleyNetworkManager.JsonResponseListener() {
+                @Override
+                public void onSuccess(JSONObject response) {
+                    executor.execute(() -> onBatchResponse(batch, response));
+                }
+
+                @Override
+                public void onError(String message) {
+                    executor.execute(() -> onBatchFailed(batch, message));
+                }
+            },
+            REPLAY_TIMEOUT_MS,
+            true
+        );
+    }
+
+    /**
+     * Oldest due rows of one user. Edits of an entity whose add is still queued are held
+     * back until the add has returned the server ID.
+     */
+    private List<Mutation> selectBatch(long now) throws JSONException {
+        List<Mutation> batch = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String dueSelection = "state = " + STATE_PENDING + " AND next_attempt_at <= " + now
+                + " AND (operation IN " + ADD_OPERATIONS + " OR NOT EXISTS ("
+                + "SELECT 1 FROM outbox a WHERE a.entity_type = outbox.entity_type"
+                + " AND a.entity_id = outbox.entity_id AND a.operation IN " + ADD_OPERATIONS
+                + " AND a.state != " + STATE_DEAD + " AND a.id < outbox.id))";
+
+        String userId = null;
+        try (Cursor cursor = db.query("outbox", new String[]{"user_id"}, dueSelection,
+                null, null, null, "id ASC", "1")) {
+            if (cursor.moveToFirst()) {
+                userId = cursor.getString(0);
+            }
+        }
+        if (userId == null) {
+            return batch;
+        }
+
+        try (Cursor cursor = db.query("outbox",
+                new String[]{"id", "idempotency_key", "user_id", "entity_type", "entity_id", "operation", "payload", "attempts"},
+                dueSelection + " AND user_id = ?", new String[]{userId}, null, null, "id ASC",
+                String.valueOf(BATCH_SIZE))) {
+            while (cursor.moveToNext()) {
+                Mutation mutation = new Mutation();
+                mutation.id = cursor.getLong(0);
+                mutation.idempotencyKey = cursor.getString(1);
+                mutation.userId = cursor.getString(2);
+                mutation.entityType = cursor.getString(3);
+                mutation.entityId = cursor.getString(4);
+                mutation.operation = cursor.getString(5);
+                mutation.payload = new JSONObject(cursor.getString(6));
+                mutation.attempts = cursor.getInt(7);
+                batch.add(mutation);
+            }
+        }
+        return batch;
+    }
+
+    private void onBatchResponse(List<Mutation> batch, JSONObject response) {
+        batchInFlight = false;
+        JSONArray results = response.optJSONArray("results");
+        if (!"success".equals(response.optString("status")) || results == null) {
+            onBatchFailed(batch, response.optString("message", "Unexpected replay response"));
+            return;
+        }
+
+        Map<String, JSONObject> resultsByKey = new HashMap<>();
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.optJSONObject(i);
+            if (result != null) {
+                resultsByKey.put(result.optString("idempotency_key"), result);
+            }
+        }
+
+        List<Mutation> retry = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        for (Mutation mutation : batch) {
+            JSONObject result = resultsByKey.get(mutation.idempotencyKey);
+            String status = result != null ? result.optString("status") : "error";
+            if ("success".equals(status)) {
+                db.delete("outbox", "id = ?", new String[]{String.valueOf(mutation.id)});
+                onApplied(db, mutation, result.optJSONObject("data"));
+            } else if ("rejected".equals(status)) {
+                // Retrying cannot help (e.g. the task was deleted elsewhere); the local row
+                // still shows the write, so it is replaced by the server state
+                db.delete("outbox", "id = ?", new String[]{String.valueOf(mutation.id)});
+                SyncEngine.markForRefetch(db, mutation.userId, mutation.entityType, mutation.entityId);
+                Log.w(TAG, "Server rejected " + mutation.operation + " for " + mutation.entityId
+                        + ": " + result.optString("message"));
+            } else {
+                retry.add(mutation);
+            }
+        }
+
+        if (!retry.isEmpty()) {
+            backOff(retry);
+        }
+        Log.d(TAG, "Replayed batch: " + (batch.size() - retry.size()) + " done, " + retry.size() + " to retry");
+        requestRefetchIfDue(batch.get(0).userId);
+        drain();
+    }
+
+    private void onBatchFailed(List<Mutation> batch, String message) {
+        batchInFlight = false;
+        Log.w(TAG, "Replay of " + batch.size() + " mutations failed: " + message);
+        backOff(batch);
+        requestRefetchIfDue(batch.get(0).userId);
+        scheduleNextRetry();
+    }
+
+    /**
+     * Start a sync if rows the sync held back, or whose writes were rejected or given up
+     * on, have no queued writes left and can be fetched again
+     */
+    private void requestRefetchIfDue(String userId) {
+        try {
+            if (SyncEngine.hasRefetchDue(dbHelper.getReadableDatabase(), userId)) {
+                SyncEngine.getInstance(context).sync(null);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error checking rows to refetch: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * React to the server result of an applied mutation
+     */
+    private void onApplied(SQLiteDatabase db, Mutation mutation, JSONObject data) {
+        if (data == null) {
+            return;
+        }
+        switch (mutation.operation) {
+            case OP_ADD_TASK: {
+                // The server keeps client task IDs; only adds queued with a "temp_" ID by
+                // earlier versions come back with a different one
+                String serverId = data.optString("task_id", "");
+                if (!serverId.isEmpty() && !serverId.equals(mutation.entityId)) {
+                    remapEntity(db, ENTITY_TASK, mutation.entityId, serverId, "task_id");
+                    String tempId = mutation.entityId;
+                    AppExecutors.getInstance().db().execute(() -> onTaskIdAssigned(tempId, serverId));
+                }
+                break;
+            }
+            case OP_ADD_HABIT: {
+                String serverId = data.optString("habit_id", "");
+                if (!serverId.isEmpty() && !serverId.equals(mutation.entityId)) {
+                    remapEntity(db, ENTITY_HABIT, mutation.entityId, serverId, "habit_id");
+                    String localId = mutation.entityId;
+                    mainHandler.post(() -> HabitManagerService.getInstance(context)
+                            .onHabitIdAssigned(localId, serverId));
+                }
+                break;
+            }
+            case OP_HABIT_STREAK:
+                if (data.has("streak")) {
+                    int streak = data.optInt("streak");
+                    String habitId = mutation.entityId;
+                    mainHandler.post(() -> HabitManagerService.getInstance(context)
+                            .onServerStreak(habitId, streak));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Point queued rows of a just-created entity at its server ID
+     */
+    private void remapEntity(SQLiteDatabase db, String entityType, String oldId, String newId, String idField) {
+        List<Long> ids = new ArrayList<>();
+        List<String> payloads = new ArrayList<>();
+        List<String> operations = new ArrayList<>();
+        try (Cursor cursor = db.query("outbox", new String[]{"id", "payload", "operation"},
+                "entity_type = ? AND entity_id = ?", new String[]{entityType, oldId}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+                payloads.add(cursor.getString(1));
+                operations.add(cursor.getString(2));
+            }
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            ContentValues values = new ContentValues();
+            values.put("entity_id", newId);
+            values.put("coalesce_key", entityType + ":" + newId + ":" + coalesceClass(operations.get(i)));
+            try {
+                JSONObject payload = new JSONObject(payloads.get(i));
+                payload.put(idField, newId);
+                values.put("payload", payload.toString());
+            } catch (JSONException e) {
+                Log.e(TAG, "Error remapping queued payload: " + e.getMessage());
+            }
+            db.update("outbox", values, "id = ?", new String[]{String.valueOf(ids.get(i))});
+        }
+    }
+
+    /**
+     * Swap a legacy temporary task ID for the server ID everywhere on the device. Runs on
+     * the database thread; notifications are rescheduled on the main thread.
+     */
+    private void onTaskIdAssigned(String tempId, String serverId) {
+        TaskCache cache = TaskCache.getInstance(context);
+        Task stored = cache.getTask(tempId);
+        if (stored == null) {
+            return;
+        }
+        Task task = stored.toBuilder().taskId(serverId).build();
+        cache.replace(tempId, task);
+        mainHandler.post(() -> new TaskManager(context, null).rescheduleNotifications(tempId, task));
+        Log.d(TAG, "Task " + tempId + " is now " + serverId);
+    }
+
+    private void setState(List<Mutation> batch, int state) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put("state", state);
+            for (Mutation mutation : batch) {
+                db.update("outbox", values, "id = ?", new String[]{String.valueOf(mutation.id)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Return rows to pending with exponential backoff, or dead-letter them once they
+     * have used up their attempts
+     */
+    private void backOff(List<Mutation> mutations) {
+        long now = System.currentTimeMillis();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Mutation mutation : mutations) {
+                int attempts = mutation.attempts + 1;
+                if (attempts >= MAX_ATTEMPTS) {
+                    deadLetter(db, mutation, attempts);
+                    continue;
+                }
+                long delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 10));
+                ContentValues values = new ContentValues();
+                values.put("state", STATE_PENDING);
+                values.put("attempts", attempts);
+                values.put("next_attempt_at", now + delay);
+                db.update("outbox", values, "id = ?", new String[]{String.valueOf(mutation.id)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Stop sending a row and have the entity fetched again, since its local state shows
+     * a write the server never got. Later writes of an entity whose add died cannot be
+     * applied either, so they go with it.
+     */
+    private void deadLetter(SQLiteDatabase db, Mutation mutation, int attempts) {
+        ContentValues values = new ContentValues();
+        values.put("state", STATE_DEAD);
+        values.put("attempts", attempts);
+        if (isAdd(mutation.operation)) {
+            db.update("outbox", values, "entity_type = ? AND entity_id = ? AND state = ?",
+                    new String[]{mutation.entityType, mutation.entityId, String.valueOf(STATE_PENDING)});
+        }
+        db.update("outbox", values, "id = ?", new String[]{String.valueOf(mutation.id)});
+        SyncEngine.markForRefetch(db, mutation.userId, mutation.entityType, mutation.entityId);
+        Log.w(TAG, "Giving up on " + mutation.operation + " for " + mutation.entityId
+                + " after " + attempts + " attempts; it will be fetched again from the server");
+    }
+
+    private void scheduleNextRetry() {
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                "SELECT MIN(next_attempt_at) FROM outbox WHERE state = " + STATE_PENDING, null)) {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                long delay = Math.max(0, cursor.getLong(0) - System.currentTimeMillis());
+                scheduleDrain(delay);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error scheduling outbox retry: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean isNetworkAvailable() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        android.net.NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
+        return activeNetworkInfo != null && activeNetworkInfo.isConnected();
+    }
+
+    /**
+     * Drain as soon as connectivity returns instead of waiting for the next backoff
+     */
+    private void registerConnectivityCallback() {
+        try {
+            ConnectivityManager connectivityManager =
+                    (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    Log.d(TAG, "Network available, draining outbox");
+                    executor.execute(() -> {
+                        // Rows backed off while offline are due again now
+                        ContentValues values = new ContentValues();
+                        values.put("next_attempt_at", 0);
+                        dbHelper.getWritableDatabase().update("outbox", values, "state = ?",
+                                new String[]{String.valueOf(STATE_PENDING)});
+                        scheduleDrain(0);
+                    });
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error registering network callback: " + e.getMessage(), e);
+        }
+    }
+}
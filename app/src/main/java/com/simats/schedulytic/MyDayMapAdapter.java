@@ -11,12 +11,40 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
+/**
+ * Day map cards. Like {@link TaskAdapter}, new lists are diffed on a background thread
+ * and a change of status only recolours the card's status indicator.
+ */
 public class MyDayMapAdapter extends RecyclerView.Adapter<MyDayMapAdapter.TaskViewHolder> {
     private static final String TAG = "MyDayMapAdapter";
-    private final List<Task> taskList;
+    private static final String PAYLOAD_STATUS = "status";
+
+    private static final DiffUtil.ItemCallback<Task> DIFF_CALLBACK = new DiffUtil.ItemCallback<Task>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Task oldTask, @NonNull Task newTask) {
+            return Objects.equals(oldTask.getTaskId(), newTask.getTaskId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Task oldTask, @NonNull Task newTask) {
+            return oldTask == newTask || (sameCard(oldTask, newTask)
+                    && oldTask.isCompleted() == newTask.isCompleted());
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Task oldTask, @NonNull Task newTask) {
+            return sameCard(oldTask, newTask) ? PAYLOAD_STATUS : null;
+        }
+    };
+
+    private final AsyncListDiffer<Task> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private final Context context;
     private TaskClickListener clickListener;
 
@@ -25,9 +53,27 @@ public class MyDayMapAdapter extends RecyclerView.Adapter<MyDayMapAdapter.TaskVi
     }
 
     public MyDayMapAdapter(List<Task> taskList, Context context, TaskClickListener listener) {
-        this.taskList = taskList;
         this.context = context;
         this.clickListener = listener;
+        setHasStableIds(true);
+        submitList(taskList);
+    }
+
+    /**
+     * @return true if everything the card shows other than the status is the same
+     */
+    private static boolean sameCard(Task oldTask, Task newTask) {
+        return Objects.equals(oldTask.getTitle(), newTask.getTitle())
+                && Objects.equals(oldTask.getType(), newTask.getType())
+                && Objects.equals(oldTask.getStartTime(), newTask.getStartTime())
+                && Objects.equals(oldTask.getEndTime(), newTask.getEndTime());
+    }
+
+    /**
+     * Show the given tasks. The list is copied, so the caller may keep changing its own.
+     */
+    public void submitList(List<Task> tasks) {
+        differ.submitList(tasks != null ? new ArrayList<>(tasks) : new ArrayList<>());
     }
 
     @NonNull
@@ -41,16 +87,33 @@ public class MyDayMapAdapter extends RecyclerView.Adapter<MyDayMapAdapter.TaskVi
     @Override
     public void onBindViewHolder(@NonNull TaskViewHolder holder, int position) {
         try {
-            Task task = taskList.get(position);
+            Task task = differ.getCurrentList().get(position);
             holder.bind(task);
         } catch (Exception e) {
             Log.e(TAG, "Error binding task view: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull TaskViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.contains(PAYLOAD_STATUS)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        Task task = differ.getCurrentList().get(position);
+        holder.bindStatus(task);
+        // The click listener hands out the task, so it has to see the new copy
+        holder.bindClick(task);
+    }
+
     @Override
     public int getItemCount() {
-        return taskList != null ? taskList.size() : 0;
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return TaskIds.stableId(differ.getCurrentList().get(position).getTaskId());
     }
 
     class TaskViewHolder extends RecyclerView.ViewHolder {
@@ -133,32 +196,39 @@ public class MyDayMapAdapter extends RecyclerView.Adapter<MyDayMapAdapter.TaskVi
                 timeTextView.setTextColor(textColor);
                 durationTextView.setTextColor(textColor);
                 
-                // Show status indicator based on completion status
-                if (statusIndicator != null) {
-                    statusIndicator.setVisibility(View.VISIBLE);
-                    if (task.isCompleted()) {
-                        GradientDrawable completedCircle = new GradientDrawable();
-                        completedCircle.setShape(GradientDrawable.OVAL);
-                        completedCircle.setColor(ContextCompat.getColor(context, R.color.completed_task));
-                        statusIndicator.setBackground(completedCircle);
-                    } else {
-                        GradientDrawable incompleteCircle = new GradientDrawable();
-                        incompleteCircle.setShape(GradientDrawable.OVAL);
-                        incompleteCircle.setColor(ContextCompat.getColor(context, R.color.task_indicator_circle));
-                        statusIndicator.setBackground(incompleteCircle);
-                    }
-                }
-                
-                // Set click listener for the whole card
-                itemView.setOnClickListener(v -> {
-                    if (clickListener != null) {
-                        clickListener.onTaskClicked(task);
-                    }
-                });
+                bindStatus(task);
+                bindClick(task);
             } catch (Exception e) {
                 Log.e(TAG, "Error binding task view: " + e.getMessage(), e);
             }
         }
+
+        void bindStatus(Task task) {
+            // Show status indicator based on completion status
+            if (statusIndicator != null) {
+                statusIndicator.setVisibility(View.VISIBLE);
+                if (task.isCompleted()) {
+                    GradientDrawable completedCircle = new GradientDrawable();
+                    completedCircle.setShape(GradientDrawable.OVAL);
+                    completedCircle.setColor(ContextCompat.getColor(context, R.color.completed_task));
+                    statusIndicator.setBackground(completedCircle);
+                } else {
+                    GradientDrawable incompleteCircle = new GradientDrawable();
+                    incompleteCircle.setShape(GradientDrawable.OVAL);
+                    incompleteCircle.setColor(ContextCompat.getColor(context, R.color.task_indicator_circle));
+                    statusIndicator.setBackground(incompleteCircle);
+                }
+            }
+        }
+
+        void bindClick(Task task) {
+            // Set click listener for the whole card
+            itemView.setOnClickListener(v -> {
+                if (clickListener != null) {
+                    clickListener.onTaskClicked(task);
+                }
+            });
+        }
     }
     
     private String calculateRemainingTime(String startTime, String endTime) {
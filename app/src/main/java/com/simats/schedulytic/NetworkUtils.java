@@ -1,6 +1,7 @@
 package com.simats.schedulytic;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
 import android.net.ConnectivityManager;
@@ -15,17 +16,11 @@ import com.android.volley.RequestQueue;
 import com.android.volley.ServerError;
 import com.android.volley.TimeoutError;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,11 +32,11 @@ public class NetworkUtils {
     private static RequestQueue requestQueue;
     
     /**
-     * Initialize the RequestQueue
+     * Initialize the RequestQueue (the shared one of {@link HttpTransport})
      */
     public static void initialize(Context context) {
         if (requestQueue == null) {
-            requestQueue = Volley.newRequestQueue(context.getApplicationContext());
+            requestQueue = HttpTransport.getInstance(context).getRequestQueue();
         }
     }
 
@@ -88,20 +83,18 @@ public class NetworkUtils {
             return false;
         }
         
-        // Try all possible URLs to ensure we can connect to at least one
-        String[] urlsToTry = {
-            IpV4Connection.getBaseUrl(),  // Use centralized IP configuration
-            "http://localhost/shedulytic/",
-            "http://10.0.2.2/shedulytic/"
-        };
-        
-        for (String urlToTest : urlsToTry) {
+        // Try the usable servers, best first, and feed the results back into their health
+        EndpointRegistry endpoints = EndpointRegistry.getInstance();
+        for (String urlToTest : endpoints.getCandidates()) {
             Log.d(TAG, "Testing connectivity to: " + urlToTest);
+            long startedAt = SystemClock.elapsedRealtime();
             boolean isReachable = testUrlConnectivity(urlToTest);
             if (isReachable) {
+                endpoints.recordSuccess(urlToTest, SystemClock.elapsedRealtime() - startedAt);
                 Log.d(TAG, "Successfully connected to: " + urlToTest);
                 return true;
             }
+            endpoints.recordFailure(urlToTest);
         }
         
         Log.e(TAG, "Could not connect to any server URLs");
@@ -112,66 +105,23 @@ public class NetworkUtils {
      * Test connectivity to a specific URL with detailed diagnostics
      */
     private static boolean testUrlConnectivity(String urlString) {
-        HttpURLConnection connection = null;
-        try {
-            // First try the URL directly
-            URL url = new URL(urlString);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setConnectTimeout(8000); // Increased timeout
-            connection.setReadTimeout(8000);    // Increased timeout
-            connection.setRequestMethod("GET");
-            connection.setDoOutput(false);
-            connection.setInstanceFollowRedirects(true); // Follow redirects
-            connection.setRequestProperty("Connection", "close");
-            connection.setRequestProperty("Accept", "*/*"); // Accept any content type
-            connection.setRequestProperty("Cache-Control", "no-cache, no-store, must-revalidate");
-            connection.setRequestProperty("Pragma", "no-cache");
-            connection.connect();
-            
-            int responseCode = connection.getResponseCode();
-            Log.d(TAG, "Response code from " + urlString + ": " + responseCode);
-            
-            // Accept any 2xx or 3xx response as success
-            if (responseCode >= 200 && responseCode < 400) {
-                Log.d(TAG, "Successfully connected to URL: " + urlString);
-                return true;
-            }
-            
-            // If that fails, try with ping.php
-            if (connection != null) {
-                connection.disconnect();
-            }
-            
-            // Ensure URL ends with a slash
-            String pingUrl = urlString;
-            if (!pingUrl.endsWith("/")) {
-                pingUrl += "/";
-            }
-            pingUrl += "ping.php";
-            
-            url = new URL(pingUrl);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setConnectTimeout(8000);
-            connection.setReadTimeout(8000);
-            connection.setRequestMethod("GET");
-            connection.setDoOutput(false);
-            connection.setInstanceFollowRedirects(true);
-            connection.setRequestProperty("Connection", "close");
-            connection.setRequestProperty("Accept", "*/*");
-            connection.connect();
-            
-            responseCode = connection.getResponseCode();
-            Log.d(TAG, "Response code from ping URL " + pingUrl + ": " + responseCode);
-            
-            return (responseCode >= 200 && responseCode < 400);
-        } catch (Exception e) {
-            Log.e(TAG, "Error testing URL " + urlString + ": " + e.getMessage());
-            return false;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
+        // Try the URL directly first
+        int responseCode = HttpTransport.probe(urlString, 8000);
+        Log.d(TAG, "Response code from " + urlString + ": " + responseCode);
+
+        // Accept any 2xx or 3xx response as success
+        if (responseCode >= 200 && responseCode < 400) {
+            Log.d(TAG, "Successfully connected to URL: " + urlString);
+            return true;
         }
+
+        // If that fails, try with ping.php
+        String pingUrl = urlString.endsWith("/") ? urlString : urlString + "/";
+        pingUrl += "ping.php";
+        responseCode = HttpTransport.probe(pingUrl, 8000);
+        Log.d(TAG, "Response code from ping URL " + pingUrl + ": " + responseCode);
+
+        return (responseCode >= 200 && responseCode < 400);
     }
 
     /**
@@ -209,43 +159,16 @@ public class NetworkUtils {
             initialize(context);
         }
         
-        // Test server connectivity before attempting the request
-        boolean isServerReachable = testServerConnectivity(context);
-        if (!isServerReachable) {
-            Log.e(TAG, "Server is not reachable");
-            
-            // Try with an alternative URL
-            final String fallbackUrl = IpV4Connection.getFallbackUrl();
-            if (!fallbackUrl.equals(url)) {
-                Log.d(TAG, "Trying with fallback URL: " + fallbackUrl);
-                makeJsonRequestWithUrl(context, fallbackUrl, jsonRequest, new JsonResponseCallback() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        callback.onSuccess(response);
-                    }
-                    
-                    @Override
-                    public void onError(String errorMessage) {
-                        // If even the fallback URL fails, provide a clear error message
-                        callback.onError("Could not connect to server. Please check your connection and try again later.");
-                    }
-                });
-                return;
-            }
-            
-            callback.onError("Server is not reachable. Please check your connection and try again later.");
-            return;
-        }
-        
-        // Proceed with the JSON request
-        makeJsonRequestWithUrl(context, url, jsonRequest, callback);
+        // No blocking reachability check first: the URL was built on the healthiest
+        // server and a connection failure falls back to the next one
+        makeJsonRequestWithUrl(context, url, jsonRequest, callback, true);
     }
     
     /**
      * Internal method to make a JSON request to a specific URL
      */
     private static void makeJsonRequestWithUrl(Context context, String url, JSONObject jsonRequest,
-                                             final JsonResponseCallback callback) {
+                                             final JsonResponseCallback callback, boolean allowFallback) {
         // Create a JSON request with the provided data
         Log.d(TAG, "Making JSON request to URL: " + url);
         if (jsonRequest != null) {
@@ -258,8 +181,10 @@ public class NetworkUtils {
         final float BACKOFF_MULTIPLIER = 1.5f;
         
         int method = (jsonRequest == null) ? Request.Method.GET : Request.Method.POST;
+        EndpointRegistry endpoints = EndpointRegistry.getInstance();
+        long startedAt = SystemClock.elapsedRealtime();
         
-        JsonObjectRequest request = new JsonObjectRequest(method, url, jsonRequest,
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(method, url, jsonRequest, JsonStreams::readObject,
             response -> {
                 try {
                     if (response == null) {
@@ -268,6 +193,7 @@ public class NetworkUtils {
                         return;
                     }
                     
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
                     Log.d(TAG, "Response: " + response.toString());
                     
                     // Process the response
@@ -280,13 +206,14 @@ public class NetworkUtils {
             error -> {
                 String errorMessage = getVolleyErrorMessage(error, url);
                 Log.e(TAG, "Request error: " + errorMessage);
+                endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                 
                 // Try fallback URL if the error suggests connectivity issues
-                if (error instanceof TimeoutError || error instanceof NoConnectionError || error instanceof NetworkError) {
-                    String fallbackUrl = IpV4Connection.getFallbackUrl();
-                    if (!fallbackUrl.equals(url)) {
+                if (allowFallback && EndpointRegistry.isConnectivityError(error)) {
+                    String fallbackUrl = endpoints.getFallbackUrl(url);
+                    if (fallbackUrl != null) {
                         Log.d(TAG, "Trying fallback URL after error: " + fallbackUrl);
-                        makeJsonRequestWithUrl(context, fallbackUrl, jsonRequest, callback);
+                        makeJsonRequestWithUrl(context, fallbackUrl, jsonRequest, callback, false);
                         return;
                     }
                 }
@@ -317,6 +244,11 @@ public class NetworkUtils {
      * Make a GET request with robust error handling and connectivity testing
      */
     public static void makeGetRequest(Context context, String url, final JsonResponseCallback callback) {
+        makeGetRequest(context, url, callback, true);
+    }
+
+    private static void makeGetRequest(Context context, String url, final JsonResponseCallback callback,
+                                       boolean allowFallback) {
         Log.d(TAG, "Making GET request to: " + url);
         
         // Check network connectivity
@@ -338,8 +270,11 @@ public class NetworkUtils {
         final int MAX_RETRIES = 3;
         final float BACKOFF_MULTIPLIER = 1.5f;
         
+        EndpointRegistry endpoints = EndpointRegistry.getInstance();
+        long startedAt = SystemClock.elapsedRealtime();
+
         // Create the GET request
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.GET, url, null,
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(Request.Method.GET, url, null, JsonStreams::readObject,
             response -> {
                 try {
                     if (response == null) {
@@ -348,6 +283,7 @@ public class NetworkUtils {
                         return;
                     }
                     
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
                     Log.d(TAG, "GET response: " + response.toString());
                     
                     // Process the response
@@ -360,13 +296,14 @@ public class NetworkUtils {
             error -> {
                 String errorMessage = getVolleyErrorMessage(error, url);
                 Log.e(TAG, "GET request error: " + errorMessage);
+                endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                 
                 // Try fallback URL if the error suggests connectivity issues
-                if (error instanceof TimeoutError || error instanceof NoConnectionError || error instanceof NetworkError) {
-                    String fallbackUrl = IpV4Connection.getFallbackUrl();
-                    if (!fallbackUrl.equals(url)) {
+                if (EndpointRegistry.isConnectivityError(error)) {
+                    String fallbackUrl = allowFallback ? endpoints.getFallbackUrl(url) : null;
+                    if (fallbackUrl != null) {
                         Log.d(TAG, "Trying fallback URL after GET error: " + fallbackUrl);
-                        makeGetRequest(context, fallbackUrl, callback);
+                        makeGetRequest(context, fallbackUrl, callback, false);
                         return;
                     }
                     
@@ -467,7 +404,7 @@ public class NetworkUtils {
         final float BACKOFF_MULTIPLIER = 1.0f;
         
         // Create the GET request for this alternative path
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.GET, url, null,
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(Request.Method.GET, url, null, JsonStreams::readObject,
             response -> {
                 Log.d(TAG, "Alternative streak path succeeded: " + path);
                 callback.onSuccess(response);
@@ -521,7 +458,6 @@ public class NetworkUtils {
     // Helper method to add common headers to requests
     private static Map<String, String> getCommonHeaders() {
         Map<String, String> headers = new HashMap<>();
-        headers.put("Connection", "close"); // Prevent connection reuse issues
         headers.put("Accept", "application/json");
         headers.put("Content-Type", "application/json; charset=utf-8");
         return headers;
@@ -746,8 +682,11 @@ public class NetworkUtils {
         }
     }
 
-    // Helper method to clean JSON response string with improved error handling
-    private static String cleanJsonResponse(String response) {
+    /**
+     * Strip HTML/PHP noise around a JSON body. Only used by {@link JsonStreams} once strict
+     * parsing of a response has already failed.
+     */
+    static String cleanJsonResponse(String response) {
         if (response == null || response.trim().isEmpty()) {
             return null;
         }
@@ -963,54 +902,4 @@ public class NetworkUtils {
         
         return null;
     }
-
-    // Helper method to handle JSON parsing and validation with improved error handling
-    private static JSONObject parseAndValidateJson(String jsonString, JsonResponseCallback callback) throws JSONException {
-        if (jsonString == null || jsonString.trim().isEmpty()) {
-            throw new JSONException("Empty response");
-        }
-
-        // First try cleaning the response if it contains HTML tags or suspicious characters
-        if (jsonString.contains("<") || jsonString.contains(">") || 
-            !jsonString.startsWith("{") && !jsonString.startsWith("[")) {
-            jsonString = cleanJsonResponse(jsonString);
-            if (jsonString == null) {
-                throw new JSONException("Invalid response after cleaning");
-            }
-        }
-
-        try {
-            JSONObject jsonResponse = new JSONObject(jsonString);
-            
-            // Check for different error response formats
-            if (jsonResponse.has("error")) {
-                String errorMsg = jsonResponse.getString("error");
-                callback.onError(errorMsg);
-                return null;
-            }
-            
-            if (jsonResponse.has("status") && jsonResponse.getString("status").equals("error")) {
-                String errorMsg = jsonResponse.optString("message", "Unknown error occurred");
-                callback.onError(errorMsg);
-                return null;
-            }
-
-            return jsonResponse;
-        } catch (JSONException e) {
-            // If it's not a JSON object, try parsing as a JSON array wrapped in an object
-            if (jsonString.startsWith("[")) {
-                try {
-                    JSONArray jsonArray = new JSONArray(jsonString);
-                    JSONObject wrapper = new JSONObject();
-                    wrapper.put("data", jsonArray);
-                    return wrapper;
-                } catch (JSONException e2) {
-                    // If that fails too, rethrow the original exception
-                    throw e;
-                }
-            } else {
-                throw e;
-            }
-        }
-    }
 }
@@ -21,10 +21,10 @@ import android.widget.Toast;
 
 import androidx.core.app.NotificationCompat;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class NotificationHandler {
@@ -34,6 +34,8 @@ public class NotificationHandler {
     private static final String WORKFLOW_CHANNEL_ID = "workflow_channel";
     private static final String REMINDER_CHANNEL_ID = "reminder_channel";
     private static final int NOTIFICATION_ID = 1000;
+    // Repeating tasks get alarms for this many days ahead
+    public static final int ALARM_HORIZON_DAYS = 7;
     
     // Notification types
     public static final String TYPE_WORKFLOW_START = "workflow_start";
@@ -53,10 +55,21 @@ public class NotificationHandler {
     private Context context;
     private NotificationManager notificationManager;
       public NotificationHandler(Context context) {
+        this(context, true);
+    }
+
+    /**
+     * @param promptForExactAlarms Whether to send the user to the exact alarm settings if
+     * the permission is missing; false for background work such as the boot restore,
+     * which has no UI thread to show the prompt on
+     */
+    public NotificationHandler(Context context, boolean promptForExactAlarms) {
         this.context = context;
         this.notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
         createNotificationChannels();
-        checkAndRequestExactAlarmPermission();
+        if (promptForExactAlarms) {
+            checkAndRequestExactAlarmPermission();
+        }
     }
       private void createNotificationChannels() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -142,22 +155,33 @@ public class NotificationHandler {
         }
         return true; // Always true for Android < 12
     }
-      public void scheduleTaskNotification(Task task) {
+    public void scheduleTaskNotification(Task task) {
         try {
             Log.d(TAG, "Scheduling notification for task: " + task.getTitle() + " Type: " + task.getType());
             
-            // Schedule based on task type
-            if (task.isWorkflow()) {
-                // For workflow tasks, schedule notifications at start and end times
-                scheduleWorkflowStartNotification(task);
-                scheduleWorkflowEndNotification(task);
-                
-                // Schedule intermediate reminders for longer workflows
-                scheduleWorkflowReminders(task);
-                
-            } else if (task.isRemainder()) {
-                // For remainder tasks, schedule a single notification at the start time
-                scheduleRemainderNotification(task);
+            // One-off tasks have a single occurrence; repeating ones get alarms for each
+            // occurrence in the horizon and are topped up whenever tasks are scheduled again
+            List<RecurrenceEngine.Occurrence> occurrences = RecurrenceEngine.getInstance()
+                    .upcoming(task, System.currentTimeMillis(), ALARM_HORIZON_DAYS);
+            if (occurrences.isEmpty()) {
+                Log.w(TAG, "No occurrence to schedule for task: " + task.getTitle());
+                return;
+            }
+            
+            for (RecurrenceEngine.Occurrence occurrence : occurrences) {
+                // Schedule based on task type
+                if (task.isWorkflow()) {
+                    // For workflow tasks, schedule notifications at start and end times
+                    scheduleWorkflowStartNotification(task, occurrence);
+                    scheduleWorkflowEndNotification(task, occurrence);
+                    
+                    // Schedule intermediate reminders for longer workflows
+                    scheduleWorkflowReminders(task, occurrence);
+                    
+                } else if (task.isRemainder()) {
+                    // For remainder tasks, schedule a single notification at the start time
+                    scheduleRemainderNotification(task, occurrence);
+                }
             }
         } catch (Exception e) {
             Log.e(TAG, "Error scheduling notification: ", e);
@@ -166,200 +190,51 @@ public class NotificationHandler {
     
     /**
      * Schedule intermediate reminders for long workflow tasks
-     */    private void scheduleWorkflowReminders(Task task) throws ParseException {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        SimpleDateFormat datetimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        
-        Date taskDate = dateFormat.parse(task.getDueDate());
-        
-        // Parse start and end times properly
-        String startTimeStr = task.getStartTime();
-        String endTimeStr = task.getEndTime();
-        Date startDateTime, endDateTime;
-        
-        if (startTimeStr != null && startTimeStr.contains(" ")) {
-            // Full datetime format: "YYYY-MM-DD HH:MM:SS"
-            startDateTime = datetimeFormat.parse(startTimeStr);
-            endDateTime = datetimeFormat.parse(endTimeStr);
-        } else {
-            // Fallback for time-only format: "HH:MM"
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            Date startTime = timeFormat.parse(startTimeStr);
-            Date endTime = timeFormat.parse(endTimeStr);
-            
-            Calendar startCal = Calendar.getInstance();
-            startCal.setTime(taskDate);
-            Calendar tempTimeCal = Calendar.getInstance();
-            tempTimeCal.setTime(startTime);
-            startCal.set(Calendar.HOUR_OF_DAY, tempTimeCal.get(Calendar.HOUR_OF_DAY));
-            startCal.set(Calendar.MINUTE, tempTimeCal.get(Calendar.MINUTE));
-            startCal.set(Calendar.SECOND, 0);
-            startDateTime = startCal.getTime();
-            
-            Calendar endCal = Calendar.getInstance();
-            endCal.setTime(taskDate);
-            tempTimeCal.setTime(endTime);
-            endCal.set(Calendar.HOUR_OF_DAY, tempTimeCal.get(Calendar.HOUR_OF_DAY));
-            endCal.set(Calendar.MINUTE, tempTimeCal.get(Calendar.MINUTE));
-            endCal.set(Calendar.SECOND, 0);
-            endDateTime = endCal.getTime();
-        }
-        
+     */
+    private void scheduleWorkflowReminders(Task task, RecurrenceEngine.Occurrence occurrence) {
         // Calculate task duration in minutes
-        long durationMs = endDateTime.getTime() - startDateTime.getTime();
+        long durationMs = occurrence.getEndMillis() - occurrence.getStartMillis();
         long durationMinutes = durationMs / (1000 * 60);
-          // Schedule reminders for workflows longer than 30 minutes
-        if (durationMinutes > 30) {
-            Calendar reminderTime = Calendar.getInstance();
-            reminderTime.setTime(startDateTime);
-            
+        
+        // Schedule reminders for workflows longer than 30 minutes
+        long reminderTime = occurrence.getStartMillis() + durationMs / 2;
+        if (durationMinutes > 30 && reminderTime > System.currentTimeMillis()) {
             // Add reminder at halfway point
-            reminderTime.add(Calendar.MINUTE, (int)(durationMinutes / 2));
             
             Intent intent = new Intent(context, NotificationReceiver.class);
             intent.putExtra("task_id", task.getTaskId());
             intent.putExtra("task_title", task.getTitle());
             intent.putExtra("notification_type", TYPE_WORKFLOW_REMINDER);
             
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    Integer.parseInt(task.getTaskId()) * 10 + 5,
-                    intent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-              scheduleExactNotification(intent, pendingIntent, reminderTime.getTimeInMillis());
+            scheduleExactNotification(task.getTaskId(), occurrenceKind(occurrence, "workflow_halfway"), intent, reminderTime);
             
             Log.d(TAG, "Scheduled workflow reminder for task: " + task.getTitle());
         }
     }
-      /**
+    
+    /**
      * Cancel all notifications for a specific task
      */
     public void cancelTaskNotifications(String taskId) {
         try {
-            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-            int taskIdInt = Integer.parseInt(taskId);
-            
-            // Cancel all scheduled notification alarms using the same PendingIntent patterns used in scheduling
-            
-            // Cancel start notification (ID: taskId * 10)
-            Intent startIntent = new Intent(context, NotificationReceiver.class);
-            PendingIntent startPendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    taskIdInt * 10,
-                    startIntent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            alarmManager.cancel(startPendingIntent);
-            
-            // Cancel end notification (ID: taskId * 10 + 1)
-            Intent endIntent = new Intent(context, NotificationReceiver.class);
-            PendingIntent endPendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    taskIdInt * 10 + 1,
-                    endIntent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            alarmManager.cancel(endPendingIntent);
-            
-            // Cancel reminder notification (ID: taskId * 10 + 2)
-            Intent reminderIntent = new Intent(context, NotificationReceiver.class);
-            PendingIntent reminderPendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    taskIdInt * 10 + 2,
-                    reminderIntent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            alarmManager.cancel(reminderPendingIntent);
-            
-            // Cancel workflow reminder notification (ID: taskId * 10 + 5)
-            Intent workflowReminderIntent = new Intent(context, NotificationReceiver.class);
-            PendingIntent workflowReminderPendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    taskIdInt * 10 + 5,
-                    workflowReminderIntent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            alarmManager.cancel(workflowReminderPendingIntent);
-            
-            // Cancel early reminder notification (ID: taskId * 10 + 3)
-            Intent earlyReminderIntent = new Intent(context, NotificationReceiver.class);
-            PendingIntent earlyReminderPendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    taskIdInt * 10 + 3,
-                    earlyReminderIntent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            alarmManager.cancel(earlyReminderPendingIntent);
-            
-            // Cancel warning reminder notification (ID: taskId * 10 + 7)
-            Intent warningReminderIntent = new Intent(context, NotificationReceiver.class);
-            PendingIntent warningReminderPendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    taskIdInt * 10 + 7,
-                    warningReminderIntent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            alarmManager.cancel(warningReminderPendingIntent);
-            
-            // Cancel snooze reminder notification (ID: taskId * 10 + 8)
-            Intent snoozeReminderIntent = new Intent(context, NotificationReceiver.class);
-            PendingIntent snoozeReminderPendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    taskIdInt * 10 + 8,
-                    snoozeReminderIntent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            alarmManager.cancel(snoozeReminderPendingIntent);
+            // All alarms of the task are rows in the alarm table; one delete removes them
+            AlarmScheduler.getInstance(context).cancelAll(taskId);
             
-            // Dismiss ALL active notifications for this task using different possible notification IDs
-            
-            // Main notification using taskId
-            notificationManager.cancel(taskIdInt);
-            
-            // Action-based notification IDs used by TaskActionReceiver
-            notificationManager.cancel((taskId + "_complete").hashCode());
-            notificationManager.cancel((taskId + "_extend").hashCode());
-            notificationManager.cancel((taskId + "_cant_complete").hashCode());
-            
-            // Notification IDs used by action buttons (taskId * 100 + offset pattern)
-            for (int offset = 0; offset <= 10; offset++) {
-                notificationManager.cancel(taskIdInt * 100 + offset);
-            }
+            // Dismiss the task's notification; every notification of a task is posted under its ID
+            notificationManager.cancel(TaskIds.notificationId(taskId));
             
             Log.d(TAG, "Cancelled all notifications and alarms for task: " + taskId);
             
-        } catch (NumberFormatException e) {
-            Log.e(TAG, "Invalid task ID format for cancellation: " + taskId, e);
         } catch (Exception e) {
             Log.e(TAG, "Error cancelling notifications for task: " + taskId, e);
         }
-    }private void scheduleWorkflowStartNotification(Task task) throws ParseException {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        SimpleDateFormat datetimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        
-        Date taskDate = dateFormat.parse(task.getDueDate());
-        
-        // Parse the full datetime format from getStartTime()
-        String startTimeStr = task.getStartTime();
-        Date startDateTime;
-        
-        if (startTimeStr != null && startTimeStr.contains(" ")) {
-            // Full datetime format: "YYYY-MM-DD HH:MM:SS"
-            startDateTime = datetimeFormat.parse(startTimeStr);
-        } else {
-            // Fallback for time-only format: "HH:MM"
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            Date startTime = timeFormat.parse(startTimeStr);
-            
-            Calendar tempCal = Calendar.getInstance();
-            tempCal.setTime(taskDate);
-            Calendar timeCal = Calendar.getInstance();
-            timeCal.setTime(startTime);
-            
-            tempCal.set(Calendar.HOUR_OF_DAY, timeCal.get(Calendar.HOUR_OF_DAY));
-            tempCal.set(Calendar.MINUTE, timeCal.get(Calendar.MINUTE));
-            tempCal.set(Calendar.SECOND, 0);
-            
-            startDateTime = tempCal.getTime();        }
-          Calendar calendar = Calendar.getInstance();
-        calendar.setTime(startDateTime);
+    }
+    
+    private void scheduleWorkflowStartNotification(Task task, RecurrenceEngine.Occurrence occurrence) {
+        long startTime = occurrence.getStartMillis();
         
         // Schedule 5 minutes before start time as well
-        Calendar earlyReminder = (Calendar) calendar.clone();
-        earlyReminder.add(Calendar.MINUTE, -5);
+        long earlyReminder = startTime - 5 * 60 * 1000L;
         
         // Create intent for early reminder
         Intent earlyIntent = new Intent(context, NotificationReceiver.class);
@@ -368,70 +243,30 @@ public class NotificationHandler {
         earlyIntent.putExtra("notification_type", TYPE_WORKFLOW_REMINDER);
         earlyIntent.putExtra("reminder_text", "Starting in 5 minutes");
         
-        PendingIntent earlyPendingIntent = PendingIntent.getBroadcast(
-                context,
-                Integer.parseInt(task.getTaskId()) * 10 + 6,
-                earlyIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-        
         // Create intent for start notification
         Intent intent = new Intent(context, NotificationReceiver.class);
         intent.putExtra("task_id", task.getTaskId());
         intent.putExtra("task_title", task.getTitle());
         intent.putExtra("notification_type", TYPE_WORKFLOW_START);
         
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                Integer.parseInt(task.getTaskId()) * 10,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-        
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-          // Schedule early reminder if it's in the future
-        if (earlyReminder.getTimeInMillis() > System.currentTimeMillis()) {
-            scheduleExactNotification(earlyIntent, earlyPendingIntent, earlyReminder.getTimeInMillis());
+        // Schedule early reminder if it's in the future
+        if (earlyReminder > System.currentTimeMillis()) {
+            scheduleExactNotification(task.getTaskId(), occurrenceKind(occurrence, "workflow_early"), earlyIntent, earlyReminder);
         }
         
-        // Schedule start notification
-        scheduleExactNotification(intent, pendingIntent, calendar.getTimeInMillis());
-        
-        Log.d(TAG, "Scheduled workflow start notification for: " + task.getTitle() + " at " + calendar.getTime());
-    }    private void scheduleWorkflowEndNotification(Task task) throws ParseException {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        SimpleDateFormat datetimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        
-        Date taskDate = dateFormat.parse(task.getDueDate());
-        
-        // Parse the full datetime format from getEndTime()
-        String endTimeStr = task.getEndTime();
-        Date endDateTime;
-        
-        if (endTimeStr != null && endTimeStr.contains(" ")) {
-            // Full datetime format: "YYYY-MM-DD HH:MM:SS"
-            endDateTime = datetimeFormat.parse(endTimeStr);
-        } else {
-            // Fallback for time-only format: "HH:MM"
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            Date endTime = timeFormat.parse(endTimeStr);
-            
-            Calendar tempCal = Calendar.getInstance();
-            tempCal.setTime(taskDate);
-            Calendar timeCal = Calendar.getInstance();
-            timeCal.setTime(endTime);
-            
-            tempCal.set(Calendar.HOUR_OF_DAY, timeCal.get(Calendar.HOUR_OF_DAY));
-            tempCal.set(Calendar.MINUTE, timeCal.get(Calendar.MINUTE));
-            tempCal.set(Calendar.SECOND, 0);
-            
-            endDateTime = tempCal.getTime();
+        // Schedule start notification unless the occurrence is already under way, e.g. after an extension
+        if (startTime > System.currentTimeMillis()) {
+            scheduleExactNotification(task.getTaskId(), occurrenceKind(occurrence, TYPE_WORKFLOW_START), intent, startTime);
         }
         
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(endDateTime);
+        Log.d(TAG, "Scheduled workflow start notification for: " + task.getTitle() + " at " + new Date(startTime));
+    }
+    
+    private void scheduleWorkflowEndNotification(Task task, RecurrenceEngine.Occurrence occurrence) {
+        long endTime = occurrence.getEndMillis();
         
         // Schedule 10 minutes before end time as well
-        Calendar warningReminder = (Calendar) calendar.clone();
-        warningReminder.add(Calendar.MINUTE, -10);
+        long warningReminder = endTime - 10 * 60 * 1000L;
         
         // Create intent for warning reminder
         Intent warningIntent = new Intent(context, NotificationReceiver.class);
@@ -440,67 +275,24 @@ public class NotificationHandler {
         warningIntent.putExtra("notification_type", TYPE_WORKFLOW_REMINDER);
         warningIntent.putExtra("reminder_text", "Ending in 10 minutes");
         
-        PendingIntent warningPendingIntent = PendingIntent.getBroadcast(
-                context,
-                Integer.parseInt(task.getTaskId()) * 10 + 7,
-                warningIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-        
         // Create intent for end notification
         Intent intent = new Intent(context, NotificationReceiver.class);
         intent.putExtra("task_id", task.getTaskId());
         intent.putExtra("task_title", task.getTitle());
         intent.putExtra("notification_type", TYPE_WORKFLOW_END);
         
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                Integer.parseInt(task.getTaskId()) * 10 + 1,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-        
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-          // Schedule warning reminder if it's in the future
-        if (warningReminder.getTimeInMillis() > System.currentTimeMillis()) {
-            scheduleExactNotification(warningIntent, warningPendingIntent, warningReminder.getTimeInMillis());
+        // Schedule warning reminder if it's in the future
+        if (warningReminder > System.currentTimeMillis()) {
+            scheduleExactNotification(task.getTaskId(), occurrenceKind(occurrence, "workflow_warning"), warningIntent, warningReminder);
         }
         
         // Schedule end notification
-        scheduleExactNotification(intent, pendingIntent, calendar.getTimeInMillis());
-        
-        Log.d(TAG, "Scheduled workflow end notification for: " + task.getTitle() + " at " + calendar.getTime());
-    }    private void scheduleRemainderNotification(Task task) throws ParseException {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        SimpleDateFormat datetimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        
-        Date taskDate = dateFormat.parse(task.getDueDate());
-        
-        // Parse the full datetime format from getStartTime()
-        String startTimeStr = task.getStartTime();
-        Date startDateTime;
-        
-        if (startTimeStr != null && startTimeStr.contains(" ")) {
-            // Full datetime format: "YYYY-MM-DD HH:MM:SS"
-            startDateTime = datetimeFormat.parse(startTimeStr);
-        } else {
-            // Fallback for time-only format: "HH:MM"
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            Date startTime = timeFormat.parse(startTimeStr);
-            
-            Calendar tempCal = Calendar.getInstance();
-            tempCal.setTime(taskDate);
-            Calendar timeCal = Calendar.getInstance();
-            timeCal.setTime(startTime);
-            
-            tempCal.set(Calendar.HOUR_OF_DAY, timeCal.get(Calendar.HOUR_OF_DAY));
-            tempCal.set(Calendar.MINUTE, timeCal.get(Calendar.MINUTE));
-            tempCal.set(Calendar.SECOND, 0);
-            
-            startDateTime = tempCal.getTime();
-        }
-        
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(startDateTime);
+        scheduleExactNotification(task.getTaskId(), occurrenceKind(occurrence, TYPE_WORKFLOW_END), intent, endTime);
         
+        Log.d(TAG, "Scheduled workflow end notification for: " + task.getTitle() + " at " + new Date(endTime));
+    }
+    
+    private void scheduleRemainderNotification(Task task, RecurrenceEngine.Occurrence occurrence) {
         // Create intent for notification
         Intent intent = new Intent(context, NotificationReceiver.class);
         intent.putExtra("task_id", task.getTaskId());
@@ -508,14 +300,16 @@ public class NotificationHandler {
         intent.putExtra("task_description", task.getDescription());
         intent.putExtra("notification_type", TYPE_REMINDER);
         
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                Integer.parseInt(task.getTaskId()) * 10 + 2,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-          scheduleExactNotification(intent, pendingIntent, calendar.getTimeInMillis());
+        scheduleExactNotification(task.getTaskId(), occurrenceKind(occurrence, TYPE_REMINDER), intent, occurrence.getStartMillis());
         
-        Log.d(TAG, "Scheduled reminder notification for: " + task.getTitle() + " at " + calendar.getTime());
+        Log.d(TAG, "Scheduled reminder notification for: " + task.getTitle() + " at " + new Date(occurrence.getStartMillis()));
+    }
+    
+    /**
+     * Alarm kind of one occurrence; repetitions carry their date so each one keeps its own alarm
+     */
+    private static String occurrenceKind(RecurrenceEngine.Occurrence occurrence, String kind) {
+        return occurrence.isFirst() ? kind : kind + ":" + occurrence.getDate();
     }
     
     /**
@@ -530,12 +324,7 @@ public class NotificationHandler {
         intent.putExtra("task_title", taskTitle);
         intent.putExtra("notification_type", TYPE_REMINDER_SNOOZE);
         
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                Integer.parseInt(taskId) * 10 + 8,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-          scheduleExactNotification(intent, pendingIntent, snoozeTime.getTimeInMillis());
+        scheduleExactNotification(taskId, TYPE_REMINDER_SNOOZE, intent, snoozeTime.getTimeInMillis());
         
         Log.d(TAG, "Scheduled snooze reminder for: " + taskTitle + " in " + snoozeMinutes + " minutes");
     }
@@ -623,7 +412,7 @@ public class NotificationHandler {
                 builder.setOngoing(true);
             }
             
-            notificationManager.notify(Integer.parseInt(taskId), builder.build());
+            notificationManager.notify(TaskIds.notificationId(taskId), builder.build());
         }
           private NotificationCompat.Builder createWorkflowStartNotification(Context context, String taskId, String taskTitle) {
             // Create RemoteViews for rich notification layout
@@ -639,7 +428,7 @@ public class NotificationHandler {
             startIntent.putExtra("task_id", taskId);
             startIntent.putExtra("action", ACTION_START_TASK);
             PendingIntent startPendingIntent = PendingIntent.getBroadcast(
-                    context, Integer.parseInt(taskId) * 100, startIntent, 
+                    context, TaskIds.requestCode(taskId, 0), startIntent, 
                     PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
             
             // Extend button - extends the start time
@@ -648,7 +437,7 @@ public class NotificationHandler {
             extendIntent.putExtra("action", ACTION_EXTEND_TASK);
             extendIntent.putExtra("extend_type", "start"); // Mark as start time extension
             PendingIntent extendPendingIntent = PendingIntent.getBroadcast(
-                    context, Integer.parseInt(taskId) * 100 + 4, extendIntent, 
+                    context, TaskIds.requestCode(taskId, 4), extendIntent, 
                     PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
             
             // Can't Start button
@@ -656,7 +445,7 @@ public class NotificationHandler {
             cantIntent.putExtra("task_id", taskId);
             cantIntent.putExtra("action", ACTION_CANT_COMPLETE);
             PendingIntent cantPendingIntent = PendingIntent.getBroadcast(
-                    context, Integer.parseInt(taskId) * 100 + 1, cantIntent, 
+                    context, TaskIds.requestCode(taskId, 1), cantIntent, 
                     PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
             
             // Set button click listeners for 3-button layout
@@ -694,7 +483,7 @@ public class NotificationHandler {
             completeIntent.putExtra("task_id", taskId);
             completeIntent.putExtra("action", ACTION_COMPLETE_TASK);
             PendingIntent completePendingIntent = PendingIntent.getBroadcast(
-                    context, Integer.parseInt(taskId) * 100 + 2, completeIntent, 
+                    context, TaskIds.requestCode(taskId, 2), completeIntent, 
                     PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
             
             // Extend button - extends the end time
@@ -703,7 +492,7 @@ public class NotificationHandler {
             extendIntent.putExtra("action", ACTION_EXTEND_TASK);
             extendIntent.putExtra("extend_type", "end"); // Mark as end time extension
             PendingIntent extendPendingIntent = PendingIntent.getBroadcast(
-                    context, Integer.parseInt(taskId) * 100 + 3, extendIntent, 
+                    context, TaskIds.requestCode(taskId, 3), extendIntent, 
                     PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
             
             // Can't Complete button
@@ -711,7 +500,7 @@ public class NotificationHandler {
             cantIntent.putExtra("task_id", taskId);
             cantIntent.putExtra("action", ACTION_CANT_COMPLETE);
             PendingIntent cantPendingIntent = PendingIntent.getBroadcast(
-                    context, Integer.parseInt(taskId) * 100 + 5, cantIntent, 
+                    context, TaskIds.requestCode(taskId, 5), cantIntent, 
                     PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
             
             // Set button click listeners for 3-button layout
@@ -764,21 +553,21 @@ public class NotificationHandler {
             gotItIntent.putExtra("task_id", taskId);
             gotItIntent.putExtra("action", ACTION_DISMISS_REMINDER);
             PendingIntent gotItPendingIntent = PendingIntent.getBroadcast(
-                    context, Integer.parseInt(taskId) * 100 + 4, gotItIntent, 
+                    context, TaskIds.requestCode(taskId, 4), gotItIntent, 
                     PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
             
             Intent skipIntent = new Intent(context, TaskActionReceiver.class);
             skipIntent.putExtra("task_id", taskId);
             skipIntent.putExtra("action", "skip_for_today");
             PendingIntent skipPendingIntent = PendingIntent.getBroadcast(
-                    context, Integer.parseInt(taskId) * 100 + 5, skipIntent, 
+                    context, TaskIds.requestCode(taskId, 5), skipIntent, 
                     PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
             
             Intent tomorrowIntent = new Intent(context, TaskActionReceiver.class);
             tomorrowIntent.putExtra("task_id", taskId);
             tomorrowIntent.putExtra("action", "reschedule_tomorrow");
             PendingIntent tomorrowPendingIntent = PendingIntent.getBroadcast(
-                    context, Integer.parseInt(taskId) * 100 + 6, tomorrowIntent, 
+                    context, TaskIds.requestCode(taskId, 6), tomorrowIntent, 
                     PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
             
             // Set button click listeners
@@ -861,7 +650,7 @@ public class NotificationHandler {
             // Dismiss the start notification and show ongoing notification
             NotificationManager notificationManager = 
                     (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            notificationManager.cancel(Integer.parseInt(taskId));
+            notificationManager.cancel(TaskIds.notificationId(taskId));
             
             // Show ongoing notification
             new NotificationHandler(context).showTaskInProgressNotification(context, taskId);
@@ -871,7 +660,7 @@ public class NotificationHandler {
             // Dismiss notification first
             NotificationManager notificationManager = 
                     (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            notificationManager.cancel(Integer.parseInt(taskId));
+            notificationManager.cancel(TaskIds.notificationId(taskId));
             
             // Check if task was extended - if so, no reward
             android.content.SharedPreferences prefs = context.getSharedPreferences("ExtendedTasks", Context.MODE_PRIVATE);
@@ -920,7 +709,7 @@ public class NotificationHandler {
             // Dismiss current notification
             NotificationManager notificationManager = 
                     (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            notificationManager.cancel(Integer.parseInt(taskId));
+            notificationManager.cancel(TaskIds.notificationId(taskId));
             
             // Schedule snooze reminder (15 minutes)
             NotificationHandler handler = new NotificationHandler(context);
@@ -932,7 +721,7 @@ public class NotificationHandler {
             // Dismiss notification
             NotificationManager notificationManager = 
                     (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            notificationManager.cancel(Integer.parseInt(taskId));
+            notificationManager.cancel(TaskIds.notificationId(taskId));
             
             // Optionally mark reminder as acknowledged
             TaskManager taskManager = new NotificationHandler(context).createTaskManager(context, taskId, "Reminder acknowledged");
@@ -943,7 +732,7 @@ public class NotificationHandler {
             // Dismiss notification first
             NotificationManager notificationManager = 
                     (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            notificationManager.cancel(Integer.parseInt(taskId));
+            notificationManager.cancel(TaskIds.notificationId(taskId));
             
             // Show dialog for rescheduling or canceling task
             Intent dialogIntent = new Intent(context, CantCompleteTaskActivity.class);
@@ -971,7 +760,7 @@ public class NotificationHandler {
             // Dismiss notification
             NotificationManager notificationManager = 
                     (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            notificationManager.cancel(Integer.parseInt(taskId));
+            notificationManager.cancel(TaskIds.notificationId(taskId));
             
             // Update task status
             TaskManager taskManager = new NotificationHandler(context).createTaskManager(context, taskId, "Task skipped for today");
@@ -984,7 +773,7 @@ public class NotificationHandler {
             // Dismiss current notification
             NotificationManager notificationManager = 
                     (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            notificationManager.cancel(Integer.parseInt(taskId));
+            notificationManager.cancel(TaskIds.notificationId(taskId));
             
             try {
                 // Schedule for tomorrow at the same time
@@ -992,15 +781,15 @@ public class NotificationHandler {
                 tomorrow.add(Calendar.DAY_OF_MONTH, 1);
                 
                 // Create rescheduled task
-                Task rescheduledTask = new Task();
-                rescheduledTask.setTaskId(taskId);
-                rescheduledTask.setTitle("Rescheduled Task");
-                
                 SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
                 SimpleDateFormat datetimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
                 
-                rescheduledTask.setDueDate(dateFormat.format(tomorrow.getTime()));
-                rescheduledTask.setStartTime(datetimeFormat.format(tomorrow.getTime()));
+                Task rescheduledTask = Task.builder()
+                        .taskId(taskId)
+                        .title("Rescheduled Task")
+                        .dueDate(dateFormat.format(tomorrow.getTime()))
+                        .startTime(datetimeFormat.format(tomorrow.getTime()))
+                        .build();
                   // Schedule new reminder
                 NotificationHandler handler = new NotificationHandler(context);
                 handler.scheduleReminderNotification(
@@ -1250,80 +1039,64 @@ public class NotificationHandler {
         }
         
         private void findTaskByIdAndExtend(TaskManager taskManager, String taskId, int extendMinutes) {
-            // First try to find the task in local storage
-            Task localTask = taskManager.getTaskById(taskId);
-            if (localTask != null) {
-                android.util.Log.d("ExtendTaskActivity", "Found task locally: " + localTask.getTitle());
-                extendTaskTime(localTask, extendMinutes);
-                return;
-            }
-            
-            // If not found locally, try loading tasks from multiple dates
-            // Tasks might not be on today's date, so we need broader search
+            // The shared task cache falls back to the local repository on a miss
+            taskManager.getTaskById(taskId, localTask -> {
+                if (isFinishing() || isDestroyed()) return;
+                if (localTask != null) {
+                    android.util.Log.d("ExtendTaskActivity", "Found task locally: " + localTask.getTitle());
+                    extendTaskTime(localTask, extendMinutes);
+                } else {
+                    searchTaskAndExtend(taskId, extendMinutes);
+                }
+            });
+        }
+        
+        private void searchTaskAndExtend(String taskId, int extendMinutes) {
+            // Not stored locally - fetch today's tasks once and look for it there
             SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            java.util.Calendar calendar = java.util.Calendar.getInstance();
+            String searchDate = dateFormat.format(new java.util.Date());
+            android.util.Log.d("ExtendTaskActivity", "Task not cached, searching server tasks for: " + searchDate);
             
-            // Search from 7 days ago to 7 days ahead to find the task
-            for (int dayOffset = -7; dayOffset <= 7; dayOffset++) {
-                calendar.setTime(new java.util.Date());
-                calendar.add(java.util.Calendar.DAY_OF_MONTH, dayOffset);
-                String searchDate = dateFormat.format(calendar.getTime());
+            TaskManager searchManager = new TaskManager(this, new TaskManager.TaskListener() {
+                private boolean handled = false;
                 
-                android.util.Log.d("ExtendTaskActivity", "Searching for task on date: " + searchDate);
-                
-                TaskManager searchManager = new TaskManager(this, new TaskManager.TaskListener() {
-                    @Override
-                    public void onTasksLoaded(java.util.List<Task> tasks) {
-                        for (Task task : tasks) {
-                            if (task.getTaskId().equals(taskId)) {
-                                android.util.Log.d("ExtendTaskActivity", "Found task: " + task.getTitle() + " on date: " + searchDate);
-                                extendTaskTime(task, extendMinutes);
-                                return;
-                            }
-                        }
-                        
-                        // If this is the last search attempt and no task found
-                        if (dayOffset == 7) {
-                            android.widget.Toast.makeText(ExtendTaskActivity.this, "❌ Task not found. It may have been deleted or moved.", android.widget.Toast.LENGTH_LONG).show();
-                            finish();
+                @Override
+                public void onTasksLoaded(java.util.List<Task> tasks) {
+                    if (handled) return;
+                    for (Task task : tasks) {
+                        if (task.getTaskId().equals(taskId)) {
+                            handled = true;
+                            android.util.Log.d("ExtendTaskActivity", "Found task: " + task.getTitle() + " on date: " + searchDate);
+                            extendTaskTime(task, extendMinutes);
+                            return;
                         }
                     }
-                    
-                    @Override
-                    public void onTaskAdded(Task task) {}
-                    
-                    @Override
-                    public void onTaskUpdated(Task task) {
-                        String successTimeText = extendMinutes == 60 ? "1 hour" : extendMinutes + " minutes";
-                        android.widget.Toast.makeText(ExtendTaskActivity.this, "✅ Task extended by " + successTimeText + " successfully!", android.widget.Toast.LENGTH_LONG).show();
-                        
-                        // Reschedule notifications for the extended task
-                        NotificationHandler handler = new NotificationHandler(ExtendTaskActivity.this);
-                        handler.cancelTaskNotifications(taskId);
-                        handler.scheduleTaskNotification(task);
-                        
+                }
+                
+                @Override
+                public void onTaskAdded(Task task) {}
+                
+                @Override
+                public void onTaskUpdated(Task task) {}
+                
+                @Override
+                public void onTaskDeleted(String taskId) {}
+                
+                @Override
+                public void onError(String message) {
+                    android.util.Log.e("ExtendTaskActivity", "Error searching for task: " + message);
+                    if (!handled) {
+                        handled = true;
+                        android.widget.Toast.makeText(ExtendTaskActivity.this, "❌ Task not found. It may have been deleted or moved.", android.widget.Toast.LENGTH_LONG).show();
                         finish();
                     }
-                    
-                    @Override
-                    public void onTaskDeleted(String taskId) {}
-                    
-                    @Override
-                    public void onError(String message) {
-                        android.util.Log.e("ExtendTaskActivity", "Error searching for task: " + message);
-                        // Continue searching other dates
-                    }
+                }
 
-                    @Override
-                    public void onHabitStreakUpdated(String taskId, int newStreak) {}
-                });
-                
-                searchManager.loadTasks(searchDate);
-                
-                // If we find the task, we'll exit early in onTasksLoaded
-                // For now, we break after starting the search to avoid overwhelming the system
-                break;
-            }
+                @Override
+                public void onHabitStreakUpdated(String taskId, int newStreak) {}
+            });
+            
+            searchManager.loadTasks(searchDate);
         }
           private void extendTaskTime(Task task, int extendMinutes) {
             try {
@@ -1371,16 +1144,11 @@ public class NotificationHandler {
                         // Dismiss notification
                         NotificationManager notificationManager = 
                                 (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-                        notificationManager.cancel(Integer.parseInt(task.getTaskId()));
+                        notificationManager.cancel(TaskIds.notificationId(task.getTaskId()));
                         
                         // Show updated notification for workflow end
                         if (task.isWorkflow()) {
-                            NotificationHandler handler = new NotificationHandler(ExtendTaskActivity.this);
-                            try {
-                                handler.scheduleWorkflowEndNotification(task);
-                            } catch (ParseException e) {
-                                Log.e("ExtendTaskActivity", "Error rescheduling notification", e);
-                            }
+                            new NotificationHandler(ExtendTaskActivity.this).scheduleTaskNotification(task);
                         }
                         finish();
                     }
@@ -1398,8 +1166,10 @@ public class NotificationHandler {
                     public void onHabitStreakUpdated(String taskId, int newStreak) {}
                 });
                 
-                taskManager.updateTaskTime(task.getTaskId(), task.getStartTime(), newEndTime);
-                taskManager.updateTaskCompletion(task.getTaskId(), false); // Task extended, so not completed
+                // Task extended, so not completed; both changes go to the server together
+                taskManager.updateTasksBatch(java.util.Arrays.asList(
+                    TaskManager.TaskUpdate.time(task.getTaskId(), task.getStartTime(), newEndTime),
+                    TaskManager.TaskUpdate.completion(task.getTaskId(), false)));
                 
             } catch (Exception e) {
                 Log.e("ExtendTaskActivity", "Error extending task time", e);
@@ -1515,7 +1285,7 @@ public class NotificationHandler {
             // Dismiss notification
             NotificationManager notificationManager = 
                     (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-            notificationManager.cancel(Integer.parseInt(taskId));
+            notificationManager.cancel(TaskIds.notificationId(taskId));
         }
         
         private void snoozeTask(String taskId, int minutes) {
@@ -1587,25 +1357,12 @@ public class NotificationHandler {
     }
 
     /**
-     * Fix timing precision by using setExactAndAllowWhileIdle for better accuracy
+     * Store the alarm with the shared scheduler, which keeps only the earliest alarm of
+     * the app registered with AlarmManager (exact and allowed while idle when permitted)
+     * @param kind Which of the task's alarms this is; scheduling the same kind again replaces it
      */
-    private void scheduleExactNotification(Intent intent, PendingIntent pendingIntent, long triggerTime) {
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        
-        try {
-            // Use setExactAndAllowWhileIdle for better timing precision
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
-            } else {
-                alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
-            }
-            
-            Log.d(TAG, "Scheduled exact notification for: " + new Date(triggerTime));
-        } catch (Exception e) {
-            Log.e(TAG, "Error scheduling exact notification: " + e.getMessage());
-            // Fallback to regular set if exact scheduling fails
-            alarmManager.set(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
-        }
+    private void scheduleExactNotification(String taskId, String kind, Intent intent, long triggerTime) {
+        AlarmScheduler.getInstance(context).schedule("task:" + taskId + ":" + kind, taskId, triggerTime, intent);
     }
     
     /**
@@ -1703,7 +1460,7 @@ public class NotificationHandler {
                 .addAction(R.drawable.ic_extend, "Extend", extendPendingIntent)
                 .addAction(R.drawable.ic_close, "Can't Complete", cantCompletePendingIntent);
             
-            notificationManager.notify(Integer.parseInt(taskId), builder.build());
+            notificationManager.notify(TaskIds.notificationId(taskId), builder.build());
             Log.d(TAG, "Showed task in progress notification for: " + taskId);
             
         } catch (Exception e) {
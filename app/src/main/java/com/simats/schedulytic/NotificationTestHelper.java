@@ -42,14 +42,15 @@ public class NotificationTestHelper {
             String startTimeStr = timeFormat.format(startTime.getTime());
             String endTimeStr = timeFormat.format(endTime.getTime());
             
-            Task testTask = new Task();
-            testTask.setTaskId("test_workflow_123");
-            testTask.setTitle("Test Workflow Task");
-            testTask.setDescription("Testing notification system");
-            testTask.setType("workflow");
-            testTask.setDueDate(today);
-            testTask.setStartTime(startTimeStr);
-            testTask.setEndTime(endTimeStr);
+            Task testTask = Task.builder()
+                    .taskId("test_workflow_123")
+                    .title("Test Workflow Task")
+                    .description("Testing notification system")
+                    .type("workflow")
+                    .dueDate(today)
+                    .startTime(startTimeStr)
+                    .endTime(endTimeStr)
+                    .build();
             
             // Schedule notifications for the test task
             notificationHandler.scheduleTaskNotification(testTask);
@@ -83,14 +84,15 @@ public class NotificationTestHelper {
             String today = dateFormat.format(new Date());
             String reminderTimeStr = timeFormat.format(reminderTime.getTime());
             
-            Task testTask = new Task();
-            testTask.setTaskId("test_reminder_456");
-            testTask.setTitle("Test Reminder Task");
-            testTask.setDescription("Don't forget to test this!");
-            testTask.setType("remainder");
-            testTask.setDueDate(today);
-            testTask.setStartTime(reminderTimeStr);
-            testTask.setEndTime(reminderTimeStr);
+            Task testTask = Task.builder()
+                    .taskId("test_reminder_456")
+                    .title("Test Reminder Task")
+                    .description("Don't forget to test this!")
+                    .type("remainder")
+                    .dueDate(today)
+                    .startTime(reminderTimeStr)
+                    .endTime(reminderTimeStr)
+                    .build();
             
             // Schedule notifications for the test task
             notificationHandler.scheduleTaskNotification(testTask);
@@ -170,14 +172,15 @@ public class NotificationTestHelper {
             String today = dateFormat.format(new Date());
             String testTimeStr = timeFormat.format(testTime.getTime());
             
-            Task basicTask = new Task();
-            basicTask.setTaskId("basic_test_001");
-            basicTask.setTitle("Basic Test Task");
-            basicTask.setDescription("Testing basic notification functionality");
-            basicTask.setType("workflow");
-            basicTask.setDueDate(today);
-            basicTask.setStartTime(testTimeStr);
-            basicTask.setEndTime(testTimeStr);
+            Task basicTask = Task.builder()
+                    .taskId("basic_test_001")
+                    .title("Basic Test Task")
+                    .description("Testing basic notification functionality")
+                    .type("workflow")
+                    .dueDate(today)
+                    .startTime(testTimeStr)
+                    .endTime(testTimeStr)
+                    .build();
             
             // Schedule basic notification
             notificationHandler.scheduleTaskNotification(basicTask);
@@ -179,24 +179,20 @@ public class NotificationUtils {
      * Generate unique notification ID for a task
      */
     public static int generateNotificationId(String taskId, String notificationType) {
-        try {
-            int baseId = Integer.parseInt(taskId);
-            switch (notificationType) {
-                case NotificationHandler.TYPE_WORKFLOW_START:
-                    return baseId * 10;
-                case NotificationHandler.TYPE_WORKFLOW_END:
-                    return baseId * 10 + 1;
-                case NotificationHandler.TYPE_REMINDER:
-                    return baseId * 10 + 2;
-                case NotificationHandler.TYPE_WORKFLOW_REMINDER:
-                    return baseId * 10 + 5;
-                case NotificationHandler.TYPE_REMINDER_SNOOZE:
-                    return baseId * 10 + 8;
-                default:
-                    return baseId;
-            }
-        } catch (NumberFormatException e) {
-            return taskId.hashCode();
+        int baseId = TaskIds.notificationId(taskId);
+        switch (notificationType) {
+            case NotificationHandler.TYPE_WORKFLOW_START:
+                return baseId * 10;
+            case NotificationHandler.TYPE_WORKFLOW_END:
+                return baseId * 10 + 1;
+            case NotificationHandler.TYPE_REMINDER:
+                return baseId * 10 + 2;
+            case NotificationHandler.TYPE_WORKFLOW_REMINDER:
+                return baseId * 10 + 5;
+            case NotificationHandler.TYPE_REMINDER_SNOOZE:
+                return baseId * 10 + 8;
+            default:
+                return baseId;
         }
     }
 }
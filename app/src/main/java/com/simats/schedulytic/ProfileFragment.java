@@ -18,8 +18,6 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
-import org.json.JSONObject;
-
 public class ProfileFragment extends Fragment {
     private static final String TAG = "ProfileFragment";
     
@@ -109,7 +107,7 @@ public class ProfileFragment extends Fragment {
     }
     
     /**
-     * Fetch latest XP from server to ensure ProfileFragment shows current data
+     * Reconcile the XP ledger with the server so ProfileFragment shows current data
      */
     private void fetchXPFromServer() {
         if (!isAdded()) return;
@@ -122,47 +120,12 @@ public class ProfileFragment extends Fragment {
             return;
         }
         
-        String url = VolleyNetworkManager.getInstance(requireContext()).getBaseUrl() + "get_user_profile.php?user_id=" + userId;
-        
-        VolleyNetworkManager.getInstance(requireContext()).makeGetRequest(
-                url,
-                new VolleyNetworkManager.JsonResponseListener() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        try {
-                            if (response.has("status") && "success".equals(response.getString("status"))) {
-                                int xpPoints = 0;
-                                if (response.has("xp_points")) {
-                                    xpPoints = response.getInt("xp_points");
-                                } else if (response.has("user") && response.getJSONObject("user").has("xp_points")) {
-                                    xpPoints = response.getJSONObject("user").getInt("xp_points");
-                                }
-                                
-                                // Update SharedPreferences with latest XP
-                                SharedPreferences.Editor editor = prefs.edit();
-                                editor.putInt("xp_points", xpPoints);
-                                editor.putInt("xp_coins", xpPoints);
-                                editor.putFloat("xp_points_float", (float) xpPoints);
-                                editor.apply();
-                                
-                                Log.d(TAG, "Fetched XP from server: " + xpPoints);
-                                
-                                // Refresh UI
-                                if (isAdded()) {
-                                    loadUserData();
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error parsing XP from server: " + e.getMessage());
-                        }
-                    }
-                    
-                    @Override
-                    public void onError(String message) {
-                        Log.e(TAG, "Error fetching XP from server: " + message);
-                    }
-                }
-        );
+        // XpLedger mirrors the balance and breakdown into UserPrefs, which loadUserData reads
+        XpLedger.getInstance(requireContext()).reconcile(() -> {
+            if (isAdded()) {
+                loadUserData();
+            }
+        });
     }
     
     private void setupCardClickListeners(View view) {
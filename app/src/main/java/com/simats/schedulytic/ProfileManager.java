@@ -25,14 +25,18 @@ public class ProfileManager {
         this.listener = listener;
     }
 
+    /**
+     * Fetch the profile on the io pool; the listener is called on the main thread
+     */
     public void loadUserProfile() {
-        new Thread(() -> {
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.io().execute(() -> {
             try {
                 SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
                 String userId = prefs.getString("user_id", "");
                 
                 if (userId.isEmpty()) {
-                    listener.onError("User ID not found");
+                    executors.runOnMain(() -> listener.onError("User ID not found"));
                     return;
                 }
 
@@ -59,18 +63,19 @@ public class ProfileManager {
                         String email = userData.getString("email");
                         String avatarUrl = userData.optString("avatar_url", "");
                         
-                        listener.onProfileLoaded(name, email, avatarUrl);
+                        executors.runOnMain(() -> listener.onProfileLoaded(name, email, avatarUrl));
                     } else {
-                        listener.onError(jsonResponse.optString("message", "Failed to load profile"));
+                        String message = jsonResponse.optString("message", "Failed to load profile");
+                        executors.runOnMain(() -> listener.onError(message));
                     }
                 } else {
-                    listener.onError("Server returned code: " + responseCode);
+                    executors.runOnMain(() -> listener.onError("Server returned code: " + responseCode));
                 }
                 
             } catch (Exception e) {
                 Log.e(TAG, "Error loading profile: " + e.getMessage(), e);
-                listener.onError("Error: " + e.getMessage());
+                executors.runOnMain(() -> listener.onError("Error: " + e.getMessage()));
             }
-        }).start();
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,428 @@
+package com.simats.schedulytic;
+
+import android.util.Log;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Occurrences of repeating tasks, shared by the timeline, the task lists and alarm
+ * scheduling.
+ *
+ * A task's repeat value is a rule of the form {@code <frequency>[;days=MO,WE,FR][;until=YYYY-MM-DD]},
+ * where the frequency is none, daily, weekly or monthly; the plain values the server
+ * has always stored are valid rules. The task's own start and end are the first
+ * occurrence. Occurrences are produced lazily for a window of dates and only hold a
+ * reference to the task plus their own start and end, so nothing is copied. Expanding
+ * a list of tasks over a window is cached until one of the tasks changes.
+ */
+public class RecurrenceEngine {
+    private static final String TAG = "RecurrenceEngine";
+    private static final int MAX_CACHED_WINDOWS = 8;
+    private static RecurrenceEngine instance;
+
+    public enum Frequency { NONE, DAILY, WEEKLY, MONTHLY }
+
+    /**
+     * A parsed repeat value
+     */
+    public static final class Rule {
+        static final Rule NONE = new Rule(Frequency.NONE, EnumSet.noneOf(DayOfWeek.class), null);
+
+        private final Frequency frequency;
+        private final Set<DayOfWeek> days;
+        private final LocalDate until;
+
+        Rule(Frequency frequency, Set<DayOfWeek> days, LocalDate until) {
+            this.frequency = frequency;
+            this.days = days;
+            this.until = until;
+        }
+
+        public Frequency getFrequency() {
+            return frequency;
+        }
+
+        /**
+         * @return Weekdays a daily or weekly task is limited to; empty means no limit
+         */
+        public Set<DayOfWeek> getDays() {
+            return Collections.unmodifiableSet(days);
+        }
+
+        /**
+         * @return Last date an occurrence may fall on, or null if the task repeats forever
+         */
+        public LocalDate getUntil() {
+            return until;
+        }
+
+        public boolean repeats() {
+            return frequency != Frequency.NONE;
+        }
+    }
+
+    /**
+     * One occurrence of a task. The task is shared, not copied; read the times of this
+     * occurrence from here rather than from the task.
+     */
+    public static final class Occurrence {
+        private final Task task;
+        private final LocalDate date;
+        private final long startMillis;
+        private final long endMillis;
+        private final boolean first;
+
+        Occurrence(Task task, LocalDate date, long startMillis, long endMillis, boolean first) {
+            this.task = task;
+            this.date = date;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.first = first;
+        }
+
+        public Task getTask() {
+            return task;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        /**
+         * @return End of the occurrence; equal to the start for tasks without an end time
+         */
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        /**
+         * @return True for the task's own date, false for a repetition of it
+         */
+        public boolean isFirst() {
+            return first;
+        }
+    }
+
+    /**
+     * Where a task's occurrences start from: its first start and its length
+     */
+    private static final class Anchor {
+        final LocalDate date;
+        final LocalTime time;
+        final Duration duration;
+
+        Anchor(LocalDate date, LocalTime time, Duration duration) {
+            this.date = date;
+            this.time = time;
+            this.duration = duration;
+        }
+    }
+
+    private final Map<String, Rule> rules = new ConcurrentHashMap<>();
+    // Access-ordered, so the least recently used window is evicted first
+    private final Map<String, List<Occurrence>> expansions =
+            new LinkedHashMap<String, List<Occurrence>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<Occurrence>> eldest) {
+                    return size() > MAX_CACHED_WINDOWS;
+                }
+            };
+
+    private RecurrenceEngine() {
+    }
+
+    public static synchronized RecurrenceEngine getInstance() {
+        if (instance == null) {
+            instance = new RecurrenceEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Parse a repeat value. Unknown frequencies mean the task does not repeat;
+     * results are cached, so calling this per task per frame is cheap.
+     */
+    public Rule getRule(String repeat) {
+        if (repeat == null || repeat.isEmpty()) {
+            return Rule.NONE;
+        }
+        Rule rule = rules.get(repeat);
+        if (rule == null) {
+            rule = parseRule(repeat);
+            rules.put(repeat, rule);
+        }
+        return rule;
+    }
+
+    public boolean repeats(Task task) {
+        return getRule(task.getRepeatFrequency()).repeats();
+    }
+
+    /**
+     * Occurrences of the task starting on dates from..to inclusive, in order. Nothing
+     * is computed until the result is iterated.
+     */
+    public Iterable<Occurrence> occurrences(Task task, LocalDate from, LocalDate to) {
+        return () -> {
+            Anchor anchor = anchorOf(task);
+            if (anchor == null) {
+                return Collections.emptyIterator();
+            }
+            return new OccurrenceIterator(task, getRule(task.getRepeatFrequency()), anchor, from, to);
+        };
+    }
+
+    public boolean occursOn(Task task, LocalDate date) {
+        return occurrences(task, date, date).iterator().hasNext();
+    }
+
+    /**
+     * Occurrences of all tasks in the window, sorted by start. The result is cached per
+     * window and reused while none of the tasks' times or rules have changed.
+     */
+    public List<Occurrence> expand(List<Task> tasks, LocalDate from, LocalDate to) {
+        StringBuilder key = new StringBuilder().append(from).append("..").append(to);
+        for (Task task : tasks) {
+            key.append('|').append(task.getTaskId())
+                    .append(',').append(task.getStartTime())
+                    .append(',').append(task.getEndTime())
+                    .append(',').append(task.getDueDate())
+                    .append(',').append(task.getRepeatFrequency())
+                    .append(',').append(System.identityHashCode(task));
+        }
+        String cacheKey = key.toString();
+        synchronized (expansions) {
+            List<Occurrence> cached = expansions.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List<Occurrence> result = new ArrayList<>();
+        for (Task task : tasks) {
+            for (Occurrence occurrence : occurrences(task, from, to)) {
+                result.add(occurrence);
+            }
+        }
+        result.sort((a, b) -> Long.compare(a.getStartMillis(), b.getStartMillis()));
+        result = Collections.unmodifiableList(result);
+        synchronized (expansions) {
+            expansions.put(cacheKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Occurrences to set alarms for: those of the next horizonDays that have not ended
+     * by fromMillis. A task that does not repeat yields its single occurrence however
+     * far ahead or behind it is, as alarms for one-off tasks always have.
+     */
+    public List<Occurrence> upcoming(Task task, long fromMillis, int horizonDays) {
+        List<Occurrence> result = new ArrayList<>();
+        if (!repeats(task)) {
+            Anchor anchor = anchorOf(task);
+            if (anchor != null) {
+                result.add(occurrenceOn(task, anchor, anchor.date));
+            }
+            return result;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate from = Instant.ofEpochMilli(fromMillis).atZone(zone).toLocalDate();
+        for (Occurrence occurrence : occurrences(task, from, from.plusDays(horizonDays))) {
+            if (occurrence.getEndMillis() > fromMillis) {
+                result.add(occurrence);
+            }
+        }
+        return result;
+    }
+
+    private static Rule parseRule(String repeat) {
+        String[] parts = repeat.trim().toLowerCase(Locale.ROOT).split(";");
+        Frequency frequency;
+        switch (parts[0].trim()) {
+            case "daily":
+                frequency = Frequency.DAILY;
+                break;
+            case "weekly":
+                frequency = Frequency.WEEKLY;
+                break;
+            case "monthly":
+                frequency = Frequency.MONTHLY;
+                break;
+            default:
+                return Rule.NONE;
+        }
+
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        LocalDate until = null;
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i].trim();
+            try {
+                if (part.startsWith("days=")) {
+                    for (String day : part.substring(5).split(",")) {
+                        DayOfWeek dayOfWeek = parseDay(day.trim());
+                        if (dayOfWeek != null) {
+                            days.add(dayOfWeek);
+                        }
+                    }
+                } else if (part.startsWith("until=")) {
+                    until = LocalDate.parse(part.substring(6));
+                }
+            } catch (DateTimeParseException e) {
+                Log.w(TAG, "Ignoring bad part of repeat rule " + repeat + ": " + part);
+            }
+        }
+        return new Rule(frequency, days, until);
+    }
+
+    private static DayOfWeek parseDay(String day) {
+        switch (day) {
+            case "mo": return DayOfWeek.MONDAY;
+            case "tu": return DayOfWeek.TUESDAY;
+            case "we": return DayOfWeek.WEDNESDAY;
+            case "th": return DayOfWeek.THURSDAY;
+            case "fr": return DayOfWeek.FRIDAY;
+            case "sa": return DayOfWeek.SATURDAY;
+            case "su": return DayOfWeek.SUNDAY;
+            default: return null;
+        }
+    }
+
+    /**
+     * First start and duration of a task, from the epoch times it parsed when its
+     * time strings were set
+     * @return null if the task has no readable start
+     */
+    private static Anchor anchorOf(Task task) {
+        if (task.getStartMillis() < 0) {
+            return null;
+        }
+        LocalDateTime start = Instant.ofEpochMilli(task.getStartMillis())
+                .atZone(ZoneId.systemDefault()).toLocalDateTime();
+        Duration duration = task.getEndMillis() >= 0
+                ? Duration.ofMillis(Math.max(0, task.getEndMillis() - task.getStartMillis()))
+                : Duration.ZERO;
+        return new Anchor(start.toLocalDate(), start.toLocalTime(), duration);
+    }
+
+    private static Occurrence occurrenceOn(Task task, Anchor anchor, LocalDate date) {
+        ZonedDateTime start = date.atTime(anchor.time).atZone(ZoneId.systemDefault());
+        long startMillis = start.toInstant().toEpochMilli();
+        long endMillis = start.plus(anchor.duration).toInstant().toEpochMilli();
+        return new Occurrence(task, date, startMillis, endMillis, date.equals(anchor.date));
+    }
+
+    /**
+     * Walks the dates of one task's occurrences inside a window. It starts at the first
+     * candidate on or after the window start instead of stepping from the first
+     * occurrence, so far-off windows cost the same as near ones.
+     */
+    private static final class OccurrenceIterator implements Iterator<Occurrence> {
+        private final Task task;
+        private final Rule rule;
+        private final Anchor anchor;
+        private final LocalDate last;
+        private LocalDate next;
+        // Periods since the first occurrence; monthly dates are derived from the anchor
+        // every time so a 31st does not drift to the 28th after February
+        private long period;
+
+        OccurrenceIterator(Task task, Rule rule, Anchor anchor, LocalDate from, LocalDate to) {
+            this.task = task;
+            this.rule = rule;
+            this.anchor = anchor;
+            this.last = rule.until != null && rule.until.isBefore(to) ? rule.until : to;
+            this.next = first(from.isAfter(anchor.date) ? from : anchor.date);
+        }
+
+        private LocalDate first(LocalDate start) {
+            switch (rule.frequency) {
+                case NONE:
+                    return anchor.date.equals(start) ? start : null;
+                case MONTHLY: {
+                    period = ChronoUnit.MONTHS.between(anchor.date.withDayOfMonth(1), start.withDayOfMonth(1));
+                    LocalDate date = anchor.date.plusMonths(period);
+                    if (date.isBefore(start)) {
+                        date = anchor.date.plusMonths(++period);
+                    }
+                    return date;
+                }
+                case WEEKLY:
+                    if (rule.days.isEmpty()) {
+                        period = (ChronoUnit.DAYS.between(anchor.date, start) + 6) / 7;
+                        return anchor.date.plusWeeks(period);
+                    }
+                    return matchingDay(start);
+                case DAILY:
+                default:
+                    return rule.days.isEmpty() ? start : matchingDay(start);
+            }
+        }
+
+        private LocalDate following(LocalDate date) {
+            switch (rule.frequency) {
+                case NONE:
+                    return null;
+                case MONTHLY:
+                    return anchor.date.plusMonths(++period);
+                case WEEKLY:
+                    return rule.days.isEmpty() ? date.plusWeeks(1) : matchingDay(date.plusDays(1));
+                case DAILY:
+                default:
+                    return rule.days.isEmpty() ? date.plusDays(1) : matchingDay(date.plusDays(1));
+            }
+        }
+
+        /**
+         * @return The first date on or after the given one that falls on an allowed weekday
+         */
+        private LocalDate matchingDay(LocalDate date) {
+            for (int i = 0; i < 7; i++) {
+                if (rule.days.contains(date.getDayOfWeek())) {
+                    return date;
+                }
+                date = date.plusDays(1);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null && !next.isAfter(last);
+        }
+
+        @Override
+        public Occurrence next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            LocalDate date = next;
+            next = following(date);
+            return occurrenceOn(task, anchor, date);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.simats.schedulytic;
 
-import android.app.AlarmManager;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
@@ -23,8 +22,8 @@ import androidx.core.app.NotificationCompat;
 import org.json.JSONObject;
 
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -60,12 +59,12 @@ public class ReminderNotificationManager {
     
     private Context context;
     private NotificationManager notificationManager;
-    private AlarmManager alarmManager;
+    private AlarmScheduler alarmScheduler;
     
     public ReminderNotificationManager(Context context) {
         this.context = context;
         this.notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        this.alarmScheduler = AlarmScheduler.getInstance(context);
         createNotificationChannels();
     }
     
@@ -117,21 +116,27 @@ public class ReminderNotificationManager {
                 return;
             }
             
-            long exactTimeMillis = parseTaskDateTime(task);
-            if (exactTimeMillis <= 0) {
+            // Repeating reminders get one pair of alarms per occurrence in the horizon
+            List<RecurrenceEngine.Occurrence> occurrences = RecurrenceEngine.getInstance().upcoming(
+                    task, System.currentTimeMillis(), NotificationHandler.ALARM_HORIZON_DAYS);
+            if (occurrences.isEmpty()) {
                 Log.e(TAG, "Failed to parse task time");
                 return;
             }
             
-            // Schedule 5-minute pre-reminder
-            long preReminderTime = exactTimeMillis - (5 * 60 * 1000); // 5 minutes before
-            if (preReminderTime > System.currentTimeMillis()) {
-                schedulePreReminder(task, preReminderTime);
-            }
-            
-            // Schedule exact time reminder
-            if (exactTimeMillis > System.currentTimeMillis()) {
-                scheduleExactReminder(task, exactTimeMillis);
+            for (RecurrenceEngine.Occurrence occurrence : occurrences) {
+                long exactTimeMillis = occurrence.getStartMillis();
+                
+                // Schedule 5-minute pre-reminder
+                long preReminderTime = exactTimeMillis - (5 * 60 * 1000); // 5 minutes before
+                if (preReminderTime > System.currentTimeMillis()) {
+                    schedulePreReminder(task, occurrence, preReminderTime);
+                }
+                
+                // Schedule exact time reminder
+                if (exactTimeMillis > System.currentTimeMillis()) {
+                    scheduleExactReminder(task, occurrence, exactTimeMillis);
+                }
             }
             
             Log.d(TAG, "Scheduled reminders for task: " + task.getTitle());
@@ -141,43 +146,7 @@ public class ReminderNotificationManager {
         }
     }
     
-    private long parseTaskDateTime(Task task) {
-        try {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            SimpleDateFormat fullFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-            
-            String startTimeStr = task.getStartTime();
-            String dueDateStr = task.getDueDate();
-            
-            Calendar calendar = Calendar.getInstance();
-            
-            if (startTimeStr != null && startTimeStr.contains(" ")) {
-                // Full datetime format
-                Date fullDate = fullFormat.parse(startTimeStr);
-                return fullDate.getTime();
-            } else {
-                // Time only format - combine with due date
-                Date dueDate = dateFormat.parse(dueDateStr);
-                Date startTime = timeFormat.parse(startTimeStr);
-                
-                calendar.setTime(dueDate);
-                Calendar timeCal = Calendar.getInstance();
-                timeCal.setTime(startTime);
-                
-                calendar.set(Calendar.HOUR_OF_DAY, timeCal.get(Calendar.HOUR_OF_DAY));
-                calendar.set(Calendar.MINUTE, timeCal.get(Calendar.MINUTE));
-                calendar.set(Calendar.SECOND, 0);
-                
-                return calendar.getTimeInMillis();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error parsing task datetime", e);
-            return -1;
-        }
-    }
-    
-    private void schedulePreReminder(Task task, long triggerTime) {
+    private void schedulePreReminder(Task task, RecurrenceEngine.Occurrence occurrence, long triggerTime) {
         Intent intent = new Intent(context, ReminderReceiver.class);
         intent.setAction(TYPE_PRE_REMINDER);
         intent.putExtra("task_id", task.getTaskId());
@@ -185,16 +154,11 @@ public class ReminderNotificationManager {
         intent.putExtra("task_description", task.getDescription());
         intent.putExtra("notification_type", TYPE_PRE_REMINDER);
         
-        int requestCode = (task.getTaskId() + "_pre").hashCode();
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context, requestCode, intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-        
-        scheduleExactAlarm(triggerTime, pendingIntent);
+        alarmScheduler.schedule(alarmKey(task.getTaskId(), TYPE_PRE_REMINDER, occurrence), task.getTaskId(), triggerTime, intent);
         Log.d(TAG, "Scheduled pre-reminder for: " + task.getTitle() + " at " + new Date(triggerTime));
     }
     
-    private void scheduleExactReminder(Task task, long triggerTime) {
+    private void scheduleExactReminder(Task task, RecurrenceEngine.Occurrence occurrence, long triggerTime) {
         Intent intent = new Intent(context, ReminderReceiver.class);
         intent.setAction(TYPE_EXACT_REMINDER);
         intent.putExtra("task_id", task.getTaskId());
@@ -202,33 +166,20 @@ public class ReminderNotificationManager {
         intent.putExtra("task_description", task.getDescription());
         intent.putExtra("notification_type", TYPE_EXACT_REMINDER);
         intent.putExtra("start_time", task.getStartTime());
-        intent.putExtra("due_date", task.getDueDate());
-        
-        int requestCode = (task.getTaskId() + "_exact").hashCode();
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context, requestCode, intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        intent.putExtra("due_date", occurrence.getDate().toString());
         
-        scheduleExactAlarm(triggerTime, pendingIntent);
+        alarmScheduler.schedule(alarmKey(task.getTaskId(), TYPE_EXACT_REMINDER, occurrence), task.getTaskId(), triggerTime, intent);
         Log.d(TAG, "Scheduled exact reminder for: " + task.getTitle() + " at " + new Date(triggerTime));
     }
     
-    private void scheduleExactAlarm(long triggerTime, PendingIntent pendingIntent) {
-        try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                if (alarmManager.canScheduleExactAlarms()) {
-                    alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
-                } else {
-                    alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
-                }
-            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
-            } else {
-                alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error scheduling exact alarm", e);
-        }
+    private static String alarmKey(String taskId, String type, RecurrenceEngine.Occurrence occurrence) {
+        String key = alarmKeyPrefix(taskId) + type;
+        // Repetitions carry their date so each occurrence keeps its own alarm
+        return occurrence.isFirst() ? key : key + ":" + occurrence.getDate();
+    }
+    
+    private static String alarmKeyPrefix(String taskId) {
+        return "reminder:" + taskId + ":";
     }
     
     /**
@@ -236,21 +187,8 @@ public class ReminderNotificationManager {
      */
     public void cancelReminderNotifications(String taskId) {
         try {
-            // Cancel pre-reminder
-            Intent preIntent = new Intent(context, ReminderReceiver.class);
-            int preRequestCode = (taskId + "_pre").hashCode();
-            PendingIntent prePendingIntent = PendingIntent.getBroadcast(
-                    context, preRequestCode, preIntent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            alarmManager.cancel(prePendingIntent);
-            
-            // Cancel exact reminder
-            Intent exactIntent = new Intent(context, ReminderReceiver.class);
-            int exactRequestCode = (taskId + "_exact").hashCode();
-            PendingIntent exactPendingIntent = PendingIntent.getBroadcast(
-                    context, exactRequestCode, exactIntent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            alarmManager.cancel(exactPendingIntent);
+            // Cancel pre-reminders and exact reminders of every occurrence
+            alarmScheduler.cancelPrefix(alarmKeyPrefix(taskId));
             
             // Cancel active notifications
             notificationManager.cancel(taskId.hashCode());
@@ -326,7 +264,7 @@ public class ReminderNotificationManager {
         
         // Snooze - Direct Activity intent (Android 12+ compatible) 
         Intent snoozeIntent = new Intent(context, SnoozePickerActivity.class);
-        snoozeIntent.putExtra("task_id", Integer.parseInt(taskId));
+        snoozeIntent.putExtra("task_id", taskId);
         snoozeIntent.putExtra("task_title", title);
         snoozeIntent.putExtra("notification_id", notificationId);
         snoozeIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
@@ -422,7 +360,7 @@ public class ReminderNotificationManager {
         }
         
         // Update task status in database
-        updateTaskStatusInDatabase(taskId, completionStatus, xpChange, callback);
+        updateTaskStatusInDatabase(taskId, completionStatus, xpChange, XpLedger.REASON_REMAINDER, callback);
     }
     
     /**
@@ -465,20 +403,30 @@ public class ReminderNotificationManager {
         }
         
         // Update task status in database
-        updateTaskStatusInDatabase(taskId, completionStatus, xpChange, callback);
+        updateTaskStatusInDatabase(taskId, completionStatus, xpChange, XpLedger.REASON_WORKFLOW, callback);
     }
     
-    private void updateTaskStatusInDatabase(String taskId, String status, double xpChange, TaskCompletionCallback callback) {
+    /**
+     * @param reason XpLedger reason of a reward; a negative xpChange is always a penalty
+     */
+    private void updateTaskStatusInDatabase(String taskId, String status, double xpChange, String reason, TaskCompletionCallback callback) {
         try {
             SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
             String userId = prefs.getString("user_id", "");
+            Date now = new Date();
+            // One ledger entry per task, day and status, so a retried request is not counted twice
+            String xpEntryKey = XpLedger.taskEntryKey(taskId,
+                    new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(now), status);
+            String xpReason = xpChange < 0 ? XpLedger.REASON_PENALTY : reason;
             
             JSONObject requestBody = new JSONObject();
             requestBody.put("task_id", taskId);
             requestBody.put("user_id", userId);
             requestBody.put("status", status);
             requestBody.put("xp_change", xpChange);
-            requestBody.put("completed_at", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date()));
+            requestBody.put("xp_entry_key", xpEntryKey);
+            requestBody.put("xp_reason", xpReason);
+            requestBody.put("completed_at", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(now));
             
             String url = VolleyNetworkManager.getInstance(context).getBaseUrl() + "complete_task_with_reward.php";
             
@@ -489,19 +437,13 @@ public class ReminderNotificationManager {
                         @Override
                         public void onSuccess(JSONObject response) {
                             Log.d(TAG, "Task status updated: " + response.toString());
+                            recordStatusChange(taskId, status, xpChange);
                             
-                            // Update SharedPreferences with new XP from server
-                            try {
-                                if (response.has("data")) {
-                                    JSONObject data = response.getJSONObject("data");
-                                    if (data.has("new_xp")) {
-                                        double newXp = data.getDouble("new_xp");
-                                        updateLocalXPAfterCompletion(newXp, xpChange, status);
-                                        Log.d(TAG, "Updated local XP to: " + newXp);
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error updating local XP: " + e.getMessage());
+                            // Record the XP the server applied (a penalty is capped at the balance)
+                            if (xpChange != 0) {
+                                JSONObject data = response.optJSONObject("data");
+                                double applied = data != null ? data.optDouble("xp_applied", xpChange) : xpChange;
+                                XpLedger.getInstance(context).record(xpEntryKey, applied, xpReason);
                             }
                             
                             if (callback != null) {
@@ -525,44 +467,21 @@ public class ReminderNotificationManager {
     }
     
     /**
-     * Update local XP in SharedPreferences after task completion
-     * This syncs the XP across HomeFragment and ProfileFragment
+     * Count the change in today's stats rollup and keep the cached task's status in
+     * step with the server, so that repeating the change is not counted twice. The task
+     * may have to be read from the repository, so this runs on the database thread.
      */
-    private void updateLocalXPAfterCompletion(double newXp, double xpChange, String status) {
-        SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        
-        // Update total XP (all keys used by different fragments)
-        editor.putInt("xp_points", (int) newXp);
-        editor.putInt("xp_coins", (int) newXp);
-        editor.putFloat("xp_points_float", (float) newXp);
-        
-        // Update reminder/workflow-specific XP breakdown if it was a reward
-        if (xpChange > 0 && "completed".equals(status)) {
-            // Determine if this was a workflow or reminder task based on XP value
-            // Workflow gives 2.5 XP, Reminder gives 2.0 XP
-            // Use threshold of 2.25 to reliably distinguish between them
-            if (xpChange > 2.25) {
-                // Workflow task (2.5 XP)
-                float workflowXP = prefs.getFloat("workflow_xp", 0f);
-                editor.putFloat("workflow_xp", workflowXP + (float) xpChange);
-                
-                int workflowCount = prefs.getInt("workflow_completed_count", 0);
-                editor.putInt("workflow_completed_count", workflowCount + 1);
-                Log.d(TAG, "Updated workflow XP: +" + xpChange + " (New total: " + (workflowXP + xpChange) + ")");
-            } else {
-                // Reminder task (2.0 XP)
-                float remainderXP = prefs.getFloat("remainder_xp", 0f);
-                editor.putFloat("remainder_xp", remainderXP + (float) xpChange);
-                
-                int remainderCount = prefs.getInt("remainder_completed_count", 0);
-                editor.putInt("remainder_completed_count", remainderCount + 1);
-                Log.d(TAG, "Updated reminder XP: +" + xpChange + " (New total: " + (remainderXP + xpChange) + ")");
+    private void recordStatusChange(String taskId, String status, double xpChange) {
+        AppExecutors.getInstance().db().execute(() -> {
+            StatsRepository stats = StatsRepository.getInstance(context);
+            stats.recordXp(xpChange);
+            TaskCache taskCache = TaskCache.getInstance(context);
+            Task task = taskCache.getTask(taskId);
+            stats.recordTaskStatus(task != null ? task.getStatus() : null, status);
+            if (task != null && !status.equalsIgnoreCase(task.getStatus())) {
+                taskCache.put(task.withStatus(status));
             }
-        }
-        
-        editor.apply();
-        Log.d(TAG, "Updated local XP - Total: " + newXp + ", Change: " + xpChange);
+        });
     }
     
     public interface TaskCompletionCallback {
@@ -12,15 +12,11 @@ import android.widget.EditText;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.simats.schedulytic.ui.login.IpV4Connection;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
 
 import org.json.JSONException;
 import org.json.JSONObject;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.util.Scanner;
 
 public class SignupActivity extends AppCompatActivity {
 
@@ -96,87 +92,66 @@ public class SignupActivity extends AppCompatActivity {
             return;
         }
 
-        new Thread(() -> {
-            try {
-                // URL of your PHP registration script
-                URL url = new URL(IpV4Connection.getBaseUrl() + "signup.php");
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("POST");
-                conn.setRequestProperty("Content-Type", "application/json");
-                conn.setDoOutput(true);
-
-                // Create JSON request body
-                JSONObject requestBody = new JSONObject();
-                requestBody.put("name", name);
-                requestBody.put("username", username);
-                requestBody.put("email", email);
-                requestBody.put("password", password);
-                requestBody.put("confirm_password", confirmPassword);
-
-                // Send the request
-                OutputStream os = conn.getOutputStream();
-                os.write(requestBody.toString().getBytes(StandardCharsets.UTF_8)); // Use StandardCharsets
-                os.close();
-
-                final int responseCode = conn.getResponseCode(); //  Get response code
-                if (responseCode != HttpURLConnection.HTTP_OK) {
-                    runOnUiThread(() -> Toast.makeText(SignupActivity.this, "Server error: " + responseCode, Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                // Read the response
-                Scanner scanner = new Scanner(conn.getInputStream(), StandardCharsets.UTF_8.name()); // Specify encoding
-                StringBuilder response = new StringBuilder();
-                while (scanner.hasNext()) {
-                    response.append(scanner.nextLine());
-                }
-                scanner.close();
+        // Create JSON request body
+        JSONObject requestBody = new JSONObject();
+        try {
+            requestBody.put("name", name);
+            requestBody.put("username", username);
+            requestBody.put("email", email);
+            requestBody.put("password", password);
+            requestBody.put("confirm_password", confirmPassword);
+        } catch (JSONException e) {
+            Log.e("Exception", "Error during registration: " + e.getMessage());
+            return;
+        }
 
-                final String finalResponse = response.toString(); // Store response for UI thread
+        // URL of your PHP registration script
+        String url = VolleyNetworkManager.getInstance(this).getBaseUrl() + "signup.php";
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(
+            Request.Method.POST, url, requestBody, JsonStreams::readObject,
+            jsonResponse -> {
+                String status = jsonResponse.optString("status", "error");
+                String message = jsonResponse.optString("message", "An error occurred");
 
-                // Parse the JSON response on the main thread
-                runOnUiThread(() -> {
+                if ("success".equals(status)) {
+                    // Store user ID if available in response
                     try {
-                        JSONObject jsonResponse = new JSONObject(finalResponse);
-                        String status = jsonResponse.optString("status", "error");
-                        String message = jsonResponse.optString("message", "An error occurred");
-
-                        if ("success".equals(status)) {
-                            // Store user ID if available in response
-                            try {
-                                if (jsonResponse.has("user")) {
-                                    JSONObject user = jsonResponse.getJSONObject("user");
-                                    if (user.has("user_id")) {
-                                        String userId = user.getString("user_id");
-                                        
-                                        // Store user_id in SharedPreferences
-                                        SharedPreferences prefs = getSharedPreferences("UserPrefs", MODE_PRIVATE);
-                                        SharedPreferences.Editor editor = prefs.edit();
-                                        editor.putString("user_id", userId);
-                                        editor.commit(); // Using commit instead of apply for immediate effect
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.e("User Data", "Error storing user data: " + e.getMessage());
+                        if (jsonResponse.has("user")) {
+                            JSONObject user = jsonResponse.getJSONObject("user");
+                            if (user.has("user_id")) {
+                                String userId = user.getString("user_id");
+
+                                // Store user_id in SharedPreferences
+                                SharedPreferences prefs = getSharedPreferences("UserPrefs", MODE_PRIVATE);
+                                SharedPreferences.Editor editor = prefs.edit();
+                                editor.putString("user_id", userId);
+                                editor.commit(); // Using commit instead of apply for immediate effect
                             }
-                            
-                            Toast.makeText(SignupActivity.this, message, Toast.LENGTH_SHORT).show();
-                            Intent intent = new Intent(SignupActivity.this, LoginActivity.class); // Redirect to login after signup
-                            startActivity(intent);
-                            finish();
-                        } else {
-                            Toast.makeText(SignupActivity.this, message, Toast.LENGTH_LONG).show();
                         }
-                    } catch (JSONException e) {
-                        Log.e("JSON Error", "Error parsing JSON: " + e.getMessage());
-                        Toast.makeText(SignupActivity.this, "Error parsing server response", Toast.LENGTH_LONG).show();
+                    } catch (Exception e) {
+                        Log.e("User Data", "Error storing user data: " + e.getMessage());
                     }
-                });
 
-            } catch (Exception e) {
-                Log.e("Exception", "Error during registration: " + e.getMessage());
-                runOnUiThread(() -> Toast.makeText(SignupActivity.this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show());
-            }
-        }).start();
+                    Toast.makeText(SignupActivity.this, message, Toast.LENGTH_SHORT).show();
+                    Intent intent = new Intent(SignupActivity.this, LoginActivity.class); // Redirect to login after signup
+                    startActivity(intent);
+                    finish();
+                } else {
+                    Toast.makeText(SignupActivity.this, message, Toast.LENGTH_LONG).show();
+                }
+            },
+            error -> {
+                if (error.networkResponse != null) {
+                    Toast.makeText(SignupActivity.this, "Server error: " + error.networkResponse.statusCode, Toast.LENGTH_SHORT).show();
+                } else if (error instanceof ParseError) {
+                    Log.e("JSON Error", "Error parsing JSON: " + error.getMessage());
+                    Toast.makeText(SignupActivity.this, "Error parsing server response", Toast.LENGTH_LONG).show();
+                } else {
+                    Log.e("Exception", "Error during registration: " + error);
+                    Toast.makeText(SignupActivity.this, "Error: " + error.getMessage(), Toast.LENGTH_LONG).show();
+                }
+            });
+        request.setShouldCache(false);
+        HttpTransport.getInstance(this).add(request);
     }
 }
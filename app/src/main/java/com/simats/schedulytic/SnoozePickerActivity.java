@@ -1,9 +1,6 @@
 package com.simats.schedulytic;
 
-import android.app.AlarmManager;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
@@ -34,7 +31,7 @@ public class SnoozePickerActivity extends AppCompatActivity {
     private LinearLayout customTimeContainer;
     private EditText etHours, etMinutes;
 
-    private int taskId;
+    private String taskId;
     private String taskTitle;
     private int notificationId;
 
@@ -44,7 +41,7 @@ public class SnoozePickerActivity extends AppCompatActivity {
         setContentView(R.layout.activity_snooze_picker);
 
         // Get data from intent
-        taskId = getIntent().getIntExtra("task_id", -1);
+        taskId = getIntent().getStringExtra("task_id");
         taskTitle = getIntent().getStringExtra("task_title");
         notificationId = getIntent().getIntExtra("notification_id", 0);
 
@@ -61,8 +58,8 @@ public class SnoozePickerActivity extends AppCompatActivity {
                 notificationManager.cancel(notificationId);
             }
             // Also cancel by task-based ID as fallback
-            notificationManager.cancel((String.valueOf(taskId) + "_exact").hashCode());
-            notificationManager.cancel((String.valueOf(taskId) + "_pre").hashCode());
+            notificationManager.cancel((taskId + "_exact").hashCode());
+            notificationManager.cancel((taskId + "_pre").hashCode());
         }
 
         // Provide haptic feedback
@@ -211,15 +208,12 @@ public class SnoozePickerActivity extends AppCompatActivity {
         });
         
         // Update task start time - TaskManager will combine with current date
-        taskManager.updateTaskTime(String.valueOf(taskId), newStartTime, null);
+        taskManager.updateTaskTime(taskId, newStartTime, null);
     }
 
     private void scheduleSnoozeReminder(int minutes) {
         long snoozeTime = System.currentTimeMillis() + (minutes * 60 * 1000L);
 
-        AlarmManager alarmManager = (AlarmManager) getSystemService(Context.ALARM_SERVICE);
-        if (alarmManager == null) return;
-
         // Create intent for the reminder
         Intent intent = new Intent(this, ReminderNotificationManager.ReminderReceiver.class);
         intent.setAction("com.simats.schedulytic.SNOOZE_REMINDER");
@@ -228,49 +222,8 @@ public class SnoozePickerActivity extends AppCompatActivity {
         intent.putExtra("is_pre_reminder", false);
         intent.putExtra("is_snooze", true);
 
-        // Use a unique request code for snooze
-        int requestCode = taskId + 20000; // Offset to avoid conflicts
-
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                this,
-                requestCode,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        // Schedule the alarm
-        try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                if (alarmManager.canScheduleExactAlarms()) {
-                    alarmManager.setExactAndAllowWhileIdle(
-                            AlarmManager.RTC_WAKEUP,
-                            snoozeTime,
-                            pendingIntent
-                    );
-                } else {
-                    alarmManager.setAndAllowWhileIdle(
-                            AlarmManager.RTC_WAKEUP,
-                            snoozeTime,
-                            pendingIntent
-                    );
-                }
-            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setExactAndAllowWhileIdle(
-                        AlarmManager.RTC_WAKEUP,
-                        snoozeTime,
-                        pendingIntent
-                );
-            } else {
-                alarmManager.setExact(
-                        AlarmManager.RTC_WAKEUP,
-                        snoozeTime,
-                        pendingIntent
-                );
-            }
-        } catch (SecurityException e) {
-            // Fallback if exact alarm permission not granted
-            alarmManager.set(AlarmManager.RTC_WAKEUP, snoozeTime, pendingIntent);
-        }
+        // Same key for every snooze of the task, so snoozing again moves the reminder
+        AlarmScheduler.getInstance(this).schedule("reminder:" + taskId + ":snooze", taskId, snoozeTime, intent);
     }
 
     private String formatSnoozeTime(int minutes) {
@@ -0,0 +1,281 @@
+package com.simats.schedulytic;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.simats.schedulytic.model.Habit;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Productivity counters per user and day, in the {@code daily_stats} table of
+ * {@link DatabaseHelper}: tasks done, skipped and extended, habits verified by each
+ * method, and the XP gained or lost.
+ *
+ * The counters are updated on every status change rather than recounted from the
+ * task and habit lists, so week, month and year totals are a primary-key range sum
+ * over at most 366 rows, however long the history is. Undoing a change subtracts it
+ * again; counters never go below zero.
+ *
+ * The record methods queue their write on {@link AppExecutors#db()} and can be
+ * called from any thread. The getters read the database; call them on
+ * {@link AppExecutors#db()}.
+ */
+public class StatsRepository {
+    private static final String TAG = "StatsRepository";
+    private static final String TABLE_DAILY_STATS = "daily_stats";
+
+    // Positions of the counters passed to add(), in column order
+    private static final int TASKS_DONE = 0;
+    private static final int TASKS_SKIPPED = 1;
+    private static final int TASKS_EXTENDED = 2;
+    private static final int HABITS_CHECKBOX = 3;
+    private static final int HABITS_LOCATION = 4;
+    private static final int HABITS_POMODORO = 5;
+    private static final int COUNTERS = 6;
+
+    private static StatsRepository instance;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+
+    /**
+     * Sums of the daily counters over a range of days
+     */
+    public static final class Totals {
+        private final int tasksDone;
+        private final int tasksSkipped;
+        private final int tasksExtended;
+        private final int habitsCheckbox;
+        private final int habitsLocation;
+        private final int habitsPomodoro;
+        private final double xpDelta;
+        private final int activeDays;
+
+        private Totals(Cursor cursor) {
+            tasksDone = cursor.getInt(0);
+            tasksSkipped = cursor.getInt(1);
+            tasksExtended = cursor.getInt(2);
+            habitsCheckbox = cursor.getInt(3);
+            habitsLocation = cursor.getInt(4);
+            habitsPomodoro = cursor.getInt(5);
+            xpDelta = cursor.getDouble(6);
+            activeDays = cursor.getInt(7);
+        }
+
+        public int getTasksDone() {
+            return tasksDone;
+        }
+
+        public int getTasksSkipped() {
+            return tasksSkipped;
+        }
+
+        public int getTasksExtended() {
+            return tasksExtended;
+        }
+
+        /**
+         * @return Habits verified with all methods
+         */
+        public int getHabitsVerified() {
+            return habitsCheckbox + habitsLocation + habitsPomodoro;
+        }
+
+        /**
+         * @param method One of the {@code Habit.VERIFICATION_*} methods
+         */
+        public int getHabitsVerified(String method) {
+            if (Habit.VERIFICATION_LOCATION.equals(method)) {
+                return habitsLocation;
+            } else if (Habit.VERIFICATION_POMODORO.equals(method)) {
+                return habitsPomodoro;
+            }
+            return habitsCheckbox;
+        }
+
+        /**
+         * @return XP gained minus XP lost
+         */
+        public double getXpDelta() {
+            return xpDelta;
+        }
+
+        /**
+         * @return Days with at least one task done or habit verified
+         */
+        public int getActiveDays() {
+            return activeDays;
+        }
+    }
+
+    private StatsRepository(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    public static synchronized StatsRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new StatsRepository(context);
+        }
+        return instance;
+    }
+
+    private String getUserId() {
+        SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
+        return prefs.getString("user_id", "");
+    }
+
+    /**
+     * Count a task status change made today. Only changes into or out of completed
+     * and skipped are counted, so setting the same status twice counts once.
+     */
+    public void recordTaskStatus(String oldStatus, String newStatus) {
+        int done = count(isDone(newStatus)) - count(isDone(oldStatus));
+        int skipped = count(isSkipped(newStatus)) - count(isSkipped(oldStatus));
+        if (done != 0 || skipped != 0) {
+            int[] counts = new int[COUNTERS];
+            counts[TASKS_DONE] = done;
+            counts[TASKS_SKIPPED] = skipped;
+            add(counts, 0);
+        }
+    }
+
+    /**
+     * Count a task moved to a later time today (extended or snoozed)
+     */
+    public void recordTaskExtended() {
+        int[] counts = new int[COUNTERS];
+        counts[TASKS_EXTENDED] = 1;
+        add(counts, 0);
+    }
+
+    /**
+     * Count a habit verified today, or take the verification back
+     * @param method One of the {@code Habit.VERIFICATION_*} methods; null is a checkbox
+     */
+    public void recordHabitVerified(String method, boolean verified) {
+        int[] counts = new int[COUNTERS];
+        int counter = Habit.VERIFICATION_LOCATION.equals(method) ? HABITS_LOCATION
+                : Habit.VERIFICATION_POMODORO.equals(method) ? HABITS_POMODORO : HABITS_CHECKBOX;
+        counts[counter] = verified ? 1 : -1;
+        add(counts, 0);
+    }
+
+    /**
+     * Add XP gained (positive) or lost (negative) today
+     */
+    public void recordXp(double delta) {
+        if (delta != 0) {
+            add(new int[COUNTERS], delta);
+        }
+    }
+
+    /**
+     * @return Totals of the days from and to, both included
+     */
+    public Totals getTotals(LocalDate from, LocalDate to) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(
+                "SELECT TOTAL(tasks_done), TOTAL(tasks_skipped), TOTAL(tasks_extended), " +
+                        "TOTAL(habits_checkbox), TOTAL(habits_location), TOTAL(habits_pomodoro), " +
+                        "TOTAL(xp_delta), " +
+                        "TOTAL(tasks_done + habits_checkbox + habits_location + habits_pomodoro > 0) " +
+                        "FROM " + TABLE_DAILY_STATS + " WHERE user_id = ? AND day BETWEEN ? AND ?",
+                new String[]{getUserId(), String.valueOf(from.toEpochDay()), String.valueOf(to.toEpochDay())})) {
+            cursor.moveToFirst();
+            return new Totals(cursor);
+        }
+    }
+
+    /**
+     * @return Totals of the week (Monday to Sunday) containing the day
+     */
+    public Totals getWeek(LocalDate day) {
+        LocalDate monday = day.minusDays(day.getDayOfWeek().getValue() - 1);
+        return getTotals(monday, monday.plusDays(6));
+    }
+
+    public Totals getMonth(YearMonth month) {
+        return getTotals(month.atDay(1), month.atEndOfMonth());
+    }
+
+    public Totals getYear(int year) {
+        return getTotals(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+    }
+
+    private static boolean isDone(String status) {
+        return Task.STATUS_COMPLETED.equalsIgnoreCase(status);
+    }
+
+    private static boolean isSkipped(String status) {
+        // "skipped" from the can't-complete screen, "skipped_today" from notifications
+        return status != null && status.toLowerCase().startsWith("skipped");
+    }
+
+    private static int count(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    /**
+     * Add to today's counters of the current user
+     */
+    private void add(int[] counts, double xp) {
+        String userId = getUserId();
+        if (userId.isEmpty()) {
+            return;
+        }
+        String day = String.valueOf(LocalDate.now().toEpochDay());
+        AppExecutors.getInstance().db().execute(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.execSQL("INSERT OR IGNORE INTO " + TABLE_DAILY_STATS + " (user_id, day) VALUES (?, ?)",
+                        new Object[]{userId, day});
+                db.execSQL("UPDATE " + TABLE_DAILY_STATS + " SET " +
+                                "tasks_done = MAX(0, tasks_done + ?), " +
+                                "tasks_skipped = MAX(0, tasks_skipped + ?), " +
+                                "tasks_extended = MAX(0, tasks_extended + ?), " +
+                                "habits_checkbox = MAX(0, habits_checkbox + ?), " +
+                                "habits_location = MAX(0, habits_location + ?), " +
+                                "habits_pomodoro = MAX(0, habits_pomodoro + ?), " +
+                                "xp_delta = xp_delta + ? " +
+                                "WHERE user_id = ? AND day = ?",
+                        new Object[]{counts[TASKS_DONE], counts[TASKS_SKIPPED], counts[TASKS_EXTENDED],
+                                counts[HABITS_CHECKBOX], counts[HABITS_LOCATION], counts[HABITS_POMODORO],
+                                xp, userId, day});
+                db.setTransactionSuccessful();
+            } catch (Exception e) {
+                Log.e(TAG, "Error updating daily stats: " + e.getMessage());
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    /**
+     * Build the counters of past days from the recorded completions (used on upgrade).
+     * Skips, extensions and XP were not recorded before, so they start from zero.
+     */
+    static void importCompletions(SQLiteDatabase db) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_DAILY_STATS +
+                " (user_id, day, tasks_done, habits_checkbox, habits_location, habits_pomodoro) " +
+                "SELECT user_id, day, SUM(task), SUM(checkbox), SUM(location), SUM(pomodoro) FROM (" +
+                "SELECT user_id, CAST(julianday(completion_date) - 2440587.5 AS INTEGER) AS day, " +
+                "1 AS task, 0 AS checkbox, 0 AS location, 0 AS pomodoro " +
+                "FROM task_completions WHERE user_id IS NOT NULL AND completion_date IS NOT NULL " +
+                "UNION ALL " +
+                "SELECT hc.user_id, CAST(julianday(hc.completion_date) - 2440587.5 AS INTEGER), 0, " +
+                "h.verification_method NOT IN ('" + Habit.VERIFICATION_LOCATION + "', '" +
+                Habit.VERIFICATION_POMODORO + "') OR h.verification_method IS NULL, " +
+                "h.verification_method = '" + Habit.VERIFICATION_LOCATION + "', " +
+                "h.verification_method = '" + Habit.VERIFICATION_POMODORO + "' " +
+                "FROM habit_completions hc LEFT JOIN habits h ON h.habit_id = hc.habit_id " +
+                "WHERE hc.user_id IS NOT NULL AND hc.completion_date IS NOT NULL" +
+                ") WHERE day IS NOT NULL GROUP BY user_id, day");
+    }
+}
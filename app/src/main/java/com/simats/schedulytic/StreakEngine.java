@@ -0,0 +1,539 @@
+package com.simats.schedulytic;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.format.DateTimeParseException;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * Completion history and streaks of every task and habit, kept on the device.
+ *
+ * Each entity's completed days are stored as one bitmap per year in
+ * {@code completion_days}: bit n is day n + 1 of the year, packed into six 64-bit
+ * words. The current and longest streak are kept next to them in {@code streaks},
+ * with the last period the current streak reached. Completing a day after that
+ * period extends or restarts the streak in constant time; an undo or a back-dated
+ * completion recomputes both streaks from the bitmaps, one run of set bits at a time.
+ *
+ * A streak counts periods of the entity's {@link Cadence}: days, weeks or months, or
+ * only the scheduled days for weekday and weekend habits, so a Saturday does not
+ * break a weekday streak. A current streak stays alive until a whole period has
+ * passed without a completion. Everything is derived from the stored days and
+ * today's date, so the result is the same online and offline.
+ *
+ * Every method reads or writes the database; call them on {@link AppExecutors#db()}.
+ */
+public class StreakEngine {
+    private static final String TAG = "StreakEngine";
+    public static final String TYPE_TASK = "task";
+    public static final String TYPE_HABIT = "habit";
+
+    private static final int WORDS_PER_YEAR = 6; // 384 bits, enough for 366 days
+    private static final long NO_PERIOD = Long.MIN_VALUE;
+    private static StreakEngine instance;
+
+    private final DatabaseHelper dbHelper;
+
+    /**
+     * What one step of a streak is
+     */
+    public enum Cadence {
+        DAILY, WEEKLY, MONTHLY, WEEKDAYS, WEEKENDS;
+
+        /**
+         * @param frequency Task repeat frequency or habit frequency; anything unknown counts days
+         */
+        public static Cadence of(String frequency) {
+            if (frequency == null) {
+                return DAILY;
+            }
+            switch (frequency.trim().toLowerCase(Locale.ROOT)) {
+                case "weekly":
+                    return WEEKLY;
+                case "monthly":
+                    return MONTHLY;
+                case "weekdays":
+                    return WEEKDAYS;
+                case "weekends":
+                    return WEEKENDS;
+                default:
+                    return DAILY;
+            }
+        }
+
+        /**
+         * @return Whether a completion on the day counts towards the streak
+         */
+        boolean isScheduled(long epochDay) {
+            int dow = dayOfWeek(epochDay);
+            switch (this) {
+                case WEEKDAYS:
+                    return dow < 5;
+                case WEEKENDS:
+                    return dow >= 5;
+                default:
+                    return true;
+            }
+        }
+
+        /**
+         * @return Index of the period the day belongs to; consecutive periods have
+         * consecutive indexes. Only meaningful for scheduled days.
+         */
+        long period(long epochDay) {
+            switch (this) {
+                case WEEKLY:
+                    return week(epochDay);
+                case MONTHLY:
+                    LocalDate date = LocalDate.ofEpochDay(epochDay);
+                    return date.getYear() * 12L + date.getMonthValue() - 1;
+                case WEEKDAYS:
+                    return week(epochDay) * 5 + dayOfWeek(epochDay);
+                case WEEKENDS:
+                    return week(epochDay) * 2 + dayOfWeek(epochDay) - 5;
+                default:
+                    return epochDay;
+            }
+        }
+
+        /**
+         * @return Period of the first scheduled day on or after the day
+         */
+        long ceilPeriod(long epochDay) {
+            if (this == WEEKDAYS && dayOfWeek(epochDay) >= 5) {
+                return (week(epochDay) + 1) * 5;
+            }
+            if (this == WEEKENDS && dayOfWeek(epochDay) < 5) {
+                return week(epochDay) * 2;
+            }
+            return period(epochDay);
+        }
+
+        /**
+         * @return Period of the last scheduled day on or before the day
+         */
+        long floorPeriod(long epochDay) {
+            if (this == WEEKDAYS && dayOfWeek(epochDay) >= 5) {
+                return week(epochDay) * 5 + 4;
+            }
+            if (this == WEEKENDS && dayOfWeek(epochDay) < 5) {
+                return week(epochDay) * 2 - 1;
+            }
+            return period(epochDay);
+        }
+
+        // Weeks start on Monday; 1970-01-01 was a Thursday
+        private static long week(long epochDay) {
+            return Math.floorDiv(epochDay + 3, 7);
+        }
+
+        // Monday is 0
+        private static int dayOfWeek(long epochDay) {
+            return (int) Math.floorMod(epochDay + 3, 7);
+        }
+    }
+
+    /**
+     * Current and longest streak of one entity
+     */
+    public static final class Streak {
+        private final Cadence cadence;
+        private final int current;
+        private final int longest;
+        private final long lastPeriod;
+
+        Streak(Cadence cadence, int current, int longest, long lastPeriod) {
+            this.cadence = cadence;
+            this.current = current;
+            this.longest = longest;
+            this.lastPeriod = lastPeriod;
+        }
+
+        /**
+         * @return The current streak, or 0 if a whole period went by without a completion
+         */
+        public int getCurrent(LocalDate today) {
+            if (lastPeriod == NO_PERIOD || lastPeriod < cadence.ceilPeriod(today.toEpochDay()) - 1) {
+                return 0;
+            }
+            return current;
+        }
+
+        public int getLongest() {
+            return longest;
+        }
+    }
+
+    private StreakEngine(Context context) {
+        this.dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    public static synchronized StreakEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new StreakEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Mark a day as completed or not and update the streak
+     * @param frequency Repeat frequency of the task or frequency of the habit
+     * @return The streak after the change
+     */
+    public Streak setCompleted(String entityType, String entityId, String frequency, LocalDate day,
+                               boolean completed) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Streak streak = setCompleted(db, entityType, entityId, Cadence.of(frequency), day, completed);
+            db.setTransactionSuccessful();
+            return streak;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Like {@link #setCompleted(String, String, String, LocalDate, boolean)}, inside the
+     * caller's transaction
+     */
+    public Streak setCompleted(SQLiteDatabase db, String entityType, String entityId, Cadence cadence,
+                               LocalDate day, boolean completed) {
+        long epochDay = day.toEpochDay();
+        long[] words = readYear(db, entityType, entityId, day.getYear());
+        boolean wasCompleted = setDay(words, day, completed);
+        Streak stored = readStreak(db, entityType, entityId);
+        if (wasCompleted == completed && stored != null && stored.cadence == cadence) {
+            return stored;
+        }
+        writeYear(db, entityType, entityId, day.getYear(), words);
+
+        Streak streak;
+        if (!completed || stored == null || stored.cadence != cadence) {
+            streak = recompute(db, entityType, entityId, cadence);
+        } else if (!cadence.isScheduled(epochDay) || cadence.period(epochDay) == stored.lastPeriod) {
+            // Nothing the streak counts has changed
+            return stored;
+        } else if (cadence.period(epochDay) > stored.lastPeriod) {
+            long period = cadence.period(epochDay);
+            int current = stored.lastPeriod != NO_PERIOD && period == stored.lastPeriod + 1
+                    ? stored.current + 1 : 1;
+            streak = new Streak(cadence, current, Math.max(stored.longest, current), period);
+        } else {
+            // Back-dated: it may join two runs anywhere in the history
+            streak = recompute(db, entityType, entityId, cadence);
+        }
+        writeStreak(db, entityType, entityId, streak);
+        return streak;
+    }
+
+    /**
+     * @return The stored streak, recomputed first if it was kept for another cadence
+     */
+    public Streak getStreak(String entityType, String entityId, String frequency) {
+        Cadence cadence = Cadence.of(frequency);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        Streak stored = readStreak(db, entityType, entityId);
+        if (stored != null && stored.cadence == cadence) {
+            return stored;
+        }
+        Streak streak = recompute(db, entityType, entityId, cadence);
+        writeStreak(db, entityType, entityId, streak);
+        return streak;
+    }
+
+    /**
+     * @return Number of completed days between from and to, both included
+     */
+    public int countActiveDays(String entityType, String entityId, LocalDate from, LocalDate to) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        int count = 0;
+        for (int year = from.getYear(); year <= to.getYear(); year++) {
+            long[] words = readYear(db, entityType, entityId, year);
+            int first = year == from.getYear() ? from.getDayOfYear() - 1 : 0;
+            int last = year == to.getYear() ? to.getDayOfYear() - 1 : Year.of(year).length() - 1;
+            count += countDays(words, first, last);
+        }
+        return count;
+    }
+
+    /**
+     * @return Completed days between from and to, both included: bit i is from plus i days
+     */
+    public BitSet getActiveDays(String entityType, String entityId, LocalDate from, LocalDate to) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        BitSet days = new BitSet();
+        long fromDay = from.toEpochDay();
+        for (int year = from.getYear(); year <= to.getYear(); year++) {
+            long[] words = readYear(db, entityType, entityId, year);
+            long yearStart = LocalDate.ofYearDay(year, 1).toEpochDay();
+            BitSet yearDays = BitSet.valueOf(words);
+            int first = year == from.getYear() ? from.getDayOfYear() - 1 : 0;
+            int last = year == to.getYear() ? to.getDayOfYear() - 1 : Year.of(year).length() - 1;
+            for (int bit = yearDays.nextSetBit(first); bit >= 0 && bit <= last; bit = yearDays.nextSetBit(bit + 1)) {
+                days.set((int) (yearStart + bit - fromDay));
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Move an entity's history to a new ID, e.g. once the server assigned one
+     */
+    public static void moveEntity(SQLiteDatabase db, String entityType, String oldId, String newId) {
+        ContentValues values = new ContentValues();
+        values.put("entity_id", newId);
+        String[] args = {entityType, oldId};
+        db.update("completion_days", values, "entity_type = ? AND entity_id = ?", args);
+        db.update("streaks", values, "entity_type = ? AND entity_id = ?", args);
+    }
+
+    /**
+     * Build the bitmaps and streaks from the completion tables, for the upgrade that
+     * introduces them
+     */
+    static void importCompletions(SQLiteDatabase db) {
+        importCompletions(db, TYPE_TASK,
+                "SELECT c.task_id, c.completion_date, t.repeat_frequency FROM task_completions c " +
+                        "LEFT JOIN tasks t ON t.task_id = c.task_id ORDER BY c.task_id");
+        importCompletions(db, TYPE_HABIT,
+                "SELECT c.habit_id, c.completion_date, h.frequency FROM habit_completions c " +
+                        "LEFT JOIN habits h ON h.habit_id = c.habit_id ORDER BY c.habit_id");
+    }
+
+    private static void importCompletions(SQLiteDatabase db, String entityType, String query) {
+        String entityId = null;
+        Cadence cadence = Cadence.DAILY;
+        int imported = 0;
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            while (cursor.moveToNext()) {
+                String id = cursor.getString(0);
+                if (id == null || cursor.isNull(1)) {
+                    continue;
+                }
+                if (!id.equals(entityId)) {
+                    if (entityId != null) {
+                        writeStreak(db, entityType, entityId, recompute(db, entityType, entityId, cadence));
+                    }
+                    entityId = id;
+                    cadence = Cadence.of(cursor.getString(2));
+                }
+                try {
+                    LocalDate day = LocalDate.parse(cursor.getString(1));
+                    long[] words = readYear(db, entityType, id, day.getYear());
+                    setDay(words, day, true);
+                    writeYear(db, entityType, id, day.getYear(), words);
+                    imported++;
+                } catch (DateTimeParseException e) {
+                    Log.w(TAG, "Skipping unreadable completion date " + cursor.getString(1));
+                }
+            }
+        }
+        if (entityId != null) {
+            writeStreak(db, entityType, entityId, recompute(db, entityType, entityId, cadence));
+        }
+        Log.d(TAG, "Imported " + imported + " " + entityType + " completions");
+    }
+
+    /**
+     * Walk the completed days of every stored year, oldest first
+     */
+    private static Streak recompute(SQLiteDatabase db, String entityType, String entityId, Cadence cadence) {
+        Runs runs = new Runs(cadence);
+        try (Cursor cursor = db.query("completion_days", new String[]{"year", "days"},
+                "entity_type = ? AND entity_id = ?", new String[]{entityType, entityId},
+                null, null, "year ASC")) {
+            while (cursor.moveToNext()) {
+                runs.addYear(cursor.getInt(0), decode(cursor.getBlob(1)));
+            }
+        }
+        return runs.toStreak();
+    }
+
+    /**
+     * Turns the runs of completed days of consecutive year bitmaps into the periods they
+     * cover and keeps the longest and the last run of consecutive periods. A run ending
+     * on December 31 joins one starting on January 1.
+     */
+    static final class Runs {
+        private final Cadence cadence;
+        private long runStart = NO_PERIOD;
+        private long runEnd = NO_PERIOD;
+        private long longest;
+
+        Runs(Cadence cadence) {
+            this.cadence = cadence;
+        }
+
+        /**
+         * Add the bitmap of one year; years must be added in ascending order
+         */
+        void addYear(int year, long[] words) {
+            long yearStart = LocalDate.ofYearDay(year, 1).toEpochDay();
+            for (int w = 0; w < WORDS_PER_YEAR; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    int start = Long.numberOfTrailingZeros(word);
+                    long shifted = word >>> start;
+                    int length = shifted == -1L ? 64 : Long.numberOfTrailingZeros(~shifted);
+                    long firstDay = yearStart + w * 64L + start;
+                    long lastDay = firstDay + length - 1;
+                    word = start + length >= 64 ? 0 : word & (-1L << (start + length));
+
+                    long first = cadence.ceilPeriod(firstDay);
+                    long last = cadence.floorPeriod(lastDay);
+                    if (first > last) {
+                        continue; // Only unscheduled days
+                    }
+                    if (runEnd != NO_PERIOD && first <= runEnd + 1) {
+                        runEnd = Math.max(runEnd, last);
+                    } else {
+                        runStart = first;
+                        runEnd = last;
+                    }
+                    longest = Math.max(longest, runEnd - runStart + 1);
+                }
+            }
+        }
+
+        Streak toStreak() {
+            if (runEnd == NO_PERIOD) {
+                return new Streak(cadence, 0, 0, NO_PERIOD);
+            }
+            return new Streak(cadence, (int) (runEnd - runStart + 1), (int) longest, runEnd);
+        }
+    }
+
+    /**
+     * @return A year bitmap with no days set
+     */
+    static long[] emptyYear() {
+        return new long[WORDS_PER_YEAR];
+    }
+
+    /**
+     * Set or clear the day in the bitmap of its year
+     * @return Whether the day was set before
+     */
+    static boolean setDay(long[] words, LocalDate day, boolean completed) {
+        int bit = day.getDayOfYear() - 1;
+        boolean wasSet = (words[bit >>> 6] & (1L << bit)) != 0;
+        if (completed) {
+            words[bit >>> 6] |= 1L << bit;
+        } else {
+            words[bit >>> 6] &= ~(1L << bit);
+        }
+        return wasSet;
+    }
+
+    /**
+     * @return Number of days set from bit first to bit last, both included
+     */
+    static int countDays(long[] words, int first, int last) {
+        int count = 0;
+        for (int w = first >>> 6; w <= last >>> 6; w++) {
+            long mask = -1L;
+            if (w == first >>> 6) {
+                mask &= -1L << (first & 63);
+            }
+            if (w == last >>> 6) {
+                mask &= -1L >>> (63 - (last & 63));
+            }
+            count += Long.bitCount(words[w] & mask);
+        }
+        return count;
+    }
+
+    private static long[] readYear(SQLiteDatabase db, String entityType, String entityId, int year) {
+        try (Cursor cursor = db.query("completion_days", new String[]{"days"},
+                "entity_type = ? AND entity_id = ? AND year = ?",
+                new String[]{entityType, entityId, String.valueOf(year)}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return decode(cursor.getBlob(0));
+            }
+        }
+        return emptyYear();
+    }
+
+    private static void writeYear(SQLiteDatabase db, String entityType, String entityId, int year, long[] words) {
+        boolean empty = true;
+        for (long word : words) {
+            empty &= word == 0;
+        }
+        if (empty) {
+            db.delete("completion_days", "entity_type = ? AND entity_id = ? AND year = ?",
+                    new String[]{entityType, entityId, String.valueOf(year)});
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put("entity_type", entityType);
+        values.put("entity_id", entityId);
+        values.put("year", year);
+        values.put("days", encode(words));
+        db.insertWithOnConflict("completion_days", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private static Streak readStreak(SQLiteDatabase db, String entityType, String entityId) {
+        try (Cursor cursor = db.query("streaks",
+                new String[]{"cadence", "current_streak", "longest_streak", "last_period"},
+                "entity_type = ? AND entity_id = ?", new String[]{entityType, entityId}, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            Cadence cadence = null;
+            for (Cadence candidate : Cadence.values()) {
+                if (candidate.name().equals(cursor.getString(0))) {
+                    cadence = candidate;
+                }
+            }
+            if (cadence == null) {
+                return null; // Recomputed by the caller
+            }
+            return new Streak(cadence, cursor.getInt(1), cursor.getInt(2),
+                    cursor.isNull(3) ? NO_PERIOD : cursor.getLong(3));
+        }
+    }
+
+    private static void writeStreak(SQLiteDatabase db, String entityType, String entityId, Streak streak) {
+        ContentValues values = new ContentValues();
+        values.put("entity_type", entityType);
+        values.put("entity_id", entityId);
+        values.put("cadence", streak.cadence.name());
+        values.put("current_streak", streak.current);
+        values.put("longest_streak", streak.longest);
+        if (streak.lastPeriod == NO_PERIOD) {
+            values.putNull("last_period");
+        } else {
+            values.put("last_period", streak.lastPeriod);
+        }
+        db.insertWithOnConflict("streaks", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    static byte[] encode(long[] words) {
+        ByteBuffer buffer = ByteBuffer.allocate(WORDS_PER_YEAR * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    static long[] decode(byte[] blob) {
+        long[] words = emptyYear();
+        if (blob != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN);
+            for (int w = 0; w < WORDS_PER_YEAR && buffer.remaining() >= 8; w++) {
+                words[w] = buffer.getLong();
+            }
+        }
+        return words;
+    }
+}
@@ -18,7 +18,6 @@ import androidx.core.content.ContextCompat;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -38,6 +37,7 @@ public class StreakFragment extends Fragment {
     private TextView[] weekDayTextViews;
     private TextView[] dayTextViews;
     private ImageView[] streakFireIcons;
+    private CalendarViewWithFireIcons streakCalendar;
     private TextView streakCountTextView;
     private static final String[] DAY_NAMES = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
     private RequestQueue requestQueue;
@@ -59,8 +59,9 @@ public class StreakFragment extends Fragment {
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.streak, container, false);
+        streakCalendar = view.findViewById(R.id.streak_calendar);
 
-        requestQueue = Volley.newRequestQueue(requireContext());
+        requestQueue = HttpTransport.getInstance(requireContext()).getRequestQueue();
 
         SharedPreferences userPrefs = requireActivity().getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
         userId = userPrefs.getString("user_id", "");
@@ -191,6 +192,10 @@ public class StreakFragment extends Fragment {
             weekActivityData.put(day, false);
         }
         
+        if (streakCalendar != null) {
+            streakCalendar.setActiveDates(streakDays);
+        }
+        
         updateUI();
     }
 
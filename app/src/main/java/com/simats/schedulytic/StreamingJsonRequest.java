@@ -0,0 +1,134 @@
+package com.simats.schedulytic;
+
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Volley request whose response is decoded with a {@link JsonStreams.Parser} on the
+ * network thread. Unlike JsonObjectRequest the body is never turned into a String
+ * first, and callers can map it directly into model objects instead of a JSONObject.
+ */
+public class StreamingJsonRequest<T> extends Request<T> {
+    private static final String TAG = "StreamingJsonRequest";
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+    // Bodies smaller than this gain nothing from compression
+    private static final int GZIP_MIN_BYTES = 1024;
+
+    private final JSONObject body;
+    private final JsonStreams.Parser<T> parser;
+    private final Object lock = new Object();
+    private Response.Listener<T> listener;
+    private boolean gzipBody;
+    private byte[] encodedBody;
+    private boolean bodyCompressed;
+
+    public StreamingJsonRequest(int method, String url, JSONObject body, JsonStreams.Parser<T> parser,
+                                Response.Listener<T> listener, Response.ErrorListener errorListener) {
+        super(method, url, errorListener);
+        this.body = body;
+        this.parser = parser;
+        this.listener = listener;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        synchronized (lock) {
+            listener = null;
+        }
+    }
+
+    @Override
+    protected Response<T> parseNetworkResponse(NetworkResponse response) {
+        try {
+            String charset = HttpHeaderParser.parseCharset(response.headers, "utf-8");
+            T result = JsonStreams.parse(response.data, charset, parser);
+            return Response.success(result, HttpHeaderParser.parseCacheHeaders(response));
+        } catch (Exception e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(T response) {
+        Response.Listener<T> target;
+        synchronized (lock) {
+            target = listener;
+        }
+        if (target != null) {
+            target.onResponse(response);
+        }
+    }
+
+    @Override
+    public String getBodyContentType() {
+        return CONTENT_TYPE;
+    }
+
+    /**
+     * Send the body gzip-compressed. Only for endpoints that inflate
+     * Content-Encoding: gzip request bodies (see server/mutation_operations.php).
+     */
+    public StreamingJsonRequest<T> setGzipBody(boolean gzipBody) {
+        this.gzipBody = gzipBody;
+        return this;
+    }
+
+    /**
+     * Headers the transport adds itself. Subclasses that override getHeaders()
+     * should merge these in.
+     */
+    protected Map<String, String> getTransportHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        getBody();
+        if (bodyCompressed) {
+            headers.put("Content-Encoding", "gzip");
+        }
+        return headers;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        return getTransportHeaders();
+    }
+
+    @Override
+    public synchronized byte[] getBody() {
+        if (body == null) {
+            return null;
+        }
+        if (encodedBody == null) {
+            byte[] raw = body.toString().getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = gzipBody && raw.length >= GZIP_MIN_BYTES ? gzip(raw) : null;
+            bodyCompressed = compressed != null;
+            encodedBody = bodyCompressed ? compressed : raw;
+        }
+        return encodedBody;
+    }
+
+    private static byte[] gzip(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not compress request body, sending it plain: " + e.getMessage());
+            return null;
+        }
+        return out.toByteArray();
+    }
+}
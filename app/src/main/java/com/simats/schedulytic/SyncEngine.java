@@ -0,0 +1,517 @@
+package com.simats.schedulytic;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.simats.schedulytic.model.Habit;
+import com.simats.schedulytic.service.HabitManagerService;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Delta sync for tasks and habits. Keeps the server version cursor of the last
+ * applied change in the {@code sync_state} table and asks sync_changes.php only
+ * for upserts and tombstones after it. Each page is applied in one SQLite
+ * transaction together with its new cursor, so a crash can never leave the
+ * cursor ahead of the data. Concurrent sync requests share one run.
+ *
+ * Upserts of rows that still have queued writes in {@link MutationOutbox} are not
+ * applied, but the cursor moves past them. Such rows, and rows whose write the server
+ * rejected, are kept in {@code sync_refetch}; at the end of each run the ones without
+ * queued writes left are fetched again by ID and replace the local state.
+ */
+public class SyncEngine {
+    private static final String TAG = "SyncEngine";
+    private static final int SYNC_TIMEOUT_MS = 8000;
+    private static final int MAX_REFETCH_IDS = 100;
+    private static SyncEngine instance;
+
+    /**
+     * Result of one sync run
+     */
+    public interface SyncListener {
+        /**
+         * Called on the main thread once every page has been applied
+         * @param taskChanges Number of tasks upserted or deleted
+         * @param habitChanges Number of habits upserted or deleted
+         */
+        void onSyncComplete(int taskChanges, int habitChanges);
+
+        /**
+         * Called on the main thread if the server could not be reached or does not
+         * support delta sync. Pages applied before the failure are kept.
+         */
+        void onSyncFailed(String message);
+    }
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final VolleyNetworkManager networkManager;
+    // Serial, so pages are applied in the order they were fetched
+    private final Executor executor = AppExecutors.getInstance().newSerialExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final List<SyncListener> pendingListeners = new ArrayList<>();
+    private boolean syncInFlight;
+    private int generation;
+
+    private SyncEngine(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.networkManager = VolleyNetworkManager.getInstance(context);
+    }
+
+    public static synchronized SyncEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private String getUserId() {
+        SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
+        return prefs.getString("user_id", "");
+    }
+
+    /**
+     * Pull and apply every change since the stored cursor. If a sync is already
+     * running the listener is attached to it instead of starting another one.
+     */
+    public void sync(SyncListener listener) {
+        String userId = getUserId();
+        if (userId.isEmpty()) {
+            if (listener != null) {
+                mainHandler.post(() -> listener.onSyncFailed("User ID is empty"));
+            }
+            return;
+        }
+
+        int runGeneration;
+        synchronized (this) {
+            if (listener != null) {
+                pendingListeners.add(listener);
+            }
+            if (syncInFlight) {
+                Log.d(TAG, "Sync already running, joining it");
+                return;
+            }
+            syncInFlight = true;
+            runGeneration = generation;
+        }
+
+        executor.execute(() -> fetchPage(userId, readCursor(userId), runGeneration, 0, 0));
+    }
+
+    /**
+     * Forget the cursor of the current user so the next sync downloads a full snapshot.
+     * Used when local rows were cleared and no longer match the cursor.
+     */
+    public void resetCursor() {
+        synchronized (this) {
+            generation++;
+        }
+        String userId = getUserId();
+        executor.execute(() -> {
+            try {
+                dbHelper.getWritableDatabase().delete("sync_state", "user_id = ?", new String[]{userId});
+                Log.d(TAG, "Sync cursor reset for user " + userId);
+            } catch (Exception e) {
+                Log.e(TAG, "Error resetting sync cursor: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private void fetchPage(String userId, long since, int runGeneration, int taskChanges, int habitChanges) {
+        String url = networkManager.getSyncChangesUrl(userId, since);
+        Log.d(TAG, "Fetching changes since " + since);
+
+        networkManager.makeStreamingGetRequest(
+            url,
+            reader -> readPage(reader, userId),
+            new VolleyNetworkManager.StreamResponseListener<SyncPage>() {
+                @Override
+                public void onSuccess(SyncPage page) {
+                    executor.execute(() -> onPageReceived(userId, since, runGeneration,
+                            taskChanges, habitChanges, page));
+                }
+
+                @Override
+                public void onError(String message) {
+                    finish(-1, -1, message);
+                }
+            },
+            SYNC_TIMEOUT_MS
+        );
+    }
+
+    private void onPageReceived(String userId, long since, int runGeneration,
+                                int taskChanges, int habitChanges, SyncPage page) {
+        synchronized (this) {
+            if (runGeneration != generation) {
+                // The cursor was reset while this page was in flight; start over from it
+                Log.d(TAG, "Cursor reset during sync, discarding page");
+                int currentGeneration = generation;
+                executor.execute(() -> fetchPage(userId, readCursor(userId), currentGeneration, 0, 0));
+                return;
+            }
+        }
+
+        try {
+            if (!"success".equals(page.status)) {
+                finish(-1, -1, page.message != null ? page.message : "Sync not supported by server");
+                return;
+            }
+            if (page.cursor < 0) {
+                finish(-1, -1, "Sync response has no cursor");
+                return;
+            }
+
+            long cursor = page.cursor;
+            List<Task> taskUpserts = page.taskUpserts;
+            List<String> deletedTaskIds = page.deletedTaskIds;
+            List<Habit> habitUpserts = page.habitUpserts;
+            List<String> deletedHabitIds = page.deletedHabitIds;
+
+            HabitManagerService habitManager = HabitManagerService.getInstance(context);
+            List<String> removedTaskIds;
+            List<String> removedHabitIds;
+
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                // Rows with queued local writes keep their local state until the outbox
+                // has replayed them; the cursor passes them, so they are fetched again later
+                holdBack(db, userId, MutationOutbox.ENTITY_TASK, taskUpserts, Task::getTaskId);
+                holdBack(db, userId, MutationOutbox.ENTITY_HABIT, habitUpserts, Habit::getHabitId);
+
+                removedTaskIds = TaskRepository.getInstance(context)
+                        .writeDelta(db, taskUpserts, deletedTaskIds);
+                removedHabitIds = habitManager.writeHabitDelta(db, habitUpserts, deletedHabitIds);
+                writeCursor(db, userId, cursor);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            TaskCache.getInstance(context).applySynced(taskUpserts, removedTaskIds);
+            mainHandler.post(() -> habitManager.onHabitsSynced(habitUpserts, removedHabitIds));
+
+            int totalTaskChanges = taskChanges + taskUpserts.size() + removedTaskIds.size();
+            int totalHabitChanges = habitChanges + habitUpserts.size() + removedHabitIds.size();
+            Log.d(TAG, "Applied changes " + since + " -> " + cursor + ": "
+                    + taskUpserts.size() + " tasks, " + deletedTaskIds.size() + " task tombstones, "
+                    + habitUpserts.size() + " habits, " + deletedHabitIds.size() + " habit tombstones");
+
+            if (page.hasMore && cursor > since) {
+                fetchPage(userId, cursor, runGeneration, totalTaskChanges, totalHabitChanges);
+            } else {
+                refetchMarked(userId, runGeneration, totalTaskChanges, totalHabitChanges);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying sync changes: " + e.getMessage(), e);
+            finish(-1, -1, "Error applying sync changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drop upserts of entities with queued writes and mark them to be fetched again
+     */
+    private static <T> void holdBack(SQLiteDatabase db, String userId, String entityType,
+                                     List<T> upserts, Function<T, String> idOf) {
+        Set<String> pendingIds = MutationOutbox.pendingEntityIds(db, entityType);
+        Iterator<T> iterator = upserts.iterator();
+        while (iterator.hasNext()) {
+            String entityId = idOf.apply(iterator.next());
+            if (pendingIds.contains(entityId)) {
+                iterator.remove();
+                markForRefetch(db, userId, entityType, entityId);
+            }
+        }
+    }
+
+    /**
+     * Fetch the marked rows whose queued writes have all been replayed, then end the run.
+     * Rows that cannot be fetched now stay marked for the next run.
+     */
+    private void refetchMarked(String userId, int runGeneration, int taskChanges, int habitChanges) {
+        List<String> taskIds;
+        List<String> habitIds;
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            taskIds = readRefetchDue(db, userId, MutationOutbox.ENTITY_TASK);
+            habitIds = readRefetchDue(db, userId, MutationOutbox.ENTITY_HABIT);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading rows to refetch: " + e.getMessage(), e);
+            finish(taskChanges, habitChanges, null);
+            return;
+        }
+        if (taskIds.isEmpty() && habitIds.isEmpty()) {
+            finish(taskChanges, habitChanges, null);
+            return;
+        }
+
+        Log.d(TAG, "Refetching " + taskIds.size() + " tasks and " + habitIds.size() + " habits");
+        networkManager.makeStreamingGetRequest(
+            networkManager.getSyncRefetchUrl(userId, taskIds, habitIds),
+            reader -> readPage(reader, userId),
+            new VolleyNetworkManager.StreamResponseListener<SyncPage>() {
+                @Override
+                public void onSuccess(SyncPage page) {
+                    executor.execute(() -> onRefetchReceived(userId, runGeneration, taskIds, habitIds,
+                            taskChanges, habitChanges, page));
+                }
+
+                @Override
+                public void onError(String message) {
+                    Log.w(TAG, "Refetch failed, rows stay marked: " + message);
+                    finish(taskChanges, habitChanges, null);
+                }
+            },
+            SYNC_TIMEOUT_MS
+        );
+    }
+
+    private void onRefetchReceived(String userId, int runGeneration, List<String> taskIds, List<String> habitIds,
+                                   int taskChanges, int habitChanges, SyncPage page) {
+        synchronized (this) {
+            if (runGeneration != generation) {
+                finish(taskChanges, habitChanges, null);
+                return;
+            }
+        }
+        if (!"success".equals(page.status)) {
+            Log.w(TAG, "Refetch failed, rows stay marked: " + page.message);
+            finish(taskChanges, habitChanges, null);
+            return;
+        }
+
+        try {
+            HabitManagerService habitManager = HabitManagerService.getInstance(context);
+            List<Task> taskUpserts = page.taskUpserts;
+            List<Habit> habitUpserts = page.habitUpserts;
+            List<String> removedTaskIds;
+            List<String> removedHabitIds;
+
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                // Writes queued while the request was out win again; those rows stay marked
+                List<String> deletedTaskIds = settleRefetch(db, userId, MutationOutbox.ENTITY_TASK,
+                        taskIds, taskUpserts, Task::getTaskId);
+                List<String> deletedHabitIds = settleRefetch(db, userId, MutationOutbox.ENTITY_HABIT,
+                        habitIds, habitUpserts, Habit::getHabitId);
+
+                removedTaskIds = TaskRepository.getInstance(context)
+                        .writeDelta(db, taskUpserts, deletedTaskIds);
+                removedHabitIds = habitManager.writeHabitDelta(db, habitUpserts, deletedHabitIds);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            TaskCache.getInstance(context).applySynced(taskUpserts, removedTaskIds);
+            mainHandler.post(() -> habitManager.onHabitsSynced(habitUpserts, removedHabitIds));
+
+            Log.d(TAG, "Refetched " + taskUpserts.size() + " tasks, " + habitUpserts.size() + " habits; "
+                    + removedTaskIds.size() + " tasks and " + removedHabitIds.size() + " habits are gone");
+            finish(taskChanges + taskUpserts.size() + removedTaskIds.size(),
+                    habitChanges + habitUpserts.size() + removedHabitIds.size(), null);
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying refetched rows: " + e.getMessage(), e);
+            finish(taskChanges, habitChanges, null);
+        }
+    }
+
+    /**
+     * Unmark the requested rows that can be applied and drop the rest from the upserts.
+     * @return Requested IDs the server no longer has, to be deleted locally
+     */
+    private static <T> List<String> settleRefetch(SQLiteDatabase db, String userId, String entityType,
+                                                  List<String> requestedIds, List<T> upserts,
+                                                  Function<T, String> idOf) {
+        Set<String> pendingIds = MutationOutbox.pendingEntityIds(db, entityType);
+        Set<String> returnedIds = new HashSet<>();
+        for (T upsert : upserts) {
+            returnedIds.add(idOf.apply(upsert));
+        }
+        upserts.removeIf(upsert -> pendingIds.contains(idOf.apply(upsert)));
+
+        List<String> deletedIds = new ArrayList<>();
+        for (String entityId : requestedIds) {
+            if (pendingIds.contains(entityId)) {
+                continue;
+            }
+            if (!returnedIds.contains(entityId)) {
+                deletedIds.add(entityId);
+            }
+            db.delete("sync_refetch", "user_id = ? AND entity_type = ? AND entity_id = ?",
+                    new String[]{userId, entityType, entityId});
+        }
+        return deletedIds;
+    }
+
+    /**
+     * Mark a row whose local state may be out of date, so the end of the next sync run
+     * replaces it with the server state once it has no queued writes left
+     */
+    static void markForRefetch(SQLiteDatabase db, String userId, String entityType, String entityId) {
+        ContentValues values = new ContentValues();
+        values.put("user_id", userId);
+        values.put("entity_type", entityType);
+        values.put("entity_id", entityId);
+        db.insertWithOnConflict("sync_refetch", null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    /**
+     * Whether a marked row of the user has no queued writes left and can be fetched again
+     */
+    static boolean hasRefetchDue(SQLiteDatabase db, String userId) {
+        return !readRefetchDue(db, userId, MutationOutbox.ENTITY_TASK).isEmpty()
+                || !readRefetchDue(db, userId, MutationOutbox.ENTITY_HABIT).isEmpty();
+    }
+
+    private static List<String> readRefetchDue(SQLiteDatabase db, String userId, String entityType) {
+        Set<String> pendingIds = MutationOutbox.pendingEntityIds(db, entityType);
+        List<String> ids = new ArrayList<>();
+        try (Cursor cursor = db.query("sync_refetch", new String[]{"entity_id"},
+                "user_id = ? AND entity_type = ?", new String[]{userId, entityType}, null, null, null)) {
+            while (cursor.moveToNext() && ids.size() < MAX_REFETCH_IDS) {
+                String entityId = cursor.getString(0);
+                if (!pendingIds.contains(entityId)) {
+                    ids.add(entityId);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void finish(int taskChanges, int habitChanges, String errorMessage) {
+        List<SyncListener> listeners;
+        synchronized (this) {
+            listeners = new ArrayList<>(pendingListeners);
+            pendingListeners.clear();
+            syncInFlight = false;
+        }
+        mainHandler.post(() -> {
+            for (SyncListener listener : listeners) {
+                if (errorMessage != null) {
+                    listener.onSyncFailed(errorMessage);
+                } else {
+                    listener.onSyncComplete(taskChanges, habitChanges);
+                }
+            }
+        });
+    }
+
+    private long readCursor(String userId) {
+        try (Cursor cursor = dbHelper.getReadableDatabase().query("sync_state", new String[]{"sync_cursor"},
+                "user_id = ?", new String[]{userId}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading sync cursor: " + e.getMessage(), e);
+        }
+        return 0;
+    }
+
+    private void writeCursor(SQLiteDatabase db, String userId, long cursor) {
+        ContentValues values = new ContentValues();
+        values.put("user_id", userId);
+        values.put("sync_cursor", cursor);
+        values.put("last_synced_at", System.currentTimeMillis());
+        db.insertWithOnConflict("sync_state", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Stream a sync_changes.php page straight into model objects
+     */
+    private static SyncPage readPage(JsonReader reader, String userId) throws IOException, JSONException {
+        SyncPage page = new SyncPage();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "status":
+                    page.status = JsonStreams.readString(reader, null);
+                    break;
+                case "message":
+                    page.message = JsonStreams.readString(reader, null);
+                    break;
+                case "cursor":
+                    String cursor = JsonStreams.readString(reader, null);
+                    page.cursor = cursor != null ? Long.parseLong(cursor) : -1;
+                    break;
+                case "has_more":
+                    page.hasMore = Boolean.parseBoolean(JsonStreams.readString(reader, "false"));
+                    break;
+                case "tasks":
+                    readDelta(reader, r -> JsonStreams.readTask(r, userId), page.taskUpserts, page.deletedTaskIds);
+                    break;
+                case "habits":
+                    readDelta(reader, r -> Habit.fromJson(JsonStreams.readObject(r)),
+                            page.habitUpserts, page.deletedHabitIds);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return page;
+    }
+
+    private static <T> void readDelta(JsonReader reader, JsonStreams.Parser<T> rowParser,
+                                      List<T> upserts, List<String> deleted) throws IOException, JSONException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "upserts":
+                    upserts.addAll(JsonStreams.readList(reader, rowParser));
+                    break;
+                case "deleted":
+                    deleted.addAll(JsonStreams.readStringList(reader));
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * One decoded page of sync_changes.php
+     */
+    private static final class SyncPage {
+        String status;
+        String message;
+        long cursor = -1;
+        boolean hasMore;
+        final List<Task> taskUpserts = new ArrayList<>();
+        final List<String> deletedTaskIds = new ArrayList<>();
+        final List<Habit> habitUpserts = new ArrayList<>();
+        final List<String> deletedHabitIds = new ArrayList<>();
+    }
+}
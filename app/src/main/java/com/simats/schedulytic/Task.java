@@ -4,225 +4,227 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import java.io.Serializable;
 
-public class Task implements Serializable {
-    private String taskId;
-    private String userId;
-    private String type;
-    private String title;
-    private String description;
-    private String startTime;
-    private String endTime;
-    private String dueDate;
-    private String status;
-    private String repeat;
-    private String priority;
-    private boolean completed;
-    
+/**
+ * The app's one task model, used by the adapters, managers, caches and persistence alike.
+ *
+ * Tasks are immutable, so they can be shared between screens and caches without
+ * copying. Change one through {@link #toBuilder()} (or {@link #withStatus} /
+ * {@link #withCurrentStreak} for the common updates) and put the result back.
+ * Type, status, priority, repeat and the other small value sets are interned, so the
+ * thousands of tasks a sync brings in share one instance of each value instead of
+ * keeping a string per row. Times are also parsed into epoch millis once, when the
+ * task is built.
+ */
+public final class Task implements Serializable {
+    public static final String TYPE_WORKFLOW = "workflow";
+    public static final String TYPE_REMAINDER = "remainder";
+    public static final String TYPE_HABIT = "habit";
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String PRIORITY_MEDIUM = "medium";
+    public static final String REPEAT_NONE = "none";
+
+    private final String taskId;
+    private final String userId;
+    private final String type;
+    private final String title;
+    private final String description;
+    private final String startTime;
+    private final String endTime;
+    private final String dueDate;
+    private final String status;
+    private final String repeat;
+    private final String priority;
+    private final int currentStreak;
+    private final String color; // Custom task color, may be null
+
     // Habit-specific fields
-    private double latitude;
-    private double longitude;
-    private int pomodoroCount;
-    private int pomodoroLength;
-    private String verificationType; // "checkbox", "location", "pomodoro"
-    private String color; // Added to support custom task colors
-    private int currentStreak; // Added for compatibility
+    private final double latitude;
+    private final double longitude;
+    private final int pomodoroCount;
+    private final int pomodoroLength;
+    private final String verificationType; // "checkbox", "location", "pomodoro"
+
+    // Epoch millis of the time strings; -1 if unreadable
+    private final long startMillis;
+    private final long endMillis;
+    private final long dueDateMillis;
 
     public Task(String taskId, String userId, String type, String title, String description, String startTime, String endTime, String dueDate, String status, String repeat, String priority) {
-        this.taskId = taskId;
-        this.userId = userId;
-        this.type = type;
-        this.title = title;
-        this.description = description;
-        this.startTime = startTime;
-        this.endTime = endTime;
-        this.dueDate = dueDate;
-        this.status = status;
-        this.repeat = repeat;
-        this.priority = priority;
-        this.completed = "completed".equalsIgnoreCase(status);
-        this.verificationType = "checkbox"; // Default verification type
-        this.pomodoroCount = 1;
-        this.pomodoroLength = 25;
-        this.latitude = 0.0;
-        this.longitude = 0.0;
-    }
-
-    // Default constructor for testing purposes
-    public Task() {
-        this("", "", "remainder", "", "", "", "", "", "pending", "none", "medium");
-    }
-
-    // Existing getters and setters
-    public String getTaskId() {
-        return taskId;
+        this(new Builder()
+                .taskId(taskId)
+                .userId(userId)
+                .type(type)
+                .title(title)
+                .description(description)
+                .startTime(startTime)
+                .endTime(endTime)
+                .dueDate(dueDate)
+                .status(status)
+                .repeat(repeat)
+                .priority(priority));
     }
 
-    public void setTaskId(String taskId) {
-        this.taskId = taskId;
+    private Task(Builder builder) {
+        this.taskId = builder.taskId;
+        this.userId = intern(builder.userId);
+        this.type = intern(builder.type);
+        this.title = builder.title;
+        this.description = builder.description;
+        this.startTime = builder.startTime;
+        this.endTime = builder.endTime;
+        this.dueDate = intern(builder.dueDate);
+        this.status = intern(builder.status);
+        this.repeat = intern(builder.repeat);
+        this.priority = intern(builder.priority);
+        this.currentStreak = builder.currentStreak;
+        this.color = intern(builder.color);
+        this.latitude = builder.latitude;
+        this.longitude = builder.longitude;
+        this.pomodoroCount = builder.pomodoroCount;
+        this.pomodoroLength = builder.pomodoroLength;
+        this.verificationType = intern(builder.verificationType);
+
+        this.dueDateMillis = TimeFormats.parseDate(dueDate);
+        this.startMillis = TimeFormats.parseTaskTime(startTime, dueDate);
+        long end = TimeFormats.parseTaskTime(endTime, dueDate);
+        if (end >= 0 && end < startMillis && endTime.indexOf(' ') < 0) {
+            // A time-only end before the start runs past midnight
+            end += 24 * 60 * 60 * 1000L;
+        }
+        this.endMillis = end;
     }
 
-    public String getUserId() {
-        return userId;
+    private static String intern(String value) {
+        return value == null ? null : value.intern();
     }
 
-    public void setUserId(String userId) {
-        this.userId = userId;
+    public static Builder builder() {
+        return new Builder();
     }
 
-    public String getType() {
-        return type;
+    /**
+     * @return A builder holding this task's values, to build a changed copy from
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
     }
 
-    public void setType(String type) {
-        this.type = type;
+    public Task withStatus(String status) {
+        return toBuilder().status(status).build();
     }
-    
-    // Alias for type setter to maintain compatibility
-    public void setTaskType(String type) {
-        this.type = type;
+
+    public Task withCurrentStreak(int currentStreak) {
+        return toBuilder().currentStreak(currentStreak).build();
     }
 
-    public String getTitle() {
-        return title;
+    public String getTaskId() {
+        return taskId;
     }
 
-    public void setTitle(String title) {
-        this.title = title;
+    public String getUserId() {
+        return userId;
     }
 
-    public String getDescription() {
-        return description;
+    public String getType() {
+        return type;
     }
 
-    public void setDescription(String description) {
-        this.description = description;
+    public String getTitle() {
+        return title;
     }
 
-    public String getStartTime() {
-        return startTime;
+    public String getDescription() {
+        return description;
     }
 
-    public void setStartTime(String startTime) {
-        this.startTime = startTime;
+    public String getStartTime() {
+        return startTime;
     }
 
     public String getEndTime() {
         return endTime;
     }
 
-    public void setEndTime(String endTime) {
-        this.endTime = endTime;
-    }
-
     public String getDueDate() {
         return dueDate;
     }
 
-    public void setDueDate(String dueDate) {
-        this.dueDate = dueDate;
+    /**
+     * @return Start as epoch millis, or -1 if the task has no readable start
+     */
+    public long getStartMillis() {
+        return startMillis;
     }
 
-    public String getStatus() {
-        return status;
+    /**
+     * @return End as epoch millis, or -1 if the task has no readable end. A time-only
+     * end before the start is on the day after the due date.
+     */
+    public long getEndMillis() {
+        return endMillis;
     }
 
-    public void setStatus(String status) {
-        this.status = status;
-        this.completed = "completed".equalsIgnoreCase(status);
+    /**
+     * @return Start of the due date as epoch millis, or -1 if there is none
+     */
+    public long getDueDateMillis() {
+        return dueDateMillis;
     }
 
-    public String getRepeat() {
-        return repeat;
+    public String getStatus() {
+        return status;
     }
 
-    public void setRepeat(String repeat) {
-        this.repeat = repeat;
+    public String getRepeat() {
+        return repeat;
     }
 
     public String getPriority() {
         return priority;
     }
 
-    public void setPriority(String priority) {
-        this.priority = priority;
-    }
-
     public boolean isCompleted() {
-        return completed;
+        return STATUS_COMPLETED.equalsIgnoreCase(status);
     }
 
-    public void setCompleted(boolean completed) {
-        this.completed = completed;
-        this.status = completed ? "completed" : "pending";
-    }
-    
-    // Getter and setter for color
     public String getColor() {
         return color;
     }
 
-    public void setColor(String color) {
-        this.color = color;
-    }
-    
-    // Getter and setter for latitude
     public double getLatitude() {
         return latitude;
     }
-    
-    public void setLatitude(double latitude) {
-        this.latitude = latitude;
-    }
-    
-    // Getter and setter for longitude
+
     public double getLongitude() {
         return longitude;
     }
-    
-    public void setLongitude(double longitude) {
-        this.longitude = longitude;
-    }
-    
-    // Getter and setter for pomodoroCount
+
     public int getPomodoroCount() {
         return pomodoroCount;
     }
-    
-    public void setPomodoroCount(int pomodoroCount) {
-        this.pomodoroCount = pomodoroCount;
-    }
-    
-    // Getter and setter for pomodoroLength
+
     public int getPomodoroLength() {
         return pomodoroLength;
     }
-    
-    public void setPomodoroLength(int pomodoroLength) {
-        this.pomodoroLength = pomodoroLength;
-    }
-    
-    // Getter and setter for verificationType
+
     public String getVerificationType() {
         return verificationType;
     }
-    
-    public void setVerificationType(String verificationType) {
-        this.verificationType = verificationType;
-    }
-    
+
     // Helper method to check if this is a location-based habit
     public boolean isLocationVerification() {
         return "location".equalsIgnoreCase(verificationType);
     }
-    
+
     // Helper method to check if this is a pomodoro-based habit
     public boolean isPomodoroVerification() {
         return "pomodoro".equalsIgnoreCase(verificationType);
     }
-    
+
     // Helper method to check if this is a habit
     public boolean isHabit() {
-        return "habit".equalsIgnoreCase(type);
+        return TYPE_HABIT.equalsIgnoreCase(type);
     }
 
     public JSONObject toJson() throws JSONException {
@@ -238,12 +240,12 @@ public class Task implements Serializable {
         jsonTask.put("status", status);
         jsonTask.put("repeat_frequency", repeat);  // Use repeat_frequency instead of repeat
         jsonTask.put("priority", priority);
-        
+
         // Add habit-specific fields
         if (isHabit()) {
             jsonTask.put("verification_type", verificationType);
             jsonTask.put("trust_type", verificationType);  // Backend expects trust_type for verification method
-            
+
             if (isLocationVerification()) {
                 jsonTask.put("latitude", latitude);
                 jsonTask.put("longitude", longitude);
@@ -254,12 +256,12 @@ public class Task implements Serializable {
                 jsonTask.put("pomodoro_length", pomodoroLength);
                 jsonTask.put("pomodoro_duration", pomodoroLength); // Backend compatibility
             }
-            
+
             if (color != null && !color.isEmpty()) {
                 jsonTask.put("color", color);
             }
         }
-        
+
         return jsonTask;
     }
 
@@ -267,28 +269,170 @@ public class Task implements Serializable {
     public String getTaskType() {
         return type;
     }
-    
+
     // Method for backward compatibility
     public String getRepeatFrequency() {
         return repeat;
     }
-    
+
     // Method for backward compatibility
     public int getCurrentStreak() {
         return currentStreak;
     }
-    
-    // Method for backward compatibility
-    public void setCurrentStreak(int currentStreak) {
-        this.currentStreak = currentStreak;
-    }
-    
+
     // Helper methods for compatibility with older code
     public boolean isWorkflow() {
-        return "workflow".equalsIgnoreCase(type);
+        return TYPE_WORKFLOW.equalsIgnoreCase(type);
     }
-    
+
     public boolean isRemainder() {
-        return "remainder".equalsIgnoreCase(type);
+        return TYPE_REMAINDER.equalsIgnoreCase(type);
+    }
+
+    /**
+     * Values of a task to be built. Starts from the defaults of a new reminder.
+     */
+    public static final class Builder {
+        private String taskId = "";
+        private String userId = "";
+        private String type = TYPE_REMAINDER;
+        private String title = "";
+        private String description = "";
+        private String startTime = "";
+        private String endTime = "";
+        private String dueDate = "";
+        private String status = STATUS_PENDING;
+        private String repeat = REPEAT_NONE;
+        private String priority = PRIORITY_MEDIUM;
+        private int currentStreak;
+        private String color;
+        private double latitude;
+        private double longitude;
+        private int pomodoroCount = 1;
+        private int pomodoroLength = 25;
+        private String verificationType = "checkbox"; // Default verification type
+
+        public Builder() {
+        }
+
+        private Builder(Task task) {
+            taskId = task.taskId;
+            userId = task.userId;
+            type = task.type;
+            title = task.title;
+            description = task.description;
+            startTime = task.startTime;
+            endTime = task.endTime;
+            dueDate = task.dueDate;
+            status = task.status;
+            repeat = task.repeat;
+            priority = task.priority;
+            currentStreak = task.currentStreak;
+            color = task.color;
+            latitude = task.latitude;
+            longitude = task.longitude;
+            pomodoroCount = task.pomodoroCount;
+            pomodoroLength = task.pomodoroLength;
+            verificationType = task.verificationType;
+        }
+
+        public Builder taskId(String taskId) {
+            this.taskId = taskId;
+            return this;
+        }
+
+        public Builder userId(String userId) {
+            this.userId = userId;
+            return this;
+        }
+
+        public Builder type(String type) {
+            this.type = type;
+            return this;
+        }
+
+        public Builder title(String title) {
+            this.title = title;
+            return this;
+        }
+
+        public Builder description(String description) {
+            this.description = description;
+            return this;
+        }
+
+        public Builder startTime(String startTime) {
+            this.startTime = startTime;
+            return this;
+        }
+
+        public Builder endTime(String endTime) {
+            this.endTime = endTime;
+            return this;
+        }
+
+        public Builder dueDate(String dueDate) {
+            this.dueDate = dueDate;
+            return this;
+        }
+
+        public Builder status(String status) {
+            this.status = status;
+            return this;
+        }
+
+        public Builder completed(boolean completed) {
+            this.status = completed ? STATUS_COMPLETED : STATUS_PENDING;
+            return this;
+        }
+
+        public Builder repeat(String repeat) {
+            this.repeat = repeat;
+            return this;
+        }
+
+        public Builder priority(String priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        public Builder currentStreak(int currentStreak) {
+            this.currentStreak = currentStreak;
+            return this;
+        }
+
+        public Builder color(String color) {
+            this.color = color;
+            return this;
+        }
+
+        public Builder latitude(double latitude) {
+            this.latitude = latitude;
+            return this;
+        }
+
+        public Builder longitude(double longitude) {
+            this.longitude = longitude;
+            return this;
+        }
+
+        public Builder pomodoroCount(int pomodoroCount) {
+            this.pomodoroCount = pomodoroCount;
+            return this;
+        }
+
+        public Builder pomodoroLength(int pomodoroLength) {
+            this.pomodoroLength = pomodoroLength;
+            return this;
+        }
+
+        public Builder verificationType(String verificationType) {
+            this.verificationType = verificationType;
+            return this;
+        }
+
+        public Task build() {
+            return new Task(this);
+        }
     }
-}
\ No newline at end of file
+}
@@ -15,17 +15,52 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.checkbox.MaterialCheckBox;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.text.SimpleDateFormat;
+import java.util.Objects;
 
+/**
+ * Task rows, kept up to date by diffing.
+ *
+ * Every change is a new list handed to an {@link AsyncListDiffer}, which works out the
+ * inserted, removed, moved and changed rows on a background thread and animates only
+ * those. A change to just the status or the streak of a task rebinds only the views
+ * that show it. Rows have stable IDs derived from the task ID.
+ */
 public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder> {
     private static final String TAG = "TaskAdapter";
-    private final List<Task> taskList;
+
+    // Change payloads: which part of a row to rebind
+    private static final int PAYLOAD_STATUS = 1;
+    private static final int PAYLOAD_STREAK = 1 << 1;
+
+    private static final DiffUtil.ItemCallback<Task> DIFF_CALLBACK = new DiffUtil.ItemCallback<Task>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Task oldTask, @NonNull Task newTask) {
+            return Objects.equals(oldTask.getTaskId(), newTask.getTaskId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Task oldTask, @NonNull Task newTask) {
+            return oldTask == newTask || (changedParts(oldTask, newTask) == 0 && sameLayout(oldTask, newTask));
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Task oldTask, @NonNull Task newTask) {
+            // Anything beyond status and streak changed: rebind the whole row
+            return sameLayout(oldTask, newTask) ? changedParts(oldTask, newTask) : null;
+        }
+    };
+
+    private final AsyncListDiffer<Task> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    // Last list submitted; the differ's current list lags behind it while a diff runs
+    private List<Task> latestList = Collections.emptyList();
     private final TaskCheckListener checkListener;
     private final Context context;
     private final HabitManager habitManager;
@@ -39,9 +74,10 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
     }
 
     public TaskAdapter(List<Task> taskList, TaskCheckListener listener, Context context) {
-        this.taskList = taskList;
         this.checkListener = listener;
         this.context = context;
+        setHasStableIds(true);
+        submitList(taskList);
         this.habitManager = new HabitManager(context, new HabitManager.HabitListener() {
             @Override
             public void onHabitCompleted(String taskId, int newStreak) {
@@ -65,6 +101,46 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
         });
     }
 
+    /**
+     * @return PAYLOAD_ flags of the parts that differ between the two versions of a task
+     */
+    private static int changedParts(Task oldTask, Task newTask) {
+        int parts = 0;
+        if (!Objects.equals(oldTask.getStatus(), newTask.getStatus())) {
+            parts |= PAYLOAD_STATUS;
+        }
+        if (oldTask.getCurrentStreak() != newTask.getCurrentStreak()) {
+            parts |= PAYLOAD_STREAK;
+        }
+        return parts;
+    }
+
+    /**
+     * @return true if everything the row shows other than status and streak is the same
+     */
+    private static boolean sameLayout(Task oldTask, Task newTask) {
+        return Objects.equals(oldTask.getTitle(), newTask.getTitle())
+                && Objects.equals(oldTask.getType(), newTask.getType())
+                && Objects.equals(oldTask.getVerificationType(), newTask.getVerificationType())
+                && oldTask.getStartMillis() == newTask.getStartMillis()
+                && oldTask.getEndMillis() == newTask.getEndMillis();
+    }
+
+    /**
+     * Show the given tasks. The list is copied, so the caller may keep changing its own.
+     */
+    public void submitList(List<Task> tasks) {
+        latestList = tasks != null ? new ArrayList<>(tasks) : new ArrayList<>();
+        differ.submitList(latestList);
+    }
+
+    /**
+     * @return The tasks shown, including changes whose diff is still running
+     */
+    public List<Task> getCurrentList() {
+        return Collections.unmodifiableList(latestList);
+    }
+
     @NonNull
     @Override
     public TaskViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -92,7 +168,7 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
     @Override
     public void onBindViewHolder(@NonNull TaskViewHolder holder, int position) {
         try {
-            Task task = taskList.get(position);
+            Task task = differ.getCurrentList().get(position);
             Log.d(TAG, "Binding task: " + task.getTitle() + ", Type: " + task.getType());
             holder.bind(task);
         } catch (Exception e) {
@@ -100,26 +176,94 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
         }
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull TaskViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        int parts = 0;
+        for (Object payload : payloads) {
+            if (payload instanceof Integer) {
+                parts |= (Integer) payload;
+            }
+        }
+        try {
+            Task task = differ.getCurrentList().get(position);
+            if ((parts & PAYLOAD_STATUS) != 0) {
+                holder.bindStatus(task);
+            }
+            if ((parts & PAYLOAD_STREAK) != 0) {
+                holder.bindStreak(task);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error rebinding task view: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public int getItemCount() {
-        return taskList != null ? taskList.size() : 0;
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return TaskIds.stableId(differ.getCurrentList().get(position).getTaskId());
+    }
+
+    /**
+     * @return Position of the task in the latest list, or -1 if it is not there
+     */
+    private int indexOf(String taskId) {
+        if (taskId == null) {
+            return -1;
+        }
+        for (int i = 0; i < latestList.size(); i++) {
+            if (taskId.equals(latestList.get(i).getTaskId())) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     private void updateTaskStreak(String taskId, int newStreak) {
         try {
-            for (int i = 0; i < taskList.size(); i++) {
-                Task task = taskList.get(i);
-                if (task.getTaskId() != null && task.getTaskId().equals(taskId)) {
-                    task.setCurrentStreak(newStreak);
-                    notifyItemChanged(i);
-                    break;
-                }
+            int index = indexOf(taskId);
+            if (index >= 0) {
+                updateTask(latestList.get(index).withCurrentStreak(newStreak));
             }
         } catch (Exception e) {
             Log.e(TAG, "Error updating task streak: " + e.getMessage());
         }
     }
 
+    /**
+     * Replace a single task; only its row is rebound
+     * @return true if the task was in this adapter
+     */
+    public boolean updateTask(Task updatedTask) {
+        int index = indexOf(updatedTask.getTaskId());
+        if (index < 0) {
+            return false;
+        }
+        List<Task> updated = new ArrayList<>(latestList);
+        updated.set(index, updatedTask);
+        submitList(updated);
+        return true;
+    }
+
+    /**
+     * Remove a single task and animate only its row
+     */
+    public void removeTask(String taskId) {
+        int index = indexOf(taskId);
+        if (index >= 0) {
+            List<Task> updated = new ArrayList<>(latestList);
+            updated.remove(index);
+            submitList(updated);
+        }
+    }
+
     /**
      * Handle checkbox state changes with optimized performance
      * This prevents multiple rapid clicks and improves animation
@@ -128,13 +272,6 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
         if (checkBox == null) return;
         
         try {
-            // Store the original task properties before modifying
-            final String originalTitle = task.getTitle();
-            final String originalType = task.getType();
-            final String originalStartTime = task.getStartTime();
-            final String originalEndTime = task.getEndTime();
-            final String originalDescription = task.getDescription();
-            
             // Update without triggering listener to avoid infinite loops
             checkBox.setOnCheckedChangeListener(null);
             checkBox.setChecked(task.getStatus() != null && task.getStatus().equals("completed"));
@@ -151,21 +288,14 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
                 buttonView.setEnabled(false);
                 
                 // Update task status based on checkbox
-                String newStatus = isChecked ? "completed" : "pending";
-                task.setStatus(newStatus);
-                
-                // Ensure task properties are preserved when unchecking
-                if (!isChecked) {
-                    task.setTitle(originalTitle);
-                    task.setTaskType(originalType);
-                    task.setStartTime(originalStartTime);
-                    task.setEndTime(originalEndTime);
-                    task.setDescription(originalDescription);
-                }
+                // Tasks are immutable; the row holds the updated copy from here on
+                String newStatus = isChecked ? Task.STATUS_COMPLETED : Task.STATUS_PENDING;
+                Task checkedTask = task.withStatus(newStatus);
+                updateTask(checkedTask);
                 
                 // Notify listener about the change
                 if (checkListener != null) {
-                    checkListener.onTaskChecked(task, isChecked);
+                    checkListener.onTaskChecked(checkedTask, isChecked);
                 }
                 
                 // Re-enable after a short delay to prevent double-clicks
@@ -278,39 +408,15 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
                 
                 Log.d(TAG, "Binding task: " + task.getTitle() + " with status: " + task.getStatus());
                 
-                // Set title with strikethrough for completed tasks
                 if (titleTextView != null) {
                     titleTextView.setText(task.getTitle());
-                    
-                    // Apply strikethrough effect for completed tasks
-                    if (task.getStatus() != null && task.getStatus().equals("completed")) {
-                        titleTextView.setPaintFlags(titleTextView.getPaintFlags() | android.graphics.Paint.STRIKE_THRU_TEXT_FLAG);
-                        Log.d(TAG, "Applied strikethrough to task: " + task.getTitle());
-                    } else {
-                        titleTextView.setPaintFlags(titleTextView.getPaintFlags() & ~android.graphics.Paint.STRIKE_THRU_TEXT_FLAG);
-                        Log.d(TAG, "Removed strikethrough from task: " + task.getTitle());
-                    }
-                }
-                
-                // Show streak information for habits if enabled
-                if (showStreakInfo && task.isHabit()) {
-                    TextView streakTextView = itemView.findViewById(R.id.habit_streak);
-                    if (streakTextView != null) {
-                        int streak = task.getCurrentStreak();
-                        String streakText = streak > 0 ? 
-                                String.format(Locale.getDefault(), "%d day%s streak", streak, streak > 1 ? "s" : "") : 
-                                "Start your streak today!";
-                        streakTextView.setText(streakText);
-                        streakTextView.setVisibility(View.VISIBLE);
-                    }
                 }
+                bindStreak(task);
                 
                 // Set time
                 if (timeTextView != null) {
-                    String startTime = task.getStartTime();
-                    String endTime = task.getEndTime();
-                    if (startTime != null && !startTime.isEmpty() && endTime != null && !endTime.isEmpty()) {
-                        timeTextView.setText(formatTimeRange(startTime, endTime));
+                    if (task.getStartMillis() >= 0 && task.getEndMillis() >= 0) {
+                        timeTextView.setText(TimeFormats.formatTimeRange(task.getStartMillis(), task.getEndMillis()));
                     } else {
                         timeTextView.setText("Time not specified");
                     }
@@ -318,10 +424,8 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
                 
                 // Set duration (remaining time)
                 if (durationTextView != null) {
-                    String startTime = task.getStartTime();
-                    String endTime = task.getEndTime();
-                    if (startTime != null && !startTime.isEmpty() && endTime != null && !endTime.isEmpty()) {
-                        durationTextView.setText("Remaining: " + calculateRemainingTime(startTime, endTime));
+                    if (task.getStartMillis() >= 0 && task.getEndMillis() >= 0) {
+                        durationTextView.setText("Remaining: " + calculateRemainingTime(task.getEndMillis()));
                     } else {
                         durationTextView.setText("");
                     }
@@ -358,31 +462,7 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
                     taskTypeTextView.setTextColor(ContextCompat.getColor(context, textColorResId));
                 }
                 
-                // Update the checkbox state
-                handleCheckbox(task, checkboxView);
-                
-                // Apply visual styling for completed tasks
-                if (task.getStatus() != null && task.getStatus().equals("completed")) {
-                    // Make completed tasks more faded
-                    if (backgroundLayout != null) {
-                        backgroundLayout.setAlpha(0.7f);
-                    }
-                    if (titleTextView != null) titleTextView.setAlpha(0.7f);
-                    if (timeTextView != null) timeTextView.setAlpha(0.7f);
-                    if (durationTextView != null) durationTextView.setAlpha(0.7f);
-                    if (taskTypeTextView != null) taskTypeTextView.setAlpha(0.7f);
-                    if (typeIcon != null) typeIcon.setAlpha(0.7f);
-                } else {
-                    // Normal opacity for pending tasks
-                    if (backgroundLayout != null) {
-                        backgroundLayout.setAlpha(1.0f);
-                    }
-                    if (titleTextView != null) titleTextView.setAlpha(1.0f);
-                    if (timeTextView != null) timeTextView.setAlpha(1.0f);
-                    if (durationTextView != null) durationTextView.setAlpha(1.0f);
-                    if (taskTypeTextView != null) taskTypeTextView.setAlpha(1.0f);
-                    if (typeIcon != null) typeIcon.setAlpha(1.0f);
-                }
+                bindStatus(task);
                 
                 // Update task icon based on type
                 updateTaskIcon(this, task);
@@ -438,118 +518,101 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
                 if (titleTextView != null) titleTextView.setText(task != null ? task.getTitle() : "Error");
             }
         }
-    }
-    
-    /**
-     * Format time range for display (e.g., "9:00 AM - 10:30 AM")
-     */
-    private String formatTimeRange(String startTime, String endTime) {
-        try {
-            // Extract only the time part if we have a full datetime string (YYYY-MM-DD HH:MM:SS)
-            if (startTime != null && startTime.contains(" ")) {
-                startTime = startTime.split(" ")[1];
-            }
-            if (endTime != null && endTime.contains(" ")) {
-                endTime = endTime.split(" ")[1];
+
+        /**
+         * Strikethrough, checkbox and fading of the row for the task's status
+         */
+        void bindStatus(Task task) {
+            // Set title with strikethrough for completed tasks
+            if (titleTextView != null) {
+                // Apply strikethrough effect for completed tasks
+                if (task.getStatus() != null && task.getStatus().equals("completed")) {
+                    titleTextView.setPaintFlags(titleTextView.getPaintFlags() | android.graphics.Paint.STRIKE_THRU_TEXT_FLAG);
+                    Log.d(TAG, "Applied strikethrough to task: " + task.getTitle());
+                } else {
+                    titleTextView.setPaintFlags(titleTextView.getPaintFlags() & ~android.graphics.Paint.STRIKE_THRU_TEXT_FLAG);
+                    Log.d(TAG, "Removed strikethrough from task: " + task.getTitle());
+                }
             }
             
-            // Handle common time formats
-            if (startTime != null && startTime.contains(":")) {
-                SimpleDateFormat inputFormat;
-                if (startTime.split(":").length > 2) {
-                    // Format with seconds
-                    inputFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
-                } else {
-                    // Format without seconds
-                    inputFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+            // Update the checkbox state
+            handleCheckbox(task, checkboxView);
+            
+            // Apply visual styling for completed tasks
+            if (task.getStatus() != null && task.getStatus().equals("completed")) {
+                // Make completed tasks more faded
+                if (backgroundLayout != null) {
+                    backgroundLayout.setAlpha(0.7f);
                 }
-                
-                SimpleDateFormat outputFormat = new SimpleDateFormat("h:mm a", Locale.getDefault());
-                
-                Date startDate = inputFormat.parse(startTime);
-                Date endDate = inputFormat.parse(endTime);
-                
-                if (startDate != null && endDate != null) {
-                    return outputFormat.format(startDate) + " - " + outputFormat.format(endDate);
+                if (titleTextView != null) titleTextView.setAlpha(0.7f);
+                if (timeTextView != null) timeTextView.setAlpha(0.7f);
+                if (durationTextView != null) durationTextView.setAlpha(0.7f);
+                if (taskTypeTextView != null) taskTypeTextView.setAlpha(0.7f);
+                if (typeIcon != null) typeIcon.setAlpha(0.7f);
+            } else {
+                // Normal opacity for pending tasks
+                if (backgroundLayout != null) {
+                    backgroundLayout.setAlpha(1.0f);
+                }
+                if (titleTextView != null) titleTextView.setAlpha(1.0f);
+                if (timeTextView != null) timeTextView.setAlpha(1.0f);
+                if (durationTextView != null) durationTextView.setAlpha(1.0f);
+                if (taskTypeTextView != null) taskTypeTextView.setAlpha(1.0f);
+                if (typeIcon != null) typeIcon.setAlpha(1.0f);
+            }
+        }
+
+        void bindStreak(Task task) {
+            // Show streak information for habits if enabled
+            if (showStreakInfo && task.isHabit()) {
+                TextView streakTextView = itemView.findViewById(R.id.habit_streak);
+                if (streakTextView != null) {
+                    int streak = task.getCurrentStreak();
+                    String streakText = streak > 0 ? 
+                            String.format(Locale.getDefault(), "%d day%s streak", streak, streak > 1 ? "s" : "") : 
+                            "Start your streak today!";
+                    streakTextView.setText(streakText);
+                    streakTextView.setVisibility(View.VISIBLE);
                 }
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error formatting time range: " + e.getMessage());
         }
-        
-        // Fallback to simple format if parsing fails
-        return (startTime != null ? startTime : "") + " - " + (endTime != null ? endTime : "");
     }
     
     /**
-     * Calculate remaining time between current time and end time
+     * Calculate remaining time between current time and the task's end time today
      */
-    private String calculateRemainingTime(String startTime, String endTime) {
-        try {
-            // Extract only the time part if we have a full datetime string
-            if (endTime.contains(" ")) {
-                endTime = endTime.split(" ")[1];
-            }
-            
-            // Get today's date for calculation
-            String today = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
-            String fullEndTime = today + " " + endTime;
-            
-            // Parse the end time
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-            Date endDate = dateFormat.parse(fullEndTime);
-            Date currentDate = new Date();
-            
-            if (endDate != null) {
-                // Calculate time difference in minutes
-                long diffInMillis = endDate.getTime() - currentDate.getTime();
-                
-                // If end time has already passed, return "Overdue"
-                if (diffInMillis < 0) {
-                    return "Overdue";
-                }
-                
-                // Convert to hours and minutes
-                long diffMinutes = diffInMillis / (60 * 1000);
-                long hours = diffMinutes / 60;
-                long minutes = diffMinutes % 60;
-                
-                // Format the time difference
-                if (hours > 0) {
-                    return hours + "h " + minutes + "m left";
-                } else {
-                    return minutes + "m left";
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error calculating remaining time: " + e.getMessage());
+    private String calculateRemainingTime(long endMillis) {
+        long now = System.currentTimeMillis();
+        // Lists show today's tasks, repetitions included, so the end is taken on today's date
+        long diffInMillis = TimeFormats.sameTimeOn(endMillis, now) - now;
+        
+        // If end time has already passed, return "Overdue"
+        if (diffInMillis < 0) {
+            return "Overdue";
         }
         
-        return "";
+        // Convert to hours and minutes
+        long diffMinutes = diffInMillis / (60 * 1000);
+        long hours = diffMinutes / 60;
+        long minutes = diffMinutes % 60;
+        
+        // Format the time difference
+        if (hours > 0) {
+            return hours + "h " + minutes + "m left";
+        } else {
+            return minutes + "m left";
+        }
     }
 
     /**
-     * Sorts the task list to move completed tasks to the bottom
+     * Sorts the task list to move completed tasks to the bottom; the rows move rather
+     * than the whole list being rebound
      */
     public void sortTasksByCompletionStatus() {
-        if (taskList != null) {
-            Collections.sort(taskList, (task1, task2) -> {
-                // First, check completion status - completed tasks go to the bottom
-                boolean isCompleted1 = "completed".equals(task1.getStatus());
-                boolean isCompleted2 = "completed".equals(task2.getStatus());
-                
-                if (isCompleted1 && !isCompleted2) {
-                    return 1; // t1 is completed, t2 is not, so t1 goes after t2
-                } else if (!isCompleted1 && isCompleted2) {
-                    return -1; // t1 is not completed, t2 is, so t1 goes before t2
-                }
-                
-                // If both are completed or both are not completed, sort by time
-                return 0; // Keep original order
-            });
-            
-            notifyDataSetChanged();
-        }
+        List<Task> sorted = new ArrayList<>(latestList);
+        // Stable sort: tasks keep their order within each group
+        Collections.sort(sorted, (task1, task2) -> Boolean.compare(task1.isCompleted(), task2.isCompleted()));
+        submitList(sorted);
     }
 
     /**
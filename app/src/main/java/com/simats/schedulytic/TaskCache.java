@@ -0,0 +1,565 @@
+package com.simats.schedulytic;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Process-wide in-memory task cache shared by every TaskManager instance.
+ * Tasks are keyed by ID and indexed by due date; every write goes through to
+ * {@link TaskRepository} and is published as a fine-grained {@link TaskChange}
+ * so screens can patch a single row instead of reloading the whole list.
+ *
+ * Writes update memory and publish at once, from any thread; the repository write is
+ * queued on {@link AppExecutors#db()}. Reads that can miss memory query the repository,
+ * so they never run on the main thread; run them on {@link AppExecutors#db()} to see
+ * every write queued before them. Screens read through {@link TaskManager}, which
+ * hands the result back on the main thread.
+ */
+public class TaskCache {
+    private static final String TAG = "TaskCache";
+    private static TaskCache instance;
+
+    /**
+     * A single add/update/delete of one task
+     */
+    public static final class TaskChange {
+        public enum Type { ADDED, UPDATED, DELETED }
+
+        private final Type type;
+        private final String taskId;
+        private final Task task;
+
+        TaskChange(Type type, String taskId, Task task) {
+            this.type = type;
+            this.taskId = taskId;
+            this.task = task;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        /**
+         * @return The changed task, or null for DELETED
+         */
+        public Task getTask() {
+            return task;
+        }
+    }
+
+    private final TaskRepository repository;
+    private final Map<String, Task> tasksById = new HashMap<>();
+    private final Map<String, Set<String>> taskIdsByDate = new HashMap<>();
+    private final Set<String> loadedDates = new HashSet<>();
+    // Removed from memory, but the repository delete has not run yet; reads skip them
+    private final Set<String> deleting = new HashSet<>();
+    private final RecurrenceEngine recurrence = RecurrenceEngine.getInstance();
+    // Repeating tasks can occur on any date, so they are loaded once regardless of due date
+    private boolean repeatingLoaded;
+    // Touched on the main thread only
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private TaskCache(Context context) {
+        this.repository = TaskRepository.getInstance(context);
+    }
+
+    public static synchronized TaskCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new TaskCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * A screen's subscription to task changes. Changes made while the screen is
+     * stopped are held, merged per task, and handed over in order when it starts
+     * again, so the screen ends up with the latest state of every task it missed.
+     */
+    private final class Subscriber implements LifecycleEventObserver {
+        private final Consumer<TaskChange> observer;
+        private final LinkedHashMap<String, TaskChange> pending = new LinkedHashMap<>();
+        private Lifecycle.State state = Lifecycle.State.INITIALIZED;
+
+        Subscriber(Consumer<TaskChange> observer) {
+            this.observer = observer;
+        }
+
+        void offer(TaskChange change) {
+            if (state.isAtLeast(Lifecycle.State.STARTED)) {
+                observer.accept(change);
+                return;
+            }
+            TaskChange held = pending.remove(change.getTaskId());
+            if (held != null && held.getType() == TaskChange.Type.ADDED) {
+                // The screen never saw the task, so it is still an addition, or nothing at all
+                if (change.getType() == TaskChange.Type.DELETED) {
+                    return;
+                }
+                change = new TaskChange(TaskChange.Type.ADDED, change.getTaskId(), change.getTask());
+            }
+            pending.put(change.getTaskId(), change);
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            state = source.getLifecycle().getCurrentState();
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                source.getLifecycle().removeObserver(this);
+                subscribers.remove(this);
+                pending.clear();
+            } else if (event == Lifecycle.Event.ON_START && !pending.isEmpty()) {
+                List<TaskChange> held = new ArrayList<>(pending.values());
+                pending.clear();
+                for (TaskChange change : held) {
+                    observer.accept(change);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver single-task changes to the observer on the main thread while the owner is
+     * started. Changes made while it is stopped (another screen on top) are queued for
+     * it and delivered when it starts again, latest per task; none are lost. The
+     * subscription ends when the owner is destroyed. Must be called on the main thread.
+     */
+    public void observeChanges(LifecycleOwner owner, Consumer<TaskChange> observer) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+        Subscriber subscriber = new Subscriber(observer);
+        subscribers.add(subscriber);
+        owner.getLifecycle().addObserver(subscriber);
+    }
+
+    /**
+     * The task if it is held in memory. Never reads the repository, so it can be called
+     * on any thread.
+     * @return The task, or null if it is not in memory
+     */
+    public synchronized Task peek(String taskId) {
+        return taskId != null ? tasksById.get(taskId) : null;
+    }
+
+    /**
+     * Look up a task by ID, falling back to the local repository on a miss. Not for
+     * the main thread.
+     * @return The task, or null if unknown
+     */
+    public Task getTask(String taskId) {
+        if (taskId == null) {
+            return null;
+        }
+        synchronized (this) {
+            Task cached = tasksById.get(taskId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Task stored = repository.getTask(taskId);
+        if (stored == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (deleting.contains(stored.getTaskId())) {
+                return null;
+            }
+            Task cached = tasksById.get(taskId);
+            if (cached != null) {
+                return cached;
+            }
+            index(stored);
+            return stored;
+        }
+    }
+
+    /**
+     * Tasks due on the given date (YYYY-MM-DD); a null or empty date returns every task.
+     * The first call for a date reads the repository; later calls are served from
+     * memory. Not for the main thread.
+     */
+    public List<Task> getTasksForDate(String date) {
+        if (date == null || date.isEmpty()) {
+            List<Task> stored = repository.getTasksForDate(date);
+            List<Task> tasks = new ArrayList<>(stored.size());
+            synchronized (this) {
+                for (Task task : stored) {
+                    Task cached = tasksById.get(task.getTaskId());
+                    if (cached != null) {
+                        tasks.add(cached);
+                    } else if (!deleting.contains(task.getTaskId())) {
+                        tasks.add(task);
+                    }
+                }
+            }
+            return tasks;
+        }
+        synchronized (this) {
+            if (loadedDates.contains(date)) {
+                return snapshotForDate(date);
+            }
+        }
+        List<Task> stored = repository.getTasksForDate(date);
+        synchronized (this) {
+            for (Task task : stored) {
+                indexStored(task);
+            }
+            loadedDates.add(date);
+            return snapshotForDate(date);
+        }
+    }
+
+    /**
+     * Tasks due on the given date plus repeating tasks with an occurrence on it. A
+     * repetition is the task itself, so it keeps the task's ID and times; it is
+     * pending on every date but its own, since completions are not kept per occurrence.
+     * Not for the main thread.
+     */
+    public List<Task> getTasksOccurringOn(String date) {
+        List<Task> tasks = getTasksForDate(date);
+        LocalDate day;
+        try {
+            day = LocalDate.parse(date);
+        } catch (DateTimeParseException | NullPointerException e) {
+            return tasks;
+        }
+
+        List<Task> repeating = new ArrayList<>();
+        synchronized (this) {
+            if (!repeatingLoaded) {
+                for (Task task : repository.getRepeatingTasks()) {
+                    indexStored(task);
+                }
+                repeatingLoaded = true;
+            }
+            for (Task task : tasksById.values()) {
+                if (!date.equals(task.getDueDate()) && recurrence.repeats(task)) {
+                    repeating.add(task);
+                }
+            }
+        }
+
+        for (Task task : repeating) {
+            if (recurrence.occursOn(task, day)) {
+                tasks.add(task.isCompleted() ? task.withStatus(Task.STATUS_PENDING) : task);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * IDs of the tasks due on the given date. Not for the main thread.
+     */
+    public List<String> getTaskIdsForDate(String date) {
+        List<String> ids = new ArrayList<>();
+        for (Task task : getTasksForDate(date)) {
+            ids.add(task.getTaskId());
+        }
+        return ids;
+    }
+
+    /**
+     * Add or replace a task; publishes ADDED or UPDATED when the content changed
+     */
+    public void put(Task task) {
+        if (task == null || task.getTaskId() == null || task.getTaskId().isEmpty()) {
+            return;
+        }
+        TaskChange change;
+        synchronized (this) {
+            change = putInternal(task);
+        }
+        AppExecutors.getInstance().runOnDb(() -> repository.upsertTask(task));
+        publish(change);
+    }
+
+    /**
+     * Store a batch of tasks (e.g. a server fetch) in one repository transaction.
+     * Only rows whose content actually changed are published.
+     */
+    public void putAll(List<Task> tasks) {
+        if (tasks == null || tasks.isEmpty()) {
+            return;
+        }
+        List<Task> stored = new ArrayList<>(tasks);
+        List<TaskChange> batchChanges = new ArrayList<>();
+        synchronized (this) {
+            for (Task task : tasks) {
+                if (task == null || task.getTaskId() == null || task.getTaskId().isEmpty()) {
+                    continue;
+                }
+                TaskChange change = putInternal(task);
+                if (change != null) {
+                    batchChanges.add(change);
+                }
+            }
+        }
+        AppExecutors.getInstance().runOnDb(() -> repository.upsertTasks(stored));
+        for (TaskChange change : batchChanges) {
+            publish(change);
+        }
+    }
+
+    /**
+     * Update the status of a task, optionally forcing its task type to be preserved
+     */
+    public void updateStatus(String taskId, String status, String preservedTaskType) {
+        Task updated = null;
+        synchronized (this) {
+            Task cached = tasksById.get(taskId);
+            if (cached != null) {
+                Task.Builder builder = cached.toBuilder().status(status);
+                if (preservedTaskType != null && !preservedTaskType.isEmpty()) {
+                    builder.type(preservedTaskType);
+                }
+                updated = builder.build();
+                tasksById.put(taskId, updated);
+            }
+        }
+        boolean cached = updated != null;
+        if (cached) {
+            publish(new TaskChange(TaskChange.Type.UPDATED, taskId, updated));
+        }
+        AppExecutors.getInstance().runOnDb(() -> {
+            boolean stored = repository.updateStatus(taskId, status, preservedTaskType);
+            Task loaded = !cached && stored ? getTask(taskId) : null;
+            if (loaded != null) {
+                publish(new TaskChange(TaskChange.Type.UPDATED, taskId, loaded));
+            }
+        });
+    }
+
+    /**
+     * Replace the task stored under oldTaskId (e.g. a temporary ID) with newTask
+     */
+    public void replace(String oldTaskId, Task newTask) {
+        TaskChange removed = null;
+        TaskChange added;
+        synchronized (this) {
+            if (oldTaskId != null && !oldTaskId.equals(newTask.getTaskId())) {
+                if (unindex(oldTaskId)) {
+                    removed = new TaskChange(TaskChange.Type.DELETED, oldTaskId, null);
+                }
+                deleting.add(oldTaskId);
+            }
+            added = putInternal(newTask);
+        }
+        AppExecutors.getInstance().runOnDb(() -> {
+            repository.replaceTask(oldTaskId, newTask);
+            deleted(Collections.singletonList(oldTaskId));
+        });
+        publish(removed);
+        publish(added);
+    }
+
+    /**
+     * Remove a task and publish DELETED
+     */
+    public void remove(String taskId) {
+        synchronized (this) {
+            unindex(taskId);
+            deleting.add(taskId);
+        }
+        AppExecutors.getInstance().runOnDb(() -> {
+            repository.deleteTask(taskId);
+            deleted(Collections.singletonList(taskId));
+        });
+        publish(new TaskChange(TaskChange.Type.DELETED, taskId, null));
+    }
+
+    /**
+     * Remove several tasks in one repository transaction
+     */
+    public void removeAll(List<String> taskIds) {
+        if (taskIds == null || taskIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(taskIds);
+        synchronized (this) {
+            for (String taskId : ids) {
+                unindex(taskId);
+            }
+            deleting.addAll(ids);
+        }
+        AppExecutors.getInstance().runOnDb(() -> {
+            repository.deleteTasks(ids);
+            deleted(ids);
+        });
+        for (String taskId : ids) {
+            publish(new TaskChange(TaskChange.Type.DELETED, taskId, null));
+        }
+    }
+
+    /**
+     * Apply a server delta that {@link SyncEngine} has already committed to the
+     * repository: only memory is updated, and only rows that changed are published.
+     * deletedIds must be the tasks that were actually removed from the repository.
+     */
+    void applySynced(List<Task> upserts, List<String> deletedIds) {
+        List<TaskChange> syncChanges = new ArrayList<>();
+        synchronized (this) {
+            for (Task task : upserts) {
+                if (task == null || task.getTaskId() == null || task.getTaskId().isEmpty()) {
+                    continue;
+                }
+                TaskChange change = putInternal(task);
+                if (change != null) {
+                    syncChanges.add(change);
+                }
+            }
+            for (String taskId : deletedIds) {
+                unindex(taskId);
+                syncChanges.add(new TaskChange(TaskChange.Type.DELETED, taskId, null));
+            }
+        }
+        for (TaskChange change : syncChanges) {
+            publish(change);
+        }
+    }
+
+    /**
+     * Drop all in-memory state (e.g. on logout). Stored rows are kept.
+     */
+    public synchronized void clear() {
+        tasksById.clear();
+        taskIdsByDate.clear();
+        loadedDates.clear();
+        repeatingLoaded = false;
+    }
+
+    private TaskChange putInternal(Task task) {
+        Task existing = tasksById.get(task.getTaskId());
+        if (existing != null && sameContent(existing, task)) {
+            return null;
+        }
+        if (existing != null) {
+            unindex(task.getTaskId());
+        }
+        index(task);
+        TaskChange.Type type = existing == null ? TaskChange.Type.ADDED : TaskChange.Type.UPDATED;
+        return new TaskChange(type, task.getTaskId(), task);
+    }
+
+    /**
+     * Index a task read from the repository, unless memory has a newer state of it
+     */
+    private void indexStored(Task task) {
+        if (!tasksById.containsKey(task.getTaskId()) && !deleting.contains(task.getTaskId())) {
+            index(task);
+        }
+    }
+
+    private synchronized void deleted(List<String> taskIds) {
+        deleting.removeAll(taskIds);
+    }
+
+    private void index(Task task) {
+        tasksById.put(task.getTaskId(), task);
+        String date = task.getDueDate() != null ? task.getDueDate() : "";
+        Set<String> ids = taskIdsByDate.get(date);
+        if (ids == null) {
+            ids = new LinkedHashSet<>();
+            taskIdsByDate.put(date, ids);
+        }
+        ids.add(task.getTaskId());
+    }
+
+    private boolean unindex(String taskId) {
+        Task removed = tasksById.remove(taskId);
+        if (removed == null) {
+            return false;
+        }
+        String date = removed.getDueDate() != null ? removed.getDueDate() : "";
+        Set<String> ids = taskIdsByDate.get(date);
+        if (ids != null) {
+            ids.remove(taskId);
+        }
+        return true;
+    }
+
+    private List<Task> snapshotForDate(String date) {
+        List<Task> tasks = new ArrayList<>();
+        Set<String> ids = taskIdsByDate.get(date);
+        if (ids != null) {
+            for (String id : ids) {
+                Task task = tasksById.get(id);
+                if (task != null) {
+                    tasks.add(task);
+                }
+            }
+        }
+        return tasks;
+    }
+
+    private void publish(TaskChange change) {
+        if (change == null) {
+            return;
+        }
+        Log.d(TAG, "Task " + change.getType() + ": " + change.getTaskId());
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            dispatch(change);
+        } else {
+            mainHandler.post(() -> dispatch(change));
+        }
+    }
+
+    private void dispatch(TaskChange change) {
+        // Copied: a subscriber may end while changes are delivered
+        for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+            subscriber.offer(change);
+        }
+    }
+
+    /**
+     * Whether two snapshots of a task match field by field. Tasks are immutable, so an
+     * update always arrives as a new instance and is compared against the cached one.
+     */
+    private static boolean sameContent(Task a, Task b) {
+        if (a == b) {
+            return true;
+        }
+        return Objects.equals(a.getUserId(), b.getUserId())
+                && Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getTaskType(), b.getTaskType())
+                && Objects.equals(a.getStartTime(), b.getStartTime())
+                && Objects.equals(a.getEndTime(), b.getEndTime())
+                && Objects.equals(a.getDueDate(), b.getDueDate())
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getRepeatFrequency(), b.getRepeatFrequency())
+                && Objects.equals(a.getPriority(), b.getPriority())
+                && a.getCurrentStreak() == b.getCurrentStreak()
+                && Objects.equals(a.getColor(), b.getColor())
+                && Objects.equals(a.getVerificationType(), b.getVerificationType())
+                && Double.compare(a.getLatitude(), b.getLatitude()) == 0
+                && Double.compare(a.getLongitude(), b.getLongitude()) == 0
+                && a.getPomodoroCount() == b.getPomodoroCount()
+                && a.getPomodoroLength() == b.getPomodoroLength();
+    }
+}
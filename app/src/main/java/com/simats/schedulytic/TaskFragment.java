@@ -56,6 +56,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
 
     // Make sure we have the correct taskCheckListener implementation 
     private final TaskAdapter.TaskCheckListener taskCheckListener = this;
+    private TaskScope scope;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -140,12 +141,17 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         loadTasks(); // Load initial data
+        
+        // Single-row changes made anywhere in the app arrive through the shared cache
+        TaskCache.getInstance(requireContext())
+                .observeChanges(getViewLifecycleOwner(), this::applyTaskChange);
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        loadTasks(); // Refresh tasks when returning to this fragment
+        // No reload here: edits made on other screens while this one was stopped are
+        // queued by TaskCache and delivered to applyTaskChange when it starts again
         
         // Re-apply scrolling optimizations after resume
         optimizeScrollingPerformance();
@@ -188,7 +194,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
         String userId = prefs.getString("user_id", "");
         
         // Initialize task manager with proper listener
-        TaskManager taskManager = new TaskManager(requireContext(), this);
+        TaskManager taskManager = new TaskManager(requireContext(), this, scope());
         
         // Log task loading attempt
         Log.d(TAG, "Attempting to load tasks for date: " + todayDate + " with user ID: " + userId);
@@ -203,28 +209,10 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
                 userId,
                 new TodayActivitiesManager.TodayActivitiesListener() {
     @Override
-                    public void onActivitiesLoaded(List<TaskItem> activities) {
+                    public void onActivitiesLoaded(List<Task> activities) {
                         if (activities != null && !activities.isEmpty() && isAdded()) {
                             Log.d(TAG, "Loaded " + activities.size() + " tasks from TodayActivitiesManager");
-                            
-                            // Convert TaskItems to Tasks
-                            List<Task> tasks = new ArrayList<>();
-                            for (TaskItem item : activities) {
-                                Task task = new Task(
-                                    item.getId(),  // Using the String taskId constructor
-                                    userId,
-                                    item.getType(),
-                                    item.getTitle(),
-                                    item.getDescription(),
-                                    item.getStartTime(),
-                                    item.getEndTime(),
-                                    todayDate,
-                                    item.getStatus(),
-                                    item.getRepeatFrequency(),
-                                    item.getPriority()
-                                );
-                                tasks.add(task);
-                            }
+                            List<Task> tasks = new ArrayList<>(activities);
                             
                             // Update UI
                             if (!tasks.isEmpty()) {
@@ -307,7 +295,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
             // Make sure the task type is correct
             String type = task.getType() != null ? task.getType().toLowerCase() : "";
             if (!type.equals("workflow") && !type.equals("remainder")) {
-                task.setTaskType("remainder"); // Default to remainder if type is invalid
+                task = task.toBuilder().type(Task.TYPE_REMAINDER).build(); // Default to remainder if type is invalid
             }
             allTasksList.add(task);
         }
@@ -328,7 +316,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
             // Make sure task type is valid
             String type = task.getType() != null ? task.getType().toLowerCase() : "";
             if (!type.equals("workflow") && !type.equals("remainder")) {
-                task.setTaskType("remainder");
+                task = task.toBuilder().type(Task.TYPE_REMAINDER).build();
                 Log.d(TAG, "Fixed task type for new task: " + task.getTitle());
             }
             
@@ -337,7 +325,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
                 if (taskList.get(i).getTaskId().equals(task.getTaskId())) {
                     // Update existing task
                     taskList.set(i, task);
-                    taskAdapter.notifyItemChanged(i);
+                    taskAdapter.submitList(taskList);
                     updateTaskCounts();
                     Log.d(TAG, "Updated existing task: " + task.getTitle());
                     return;
@@ -346,7 +334,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
             
             // Add new task
             taskList.add(task);
-            taskAdapter.notifyItemInserted(taskList.size() - 1);
+            taskAdapter.submitList(taskList);
             updateTaskCounts();
             
             // Hide empty state
@@ -369,7 +357,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
         String newStatus = isChecked ? "completed" : "pending";
         
         // Update local task status first for immediate UI response
-        task.setStatus(newStatus);
+        replaceStatus(task.getTaskId(), newStatus);
         
         // Create TaskManager instance for network update
         TaskManager taskManager = new TaskManager(requireContext(), new TaskManager.TaskListener() {
@@ -387,16 +375,8 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
             public void onTaskUpdated(Task updatedTask) {
                 // Find the task in our list and update only its status
                 // This preserves all other properties and ensures UI consistency
-                for (int i = 0; i < taskList.size(); i++) {
-                    if (taskList.get(i).getTaskId().equals(updatedTask.getTaskId())) {
-                        // Update only the status of the existing task object
-                        taskList.get(i).setStatus(updatedTask.getStatus());
-                        
-                        // Notify adapter about the specific item change
-                        taskAdapter.notifyItemChanged(i);
-                        Log.d(TAG, "Updated task " + updatedTask.getTaskId() + " status to: " + updatedTask.getStatus());
-                        break;
-                    }
+                if (replaceStatus(updatedTask.getTaskId(), updatedTask.getStatus())) {
+                    Log.d(TAG, "Updated task " + updatedTask.getTaskId() + " status to: " + updatedTask.getStatus());
                 }
                 
                 // Update task counts
@@ -417,8 +397,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
             public void onError(String message) {
                 Log.e(TAG, "Error updating task status: " + message);
                 // Revert UI change on error
-                task.setStatus(isChecked ? "pending" : "completed");
-                taskAdapter.notifyDataSetChanged();
+                replaceStatus(task.getTaskId(), isChecked ? "pending" : "completed");
             }
         });
         
@@ -433,12 +412,27 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
         updateTaskCounts();
     }
 
+    /**
+     * Swap the listed task for a copy with the new status and rebind its row
+     * @return true if the task was in the list
+     */
+    private boolean replaceStatus(String taskId, String status) {
+        for (int i = 0; i < taskList.size(); i++) {
+            if (taskList.get(i).getTaskId().equals(taskId)) {
+                taskList.set(i, taskList.get(i).withStatus(status));
+                taskAdapter.submitList(taskList);
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void onTaskUpdated(Task task) {
         for (int i = 0; i < taskList.size(); i++) {
             if (taskList.get(i).getTaskId().equals(task.getTaskId())) {
                 taskList.set(i, task);
-                taskAdapter.notifyItemChanged(i);
+                taskAdapter.submitList(taskList);
                 break;
             }
         }
@@ -450,7 +444,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
         for (int i = 0; i < taskList.size(); i++) {
             if (taskList.get(i).getTaskId().equals(taskId)) {
                 taskList.remove(i);
-                taskAdapter.notifyItemRemoved(i);
+                taskAdapter.submitList(taskList);
                 break;
             }
         }
@@ -469,16 +463,17 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
         if (!isAdded() || getContext() == null) return;
         
         // Update the streak in the task object
-        for (Task task : taskList) {
+        for (int i = 0; i < taskList.size(); i++) {
+            Task task = taskList.get(i);
             if (task.getTaskId().equals(taskId)) {
-                task.setCurrentStreak(newStreak);
+                taskList.set(i, task.withCurrentStreak(newStreak));
                 Log.d(TAG, "Updated streak for task " + task.getTitle() + " to " + newStreak);
                 break;
             }
         }
         
         // Update the UI
-        taskAdapter.notifyDataSetChanged();
+        taskAdapter.submitList(taskList);
     }
 
     @Override
@@ -513,25 +508,37 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
             }
             
             // Try to load from local cache as fallback
-            TaskManager taskManager = new TaskManager(requireContext(), this);
-            List<Task> localTasks = taskManager.loadLocalTasks(todayDate);
-            if (!localTasks.isEmpty()) {
+            TaskManager taskManager = new TaskManager(requireContext(), this, scope());
+            taskManager.loadLocalTasks(todayDate, localTasks -> {
+                // Tasks may have arrived while the cache was read
+                if (!isAdded() || localTasks.isEmpty() || !taskList.isEmpty()) return;
+                
                 taskList.clear();
                 taskList.addAll(localTasks);
-                taskAdapter.notifyDataSetChanged();
+                taskAdapter.submitList(taskList);
                 updateTaskCounts();
                 
                 // Adjust message to indicate we're using offline data
                 if (emptyStateTextView != null) {
                     emptyStateTextView.setVisibility(View.GONE);
-        }
-            }
+                }
+            });
         }
         
         // Log the actual error for debugging
         Log.e(TAG, "Error loading tasks: " + message);
     }
 
+    /**
+     * Background work of this fragment, cancelled when it is destroyed
+     */
+    private TaskScope scope() {
+        if (scope == null) {
+            scope = TaskScope.of(this);
+        }
+        return scope;
+    }
+
     private void updateTaskCounts() {
         int totalWorkflow = 0;
         int totalRemainder = 0;
@@ -791,47 +798,15 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
         String today = dateFormat.format(new Date());
         
         for (Task task : allTasksList) {
-            String taskDate = task.getDueDate();
-            if (taskDate == null) continue;
-            
-            switch (currentFilter) {
-                case "today":
-                    if (today.equals(taskDate)) {
-                        filteredTasks.add(task);
-                    }
-                    break;
-                case "upcoming":
-                    try {
-                        Date taskDateObj = dateFormat.parse(taskDate);
-                        Date todayDateObj = dateFormat.parse(today);
-                        if (taskDateObj != null && todayDateObj != null && taskDateObj.after(todayDateObj)) {
-                            filteredTasks.add(task);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Date parse error: " + e.getMessage());
-                    }
-                    break;
-                case "past":
-                    try {
-                        Date taskDateObj = dateFormat.parse(taskDate);
-                        Date todayDateObj = dateFormat.parse(today);
-                        if (taskDateObj != null && todayDateObj != null && taskDateObj.before(todayDateObj)) {
-                            filteredTasks.add(task);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Date parse error: " + e.getMessage());
-                    }
-                    break;
-                case "all":
-                    filteredTasks.add(task);
-                    break;
+            if (matchesCurrentFilter(task, dateFormat, today)) {
+                filteredTasks.add(task);
             }
         }
         
         // Update display list
         taskList.clear();
         taskList.addAll(filteredTasks);
-        taskAdapter.notifyDataSetChanged();
+        taskAdapter.submitList(taskList);
         
         // Update empty state
         if (emptyStateTextView != null) {
@@ -862,6 +837,101 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
         Log.d(TAG, "Filtered tasks: " + filteredTasks.size() + " for filter: " + currentFilter);
     }
     
+    /**
+     * Check whether a task belongs in the list for the selected filter tab
+     */
+    private boolean matchesCurrentFilter(Task task, SimpleDateFormat dateFormat, String today) {
+        String taskDate = task.getDueDate();
+        if (taskDate == null) return false;
+        
+        switch (currentFilter) {
+            case "today":
+                return today.equals(taskDate);
+            case "upcoming":
+            case "past":
+                try {
+                    Date taskDateObj = dateFormat.parse(taskDate);
+                    Date todayDateObj = dateFormat.parse(today);
+                    if (taskDateObj == null || todayDateObj == null) return false;
+                    return "upcoming".equals(currentFilter)
+                            ? taskDateObj.after(todayDateObj)
+                            : taskDateObj.before(todayDateObj);
+                } catch (Exception e) {
+                    Log.e(TAG, "Date parse error: " + e.getMessage());
+                    return false;
+                }
+            case "all":
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Apply one add/update/delete from the shared task cache without reloading the list
+     */
+    private void applyTaskChange(TaskCache.TaskChange change) {
+        if (change == null || !isAdded() || taskAdapter == null) return;
+        
+        String taskId = change.getTaskId();
+        if (change.getType() == TaskCache.TaskChange.Type.DELETED) {
+            for (int i = 0; i < allTasksList.size(); i++) {
+                if (allTasksList.get(i).getTaskId().equals(taskId)) {
+                    allTasksList.remove(i);
+                    break;
+                }
+            }
+            onTaskDeleted(taskId);
+            return;
+        }
+        
+        Task task = change.getTask();
+        String type = task.getType() != null ? task.getType().toLowerCase() : "";
+        if (!type.equals("workflow") && !type.equals("remainder")) {
+            task = task.toBuilder().type(Task.TYPE_REMAINDER).build();
+        }
+        
+        boolean inAllTasks = false;
+        for (int i = 0; i < allTasksList.size(); i++) {
+            if (allTasksList.get(i).getTaskId().equals(taskId)) {
+                allTasksList.set(i, task);
+                inAllTasks = true;
+                break;
+            }
+        }
+        if (!inAllTasks) {
+            allTasksList.add(task);
+        }
+        
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        boolean visible = matchesCurrentFilter(task, dateFormat, dateFormat.format(new Date()));
+        int index = -1;
+        for (int i = 0; i < taskList.size(); i++) {
+            if (taskList.get(i).getTaskId().equals(taskId)) {
+                index = i;
+                break;
+            }
+        }
+        
+        if (index >= 0 && visible) {
+            taskList.set(index, task);
+            taskAdapter.submitList(taskList);
+        } else if (index >= 0) {
+            taskList.remove(index);
+            taskAdapter.submitList(taskList);
+        } else if (visible) {
+            taskList.add(task);
+            taskAdapter.submitList(taskList);
+            if (emptyStateTextView != null) {
+                emptyStateTextView.setVisibility(View.GONE);
+            }
+            if (taskRecyclerView != null) {
+                taskRecyclerView.setVisibility(View.VISIBLE);
+            }
+        }
+        updateTaskCounts();
+    }
+    
     /**
      * Load all tasks for filtering (not just today's)
      */
@@ -897,7 +967,7 @@ public class TaskFragment extends Fragment implements TaskManager.TaskListener,
             public void onError(String message) {
                 Log.e(TAG, "Error loading all tasks: " + message);
             }
-        });
+        }, scope());
         
         // Load all tasks without date filter
         taskManager.loadAllTasks();
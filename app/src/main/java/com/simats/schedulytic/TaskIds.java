@@ -0,0 +1,98 @@
+package com.simats.schedulytic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Task IDs and the notification keys derived from them.
+ *
+ * New tasks get a random UUID on the device. The server stores it with the task and
+ * returns it as the task's ID from then on, so a task created offline never changes
+ * ID and nothing has to be remapped once it is synced. Older tasks keep the numeric
+ * IDs the server assigned them.
+ *
+ * Notifications and PendingIntents need an int, so {@link #notificationId} folds any
+ * ID into a stable 32-bit key: numeric IDs map to themselves, so notifications posted
+ * before client IDs existed can still be cancelled, and other IDs are hashed with
+ * FNV-1a, which gives the same key on every run and every device.
+ */
+public final class TaskIds {
+    private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+    // Request codes are key * 100 + slot; keys up to this bound keep that within an int
+    private static final int MAX_REQUEST_KEY = (Integer.MAX_VALUE - 99) / 100;
+
+    private TaskIds() {
+    }
+
+    /**
+     * @return A new client task ID
+     */
+    public static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * @return true if the ID was generated on a device rather than assigned by the server
+     */
+    public static boolean isClientId(String taskId) {
+        if (taskId == null || taskId.length() != 36) {
+            return false;
+        }
+        try {
+            UUID.fromString(taskId);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Stable notification ID of the task
+     */
+    public static int notificationId(String taskId) {
+        if (taskId == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(taskId);
+        } catch (NumberFormatException e) {
+            int hash = FNV_OFFSET_BASIS;
+            for (byte b : taskId.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= FNV_PRIME;
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * @return Stable RecyclerView item ID of the task: numeric IDs map to themselves,
+     * UUIDs fold their two halves together and anything else is hashed
+     */
+    public static long stableId(String taskId) {
+        if (taskId == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(taskId);
+        } catch (NumberFormatException e) {
+            if (isClientId(taskId)) {
+                UUID uuid = UUID.fromString(taskId);
+                return uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+            }
+            return ((long) taskId.hashCode() << 32) | (notificationId(taskId) & 0xffffffffL);
+        }
+    }
+
+    /**
+     * The notification ID is first reduced to a key in [0, 21474835], so that
+     * {@code key * 100 + slot} cannot overflow: two tasks share request codes only if
+     * their keys are equal. Numeric IDs in that range are their own key.
+     * @param slot Action of the notification, 0 to 99
+     * @return Stable PendingIntent request code of one action of the task's notification
+     */
+    public static int requestCode(String taskId, int slot) {
+        return Math.floorMod(notificationId(taskId), MAX_REQUEST_KEY + 1) * 100 + slot;
+    }
+}
@@ -17,11 +17,13 @@ import java.util.Set;
 import java.util.List;
 import android.text.TextUtils;
 import java.util.Collections;
+import java.time.LocalDate;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import android.database.sqlite.SQLiteDatabase;
 import android.content.ContentValues;
-import com.android.volley.Request;
-import com.android.volley.toolbox.JsonObjectRequest;
+import com.simats.schedulytic.model.Habit;
 
 public class TaskManager {
     private static final String TAG = "TaskManager";
@@ -30,6 +32,9 @@ public class TaskManager {
     private final VolleyNetworkManager networkManager;
     private final NotificationHandler notificationHandler;
     private final ReminderNotificationManager reminderNotificationManager;
+    private final TaskCache taskCache;
+    // Screen the local reads report to; null delivers them as long as the process lives
+    private final TaskScope scope;
 
     public interface TaskListener {
         void onTasksLoaded(java.util.List<Task> tasks);
@@ -38,12 +43,91 @@ public class TaskManager {
         void onTaskDeleted(String taskId);
         void onHabitStreakUpdated(String taskId, int newStreak);
         void onError(String message);
-    }    public TaskManager(Context context, TaskListener listener) {
+    }
+
+    /**
+     * One change for {@link #updateTasksBatch}
+     */
+    public static final class TaskUpdate {
+        static final int KIND_STATUS = 0;
+        static final int KIND_COMPLETION = 1;
+        static final int KIND_TIME = 2;
+
+        final int kind;
+        final String taskId;
+        final String status;
+        final boolean completed;
+        final String startTime;
+        final String endTime;
+
+        private TaskUpdate(int kind, String taskId, String status, boolean completed,
+                           String startTime, String endTime) {
+            this.kind = kind;
+            this.taskId = taskId;
+            this.status = status;
+            this.completed = completed;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        /**
+         * Set the task status, e.g. "in_progress", "cancelled" or "skipped_today"
+         */
+        public static TaskUpdate status(String taskId, String status) {
+            return new TaskUpdate(KIND_STATUS, taskId, status, false, null, null);
+        }
+
+        /**
+         * Record or remove today's completion of the task
+         */
+        public static TaskUpdate completion(String taskId, boolean completed) {
+            return new TaskUpdate(KIND_COMPLETION, taskId, null, completed, null, null);
+        }
+
+        /**
+         * Move the task to new 12-hour times (e.g. "08:00 AM"); a null end time clears it
+         */
+        public static TaskUpdate time(String taskId, String startTime, String endTime) {
+            return new TaskUpdate(KIND_TIME, taskId, null, false, startTime, endTime);
+        }
+    }
+
+    public TaskManager(Context context, TaskListener listener) {
+        this(context, listener, null);
+    }
+
+    /**
+     * @param scope Scope of the screen that owns the listener; local reads are not
+     *              delivered once it has been destroyed
+     */
+    public TaskManager(Context context, TaskListener listener, TaskScope scope) {
         this.context = context;
         this.listener = listener;
+        this.scope = scope;
         this.networkManager = VolleyNetworkManager.getInstance(context);
         this.notificationHandler = new NotificationHandler(context);
         this.reminderNotificationManager = new ReminderNotificationManager(context);
+        this.taskCache = TaskCache.getInstance(context);
+    }
+
+    /**
+     * Read local storage on the database thread and hand the result to onResult on the
+     * main thread, through the screen's scope when there is one
+     */
+    private <T> void readLocal(Callable<T> read, Consumer<T> onResult) {
+        if (scope != null) {
+            scope.run(AppExecutors.getInstance().db(), read, onResult);
+            return;
+        }
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.db().execute(() -> {
+            try {
+                T result = read.call();
+                executors.main().execute(() -> onResult.accept(result));
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading local tasks: " + e.getMessage(), e);
+            }
+        });
     }
 
     /**
@@ -102,78 +186,39 @@ public class TaskManager {
         }
     }
     
-    private String findBestWorkingAddTaskUrl() {
-        // Use VolleyNetworkManager to get the add task URL
-        VolleyNetworkManager networkManager = VolleyNetworkManager.getInstance(context);
-        String addTaskUrl = networkManager.getAddTaskUrl();
-        Log.d(TAG, "Using add task URL: " + addTaskUrl);
-        return addTaskUrl;
-    }
-
-    // Function to add a new task with parallel URL attempts for high reliability
+    /**
+     * Add a new task. The task is stored and scheduled locally right away under a
+     * client-generated ID, which the server keeps, and the server write is queued in
+     * the outbox, which replays it when online.
+     */
     public void addTask(Task task) {
         try {
+            if (task.getTaskId() == null || task.getTaskId().isEmpty()) {
+                task = task.toBuilder().taskId(TaskIds.newId()).build();
+            }
+            
             // Convert task to JSON
             JSONObject jsonTask = task.toJson();
             
-            // Get the best working URL for adding tasks
-            String directUrl = findBestWorkingAddTaskUrl();
-            
             // Log the request with detailed information
             Log.d(TAG, "Adding task: " + jsonTask.toString());
             Log.d(TAG, "Task details - Date: " + task.getDueDate() + 
                     ", Time: " + task.getStartTime() + " to " + task.getEndTime() + 
                     ", Type: " + task.getType());
             
-            // Use VolleyNetworkManager for the request
-            VolleyNetworkManager networkManager = VolleyNetworkManager.getInstance(context);
-            networkManager.makePostRequest(
-                // Using the endpoint "add_task.php"
-                "add_task.php",
-                jsonTask,
-                new VolleyNetworkManager.JsonResponseListener() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        try {
-                            Log.d(TAG, "Task added successfully: " + response.toString());
-                            
-                            // Parse task ID from response if available
-                            String taskId = task.getTaskId();
-                            if (response.has("task_id")) {
-                                taskId = response.getString("task_id");
-                            } else if (response.has("id")) {
-                                taskId = response.getString("id");
-                            } else if (response.has("data") && response.getJSONObject("data").has("task_id")) {
-                                taskId = response.getJSONObject("data").getString("task_id");
-                            }
-                            task.setTaskId(taskId);
-                              // Save to local database for offline access
-                            saveTaskToLocalDb(task);
-                            
-                            // Schedule notifications for the task
-                            scheduleTaskNotifications(task);
-                            
-                            // Notify listener of successful add
-                            if (listener != null) {
-                                listener.onTaskAdded(task);
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing add task response: " + e.getMessage());
-                            if (listener != null) {
-                                listener.onError("Error adding task: " + e.getMessage());
-                            }
-                        }
-                    }
-                    
-                    @Override
-                    public void onError(String errorMessage) {
-                        Log.e(TAG, "Error adding task: " + errorMessage);
-                        
-                        // Try direct IP address as fallback
-                        tryAddTaskWithDirectIp(task, errorMessage);
-                    }
-                }
-            );
+            // Save to local database for offline access
+            saveTaskToLocalDb(task);
+            
+            // Schedule notifications for the task
+            scheduleTaskNotifications(task);
+            
+            MutationOutbox.getInstance(context).enqueue(
+                MutationOutbox.ENTITY_TASK, task.getTaskId(), MutationOutbox.OP_ADD_TASK, jsonTask);
+            
+            // Notify listener of successful add
+            if (listener != null) {
+                listener.onTaskAdded(task);
+            }
         } catch (Exception e) {
             Log.e(TAG, "Error adding task: " + e.getMessage());
             if (listener != null) {
@@ -188,203 +233,17 @@ public class TaskManager {
      * @param isCompleted True if task is completed, false if uncompleted
      */
     public void updateTaskCompletion(String taskId, boolean isCompleted) {
-        try {
-            SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
-            String userId = prefs.getString("user_id", "");
-            String currentDate = getCurrentDate();
-
-            // Create request body
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("task_id", taskId);
-            requestBody.put("user_id", userId);
-            requestBody.put("date", currentDate);
-
-            String endpoint;
-            if (isCompleted) {
-                endpoint = networkManager.getTaskCompletionUrl();
-                Log.d(TAG, "✓ Adding completion for task ID: " + taskId);
-            } else {
-                endpoint = networkManager.getTaskCompletionUrl() + "?action=remove";
-                requestBody.put("action", "remove");
-                Log.d(TAG, "✗ Removing completion for task ID: " + taskId);
-            }
-
-            networkManager.makePostRequest(
-                endpoint,
-                requestBody,
-                new VolleyNetworkManager.JsonResponseListener() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        try {
-                            Log.d(TAG, "Task completion update response: " + response.toString());
-                              if (response.has("status") && response.getString("status").equals("success")) {
-                                // Update local storage
-                                updateLocalTaskCompletion(taskId, isCompleted ? "completed" : "pending", null);
-                                
-                                // Create updated task for notification
-                                Task updatedTask = createTaskFromId(taskId);
-                                if (updatedTask != null) {
-                                    updatedTask.setStatus(isCompleted ? "completed" : "pending");
-                                    
-                                    // Cancel notifications if task is completed, reschedule if uncompleted
-                                    if (isCompleted) {
-                                        notificationHandler.cancelTaskNotifications(taskId);
-                                        Log.d(TAG, "Cancelled notifications for completed task: " + taskId);
-                                    } else {
-                                        // Task is being marked as uncompleted, reschedule notifications
-                                        scheduleTaskNotifications(updatedTask);
-                                        Log.d(TAG, "Rescheduled notifications for uncompleted task: " + taskId);
-                                    }
-                                    
-                                    // Notify listener
-                                    if (listener != null) {
-                                        listener.onTaskUpdated(updatedTask);
-                                    }
-                                }
-                                
-                                String action = isCompleted ? "completed" : "uncompleted";
-                                Log.d(TAG, "✓ Task " + action + " successfully: " + taskId);
-                            } else {
-                                String errorMessage = response.optString("message", "Unknown error");
-                                Log.e(TAG, "Server error updating task completion: " + errorMessage);
-                                if (listener != null) {
-                                    listener.onError("Error updating task completion: " + errorMessage);
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing completion response: " + e.getMessage(), e);
-                            if (listener != null) {
-                                listener.onError("Error processing completion response: " + e.getMessage());
-                            }
-                        }
-                    }
-                    
-                    @Override
-                    public void onError(String errorMessage) {
-                        Log.e(TAG, "Network error updating task completion: " + errorMessage);
-                        if (listener != null) {
-                            listener.onError("Network error updating task completion: " + errorMessage);
-                        }
-                    }
-                }
-            );
-        } catch (Exception e) {
-            Log.e(TAG, "Error updating task completion: " + e.getMessage(), e);
-            if (listener != null) {
-                listener.onError("Error updating task completion: " + e.getMessage());
-            }
-        }
+        updateTasksBatch(Collections.singletonList(TaskUpdate.completion(taskId, isCompleted)));
     }
 
     /**
      * Get a task by its ID from local storage
      * This method provides public access to task lookup functionality
      * @param taskId The ID of the task to retrieve
-     * @return The task if found, null otherwise
-     */
-    public Task getTaskById(String taskId) {
-        return createTaskFromId(taskId);
-    }
-
-    /**
-     * Create a task object from local storage using task ID
-     */
-    private Task createTaskFromId(String taskId) {
-        try {
-            SharedPreferences taskPrefs = context.getSharedPreferences("LocalTasks", Context.MODE_PRIVATE);
-            String taskJson = taskPrefs.getString("task_" + taskId, null);
-            
-            if (taskJson != null) {
-                JSONObject taskObj = new JSONObject(taskJson);
-                return new Task(
-                    taskObj.getString("task_id"),
-                    taskObj.optString("user_id", ""),
-                    taskObj.optString("task_type", "remainder"),
-                    taskObj.optString("title", ""),
-                    taskObj.optString("description", ""),
-                    taskObj.optString("start_time", ""),
-                    taskObj.optString("end_time", ""),
-                    taskObj.optString("due_date", ""),
-                    taskObj.optString("status", "pending"),
-                    taskObj.optString("repeat_frequency", "none"),
-                    taskObj.optString("priority", "medium")
-                );
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error creating task from ID: " + e.getMessage());
-        }
-        return null;
-    }
-
-    /**
-     * Update a local task with a new task object (used to replace temporary IDs with server IDs)
-     */
-    private void updateLocalTask(String oldTaskId, Task newTask) {
-        try {
-            SharedPreferences taskPrefs = context.getSharedPreferences("LocalTasks", Context.MODE_PRIVATE);
-            SharedPreferences.Editor editor = taskPrefs.edit();
-            
-            // Remove old task
-            editor.remove("task_" + oldTaskId);
-            
-            // Update task ID list
-            String taskIdList = taskPrefs.getString("task_id_list", "");
-            if (!taskIdList.isEmpty()) {
-                // Replace old ID with new ID
-                taskIdList = taskIdList.replace(oldTaskId, newTask.getTaskId());
-                editor.putString("task_id_list", taskIdList);
-            }
-            
-            // Store new task
-            JSONObject taskJson = new JSONObject();
-            taskJson.put("task_id", newTask.getTaskId());
-            taskJson.put("user_id", newTask.getUserId());
-            taskJson.put("task_type", newTask.getType());
-            taskJson.put("title", newTask.getTitle());
-            taskJson.put("description", newTask.getDescription());
-            taskJson.put("start_time", newTask.getStartTime());
-            taskJson.put("end_time", newTask.getEndTime());
-            taskJson.put("due_date", newTask.getDueDate());
-            taskJson.put("status", newTask.getStatus());
-            taskJson.put("repeat_frequency", newTask.getRepeatFrequency());
-            taskJson.put("priority", newTask.getPriority());
-            taskJson.put("creation_timestamp", System.currentTimeMillis());
-            
-            editor.putString("task_" + newTask.getTaskId(), taskJson.toString());
-            editor.apply();
-            
-            Log.d(TAG, "Updated local task ID from " + oldTaskId + " to " + newTask.getTaskId());
-        } catch (Exception e) {
-            Log.e(TAG, "Error updating local task: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Update local task completion status while preserving task type
+     * @param onResult Receives the task on the main thread, or null if not found
      */
-    private void updateLocalTaskCompletion(String taskId, String newStatus, String preservedTaskType) {
-        try {
-            SharedPreferences taskPrefs = context.getSharedPreferences("LocalTasks", Context.MODE_PRIVATE);
-            String taskJson = taskPrefs.getString("task_" + taskId, null);
-            
-            if (taskJson != null) {
-                JSONObject taskObj = new JSONObject(taskJson);
-                taskObj.put("status", newStatus);
-                
-                // Ensure task type is preserved and not changed
-                if (preservedTaskType != null && !preservedTaskType.isEmpty()) {
-                    taskObj.put("task_type", preservedTaskType);
-                }
-                
-                SharedPreferences.Editor editor = taskPrefs.edit();
-                editor.putString("task_" + taskId, taskObj.toString());
-                editor.apply();
-                
-                Log.d(TAG, "Updated local task completion: " + taskId + " status: " + newStatus + " type: " + preservedTaskType);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error updating local task completion: " + e.getMessage());
-        }
+    public void getTaskById(String taskId, Consumer<Task> onResult) {
+        readLocal(() -> taskCache.getTask(taskId), onResult);
     }
 
     private Task createTaskFromJson(JSONObject taskObj) throws JSONException {
@@ -398,9 +257,9 @@ public class TaskManager {
         } else if (taskObj.has("id")) {
             taskId = taskObj.getString("id");
         } else {
-            // Generate a temporary ID if none is found
-            taskId = "temp_" + System.currentTimeMillis();
-            Log.w(TAG, "Task had no ID, generated temporary ID: " + taskId);
+            // Generate an ID if none is found
+            taskId = TaskIds.newId();
+            Log.w(TAG, "Task had no ID, generated ID: " + taskId);
         }
         
         // Handle task type (may be missing)
@@ -425,67 +284,26 @@ public class TaskManager {
     }
     
     /**
-     * Load tasks from local storage
+     * Load tasks from local storage, including repeating tasks that occur on the date
+     * @param onResult Receives the tasks on the main thread
      */
-    public java.util.List<Task> loadLocalTasks(String date) {
-        java.util.List<Task> localTasks = new ArrayList<>();
-        
-        try {
-            SharedPreferences taskPrefs = context.getSharedPreferences("LocalTasks", Context.MODE_PRIVATE);
-            String taskIdList = taskPrefs.getString("task_id_list", "");
-            
-            if (!taskIdList.isEmpty()) {
-                String[] taskIds = taskIdList.split(",");
-                for (String taskId : taskIds) {
-                    String taskJson = taskPrefs.getString("task_" + taskId, null);
-                    if (taskJson != null) {
-                        try {
-                            JSONObject taskObj = new JSONObject(taskJson);
-                            String taskDueDate = taskObj.optString("due_date", "");
-                            
-                            // If a specific date is provided, filter by that date
-                            if (date == null || date.isEmpty() || taskDueDate.equals(date)) {
-                                Task task = new Task(
-                                    taskObj.getString("task_id"),
-                                    taskObj.optString("user_id", ""),
-                                    taskObj.optString("task_type", "task"),
-                                    taskObj.optString("title", ""),
-                                    taskObj.optString("description", ""),
-                                    taskObj.optString("start_time", ""),
-                                    taskObj.optString("end_time", ""),
-                                    taskDueDate,
-                                    taskObj.optString("status", "pending"),
-                                    taskObj.optString("repeat_frequency", "none"),
-                                    taskObj.optString("priority", "medium")
-                                );
-                                
-                                // Set streak if available
-                                if (taskObj.has("current_streak")) {
-                                    task.setCurrentStreak(taskObj.getInt("current_streak"));
-                                }
-                                
-                                localTasks.add(task);
-                                Log.d(TAG, "Loaded local task: " + task.getTitle() + " (" + task.getTaskId() + ")");
-                            }
-                        } catch (JSONException e) {
-                            Log.e(TAG, "Error parsing local task JSON: " + e.getMessage(), e);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading local tasks: " + e.getMessage(), e);
-        }
-        
-        return localTasks;
+    public void loadLocalTasks(String date, Consumer<List<Task>> onResult) {
+        readLocal(() -> {
+            List<Task> localTasks = taskCache.getTasksOccurringOn(date);
+            Log.d(TAG, "Loaded " + localTasks.size() + " local tasks for " + date);
+            return localTasks;
+        }, onResult);
     }
     
     /**
-     * Load tasks from server with local fallback - improved with faster loading
+     * Load tasks from the local cache, then apply server changes via delta sync
      */
     public void loadTasks(String date) {
-        // Always try to load from local cache first for immediate display
-        List<Task> cachedTasks = loadLocalTasks(date);
+        // Always load from local cache first for immediate display
+        loadLocalTasks(date, cachedTasks -> syncTasks(date, cachedTasks));
+    }
+
+    private void syncTasks(String date, List<Task> cachedTasks) {
         if (!cachedTasks.isEmpty()) {
             // If we have cached tasks, show them immediately
             Log.d(TAG, "Showing " + cachedTasks.size() + " cached tasks immediately");
@@ -494,7 +312,28 @@ public class TaskManager {
             }
         }
         
-        // Then fetch from server to get the latest data
+        // Then pull only what changed on the server since the last sync
+        SyncEngine.getInstance(context).sync(new SyncEngine.SyncListener() {
+            @Override
+            public void onSyncComplete(int taskChanges, int habitChanges) {
+                if (listener != null && (taskChanges > 0 || cachedTasks.isEmpty())) {
+                    loadLocalTasks(date, listener::onTasksLoaded);
+                }
+            }
+            
+            @Override
+            public void onSyncFailed(String message) {
+                Log.w(TAG, "Delta sync failed, fetching full task list: " + message);
+                clearDeletedTasksFromSnapshot();
+                loadTasksFromServer(date, cachedTasks);
+            }
+        });
+    }
+    
+    /**
+     * Full fetch of the day's tasks, used when the server does not support delta sync
+     */
+    private void loadTasksFromServer(String date, List<Task> cachedTasks) {
         String endpoint = networkManager.getTodayTasksUrl(getUserId(), date);
         Log.d(TAG, "Loading tasks from: " + endpoint);
         
@@ -506,6 +345,7 @@ public class TaskManager {
                     try {
                         Log.d(TAG, "Server response: " + response.toString().substring(0, Math.min(200, response.toString().length())));
                         List<Task> tasks = new ArrayList<>();
+                        List<Task> fetchedTasks = new ArrayList<>();
                         
                         if (response.has("tasks")) {
                             JSONArray tasksArray = response.getJSONArray("tasks");
@@ -543,8 +383,7 @@ public class TaskManager {
                                     priority
                                 );
                                 
-                                // Save task to local cache for offline access
-                                storeTaskLocally(task);
+                                fetchedTasks.add(task);
                                 
                                 // Only add tasks for the requested date
                                 if (date.equals(dueDate)) {
@@ -553,6 +392,9 @@ public class TaskManager {
                             }
                         }
                         
+                        // Save tasks to local cache for offline access in a single transaction
+                        taskCache.putAll(fetchedTasks);
+                        
                         if (listener != null && (!tasks.isEmpty() || cachedTasks.isEmpty())) {
                             // Only notify if we have tasks or didn't already show cached tasks
                             listener.onTasksLoaded(tasks);
@@ -580,9 +422,30 @@ public class TaskManager {
     }
     
     /**
-     * Load all tasks from server without date filter for timeline filtering
+     * Load all tasks without date filter for timeline filtering. The local store is
+     * brought up to date with a delta sync and then read in one query.
      */
     public void loadAllTasks() {
+        SyncEngine.getInstance(context).sync(new SyncEngine.SyncListener() {
+            @Override
+            public void onSyncComplete(int taskChanges, int habitChanges) {
+                if (listener != null) {
+                    readLocal(() -> taskCache.getTasksForDate(null), listener::onTasksLoaded);
+                }
+            }
+            
+            @Override
+            public void onSyncFailed(String message) {
+                Log.w(TAG, "Delta sync failed, fetching all tasks: " + message);
+                loadAllTasksFromServer();
+            }
+        });
+    }
+    
+    /**
+     * Full fetch of every task, used when the server does not support delta sync
+     */
+    private void loadAllTasksFromServer() {
         String endpoint = networkManager.getAllTasksUrl(getUserId());
         Log.d(TAG, "Loading all tasks from: " + endpoint);
         
@@ -656,16 +519,41 @@ public class TaskManager {
         );
     }
 
-    // Update clearDeletedTasks method to be more effective
+    /**
+     * Remove tasks that were deleted on the server. Deletions arrive as tombstones in
+     * the delta sync; the snapshot comparison is only a fallback.
+     */
     public void clearDeletedTasks() {
-        // Get all tasks from local storage
-        SharedPreferences taskPrefs = context.getSharedPreferences("LocalTasks", Context.MODE_PRIVATE);
-        String taskIdList = taskPrefs.getString("task_id_list", "");
-        
-        if (taskIdList.isEmpty()) {
-            return; // No tasks to clear
-        }
-        
+        SyncEngine.getInstance(context).sync(new SyncEngine.SyncListener() {
+            @Override
+            public void onSyncComplete(int taskChanges, int habitChanges) {
+                Log.d(TAG, "Sync applied " + taskChanges + " task changes");
+            }
+            
+            @Override
+            public void onSyncFailed(String message) {
+                clearDeletedTasksFromSnapshot();
+            }
+        });
+    }
+    
+    /**
+     * Compare today's local task IDs against a full server fetch and drop the missing ones
+     */
+    private void clearDeletedTasksFromSnapshot() {
+        // Only today's tasks are compared, since that is what the endpoint returns
+        String currentDate = getCurrentDate();
+        AppExecutors.getInstance().db().execute(() -> {
+            List<String> localTaskIds = taskCache.getTaskIdsForDate(currentDate);
+            if (!localTaskIds.isEmpty()) {
+                AppExecutors.getInstance().main().execute(
+                        () -> clearDeletedTasksFromSnapshot(currentDate, localTaskIds));
+            }
+        });
+    }
+
+    private void clearDeletedTasksFromSnapshot(String currentDate, List<String> localTaskIds) {
+
         // Prepare to sync with server
         SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
         String userId = prefs.getString("user_id", "");
@@ -676,7 +564,7 @@ public class TaskManager {
         }
         
         // Use current date to sync with today's tasks
-        String endpoint = networkManager.getTodayTasksUrl(userId, getCurrentDate());
+        String endpoint = networkManager.getTodayTasksUrl(userId, currentDate);
         Log.d(TAG, "Syncing tasks with endpoint: " + endpoint);
         
         networkManager.makeGetRequestWithTimeout(
@@ -711,41 +599,7 @@ public class TaskManager {
                         }
                         
                         Log.d(TAG, "Found " + serverTaskIds.size() + " tasks on server");
-                        
-                        // Compare local tasks with server tasks
-                        String[] localTaskIds = taskIdList.split(",");
-                        SharedPreferences.Editor editor = taskPrefs.edit();
-                        boolean hasChanges = false;
-                        List<String> updatedTaskIdList = new ArrayList<>();
-                        
-                        for (String taskId : localTaskIds) {
-                            // Skip temporary tasks that haven't been synced yet
-                            if (taskId.startsWith("temp_")) {
-                                updatedTaskIdList.add(taskId);
-                                continue;
-                            }
-                            
-                            // If task is on server, keep it locally
-                            if (serverTaskIds.contains(taskId)) {
-                                updatedTaskIdList.add(taskId);
-                            } else {
-                                // Task is not on server, remove it locally
-                                editor.remove("task_" + taskId);
-                                hasChanges = true;
-                                Log.d(TAG, "Removing deleted task from local storage: " + taskId);
-                            }
-                        }
-                        
-                        // Update task ID list if needed
-                        if (hasChanges) {
-                            if (updatedTaskIdList.isEmpty()) {
-                                editor.remove("task_id_list");
-                            } else {
-                                editor.putString("task_id_list", TextUtils.join(",", updatedTaskIdList));
-                            }
-                            editor.apply();
-                            Log.d(TAG, "Cleared " + (localTaskIds.length - updatedTaskIdList.size()) + " deleted tasks from local storage");
-                        }
+                        AppExecutors.getInstance().db().execute(() -> removeMissingTasks(localTaskIds, serverTaskIds));
                     } catch (Exception e) {
                         Log.e(TAG, "Error syncing deleted tasks: " + e.getMessage(), e);
                     }
@@ -758,253 +612,50 @@ public class TaskManager {
             },
             2000 // 2 second timeout
         );
-    }    /**
-     * Updates the start and end time of a task with improved error handling and offline support
-     * @param taskId ID of the task to update
-     * @param newStartTime New start time
-     * @param newEndTime New end time
-     */
-    public void updateTaskTime(String taskId, String newStartTime, String newEndTime) {
-        try {
-            SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
-            String userId = prefs.getString("user_id", "");
-            String currentDate = getCurrentDate();
-
-            // Format time properly to ensure correct time is sent to server
-            String formattedStartTime = formatTimeForServer(newStartTime, currentDate);
-            String formattedEndTime = formatTimeForServer(newEndTime, currentDate);
-
-            Log.d(TAG, "Updating task time: " + formattedStartTime + " to " + formattedEndTime);
-
-            // Update local storage immediately for responsive UI
-            Task existingTask = createTaskFromId(taskId);
-            if (existingTask != null) {
-                existingTask.setStartTime(formattedStartTime);
-                existingTask.setEndTime(formattedEndTime);
-                storeTaskLocally(existingTask);
-                
-                // Cancel existing notifications immediately
-                notificationHandler.cancelTaskNotifications(taskId);
-                
-                // Notify listener immediately for UI update
-                if (listener != null) {
-                    listener.onTaskUpdated(existingTask);
-                }
-                
-                // Reschedule notifications with new times
-                scheduleTaskNotifications(existingTask);
-                Log.d(TAG, "Local task time updated and notifications rescheduled for task: " + taskId);
-            }
-
-            // Check network connectivity before server update
-            if (!IpV4Connection.isNetworkAvailable(context)) {
-                Log.w(TAG, "No network connection - task time updated locally only");
-                if (listener != null) {
-                    listener.onError("No network connection. Task updated locally and will sync when online.");
-                }
-                return;
-            }
-
-            // Attempt server update
-            String url = networkManager.getUpdateTaskUrl();
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("task_id", taskId);
-            requestBody.put("user_id", userId);
-            requestBody.put("start_time", formattedStartTime);
-            requestBody.put("end_time", formattedEndTime);
-
-            networkManager.makePostRequestWithTimeout(
-                url,
-                requestBody,
-                new VolleyNetworkManager.JsonResponseListener() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        try {
-                            if (response.has("status") && "success".equals(response.getString("status"))) {
-                                Log.d(TAG, "✅ Task time updated successfully on server: " + taskId);
-                                
-                                // Server update successful - ensure local data is consistent
-                                if (existingTask != null) {
-                                    // Re-store with any server-provided updates
-                                    if (response.has("task")) {
-                                        JSONObject serverTask = response.getJSONObject("task");
-                                        // Update any additional fields from server if needed
-                                        if (serverTask.has("start_time")) {
-                                            existingTask.setStartTime(serverTask.getString("start_time"));
-                                        }
-                                        if (serverTask.has("end_time")) {
-                                            existingTask.setEndTime(serverTask.getString("end_time"));
-                                        }
-                                        storeTaskLocally(existingTask);
-                                    }
-                                }
-                            } else {
-                                String errorMessage = response.optString("message", "Unknown server error");
-                                Log.e(TAG, "❌ Server error updating task time: " + errorMessage);
-                                if (listener != null) {
-                                    listener.onError("Server error: " + errorMessage + ". Changes saved locally.");
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing server response: " + e.getMessage());
-                            if (listener != null) {
-                                listener.onError("Error processing server response. Changes saved locally.");
-                            }
-                        }
-                    }
-                    
-                    @Override
-                    public void onError(String errorMessage) {
-                        Log.e(TAG, "❌ Network error updating task time: " + errorMessage);
-                        
-                        // Try direct IP fallback for critical time updates
-                        tryUpdateTaskTimeWithDirectIp(taskId, formattedStartTime, formattedEndTime, errorMessage);
-                    }
-                },
-                7000 // 7 second timeout for time updates
-            );
-        } catch (Exception e) {
-            Log.e(TAG, "Error in updateTaskTime: " + e.getMessage(), e);
-            if (listener != null) {
-                listener.onError("Error updating task time: " + e.getMessage());
-            }
-        }
-    }
-    
-    /**
-     * Fallback method to update task time using direct IP addresses
-     */
-    private void tryUpdateTaskTimeWithDirectIp(String taskId, String startTime, String endTime, String previousError) {
-        try {
-            String[] ipUrls = {
-                IpV4Connection.getBaseUrl() + "update_task.php",  // Use centralized IP
-                "http://10.0.2.2/shedulytic/update_task.php"
-            };
-            
-            SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
-            String userId = prefs.getString("user_id", "");
-            
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("task_id", taskId);
-            requestBody.put("user_id", userId);
-            requestBody.put("start_time", startTime);
-            requestBody.put("end_time", endTime);
-            
-            Log.d(TAG, "Trying direct IP fallback for task time update: " + taskId);
-            
-            boolean[] succeeded = {false};
-            
-            for (String url : ipUrls) {
-                if (succeeded[0]) break; // Stop if already succeeded
-                
-                JsonObjectRequest request = new JsonObjectRequest(
-                    Request.Method.POST,
-                    url,
-                    requestBody,
-                    response -> {
-                        if (!succeeded[0]) {
-                            succeeded[0] = true;
-                            Log.d(TAG, "✅ Task time updated successfully via direct IP: " + url);
-                            // Success - no need to notify listener as local update already happened
-                        }
-                    },
-                    error -> {
-                        Log.e(TAG, "Direct IP failed " + url + ": " + error.getMessage());
-                        if (!succeeded[0] && url.equals(ipUrls[ipUrls.length - 1])) {
-                            // This was the last attempt
-                            if (listener != null) {
-                                listener.onError("Network error: " + previousError + ". Task updated locally only.");
-                            }
-                        }
-                    }
-                );
-                
-                // Short timeout for direct IP attempts
-                request.setRetryPolicy(new com.android.volley.DefaultRetryPolicy(
-                    3000, // 3 second timeout
-                    1,    // 1 retry
-                    1.0f  // no backoff
-                ));
-                
-                networkManager.makeCustomRequest(request);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error in direct IP fallback for task time update: " + e.getMessage());
-            if (listener != null) {
-                listener.onError("Network error: " + previousError + ". Task updated locally only.");
-            }
-        }
     }
 
     /**
-     * Store a task in SharedPreferences for offline access
+     * Remove the local tasks the server no longer returns. Runs on the database thread.
      */
-    private void storeTaskLocally(Task task) {
-        try {
-            SharedPreferences taskPrefs = context.getSharedPreferences("LocalTasks", Context.MODE_PRIVATE);
-            SharedPreferences.Editor editor = taskPrefs.edit();
-            
-            // Convert task to JSON string
-            JSONObject taskJson = new JSONObject();
-            taskJson.put("task_id", task.getTaskId());
-            taskJson.put("user_id", task.getUserId());
-            taskJson.put("task_type", task.getTaskType());
-            taskJson.put("title", task.getTitle());
-            taskJson.put("description", task.getDescription());
-            taskJson.put("start_time", task.getStartTime());
-            taskJson.put("end_time", task.getEndTime());
-            taskJson.put("due_date", task.getDueDate());
-            taskJson.put("status", task.getStatus());
-            taskJson.put("repeat_frequency", task.getRepeatFrequency());
-            taskJson.put("priority", task.getPriority());
-            // Store current streak if needed for habit tasks
-            if (task.getCurrentStreak() > 0) {
-                taskJson.put("current_streak", task.getCurrentStreak());
+    private void removeMissingTasks(List<String> localTaskIds, Set<String> serverTaskIds) {
+        List<String> deletedTaskIds = new ArrayList<>();
+        
+        // Tasks created offline are not on the server until their add is replayed
+        Set<String> unsyncedTaskIds = MutationOutbox.pendingEntityIds(
+            DatabaseHelper.getInstance(context).getReadableDatabase(), MutationOutbox.ENTITY_TASK);
+        for (String taskId : localTaskIds) {
+            if (taskId.startsWith("temp_") || unsyncedTaskIds.contains(taskId)) {
+                continue;
             }
-            taskJson.put("creation_timestamp", System.currentTimeMillis());
-            
-            // Store the task JSON
-            editor.putString("task_" + task.getTaskId(), taskJson.toString());
             
-            // Also maintain a list of task IDs
-            String taskIdList = taskPrefs.getString("task_id_list", "");
-            if (taskIdList.isEmpty()) {
-                taskIdList = task.getTaskId();
-            } else {
-                // Add to the list if not already present
-                if (!taskIdList.contains(task.getTaskId())) {
-                    taskIdList += "," + task.getTaskId();
-                }
+            // Task is not on server, remove it locally
+            if (!serverTaskIds.contains(taskId)) {
+                deletedTaskIds.add(taskId);
+                Log.d(TAG, "Removing deleted task from local storage: " + taskId);
             }
-            editor.putString("task_id_list", taskIdList);
-            
-            // Apply the changes
-            editor.apply();
-            
-            Log.d(TAG, "Task stored locally with ID: " + task.getTaskId());
-        } catch (Exception e) {
-            Log.e(TAG, "Error storing task locally: " + e.getMessage(), e);
         }
+        
+        if (!deletedTaskIds.isEmpty()) {
+            taskCache.removeAll(deletedTaskIds);
+            Log.d(TAG, "Cleared " + deletedTaskIds.size() + " deleted tasks from local storage");
+        }
+    }    /**
+     * Updates the start and end time of a task with improved error handling and offline support
+     * @param taskId ID of the task to update
+     * @param newStartTime New start time
+     * @param newEndTime New end time
+     */
+    public void updateTaskTime(String taskId, String newStartTime, String newEndTime) {
+        updateTasksBatch(Collections.singletonList(TaskUpdate.time(taskId, newStartTime, newEndTime)));
     }
-    
+
     /**
      * Fast load tasks method that prioritizes UI responsiveness
      * Shows cached data immediately then updates with server data
      */
     public void fastLoadTasks(String date) {
-        // Clear deleted tasks from cache first
-        clearDeletedTasks();
-        
-        // Show cached data immediately
-        List<Task> cachedTasks = loadLocalTasks(date);
-        if (!cachedTasks.isEmpty()) {
-            Log.d(TAG, "Fast-loading " + cachedTasks.size() + " cached tasks");
-            if (listener != null) {
-                listener.onTasksLoaded(cachedTasks);
-            }
-        }
-        
-        // Then quickly refresh from server
+        // loadTasks shows the shared cache immediately, then its delta sync applies
+        // server updates and deletions in one pass
         loadTasks(date);
     }
 
@@ -1014,8 +665,8 @@ public class TaskManager {
     public void addTask(String title, String description, String startTime, String endTime,
                         String dueDate, String taskType, String repeatFrequency) {
         try {
-            // Generate a temporary ID for immediate local storage
-            String tempTaskId = "temp_" + System.currentTimeMillis();
+            // The ID is final from the start; the server keeps it
+            String taskId = TaskIds.newId();
             
             // Format times properly to ensure correct format is sent to server
             String formattedStartTime = formatTimeForServer(startTime, dueDate);
@@ -1025,7 +676,7 @@ public class TaskManager {
             
             // Create task object - store both formatted and original time
             Task newTask = new Task(
-                tempTaskId,
+                taskId,
                 getUserId(),
                 taskType.toLowerCase(), // Ensure lowercase
                 title,
@@ -1052,31 +703,8 @@ public class TaskManager {
      * Save a task to the local database
      */
     private void saveTaskToLocalDb(Task task) {
-        try {
-            DatabaseHelper dbHelper = DatabaseHelper.getInstance(context);
-            SQLiteDatabase db = dbHelper.getWritableDatabase();
-            
-            ContentValues values = new ContentValues();
-            values.put("task_id", task.getTaskId());
-            values.put("user_id", task.getUserId());
-            values.put("title", task.getTitle());
-            values.put("description", task.getDescription());
-            values.put("start_time", task.getStartTime());
-            values.put("end_time", task.getEndTime());
-            values.put("due_date", task.getDueDate());
-            values.put("status", task.getStatus());
-            values.put("task_type", task.getTaskType());
-            values.put("repeat_frequency", task.getRepeatFrequency());
-            values.put("priority", task.getPriority());
-            values.put("timestamp", System.currentTimeMillis());
-            
-            // Add or replace the task
-            db.insertWithOnConflict("tasks", null, values, SQLiteDatabase.CONFLICT_REPLACE);
-            
-            Log.d(TAG, "Task saved to local database: " + task.getTaskId());
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving task to local database: " + e.getMessage());
-        }
+        taskCache.put(task);
+        Log.d(TAG, "Task saved to local database: " + task.getTaskId());
     }
 
     /**
@@ -1097,15 +725,8 @@ public class TaskManager {
             
             // Schedule appropriate notifications based on task type
             if ("workflow".equals(taskType)) {
-                // For workflow tasks: use old NotificationHandler for start/end notifications
-                notificationHandler.scheduleWorkflowNotifications(
-                    task.getTaskId(),
-                    task.getTitle(),
-                    task.getDescription(),
-                    task.getStartTime(),
-                    task.getEndTime(),
-                    task.getDueDate()
-                );
+                // For workflow tasks: NotificationHandler schedules start/end of every occurrence
+                notificationHandler.scheduleTaskNotification(task);
                 Log.d(TAG, "Scheduled workflow notifications for task: " + task.getTitle());
             } else if (task.isRemainder()) {
                 // For remainder tasks: use new ReminderNotificationManager
@@ -1117,6 +738,18 @@ public class TaskManager {
         }
     }
 
+    /**
+     * Move a task's notifications from its old ID to its current ID. Only tasks queued
+     * with a "temp_" ID by earlier versions of the app change ID.
+     */
+    public void rescheduleNotifications(String oldTaskId, Task task) {
+        notificationHandler.cancelTaskNotifications(oldTaskId);
+        reminderNotificationManager.cancelReminderNotifications(oldTaskId);
+        if (!"completed".equalsIgnoreCase(task.getStatus())) {
+            scheduleTaskNotifications(task);
+        }
+    }
+
     /**
      * Delete a task from server and local storage
      */
@@ -1133,36 +766,12 @@ public class TaskManager {
                 listener.onTaskDeleted(taskId);
             }
             
-            // Try to delete from server in background
-            String url = networkManager.getDeleteTaskUrl();
+            // Queue the server delete; unsent writes for this task are dropped with it
             JSONObject requestBody = new JSONObject();
             requestBody.put("task_id", taskId);
             requestBody.put("user_id", getUserId());
-            
-            networkManager.makePostRequest(
-                url,
-                requestBody,
-                new VolleyNetworkManager.JsonResponseListener() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        try {
-                            if (response.has("status") && "success".equals(response.getString("status"))) {
-                                Log.d(TAG, "Task deleted successfully from server: " + taskId);
-                            } else {
-                                Log.w(TAG, "Server response indicates deletion may have failed: " + response.toString());
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing delete response: " + e.getMessage());
-                        }
-                    }
-                    
-                    @Override
-                    public void onError(String errorMessage) {
-                        Log.e(TAG, "Error deleting task from server: " + errorMessage);
-                        // Task already removed locally and notifications cancelled, so we don't need to show error
-                    }
-                }
-            );
+            MutationOutbox.getInstance(context).enqueue(
+                MutationOutbox.ENTITY_TASK, taskId, MutationOutbox.OP_DELETE_TASK, requestBody);
         } catch (Exception e) {
             Log.e(TAG, "Error deleting task: " + e.getMessage());
             if (listener != null) {
@@ -1175,195 +784,219 @@ public class TaskManager {
      * Remove a task from local storage
      */
     private void removeTaskFromLocalStorage(String taskId) {
+        taskCache.remove(taskId);
+        Log.d(TAG, "Removed task from local storage: " + taskId);
+    }
+
+    /**
+     * Update task status on server and locally
+     * @param taskId The ID of the task to update
+     * @param status The new status for the task
+     */
+    public void updateTaskStatus(String taskId, String status) {
+        updateTasksBatch(Collections.singletonList(TaskUpdate.status(taskId, status)));
+    }
+
+    /**
+     * Apply several status, completion and time changes at once (e.g. completing or
+     * rescheduling a selection of tasks). Local rows are written in one transaction and
+     * the server writes are queued together; the outbox sends everything queued within
+     * its batching window, including single updates, as one transactional request.
+     * @param updates Changes to apply, in order; later changes to a task win
+     */
+    public void updateTasksBatch(List<TaskUpdate> updates) {
+        if (updates == null || updates.isEmpty()) {
+            return;
+        }
+        Map<String, Task> storedTasks = new HashMap<>();
+        Set<String> missingTaskIds = new HashSet<>();
+        for (TaskUpdate update : updates) {
+            Task task = taskCache.peek(update.taskId);
+            if (task != null) {
+                storedTasks.put(update.taskId, task);
+            } else {
+                missingTaskIds.add(update.taskId);
+            }
+        }
+        if (missingTaskIds.isEmpty()) {
+            applyTasksBatch(updates, storedTasks);
+            return;
+        }
+
+        // Tasks not in memory are read from the repository on the database thread
+        List<TaskUpdate> queued = new ArrayList<>(updates);
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.db().execute(() -> {
+            for (String taskId : missingTaskIds) {
+                Task task = taskCache.getTask(taskId);
+                if (task != null) {
+                    storedTasks.put(taskId, task);
+                }
+            }
+            executors.main().execute(() -> applyTasksBatch(queued, storedTasks));
+        });
+    }
+
+    /**
+     * @param storedTasks Current state of the updated tasks; unknown tasks are left out
+     */
+    private void applyTasksBatch(List<TaskUpdate> updates, Map<String, Task> storedTasks) {
         try {
-            SharedPreferences taskPrefs = context.getSharedPreferences("LocalTasks", Context.MODE_PRIVATE);
-            SharedPreferences.Editor editor = taskPrefs.edit();
-            
-            // Remove the task
-            editor.remove("task_" + taskId);
-            
-            // Update task ID list
-            String taskIdList = taskPrefs.getString("task_id_list", "");
-            if (!taskIdList.isEmpty()) {
-                String[] taskIds = taskIdList.split(",");
-                List<String> updatedTaskIds = new ArrayList<>();
-                
-                for (String id : taskIds) {
-                    if (!id.equals(taskId)) {
-                        updatedTaskIds.add(id);
-                    }
+            String userId = getUserId();
+            String currentDate = getCurrentDate();
+            Map<String, Task> updatedTasks = new java.util.LinkedHashMap<>();
+            List<MutationOutbox.Write> writes = new ArrayList<>();
+            Set<String> notificationTaskIds = new HashSet<>();
+            Map<String, Boolean> completions = new java.util.LinkedHashMap<>();
+            Map<String, Task> previousTasks = new HashMap<>();
+            Set<String> movedTaskIds = new HashSet<>();
+
+            for (TaskUpdate update : updates) {
+                Task task = updatedTasks.containsKey(update.taskId)
+                        ? updatedTasks.get(update.taskId) : storedTasks.get(update.taskId);
+                if (task != null) {
+                    previousTasks.putIfAbsent(update.taskId, task);
                 }
-                
-                if (updatedTaskIds.isEmpty()) {
-                    editor.remove("task_id_list");
+
+                JSONObject payload = new JSONObject();
+                payload.put("task_id", update.taskId);
+                payload.put("user_id", userId);
+                String operation;
+                switch (update.kind) {
+                    case TaskUpdate.KIND_COMPLETION:
+                        payload.put("date", currentDate);
+                        if (!update.completed) {
+                            payload.put("action", "remove");
+                        }
+                        if (task != null) {
+                            task = task.toBuilder().completed(update.completed).build();
+                        }
+                        operation = MutationOutbox.OP_TASK_COMPLETION;
+                        notificationTaskIds.add(update.taskId);
+                        completions.put(update.taskId, update.completed);
+                        Log.d(TAG, (update.completed ? "✓ Adding" : "✗ Removing") + " completion for task ID: " + update.taskId);
+                        break;
+                    case TaskUpdate.KIND_TIME:
+                        // Format time properly to ensure correct time is sent to server
+                        String startTime = formatTimeForServer(update.startTime, currentDate);
+                        String endTime = formatTimeForServer(update.endTime, currentDate);
+                        payload.put("start_time", startTime);
+                        payload.put("end_time", endTime);
+                        if (task != null) {
+                            task = task.toBuilder().startTime(startTime).endTime(endTime).build();
+                        }
+                        operation = MutationOutbox.OP_UPDATE_TASK;
+                        notificationTaskIds.add(update.taskId);
+                        movedTaskIds.add(update.taskId);
+                        Log.d(TAG, "Updating task time: " + startTime + " to " + endTime);
+                        break;
+                    default:
+                        payload.put("status", update.status);
+                        if (task != null) {
+                            task = task.withStatus(update.status);
+                        }
+                        operation = MutationOutbox.OP_UPDATE_TASK_STATUS;
+                        Log.d(TAG, "Updating task status: " + update.taskId + " to " + update.status);
+                        break;
+                }
+
+                if (task != null) {
+                    updatedTasks.put(update.taskId, task);
+                }
+                writes.add(new MutationOutbox.Write(MutationOutbox.ENTITY_TASK, update.taskId, operation, payload));
+            }
+
+            // Update the cache at once; the rows are written in one transaction on the database thread
+            taskCache.putAll(new ArrayList<>(updatedTasks.values()));
+
+            for (Task task : updatedTasks.values()) {
+                if (!notificationTaskIds.contains(task.getTaskId())) {
+                    continue;
+                }
+                // Completed tasks need no more alerts; anything else is rescheduled at its current time
+                if ("completed".equalsIgnoreCase(task.getStatus())) {
+                    notificationHandler.cancelTaskNotifications(task.getTaskId());
                 } else {
-                    editor.putString("task_id_list", TextUtils.join(",", updatedTaskIds));
+                    scheduleTaskNotifications(task);
+                }
+            }
+
+            // Queue the server writes; the outbox replays them when online
+            MutationOutbox.getInstance(context).enqueueAll(writes);
+            recordCompletions(completions, updatedTasks);
+            recordStats(previousTasks, updatedTasks, movedTaskIds);
+
+            if (listener != null) {
+                for (Task task : updatedTasks.values()) {
+                    listener.onTaskUpdated(task);
                 }
             }
-            
-            editor.apply();
-            Log.d(TAG, "Removed task from local storage: " + taskId);
         } catch (Exception e) {
-            Log.e(TAG, "Error removing task from local storage: " + e.getMessage());
+            Log.e(TAG, "Error updating tasks: " + e.getMessage(), e);
+            if (listener != null) {
+                listener.onError("Error updating tasks: " + e.getMessage());
+            }
         }
     }
 
     /**
-     * Try to add a task using direct IP addresses as a fallback
+     * Record completions in the streak engine and publish the new streaks of habit tasks
      */
-    private void tryAddTaskWithDirectIp(Task task, String previousError) {
-        try {            // Get direct IP addresses to try - use centralized IP configuration
-            String[] ipAddresses = {
-                IpV4Connection.getBaseUrl() + "add_task.php",  // Use centralized IP
-                "http://10.0.2.2/shedulytic/add_task.php"
-            };
-            
-            // Convert task to JSON
-            JSONObject jsonTask = task.toJson();
-            
-            // Log fallback attempt
-            Log.d(TAG, "Trying direct IP fallback for task: " + task.getTitle());
-            
-            // Use a flag to track if any request succeeded
-            final boolean[] succeeded = {false};
-            
-            // Try each IP address
-            for (String url : ipAddresses) {
-                JsonObjectRequest request = new JsonObjectRequest(
-                    Request.Method.POST, 
-                    url, 
-                    jsonTask,
-                    response -> {
-                        // Mark as succeeded
-                        succeeded[0] = true;
-                        
-                        try {
-                            Log.d(TAG, "Task added successfully via direct IP: " + response.toString());
-                            
-                            // Parse task ID from response if available
-                            String taskId = task.getTaskId();
-                            if (response.has("task_id")) {
-                                taskId = response.getString("task_id");
-                            } else if (response.has("id")) {
-                                taskId = response.getString("id");
-                            } else if (response.has("data") && response.getJSONObject("data").has("task_id")) {
-                                taskId = response.getJSONObject("data").getString("task_id");
-                            }
-                            task.setTaskId(taskId);
-                              // Save to local database for offline access
-                            saveTaskToLocalDb(task);
-                            
-                            // Schedule notifications for the task
-                            scheduleTaskNotifications(task);
-                            
-                            // Notify listener of successful add
-                            if (listener != null) {
-                                listener.onTaskAdded(task);
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing direct IP response: " + e.getMessage());
-                            tryLocalFallback(task, e.getMessage());
+    private void recordCompletions(Map<String, Boolean> completions, Map<String, Task> tasks) {
+        if (completions.isEmpty()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        AppExecutors executors = AppExecutors.getInstance();
+        StreakEngine streaks = StreakEngine.getInstance(context);
+        for (Map.Entry<String, Boolean> completion : completions.entrySet()) {
+            String taskId = completion.getKey();
+            Task task = tasks.get(taskId);
+            String frequency = task != null ? task.getRepeatFrequency() : null;
+            boolean habit = task != null && task.isHabit();
+            executors.db().execute(() -> {
+                try {
+                    int streak = streaks.setCompleted(StreakEngine.TYPE_TASK, taskId, frequency, today,
+                            completion.getValue()).getCurrent(today);
+                    if (habit) {
+                        Task cached = taskCache.getTask(taskId);
+                        if (cached != null && cached.getCurrentStreak() != streak) {
+                            taskCache.put(cached.withCurrentStreak(streak));
                         }
-                    },
-                    error -> {
-                        Log.e(TAG, "Error with direct IP " + url + ": " + error.getMessage());
-                        
-                        // Only use local fallback if all IP addresses fail
-                        if (!succeeded[0]) {
-                            tryLocalFallback(task, previousError);
+                        if (listener != null) {
+                            executors.main().execute(() -> listener.onHabitStreakUpdated(taskId, streak));
                         }
                     }
-                );
-                
-                // Set short timeout
-                request.setRetryPolicy(new com.android.volley.DefaultRetryPolicy(
-                    5000, // 5 second timeout
-                    1,    // 1 retry
-                    1.0f  // no backoff
-                ));
-                
-                // Add to queue using the networkManager instead of calling addToRequestQueue directly
-                VolleyNetworkManager.getInstance(context).makeCustomRequest(request);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error in direct IP fallback: " + e.getMessage());
-            tryLocalFallback(task, previousError);
-        }
-    }
-      /**
-     * Final fallback - save locally when all network attempts fail
-     */
-    private void tryLocalFallback(Task task, String previousError) {
-        // Save locally anyway for offline access
-        saveTaskToLocalDb(task);
-        
-        // Schedule notifications for the task even if server failed
-        scheduleTaskNotifications(task);
-        
-        if (listener != null) {
-            listener.onTaskAdded(task); // Still notify as added since it's saved locally
-            listener.onError("Error adding task to server: " + previousError + ". Task saved locally.");
+                } catch (Exception e) {
+                    Log.e(TAG, "Error recording completion of task " + taskId + ": " + e.getMessage());
+                }
+            });
         }
     }
 
     /**
-     * Update task status on server and locally
-     * @param taskId The ID of the task to update
-     * @param status The new status for the task
+     * Count the status changes and extensions in today's stats rollup. A moved task
+     * counts as extended only if it now ends later than before; snoozes and moves to an
+     * earlier time do not.
      */
-    public void updateTaskStatus(String taskId, String status) {
-        try {
-            Log.d(TAG, "Updating task status: " + taskId + " to " + status);
-            
-            // Update local storage first
-            SharedPreferences taskPrefs = context.getSharedPreferences("LocalTasks", Context.MODE_PRIVATE);
-            String taskJson = taskPrefs.getString("task_" + taskId, null);
-            
-            if (taskJson != null) {
-                JSONObject taskObj = new JSONObject(taskJson);
-                taskObj.put("status", status);
-                taskPrefs.edit().putString("task_" + taskId, taskObj.toString()).apply();
+    private void recordStats(Map<String, Task> previousTasks, Map<String, Task> tasks, Set<String> movedTaskIds) {
+        StatsRepository stats = StatsRepository.getInstance(context);
+        for (Map.Entry<String, Task> previous : previousTasks.entrySet()) {
+            Task task = tasks.get(previous.getKey());
+            if (task == null) {
+                continue;
             }
-            
-            // Create JSON payload for server update
-            JSONObject updateData = new JSONObject();
-            updateData.put("task_id", taskId);
-            updateData.put("status", status);
-            updateData.put("user_id", getUserId());
-            
-            // Send update to server
-            String url = networkManager.getBaseUrl() + "update_task_status.php";
-            JsonObjectRequest request = new JsonObjectRequest(Request.Method.POST, url, updateData,
-                response -> {
-                    Log.d(TAG, "Task status updated successfully on server");
-                    if (listener != null) {
-                        // Create a temporary task object for the update callback
-                        Task updatedTask = createTaskFromId(taskId);
-                        if (updatedTask != null) {
-                            updatedTask.setStatus(status);
-                            updatedTask.setCompleted("completed".equalsIgnoreCase(status));
-                            listener.onTaskUpdated(updatedTask);
-                        }
-                    }
-                },
-                error -> {
-                    Log.e(TAG, "Error updating task status on server: " + error.getMessage());
-                    // Status is already updated locally, so we can continue
-                    if (listener != null) {
-                        Task updatedTask = createTaskFromId(taskId);
-                        if (updatedTask != null) {
-                            updatedTask.setStatus(status);
-                            updatedTask.setCompleted("completed".equalsIgnoreCase(status));
-                            listener.onTaskUpdated(updatedTask);
-                        }
-                    }                });
-            
-            networkManager.makeCustomRequest(request);
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error updating task status: " + e.getMessage());
-            if (listener != null) {
-                listener.onError("Error updating task status: " + e.getMessage());
+            long previousEnd = previous.getValue().getEndMillis();
+            if (movedTaskIds.contains(previous.getKey()) && previousEnd >= 0 && task.getEndMillis() > previousEnd) {
+                stats.recordTaskExtended();
+            }
+            if (task.isHabit()) {
+                // Habit tasks are checked off like checkbox habits
+                if (task.isCompleted() != previous.getValue().isCompleted()) {
+                    stats.recordHabitVerified(Habit.VERIFICATION_CHECKBOX, task.isCompleted());
+                }
+            } else {
+                stats.recordTaskStatus(previous.getValue().getStatus(), task.getStatus());
             }
         }
     }
@@ -0,0 +1,371 @@
+package com.simats.schedulytic;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQLite-backed task store built on the {@code tasks} table of {@link DatabaseHelper}.
+ * Replaces the old "LocalTasks" SharedPreferences blob store: every read and write
+ * is a single-row or indexed (user_id, due_date) operation.
+ */
+public class TaskRepository {
+    private static final String TAG = "TaskRepository";
+    private static final String TABLE_TASKS = "tasks";
+    private static final String LEGACY_PREFS = "LocalTasks";
+    private static final String MIGRATION_PREFS = "TaskRepositoryPrefs";
+    private static final String KEY_LEGACY_MIGRATED = "legacy_prefs_migrated";
+
+    private static final String[] TASK_COLUMNS = {
+        "task_id", "user_id", "task_type", "title", "description", "start_time",
+        "end_time", "due_date", "status", "repeat_frequency", "priority", "current_streak"
+    };
+
+    private static TaskRepository instance;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+
+    private TaskRepository(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        // Queued ahead of any read made through TaskCache, which also runs on the database thread
+        AppExecutors.getInstance().runOnDb(this::migrateLegacyPrefs);
+    }
+
+    public static synchronized TaskRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new TaskRepository(context);
+        }
+        return instance;
+    }
+
+    private String getUserId() {
+        SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
+        return prefs.getString("user_id", "");
+    }
+
+    /**
+     * Insert or update a task. Uses UPDATE-then-INSERT rather than CONFLICT_REPLACE so that
+     * the ON DELETE CASCADE on task_completions is never triggered by a plain update.
+     */
+    public void upsertTask(Task task) {
+        if (task == null || task.getTaskId() == null || task.getTaskId().isEmpty()) {
+            return;
+        }
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            upsertTask(db, task);
+        } catch (Exception e) {
+            Log.e(TAG, "Error storing task " + task.getTaskId() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void upsertTask(SQLiteDatabase db, Task task) {
+        ContentValues values = toContentValues(task);
+        int updated = db.update(TABLE_TASKS, values, "task_id = ?", new String[]{task.getTaskId()});
+        if (updated == 0) {
+            db.insert(TABLE_TASKS, null, values);
+        }
+    }
+
+    /**
+     * Store several tasks in one transaction (used after a server fetch)
+     */
+    public void upsertTasks(List<Task> tasks) {
+        if (tasks == null || tasks.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Task task : tasks) {
+                if (task != null && task.getTaskId() != null && !task.getTaskId().isEmpty()) {
+                    upsertTask(db, task);
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "Error storing task batch: " + e.getMessage(), e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Look up a single task by primary key
+     * @return The task, or null if it is not stored locally
+     */
+    public Task getTask(String taskId) {
+        if (taskId == null || taskId.isEmpty()) {
+            return null;
+        }
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(TABLE_TASKS, TASK_COLUMNS,
+                "task_id = ?", new String[]{taskId}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return fromCursor(cursor);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading task " + taskId + ": " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Tasks of the current user due on the given date (YYYY-MM-DD).
+     * A null or empty date returns every task of the user.
+     */
+    public List<Task> getTasksForDate(String date) {
+        if (date == null || date.isEmpty()) {
+            return queryTasks("user_id = ?", new String[]{getUserId()});
+        }
+        return queryTasks("user_id = ? AND due_date = ?", new String[]{getUserId(), date});
+    }
+
+    /**
+     * Tasks of the current user due between startDate and endDate inclusive (YYYY-MM-DD)
+     */
+    public List<Task> getTasksInRange(String startDate, String endDate) {
+        return queryTasks("user_id = ? AND due_date BETWEEN ? AND ?",
+                new String[]{getUserId(), startDate, endDate});
+    }
+
+    /**
+     * Tasks of the current user that have a repeat rule, whatever their due date
+     */
+    public List<Task> getRepeatingTasks() {
+        return queryTasks("user_id = ? AND repeat_frequency IS NOT NULL AND repeat_frequency NOT IN ('', 'none')",
+                new String[]{getUserId()});
+    }
+
+    private List<Task> queryTasks(String selection, String[] selectionArgs) {
+        List<Task> tasks = new ArrayList<>();
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(TABLE_TASKS, TASK_COLUMNS,
+                selection, selectionArgs, null, null, "due_date ASC, start_time ASC")) {
+            while (cursor.moveToNext()) {
+                tasks.add(fromCursor(cursor));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error querying tasks: " + e.getMessage(), e);
+        }
+        return tasks;
+    }
+
+    /**
+     * IDs of the current user's tasks due on the given date
+     */
+    public List<String> getTaskIdsForDate(String date) {
+        List<String> ids = new ArrayList<>();
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(TABLE_TASKS, new String[]{"task_id"},
+                "user_id = ? AND due_date = ?", new String[]{getUserId(), date}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error querying task IDs: " + e.getMessage(), e);
+        }
+        return ids;
+    }
+
+    /**
+     * Update the status of a task, optionally forcing its task type to be preserved
+     * @return true if a row was updated
+     */
+    public boolean updateStatus(String taskId, String status, String preservedTaskType) {
+        try {
+            ContentValues values = new ContentValues();
+            values.put("status", status);
+            if (preservedTaskType != null && !preservedTaskType.isEmpty()) {
+                values.put("task_type", preservedTaskType);
+            }
+            values.put("timestamp", System.currentTimeMillis());
+            return dbHelper.getWritableDatabase()
+                    .update(TABLE_TASKS, values, "task_id = ?", new String[]{taskId}) > 0;
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating task status " + taskId + ": " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Replace a task stored under oldTaskId (e.g. a temporary ID) with newTask
+     */
+    public void replaceTask(String oldTaskId, Task newTask) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (oldTaskId != null && !oldTaskId.equals(newTask.getTaskId())) {
+                // Keep the completion history, which the delete would otherwise take along
+                StreakEngine.moveEntity(db, StreakEngine.TYPE_TASK, oldTaskId, newTask.getTaskId());
+                db.delete(TABLE_TASKS, "task_id = ?", new String[]{oldTaskId});
+            }
+            upsertTask(db, newTask);
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "Error replacing task " + oldTaskId + ": " + e.getMessage(), e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Delete a single task
+     */
+    public void deleteTask(String taskId) {
+        try {
+            dbHelper.getWritableDatabase().delete(TABLE_TASKS, "task_id = ?", new String[]{taskId});
+        } catch (Exception e) {
+            Log.e(TAG, "Error deleting task " + taskId + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delete several tasks in one transaction
+     */
+    public void deleteTasks(List<String> taskIds) {
+        if (taskIds == null || taskIds.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String taskId : taskIds) {
+                db.delete(TABLE_TASKS, "task_id = ?", new String[]{taskId});
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "Error deleting task batch: " + e.getMessage(), e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Write a server delta inside the caller's open transaction. Errors are not
+     * swallowed so the caller can roll back the delta together with its sync cursor.
+     * @return IDs of the deleted tasks that were actually stored locally
+     */
+    List<String> writeDelta(SQLiteDatabase db, List<Task> upserts, List<String> deletedIds) {
+        for (Task task : upserts) {
+            if (task != null && task.getTaskId() != null && !task.getTaskId().isEmpty()) {
+                upsertTask(db, task);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String taskId : deletedIds) {
+            if (db.delete(TABLE_TASKS, "task_id = ?", new String[]{taskId}) > 0) {
+                removed.add(taskId);
+            }
+        }
+        return removed;
+    }
+
+    private ContentValues toContentValues(Task task) {
+        ContentValues values = new ContentValues();
+        values.put("task_id", task.getTaskId());
+        String userId = task.getUserId();
+        values.put("user_id", userId == null || userId.isEmpty() ? getUserId() : userId);
+        values.put("task_type", task.getTaskType());
+        values.put("title", task.getTitle());
+        values.put("description", task.getDescription());
+        values.put("start_time", task.getStartTime());
+        values.put("end_time", task.getEndTime());
+        values.put("due_date", task.getDueDate());
+        values.put("status", task.getStatus());
+        values.put("repeat_frequency", task.getRepeatFrequency());
+        values.put("priority", task.getPriority());
+        values.put("current_streak", task.getCurrentStreak());
+        values.put("timestamp", System.currentTimeMillis());
+        return values;
+    }
+
+    private Task fromCursor(Cursor cursor) {
+        return Task.builder()
+            .taskId(cursor.getString(0))
+            .userId(valueOrDefault(cursor.getString(1), ""))
+            .type(valueOrDefault(cursor.getString(2), "remainder"))
+            .title(valueOrDefault(cursor.getString(3), ""))
+            .description(valueOrDefault(cursor.getString(4), ""))
+            .startTime(valueOrDefault(cursor.getString(5), ""))
+            .endTime(valueOrDefault(cursor.getString(6), ""))
+            .dueDate(valueOrDefault(cursor.getString(7), ""))
+            .status(valueOrDefault(cursor.getString(8), "pending"))
+            .repeat(valueOrDefault(cursor.getString(9), "none"))
+            .priority(valueOrDefault(cursor.getString(10), "medium"))
+            .currentStreak(cursor.getInt(11))
+            .build();
+    }
+
+    private static String valueOrDefault(String value, String defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * One-time import of the legacy "LocalTasks" SharedPreferences store.
+     * The prefs file is cleared once its rows are committed.
+     */
+    private void migrateLegacyPrefs() {
+        SharedPreferences flags = context.getSharedPreferences(MIGRATION_PREFS, Context.MODE_PRIVATE);
+        if (flags.getBoolean(KEY_LEGACY_MIGRATED, false)) {
+            return;
+        }
+
+        SharedPreferences legacyPrefs = context.getSharedPreferences(LEGACY_PREFS, Context.MODE_PRIVATE);
+        String taskIdList = legacyPrefs.getString("task_id_list", "");
+        List<Task> legacyTasks = new ArrayList<>();
+
+        if (!taskIdList.isEmpty()) {
+            for (String taskId : taskIdList.split(",")) {
+                String taskJson = legacyPrefs.getString("task_" + taskId, null);
+                if (taskJson == null) {
+                    continue;
+                }
+                try {
+                    JSONObject taskObj = new JSONObject(taskJson);
+                    legacyTasks.add(Task.builder()
+                        .taskId(taskObj.getString("task_id"))
+                        .userId(taskObj.optString("user_id", ""))
+                        .type(taskObj.optString("task_type", "remainder"))
+                        .title(taskObj.optString("title", ""))
+                        .description(taskObj.optString("description", ""))
+                        .startTime(taskObj.optString("start_time", ""))
+                        .endTime(taskObj.optString("end_time", ""))
+                        .dueDate(taskObj.optString("due_date", ""))
+                        .status(taskObj.optString("status", "pending"))
+                        .repeat(taskObj.optString("repeat_frequency", "none"))
+                        .priority(taskObj.optString("priority", "medium"))
+                        .currentStreak(taskObj.optInt("current_streak", 0))
+                        .build());
+                } catch (Exception e) {
+                    Log.e(TAG, "Skipping unreadable legacy task " + taskId + ": " + e.getMessage());
+                }
+            }
+        }
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Task task : legacyTasks) {
+                upsertTask(db, task);
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "Error migrating legacy tasks: " + e.getMessage(), e);
+            return;
+        } finally {
+            db.endTransaction();
+        }
+
+        legacyPrefs.edit().clear().apply();
+        flags.edit().putBoolean(KEY_LEGACY_MIGRATED, true).apply();
+        Log.d(TAG, "Migrated " + legacyTasks.size() + " tasks from LocalTasks prefs");
+    }
+}
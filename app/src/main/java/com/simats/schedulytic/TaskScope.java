@@ -0,0 +1,115 @@
+package com.simats.schedulytic;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+/**
+ * Background work of one activity or fragment, cancelled together when it is destroyed.
+ *
+ * Work runs on one of the {@link AppExecutors}; its result is handed back on the main
+ * thread, and only while the owner is alive, so callbacks never touch a finished
+ * screen. On destroy, work that has not started is dropped and running work is
+ * interrupted.
+ */
+public final class TaskScope implements DefaultLifecycleObserver {
+    private static final String TAG = "TaskScope";
+
+    private final Set<FutureTask<?>> running = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private volatile boolean closed;
+
+    private TaskScope() {
+    }
+
+    /**
+     * @return A scope closed when the owner is destroyed. Must be called on the main thread.
+     */
+    public static TaskScope of(LifecycleOwner owner) {
+        TaskScope scope = new TaskScope();
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            scope.closed = true;
+        } else {
+            owner.getLifecycle().addObserver(scope);
+        }
+        return scope;
+    }
+
+    /**
+     * @return false once the owner has been destroyed
+     */
+    public boolean isActive() {
+        return !closed;
+    }
+
+    /**
+     * Run the work on the executor and pass its result to onResult on the main thread.
+     * Failures are logged; onResult is not called for them.
+     */
+    public <T> void run(Executor executor, Callable<T> work, Consumer<T> onResult) {
+        if (closed) {
+            return;
+        }
+        FutureTask<T> task = new FutureTask<T>(work) {
+            @Override
+            protected void done() {
+                running.remove(this);
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    T result = get();
+                    post(() -> onResult.accept(result));
+                } catch (Exception e) {
+                    Log.e(TAG, "Background work failed", e.getCause() != null ? e.getCause() : e);
+                }
+            }
+        };
+        running.add(task);
+        executor.execute(task);
+    }
+
+    /**
+     * Run the work on the executor; use {@link #post} to report back
+     */
+    public void run(Executor executor, Runnable work) {
+        run(executor, () -> {
+            work.run();
+            return null;
+        }, result -> { });
+    }
+
+    /**
+     * Run the action on the main thread if the owner is still alive by then
+     */
+    public void post(Runnable action) {
+        if (closed) {
+            return;
+        }
+        AppExecutors.getInstance().main().execute(() -> {
+            if (!closed) {
+                action.run();
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        closed = true;
+        owner.getLifecycle().removeObserver(this);
+        for (FutureTask<?> task : running) {
+            task.cancel(true);
+        }
+        running.clear();
+    }
+}
@@ -0,0 +1,140 @@
+package com.simats.schedulytic;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parsing of the task time strings the server sends and cached formatting of times
+ * for display.
+ *
+ * Task times arrive as "YYYY-MM-DD HH:MM[:SS]" or as "HH:MM[:SS]" on the due date;
+ * {@link Task} parses them into epoch millis once, when they are set. Display strings
+ * are memoized per minute, so binding a row or a timeline card is a map lookup rather
+ * than a formatter run. java.time formatters are immutable and the cache is
+ * synchronized, so every method is safe from any thread. The cache follows the
+ * default locale and time zone and is dropped when either changes.
+ */
+public final class TimeFormats {
+    private static final long MINUTE_MS = 60 * 1000L;
+    private static final long DAY_MS = 24 * 60 * MINUTE_MS;
+    private static final int MAX_CACHED_MINUTES = 512;
+
+    private static final Map<Long, String> timeByMinute =
+            new LinkedHashMap<Long, String>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                    return size() > MAX_CACHED_MINUTES;
+                }
+            };
+    private static Locale cachedLocale;
+    private static ZoneId cachedZone;
+    private static DateTimeFormatter timeFormatter;
+
+    private TimeFormats() {
+    }
+
+    /**
+     * @param time "YYYY-MM-DD HH:MM[:SS]", or "HH:MM[:SS]" on the given date
+     * @param date "YYYY-MM-DD" a time-only value falls on; today if null or empty
+     * @return Epoch millis, or -1 if the value cannot be read
+     */
+    public static long parseTaskTime(String time, String date) {
+        if (time == null || time.isEmpty()) {
+            return -1;
+        }
+        try {
+            String trimmed = time.trim();
+            int space = trimmed.indexOf(' ');
+            LocalDateTime dateTime;
+            if (space > 0) {
+                dateTime = LocalDate.parse(trimmed.substring(0, space))
+                        .atTime(LocalTime.parse(trimmed.substring(space + 1).trim()));
+            } else {
+                LocalDate day = date == null || date.isEmpty() ? LocalDate.now() : LocalDate.parse(date);
+                dateTime = day.atTime(LocalTime.parse(trimmed));
+            }
+            return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return Epoch millis of the start of the "YYYY-MM-DD" day, or -1 if it cannot be read
+     */
+    public static long parseDate(String date) {
+        if (date == null || date.isEmpty()) {
+            return -1;
+        }
+        try {
+            return LocalDate.parse(date.trim()).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return The time as "h:mm a" in the default locale, e.g. "9:30 AM"
+     */
+    public static String formatTime(long millis) {
+        long minute = Math.floorDiv(millis, MINUTE_MS);
+        synchronized (timeByMinute) {
+            Locale locale = Locale.getDefault();
+            ZoneId zone = ZoneId.systemDefault();
+            if (!locale.equals(cachedLocale) || !zone.equals(cachedZone)) {
+                timeByMinute.clear();
+                cachedLocale = locale;
+                cachedZone = zone;
+                timeFormatter = DateTimeFormatter.ofPattern("h:mm a", locale);
+            }
+            String formatted = timeByMinute.get(minute);
+            if (formatted == null) {
+                formatted = timeFormatter.format(Instant.ofEpochMilli(minute * MINUTE_MS).atZone(zone));
+                timeByMinute.put(minute, formatted);
+            }
+            return formatted;
+        }
+    }
+
+    /**
+     * @return "9:00 AM - 10:30 AM"
+     */
+    public static String formatTimeRange(long startMillis, long endMillis) {
+        return formatTime(startMillis) + " - " + formatTime(endMillis);
+    }
+
+    /**
+     * @return Length of the range as "1h 30m", "2h" or "45m". An end before the start
+     * is taken to be on the next day.
+     */
+    public static String formatDuration(long startMillis, long endMillis) {
+        long durationMillis = endMillis - startMillis;
+        if (durationMillis < 0) {
+            durationMillis += DAY_MS;
+        }
+        long hours = durationMillis / (60 * MINUTE_MS);
+        long minutes = (durationMillis % (60 * MINUTE_MS)) / MINUTE_MS;
+        if (hours > 0) {
+            return minutes > 0 ? hours + "h " + minutes + "m" : hours + "h";
+        }
+        return minutes + "m";
+    }
+
+    /**
+     * @return The same time of day as millis, on the day that contains dayMillis
+     */
+    public static long sameTimeOn(long millis, long dayMillis) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalTime time = Instant.ofEpochMilli(millis).atZone(zone).toLocalTime();
+        return Instant.ofEpochMilli(dayMillis).atZone(zone).toLocalDate()
+                .atTime(time).atZone(zone).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,282 @@
+package com.simats.schedulytic;
+
+import android.graphics.Rect;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Vertical LayoutManager that places items on a day's time grid instead of one after
+ * another: an item's top is its start time and its height its length, so the scroll
+ * position is a time of day.
+ *
+ * Items come from a {@link Grid}, sorted by start minute. Items that overlap in time
+ * share the width in lanes. Only items intersecting the viewport are attached; the
+ * rest go back to the RecyclerView's pool, so a day with hundreds of entries costs no
+ * more than the few on screen. Full-width items (hour labels) span the gutter too.
+ */
+public class TimeGridLayoutManager extends RecyclerView.LayoutManager {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * Where each item of the adapter goes on the grid
+     */
+    public interface Grid {
+        int getStartMinute(int position);
+
+        /**
+         * @return End minute, at most a day past midnight; may equal the start
+         */
+        int getEndMinute(int position);
+
+        /**
+         * @return True for items that span the full width, gutter included
+         */
+        boolean isFullWidth(int position);
+
+        int getLane(int position);
+
+        int getLaneCount(int position);
+    }
+
+    private final Grid grid;
+    private final float pxPerMinute;
+    private final int gutterPx;
+    private final int minItemHeightPx;
+    private final Rect decorInsets = new Rect();
+    private int scrollY;
+    private int pendingScrollPosition = RecyclerView.NO_POSITION;
+
+    // Per layout pass: each position's bounds on the grid, and the largest bottom of
+    // any item at or before a position, which lets fill() binary search for the first
+    // item reaching into the viewport even when a long item starts far above it
+    private int[] tops = new int[0];
+    private int[] bottoms = new int[0];
+    private int[] maxBottoms = new int[0];
+
+    /**
+     * @param pxPerMinute Height of one minute
+     * @param gutterPx Width left free of task items for the hour labels
+     * @param minItemHeightPx Height of items shorter than that, so short tasks stay readable
+     */
+    public TimeGridLayoutManager(Grid grid, float pxPerMinute, int gutterPx, int minItemHeightPx) {
+        this.grid = grid;
+        this.pxPerMinute = pxPerMinute;
+        this.gutterPx = gutterPx;
+        this.minItemHeightPx = minItemHeightPx;
+    }
+
+    @Override
+    public RecyclerView.LayoutParams generateDefaultLayoutParams() {
+        return new RecyclerView.LayoutParams(RecyclerView.LayoutParams.MATCH_PARENT,
+                RecyclerView.LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public boolean canScrollVertically() {
+        return true;
+    }
+
+    @Override
+    public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        int count = state.getItemCount();
+        if (count == 0) {
+            removeAndRecycleAllViews(recycler);
+            scrollY = 0;
+            return;
+        }
+        computeGrid(count);
+        if (pendingScrollPosition != RecyclerView.NO_POSITION && pendingScrollPosition < count) {
+            scrollY = tops[pendingScrollPosition];
+        }
+        pendingScrollPosition = RecyclerView.NO_POSITION;
+        scrollY = Math.max(0, Math.min(scrollY, maxScroll()));
+
+        // Rebuild from scrap: views still showing the same items are reattached without a rebind
+        detachAndScrapAttachedViews(recycler);
+        fill(recycler);
+    }
+
+    @Override
+    public int scrollVerticallyBy(int dy, RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (getChildCount() == 0 || tops.length != state.getItemCount()) {
+            return 0;
+        }
+        int scrolled = Math.max(-scrollY, Math.min(dy, maxScroll() - scrollY));
+        scrollY += scrolled;
+        offsetChildrenVertical(-scrolled);
+        fill(recycler);
+        return scrolled;
+    }
+
+    @Override
+    public void scrollToPosition(int position) {
+        pendingScrollPosition = position;
+        requestLayout();
+    }
+
+    /**
+     * Scroll so that the given minute of the day is at the top
+     */
+    public void scrollToMinute(int minute) {
+        pendingScrollPosition = RecyclerView.NO_POSITION;
+        scrollY = Math.round(minute * pxPerMinute);
+        requestLayout();
+    }
+
+    @Override
+    public int computeVerticalScrollOffset(@NonNull RecyclerView.State state) {
+        return scrollY;
+    }
+
+    @Override
+    public int computeVerticalScrollExtent(@NonNull RecyclerView.State state) {
+        return getVisibleHeight();
+    }
+
+    @Override
+    public int computeVerticalScrollRange(@NonNull RecyclerView.State state) {
+        return contentHeight();
+    }
+
+    private void computeGrid(int count) {
+        if (tops.length != count) {
+            tops = new int[count];
+            bottoms = new int[count];
+            maxBottoms = new int[count];
+        }
+        int maxBottom = 0;
+        for (int i = 0; i < count; i++) {
+            int start = clampMinute(grid.getStartMinute(i));
+            int end = Math.max(start, clampMinute(grid.getEndMinute(i)));
+            tops[i] = Math.round(start * pxPerMinute);
+            bottoms[i] = grid.isFullWidth(i)
+                    ? tops[i] // Measured height is added in fill()
+                    : Math.max(Math.round(end * pxPerMinute), tops[i] + minItemHeightPx);
+            maxBottom = Math.max(maxBottom, bottoms[i] + minItemHeightPx);
+            maxBottoms[i] = maxBottom;
+        }
+    }
+
+    /**
+     * Recycle the children that left the viewport and add the items that entered it
+     */
+    private void fill(RecyclerView.Recycler recycler) {
+        int viewTop = scrollY;
+        int viewBottom = scrollY + getVisibleHeight();
+        int first = firstReaching(viewTop);
+        int last = lastStartingBefore(viewBottom);
+
+        // Positions already attached, relative to first
+        boolean[] attached = new boolean[Math.max(0, last - first + 1)];
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            int position = getPosition(child);
+            if (position < first || position > last
+                    || getDecoratedBottom(child) < getPaddingTop()
+                    || getDecoratedTop(child) > getHeight() - getPaddingBottom()) {
+                removeAndRecycleView(child, recycler);
+            } else {
+                attached[position - first] = true;
+            }
+        }
+
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        for (int position = first; position <= last; position++) {
+            if (attached[position - first] || (bottoms[position] < viewTop && !grid.isFullWidth(position))) {
+                continue;
+            }
+            View view = recycler.getViewForPosition(position);
+            addView(view);
+
+            int left;
+            int itemWidth;
+            if (grid.isFullWidth(position)) {
+                left = getPaddingLeft();
+                itemWidth = width;
+            } else {
+                int laneCount = Math.max(1, grid.getLaneCount(position));
+                int laneWidth = (width - gutterPx) / laneCount;
+                left = getPaddingLeft() + gutterPx + grid.getLane(position) * laneWidth;
+                itemWidth = laneWidth;
+            }
+            int itemHeight = grid.isFullWidth(position) ? 0 : bottoms[position] - tops[position];
+            measureItem(view, itemWidth, itemHeight);
+
+            int top = getPaddingTop() + tops[position] - scrollY;
+            RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) view.getLayoutParams();
+            layoutDecoratedWithMargins(view, left, top,
+                    left + getDecoratedMeasuredWidth(view) + lp.leftMargin + lp.rightMargin,
+                    top + getDecoratedMeasuredHeight(view) + lp.topMargin + lp.bottomMargin);
+            if (getDecoratedBottom(view) < getPaddingTop()) {
+                // A full-width item measured shorter than the gap above the viewport
+                removeAndRecycleView(view, recycler);
+            }
+        }
+    }
+
+    /**
+     * Measure to the given outer size; a height of 0 measures the height to wrap content
+     */
+    private void measureItem(View view, int width, int height) {
+        RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) view.getLayoutParams();
+        calculateItemDecorationsForChild(view, decorInsets);
+        int horizontal = lp.leftMargin + lp.rightMargin + decorInsets.left + decorInsets.right;
+        int vertical = lp.topMargin + lp.bottomMargin + decorInsets.top + decorInsets.bottom;
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(Math.max(0, width - horizontal), View.MeasureSpec.EXACTLY);
+        int heightSpec = height > 0
+                ? View.MeasureSpec.makeMeasureSpec(Math.max(0, height - vertical), View.MeasureSpec.EXACTLY)
+                : View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        view.measure(widthSpec, heightSpec);
+    }
+
+    /**
+     * @return First position whose item, or an earlier one, reaches down to y
+     */
+    private int firstReaching(int y) {
+        int low = 0;
+        int high = maxBottoms.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxBottoms[mid] < y) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return Last position whose item starts above y
+     */
+    private int lastStartingBefore(int y) {
+        int low = 0;
+        int high = tops.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (tops[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int clampMinute(int minute) {
+        return Math.max(0, Math.min(minute, MINUTES_PER_DAY));
+    }
+
+    private int contentHeight() {
+        return Math.round(MINUTES_PER_DAY * pxPerMinute) + minItemHeightPx;
+    }
+
+    private int maxScroll() {
+        return Math.max(0, contentHeight() - getVisibleHeight());
+    }
+
+    private int getVisibleHeight() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+}
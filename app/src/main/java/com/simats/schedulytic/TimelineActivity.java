@@ -2,24 +2,16 @@ package com.simats.schedulytic;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.res.TypedArray;
-import android.graphics.drawable.Drawable;
-import android.graphics.drawable.GradientDrawable;
-import android.graphics.drawable.LayerDrawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
-import android.util.TypedValue;
-import android.view.Gravity;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.widget.ImageView;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.simats.schedulytic.ui.login.IpV4Connection;
 import org.json.JSONArray;
@@ -33,30 +25,36 @@ import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 public class TimelineActivity extends AppCompatActivity {
     private static final String TAG = "TimelineActivity";
-    private LinearLayout timelineContainer;
-    private List<Task> taskList = new ArrayList<>();
+    // Height of an hour on the time grid, and the width of the hour label column
+    private static final float HOUR_HEIGHT_DP = 120f;
+    private static final float GUTTER_DP = 72f;
+
+    private RecyclerView timelineRecycler;
+    private TimeGridLayoutManager timelineLayoutManager;
+    private TimelineAdapter timelineAdapter;
+    private TextView emptyText;
+    private boolean scrolledToNow = false;
+    private List<Task> baseTasks = new ArrayList<>(); // Server tasks before repeat expansion
+    private List<RecurrenceEngine.Occurrence> occurrences = new ArrayList<>();
     private String userId;
     private Handler handler = new Handler(Looper.getMainLooper());
     private Runnable refreshRunnable;
     private boolean isRefreshing = false;
+    private TaskScope scope;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_timeline);
-        timelineContainer = findViewById(R.id.timeline_container);
+        scope = TaskScope.of(this);
+        setupTimeline();
 
         handler = new Handler(Looper.getMainLooper());
 
@@ -84,20 +82,60 @@ public class TimelineActivity extends AppCompatActivity {
             @Override
             public void run() {
                 if (!isFinishing() && !isDestroyed()) {
-                    fetchTasks();
+                    // Re-render from memory; edits arrive through TaskCache, not by polling
+                    rebuildTimeline();
                     handler.postDelayed(this, 60000); // Refresh every minute
                 }
             }
         };
 
-        fetchTasks();
+        // onResume performs the initial fetch
+        TaskCache.getInstance(this).observeChanges(this, this::applyTaskChange);
+    }
+
+    /**
+     * Patch the base task list with one change from the shared cache and re-render locally
+     */
+    private void applyTaskChange(TaskCache.TaskChange change) {
+        if (change == null || isRefreshing) return;
+
+        boolean changed = false;
+        for (int i = 0; i < baseTasks.size(); i++) {
+            if (baseTasks.get(i).getTaskId().equals(change.getTaskId())) {
+                if (change.getType() == TaskCache.TaskChange.Type.DELETED) {
+                    baseTasks.remove(i);
+                } else {
+                    baseTasks.set(i, change.getTask());
+                }
+                changed = true;
+                break;
+            }
+        }
+        if (!changed && change.getType() == TaskCache.TaskChange.Type.ADDED) {
+            baseTasks.add(change.getTask());
+            changed = true;
+        }
+        if (changed) {
+            rebuildTimeline();
+        }
+    }
+
+    private void rebuildTimeline() {
+        // Repeating tasks are shown through their occurrence today, without copying them
+        LocalDate today = LocalDate.now();
+        occurrences = RecurrenceEngine.getInstance().expand(baseTasks, today, today);
+        if (baseTasks.isEmpty()) {
+            showEmptyStateMessage();
+        } else {
+            updateTimeline();
+        }
     }
 
     private void fetchTasks() {
         if (isRefreshing) return;
         isRefreshing = true;
 
-        new Thread(() -> {
+        scope.run(AppExecutors.getInstance().io(), () -> {
             HttpURLConnection conn = null;
             BufferedReader reader = null;
             try {
@@ -111,7 +149,7 @@ public class TimelineActivity extends AppCompatActivity {
                 conn.setDefaultUseCaches(false);
 
                 if (!isNetworkAvailable()) {
-                    runOnUiThread(() -> {
+                    scope.post(() -> {
                         Toast.makeText(TimelineActivity.this, "No network connection available", Toast.LENGTH_SHORT).show();
                         isRefreshing = false;
                     });
@@ -133,7 +171,7 @@ public class TimelineActivity extends AppCompatActivity {
                     Log.d(TAG, "Response: " + responseData);
 
                     if (responseData.isEmpty()) {
-                        runOnUiThread(() -> {
+                        scope.post(() -> {
                             Toast.makeText(TimelineActivity.this, "Empty response from server", Toast.LENGTH_SHORT).show();
                             isRefreshing = false;
                         });
@@ -169,36 +207,31 @@ public class TimelineActivity extends AppCompatActivity {
                                 );
                                 newTaskList.add(newTask);
                             }
-                            taskList.clear();
-                            taskList.addAll(newTaskList);
-                            processRepeatingTasks();
-                            runOnUiThread(() -> {
-                                if (taskList.isEmpty()) {
-                                    // Show empty state message
-                                    showEmptyStateMessage();
-                                } else {
-                                    updateTimeline();
-                                }
+                            // Share the fetched rows with the other screens
+                            TaskCache.getInstance(TimelineActivity.this).putAll(newTaskList);
+                            scope.post(() -> {
+                                baseTasks = newTaskList;
+                                rebuildTimeline();
                                 isRefreshing = false;
                             });
                         } else {
                             String message = jsonResponse.optString("message", "Unknown error");
                             Log.e(TAG, "Error fetching tasks: " + message);
-                            runOnUiThread(() -> {
+                            scope.post(() -> {
                                 Toast.makeText(TimelineActivity.this, "Error: " + message, Toast.LENGTH_SHORT).show();
                                 isRefreshing = false;
                             });
                         }
                     } catch (JSONException e) {
                         Log.e(TAG, "JSON parsing error: " + e.getMessage());
-                        runOnUiThread(() -> {
+                        scope.post(() -> {
                             Toast.makeText(TimelineActivity.this, "Server parser failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
                             isRefreshing = false;
                         });
                     }
                 } else if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
                     Log.e(TAG, "Authentication error: " + responseCode);
-                    runOnUiThread(() -> {
+                    scope.post(() -> {
                         Toast.makeText(TimelineActivity.this, "Authentication error. Please login again.", Toast.LENGTH_SHORT).show();
                         startActivity(new Intent(TimelineActivity.this, LoginActivity.class));
                         finish();
@@ -223,20 +256,20 @@ public class TimelineActivity extends AppCompatActivity {
                     final String finalErrorMessage = errorMessage.isEmpty() ?
                             "Server error: " + responseCode : errorMessage;
                     Log.e(TAG, "Server returned error: " + finalErrorMessage);
-                    runOnUiThread(() -> {
+                    scope.post(() -> {
                         Toast.makeText(TimelineActivity.this, finalErrorMessage, Toast.LENGTH_SHORT).show();
                         isRefreshing = false;
                     });
                 }
             } catch (IOException e) {
                 Log.e(TAG, "Network error: " + e.getMessage(), e);
-                runOnUiThread(() -> {
+                scope.post(() -> {
                     Toast.makeText(TimelineActivity.this, "Network error: Check your connection", Toast.LENGTH_SHORT).show();
                     isRefreshing = false;
                 });
             } catch (Exception e) {
                 Log.e(TAG, "Unexpected error: " + e.getMessage(), e);
-                runOnUiThread(() -> {
+                scope.post(() -> {
                     Toast.makeText(TimelineActivity.this, "Unexpected error occurred", Toast.LENGTH_SHORT).show();
                     isRefreshing = false;
                 });
@@ -248,275 +281,40 @@ public class TimelineActivity extends AppCompatActivity {
                 }
                 if (conn != null) conn.disconnect();
             }
-        }).start();
-    }
-
-    private void processRepeatingTasks() {
-        List<Task> expandedTasks = new ArrayList<>(taskList);
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        Calendar calendar = Calendar.getInstance();
-        Calendar now = Calendar.getInstance();
-        now.set(Calendar.HOUR_OF_DAY, 0);
-        now.set(Calendar.MINUTE, 0);
-        now.set(Calendar.SECOND, 0);
-        now.set(Calendar.MILLISECOND, 0);
-        final long THIRTY_DAYS_MS = TimeUnit.DAYS.toMillis(30);
-        final Date endLimit = new Date(System.currentTimeMillis() + THIRTY_DAYS_MS);
-
-        for (Task task : taskList) {
-            String repeatFrequency = task.getRepeatFrequency();
-            if ("none".equals(repeatFrequency) || task.getStartTime() == null) continue;
-
-            try {
-                Date startDate = sdf.parse(task.getStartTime());
-                if (startDate == null) continue;
-                if (startDate.before(now.getTime()) && "none".equals(repeatFrequency)) continue;
-
-                int field = getCalendarField(repeatFrequency);
-                if (field == 0) continue;
-
-                long duration = 0;
-                if (task.getEndTime() != null) {
-                    Date originalEnd = sdf.parse(task.getEndTime());
-                    if (originalEnd != null) {
-                        duration = originalEnd.getTime() - startDate.getTime();
-                    }
-                }
-
-                calendar.setTime(startDate);
-                int maxOccurrences = 10;
-                int count = 0;
-                while (calendar.getTime().before(endLimit) && count < maxOccurrences) {
-                    calendar.add(field, 1);
-                    Date newStart = calendar.getTime();
-                    if (newStart.before(now.getTime())) continue;
-
-                    String formattedEndTime = null;
-                    if (duration > 0) {
-                        Date newEnd = new Date(newStart.getTime() + duration);
-                        formattedEndTime = sdf.format(newEnd);
-                    }
-
-                    Task repeatedTask = new Task(
-                            task.getTaskId(),
-                            task.getUserId(),
-                            task.getTaskType(),
-                            task.getTitle(),
-                            task.getDescription(),
-                            sdf.format(newStart),
-                            formattedEndTime,
-                            task.getDueDate(),
-                            task.getStatus(),
-                            "none",
-                            task.getPriority()
-                    );
-                    expandedTasks.add(repeatedTask);
-                    count++;
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error processing repeating task: " + task.getTitle(), e);
-            }
-        }
-
-        taskList = expandedTasks;
+        });
     }
 
-    private int getCalendarField(String frequency) {
-        switch (frequency) {
-            case "daily": return Calendar.DAY_OF_YEAR;
-            case "weekly": return Calendar.WEEK_OF_YEAR;
-            case "monthly": return Calendar.MONTH;
-            default: return 0;
-        }
+    private void setupTimeline() {
+        timelineRecycler = findViewById(R.id.timeline_recycler);
+        emptyText = findViewById(R.id.timeline_empty);
+
+        float density = getResources().getDisplayMetrics().density;
+        float pxPerMinute = HOUR_HEIGHT_DP * density / 60f;
+        timelineAdapter = new TimelineAdapter(task -> showTaskOptions(task.getTaskId(), task.getTitle(), task));
+        timelineLayoutManager = new TimeGridLayoutManager(timelineAdapter, pxPerMinute,
+                Math.round(GUTTER_DP * density), Math.round(TimelineAdapter.MIN_ITEM_MINUTES * pxPerMinute));
+        timelineRecycler.setLayoutManager(timelineLayoutManager);
+        timelineRecycler.setAdapter(timelineAdapter);
+        timelineRecycler.setItemViewCacheSize(10);
     }
 
     private void updateTimeline() {
-        timelineContainer.removeAllViews();
+        // Occurrences come sorted by start and all fall on today; the adapter diffs
+        // the new items against the shown ones, so an unchanged day rebinds nothing
+        timelineAdapter.submitList(TimelineAdapter.layoutDay(occurrences));
 
-        SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm a", Locale.getDefault());
-        SimpleDateFormat fullDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-
-        Calendar now = Calendar.getInstance();
-        int currentDayOfYear = now.get(Calendar.DAY_OF_YEAR);
-        int currentYear = now.get(Calendar.YEAR);
-
-        taskList.sort((t1, t2) -> {
-            if (t1.getStartTime() == null || t2.getStartTime() == null) return 0;
-            return t1.getStartTime().compareTo(t2.getStartTime());
-        });
-
-        Map<Integer, List<Task>> tasksByHour = new HashMap<>();
-        Calendar taskCal = Calendar.getInstance();
-
-        for (Task task : taskList) {
-            if (task.getStartTime() == null) continue;
-            try {
-                Date start = fullDateFormat.parse(task.getStartTime());
-                if (start == null) continue;
-                taskCal.setTime(start);
-                if (taskCal.get(Calendar.YEAR) == currentYear &&
-                        taskCal.get(Calendar.DAY_OF_YEAR) == currentDayOfYear) {
-                    int hour = taskCal.get(Calendar.HOUR_OF_DAY);
-                    if (!tasksByHour.containsKey(hour)) {
-                        tasksByHour.put(hour, new ArrayList<>());
-                    }
-                    tasksByHour.get(hour).add(task);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error processing task start time: " + task.getTitle(), e);
-            }
-        }
-
-        LayoutInflater inflater = LayoutInflater.from(this);
-
-        for (int hour = 0; hour < 24; hour++) {
-            LinearLayout timeSlot = new LinearLayout(this);
-            timeSlot.setOrientation(LinearLayout.HORIZONTAL);
-            timeSlot.setPadding(8, 8, 8, 8);
-
-            TextView timeText = new TextView(this);
-            timeText.setText(String.format(Locale.getDefault(), "%02d:00 %s",
-                    hour % 12 == 0 ? 12 : hour % 12, hour < 12 ? "am" : "pm"));
-            timeText.setTextSize(14);
-            timeText.setTextColor(0xFF333333);
-            timeText.setTextIsSelectable(false);
-            timeText.setCursorVisible(false);
-            timeSlot.addView(timeText);
-
-            View line = new View(this);
-            line.setLayoutParams(new LinearLayout.LayoutParams(
-                    LinearLayout.LayoutParams.MATCH_PARENT, 1));
-            line.setBackgroundColor(0xFFCCCCCC);
-            timeSlot.addView(line);
-
-            timelineContainer.addView(timeSlot);
-
-            List<Task> tasksForHour = tasksByHour.get(hour);
-            if (tasksForHour != null && !tasksForHour.isEmpty()) {
-                for (Task task : tasksForHour) {
-                    try {
-                        View taskView = inflater.inflate(R.layout.task_card, timelineContainer, false);
-
-                        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-                                LinearLayout.LayoutParams.MATCH_PARENT,
-                                LinearLayout.LayoutParams.WRAP_CONTENT
-                        );
-                        params.setMargins(8, 8, 8, 8);
-                        taskView.setLayoutParams(params);
-
-                        taskView.setClickable(true);
-                        taskView.setFocusable(true);
-
-                        TypedValue outValue = new TypedValue();
-                        getTheme().resolveAttribute(android.R.attr.selectableItemBackground, outValue, true);
-                        taskView.setBackgroundResource(outValue.resourceId);
-
-                        final String taskId = task.getTaskId();
-                        final String taskTitle = task.getTitle();
-                        taskView.setOnClickListener(v -> showTaskOptions(taskId, taskTitle, task));
-
-                        TextView taskTypeLabel = taskView.findViewById(R.id.taskTypeLabel);
-                        TextView titleView = taskView.findViewById(R.id.taskTitle);
-                        TextView timeView = taskView.findViewById(R.id.taskTime);
-                        TextView durationView = taskView.findViewById(R.id.taskDuration);
-                        ImageView iconView = taskView.findViewById(R.id.taskIcon);
-
-                        titleView.setTextIsSelectable(false);
-                        timeView.setTextIsSelectable(false);
-                        durationView.setTextIsSelectable(false);
-                        taskTypeLabel.setTextIsSelectable(false);
-
-                        taskTypeLabel.setText(task.getTaskType().toUpperCase());
-                        titleView.setText(task.getTitle());
-
-                        int backgroundColor;
-                        switch (task.getTaskType().toLowerCase()) {
-                            case "workflow":
-                                backgroundColor = getResources().getColor(android.R.color.holo_green_light);
-                                break;
-                            case "habit":
-                                backgroundColor = getResources().getColor(android.R.color.holo_orange_light);
-                                break;
-                            case "reminder":
-                                backgroundColor = getResources().getColor(android.R.color.holo_blue_light);
-                                break;
-                            default:
-                                backgroundColor = getResources().getColor(android.R.color.darker_gray);
-                                break;
-                        }
-
-                        GradientDrawable shape = new GradientDrawable();
-                        shape.setColor(backgroundColor);
-                        shape.setCornerRadius(8);
-
-                        int[] attrs = new int[]{android.R.attr.selectableItemBackground};
-                        TypedArray typedArray = getTheme().obtainStyledAttributes(attrs);
-                        Drawable foreground = typedArray.getDrawable(0);
-                        typedArray.recycle();
-
-                        Drawable[] layers = new Drawable[]{shape, foreground};
-                        LayerDrawable layerDrawable = new LayerDrawable(layers);
-                        taskView.setBackground(layerDrawable);
-
-                        Date start = fullDateFormat.parse(task.getStartTime());
-                        Date end = task.getEndTime() != null ? fullDateFormat.parse(task.getEndTime()) : null;
-
-                        String endTimeStr = end != null ? timeFormat.format(end) : "";
-                        timeView.setText(timeFormat.format(start) + (endTimeStr.isEmpty() ? "" : " - " + endTimeStr));
-
-                        if (end != null) {
-                            long durationMs = end.getTime() - start.getTime();
-                            int durationMins = (int) (durationMs / (1000 * 60));
-                            durationView.setText(durationMins + " mins");
-                        } else {
-                            durationView.setVisibility(View.GONE);
-                        }
-
-                        switch (task.getTaskType()) {
-                            case "habit":
-                                taskView.setBackgroundColor(0xFFFFEB3B);
-                                taskTypeLabel.setTextColor(0xFF000000);
-                                titleView.setTextColor(0xFF000000);
-                                timeView.setTextColor(0xFF333333);
-                                durationView.setTextColor(0xFF333333);
-                                iconView.setImageResource(R.drawable.ic_dumbbell);
-                                break;
-                            case "reminder":
-                                taskView.setBackgroundColor(0xFF195C31);
-                                taskTypeLabel.setTextColor(0xFFFFFFFF);
-                                titleView.setTextColor(0xFFFFFFFF);
-                                timeView.setTextColor(0xFFFFFFFF);
-                                durationView.setTextColor(0xFFFFFFFF);
-                                iconView.setImageResource(R.drawable.ic_group);
-                                iconView.setColorFilter(0xFFFFFFFF);
-                                break;
-                            case "workflow":
-                            default:
-                                taskView.setBackgroundColor(0xFF0D3B66);
-                                taskTypeLabel.setTextColor(0xFFFFFFFF);
-                                titleView.setTextColor(0xFFFFFFFF);
-                                timeView.setTextColor(0xFFFFFFFF);
-                                durationView.setTextColor(0xFFFFFFFF);
-                                iconView.setImageResource(R.drawable.ic_fork_knife);
-                                iconView.setColorFilter(0xFFFFFFFF);
-                                break;
-                        }
-
-                        timelineContainer.addView(taskView);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error rendering task: " + task.getTitle(), e);
-                    }
-                }
-            }
+        if (occurrences.isEmpty()) {
+            emptyText.setText("No tasks scheduled for today.");
+            emptyText.setVisibility(View.VISIBLE);
+        } else {
+            emptyText.setVisibility(View.GONE);
         }
 
-        if (timelineContainer.getChildCount() == 24 * 2) {
-            TextView emptyView = new TextView(this);
-            emptyView.setText("No tasks scheduled for today.");
-            emptyView.setGravity(Gravity.CENTER);
-            emptyView.setPadding(16, 32, 16, 32);
-            emptyView.setTextSize(16);
-            timelineContainer.addView(emptyView);
+        if (!scrolledToNow) {
+            // Open on the hour before now rather than at midnight
+            scrolledToNow = true;
+            LocalTime now = LocalTime.now();
+            timelineLayoutManager.scrollToMinute(Math.max(0, now.getHour() - 1) * 60);
         }
     }
 
@@ -532,25 +330,9 @@ public class TimelineActivity extends AppCompatActivity {
      * Shows an empty state message when no tasks are available
      */
     private void showEmptyStateMessage() {
-        timelineContainer.removeAllViews();
-
-        // Create a TextView for the empty state message
-        TextView emptyStateText = new TextView(this);
-        emptyStateText.setText("No activities added. Please add something.");
-        emptyStateText.setTextSize(18);
-        emptyStateText.setTextColor(getResources().getColor(android.R.color.darker_gray));
-        emptyStateText.setGravity(Gravity.CENTER);
-
-        // Create layout parameters
-        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.MATCH_PARENT,
-                LinearLayout.LayoutParams.WRAP_CONTENT
-        );
-        params.setMargins(16, 48, 16, 16);
-        emptyStateText.setLayoutParams(params);
-
-        // Add to the container
-        timelineContainer.addView(emptyStateText);
+        timelineAdapter.submitList(TimelineAdapter.layoutDay(occurrences));
+        emptyText.setText("No activities added. Please add something.");
+        emptyText.setVisibility(View.VISIBLE);
 
         Log.d(TAG, "Showing empty state message");
     }
@@ -566,7 +348,8 @@ public class TimelineActivity extends AppCompatActivity {
         super.onResume();
         isRefreshing = false;
         if (isNetworkAvailable()) {
-            handler.post(refreshRunnable);
+            fetchTasks();
+            handler.postDelayed(refreshRunnable, 60000);
         } else {
             Toast.makeText(this, "No network connection available", Toast.LENGTH_SHORT).show();
         }
@@ -0,0 +1,339 @@
+package com.simats.schedulytic;
+
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Hour labels and task cards of the day timeline, laid out by {@link TimeGridLayoutManager}.
+ *
+ * {@link #layoutDay} turns a day's occurrences into grid items, sharing the width
+ * between tasks that overlap in time. New item lists are diffed on a background
+ * thread, so the minute refresh of an unchanged day touches no views at all.
+ */
+public class TimelineAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+        implements TimeGridLayoutManager.Grid {
+    private static final String TAG = "TimelineAdapter";
+    private static final int VIEW_TYPE_HOUR = 0;
+    private static final int VIEW_TYPE_TASK = 1;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * Minutes a task takes on the grid at least, so that short tasks stay readable.
+     * The layout manager's minimum item height should match it.
+     */
+    public static final int MIN_ITEM_MINUTES = 30;
+
+    private static final DiffUtil.ItemCallback<Item> DIFF_CALLBACK = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.key.equals(newItem.key);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            // Lanes are not compared: they only move a card, and whatever changed
+            // them is itself an insert, removal or change that triggers a new layout
+            if (oldItem.task == null || newItem.task == null) {
+                return oldItem.task == newItem.task;
+            }
+            return oldItem.startMillis == newItem.startMillis
+                    && oldItem.endMillis == newItem.endMillis
+                    && Objects.equals(oldItem.task.getTitle(), newItem.task.getTitle())
+                    && Objects.equals(oldItem.task.getType(), newItem.task.getType())
+                    && Objects.equals(oldItem.task.getStatus(), newItem.task.getStatus());
+        }
+    };
+
+    private final AsyncListDiffer<Item> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private final TaskClickListener clickListener;
+
+    public interface TaskClickListener {
+        void onTaskClicked(Task task);
+    }
+
+    /**
+     * One hour label or one task occurrence on the grid
+     */
+    public static final class Item {
+        final String key;
+        final int hour; // Hour labels only
+        final Task task; // Task cards only
+        final long startMillis;
+        final long endMillis;
+        final int startMinute;
+        final int endMinute;
+        int lane;
+        int laneCount = 1;
+
+        private Item(int hour) {
+            this.key = "hour:" + hour;
+            this.hour = hour;
+            this.task = null;
+            this.startMillis = -1;
+            this.endMillis = -1;
+            this.startMinute = hour * 60;
+            this.endMinute = hour * 60;
+        }
+
+        private Item(RecurrenceEngine.Occurrence occurrence, ZoneId zone) {
+            this.task = occurrence.getTask();
+            this.hour = -1;
+            this.startMillis = occurrence.getStartMillis();
+            this.endMillis = occurrence.getEndMillis();
+            // A task repeating on the day is one item per occurrence
+            this.key = "task:" + task.getTaskId() + "@" + startMillis;
+            LocalTime start = Instant.ofEpochMilli(startMillis).atZone(zone).toLocalTime();
+            this.startMinute = start.getHour() * 60 + start.getMinute();
+            long lengthMinutes = Math.max(0, (endMillis - startMillis) / 60000L);
+            this.endMinute = (int) Math.min(MINUTES_PER_DAY, startMinute + lengthMinutes);
+        }
+    }
+
+    public TimelineAdapter(TaskClickListener clickListener) {
+        this.clickListener = clickListener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Grid items of one day: a label per hour and a card per occurrence, in start order,
+     * with overlapping cards spread over lanes
+     *
+     * @param occurrences The day's occurrences, sorted by start
+     */
+    public static List<Item> layoutDay(List<RecurrenceEngine.Occurrence> occurrences) {
+        ZoneId zone = ZoneId.systemDefault();
+        List<Item> items = new ArrayList<>(24 + occurrences.size());
+        List<Item> cluster = new ArrayList<>();
+        List<Integer> laneEnds = new ArrayList<>();
+        int clusterEnd = -1;
+        int next = 0;
+        for (int hour = 0; hour < 24; hour++) {
+            items.add(new Item(hour));
+            for (; next < occurrences.size(); next++) {
+                Item item = new Item(occurrences.get(next), zone);
+                if (item.startMinute >= (hour + 1) * 60) {
+                    break;
+                }
+                int end = Math.max(item.endMinute, item.startMinute + MIN_ITEM_MINUTES);
+                if (item.startMinute >= clusterEnd) {
+                    // Nothing before overlaps this card: the previous cluster is complete
+                    closeCluster(cluster, laneEnds.size());
+                    laneEnds.clear();
+                }
+                item.lane = laneEnds.size();
+                for (int lane = 0; lane < laneEnds.size(); lane++) {
+                    if (laneEnds.get(lane) <= item.startMinute) {
+                        item.lane = lane;
+                        break;
+                    }
+                }
+                if (item.lane == laneEnds.size()) {
+                    laneEnds.add(end);
+                } else {
+                    laneEnds.set(item.lane, end);
+                }
+                clusterEnd = Math.max(item.startMinute >= clusterEnd ? 0 : clusterEnd, end);
+                cluster.add(item);
+                items.add(item);
+            }
+        }
+        closeCluster(cluster, laneEnds.size());
+        return items;
+    }
+
+    private static void closeCluster(List<Item> cluster, int laneCount) {
+        for (Item item : cluster) {
+            item.laneCount = laneCount;
+        }
+        cluster.clear();
+    }
+
+    public void submitList(List<Item> items) {
+        differ.submitList(items);
+    }
+
+    /**
+     * @return The number of task cards shown
+     */
+    public int getTaskCount() {
+        return getItemCount() - 24;
+    }
+
+    private Item getItem(int position) {
+        return differ.getCurrentList().get(position);
+    }
+
+    @Override
+    public int getStartMinute(int position) {
+        return getItem(position).startMinute;
+    }
+
+    @Override
+    public int getEndMinute(int position) {
+        return getItem(position).endMinute;
+    }
+
+    @Override
+    public boolean isFullWidth(int position) {
+        return getItem(position).task == null;
+    }
+
+    @Override
+    public int getLane(int position) {
+        return getItem(position).lane;
+    }
+
+    @Override
+    public int getLaneCount(int position) {
+        return getItem(position).laneCount;
+    }
+
+    @Override
+    public int getItemCount() {
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).task == null ? VIEW_TYPE_HOUR : VIEW_TYPE_TASK;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Item item = getItem(position);
+        if (item.task == null) {
+            return item.hour;
+        }
+        return TaskIds.stableId(item.task.getTaskId()) * 31 + item.startMillis;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == VIEW_TYPE_HOUR) {
+            return new HourViewHolder(inflater.inflate(R.layout.item_timeline_hour, parent, false));
+        }
+        return new TaskViewHolder(inflater.inflate(R.layout.task_card, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        Item item = getItem(position);
+        if (holder instanceof HourViewHolder) {
+            ((HourViewHolder) holder).bind(item.hour);
+        } else {
+            try {
+                ((TaskViewHolder) holder).bind(item);
+            } catch (Exception e) {
+                Log.e(TAG, "Error rendering task: " + item.task.getTitle(), e);
+            }
+        }
+    }
+
+    static class HourViewHolder extends RecyclerView.ViewHolder {
+        private final TextView timeText;
+
+        HourViewHolder(@NonNull View itemView) {
+            super(itemView);
+            timeText = itemView.findViewById(R.id.hourText);
+        }
+
+        void bind(int hour) {
+            timeText.setText(String.format(Locale.getDefault(), "%02d:00 %s",
+                    hour % 12 == 0 ? 12 : hour % 12, hour < 12 ? "am" : "pm"));
+        }
+    }
+
+    class TaskViewHolder extends RecyclerView.ViewHolder {
+        private final TextView taskTypeLabel;
+        private final TextView titleView;
+        private final TextView timeView;
+        private final TextView durationView;
+        private final ImageView iconView;
+
+        TaskViewHolder(@NonNull View itemView) {
+            super(itemView);
+            taskTypeLabel = itemView.findViewById(R.id.taskTypeLabel);
+            titleView = itemView.findViewById(R.id.taskTitle);
+            timeView = itemView.findViewById(R.id.taskTime);
+            durationView = itemView.findViewById(R.id.taskDuration);
+            iconView = itemView.findViewById(R.id.taskIcon);
+        }
+
+        void bind(Item item) {
+            Task task = item.task;
+            String type = task.getTaskType() != null ? task.getTaskType() : "";
+            itemView.setOnClickListener(v -> {
+                if (clickListener != null) {
+                    clickListener.onTaskClicked(task);
+                }
+            });
+
+            taskTypeLabel.setText(type.toUpperCase());
+            titleView.setText(task.getTitle());
+
+            long start = item.startMillis;
+            long end = item.endMillis;
+            boolean hasEnd = end > start;
+
+            timeView.setText(hasEnd
+                    ? TimeFormats.formatTimeRange(start, end)
+                    : TimeFormats.formatTime(start));
+
+            if (hasEnd) {
+                int durationMins = (int) ((end - start) / (1000 * 60));
+                durationView.setText(durationMins + " mins");
+                durationView.setVisibility(View.VISIBLE);
+            } else {
+                durationView.setVisibility(View.GONE);
+            }
+
+            switch (type) {
+                case "habit":
+                    itemView.setBackgroundColor(0xFFFFEB3B);
+                    taskTypeLabel.setTextColor(0xFF000000);
+                    titleView.setTextColor(0xFF000000);
+                    timeView.setTextColor(0xFF333333);
+                    durationView.setTextColor(0xFF333333);
+                    iconView.setImageResource(R.drawable.ic_dumbbell);
+                    iconView.clearColorFilter();
+                    break;
+                case "reminder":
+                    itemView.setBackgroundColor(0xFF195C31);
+                    taskTypeLabel.setTextColor(0xFFFFFFFF);
+                    titleView.setTextColor(0xFFFFFFFF);
+                    timeView.setTextColor(0xFFFFFFFF);
+                    durationView.setTextColor(0xFFFFFFFF);
+                    iconView.setImageResource(R.drawable.ic_group);
+                    iconView.setColorFilter(0xFFFFFFFF);
+                    break;
+                case "workflow":
+                default:
+                    itemView.setBackgroundColor(0xFF0D3B66);
+                    taskTypeLabel.setTextColor(0xFFFFFFFF);
+                    titleView.setTextColor(0xFFFFFFFF);
+                    timeView.setTextColor(0xFFFFFFFF);
+                    durationView.setTextColor(0xFFFFFFFF);
+                    iconView.setImageResource(R.drawable.ic_fork_knife);
+                    iconView.setColorFilter(0xFFFFFFFF);
+                    break;
+            }
+        }
+    }
+}
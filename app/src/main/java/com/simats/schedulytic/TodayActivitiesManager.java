@@ -30,7 +30,7 @@ public class TodayActivitiesManager {
     private final VolleyNetworkManager networkManager;
 
     public interface TodayActivitiesListener {
-        void onActivitiesLoaded(List<TaskItem> activities);
+        void onActivitiesLoaded(List<Task> activities);
         void onUserProfileLoaded(String name, int streakCount, String avatarUrl);
         void onStreakDataLoaded(Map<String, Boolean> streakData);
         void onError(String message);
@@ -41,12 +41,38 @@ public class TodayActivitiesManager {
         this.userId = userId;
         this.listener = listener;
         this.networkManager = VolleyNetworkManager.getInstance(context);
+    }
 
-        // Load user profile data when initialized
-        loadUserProfile();
-        
-        // Load streak data for calendar
-        loadStreakData();
+    /**
+     * Fill the profile, streak calendar and today's timeline from a home snapshot
+     * instead of loading each of them separately
+     */
+    public void applySnapshot(HomeSnapshotLoader.HomeSnapshot snapshot) {
+        if (listener != null) {
+            listener.onActivitiesLoaded(snapshot.getTasks());
+        }
+        applyUserProfile(snapshot.getProfile());
+
+        JSONObject streak = snapshot.getStreak();
+        String endDateStr = streak.optString("end_date", snapshot.getDate());
+        String startDateStr = streak.optString("start_date", endDateStr);
+        processStreakData(streak, startDateStr, endDateStr);
+    }
+
+    /**
+     * Show today's tasks from the shared task cache without touching the network. The
+     * cache is read on the database thread and the tasks are shown through the scope.
+     */
+    public void showCachedActivities(TaskScope scope) {
+        TaskCache taskCache = TaskCache.getInstance(context);
+        String date = getCurrentDate();
+        scope.run(AppExecutors.getInstance().db(),
+                () -> taskCache.getTasksOccurringOn(date),
+                tasks -> {
+                    if (listener != null && !tasks.isEmpty()) {
+                        listener.onActivitiesLoaded(tasks);
+                    }
+                });
     }
     
     /**
@@ -409,62 +435,7 @@ public class TodayActivitiesManager {
             @Override
             public void onSuccess(JSONObject response) {
                 Log.d(TAG, "User profile response: " + response.toString());
-                try {
-                    // Extract user name
-                    String userName = "";
-                    if (response.has("name")) {
-                        userName = response.getString("name");
-                    } else if (response.has("username")) {
-                        userName = response.getString("username");
-                    } else if (response.has("user") && response.getJSONObject("user").has("name")) {
-                        userName = response.getJSONObject("user").getString("name");
-                    }
-                    
-                    // Extract streak count
-                    int streakCount = 0;
-                    if (response.has("streak_count")) {
-                        streakCount = response.getInt("streak_count");
-                    } else if (response.has("streak")) {
-                        streakCount = response.getInt("streak");
-                    } else if (response.has("user") && response.getJSONObject("user").has("streak_count")) {
-                        streakCount = response.getJSONObject("user").getInt("streak_count");
-                    }
-                    
-                    // Extract avatar URL
-                    String avatarUrl = "";
-                    if (response.has("avatar")) {
-                        avatarUrl = response.getString("avatar");
-                    } else if (response.has("avatar_url")) {
-                        avatarUrl = response.getString("avatar_url");
-                    } else if (response.has("user") && response.getJSONObject("user").has("avatar")) {
-                        avatarUrl = response.getJSONObject("user").getString("avatar");
-                    }
-                    
-                    // Extract XP points and save to SharedPreferences
-                    int xpPoints = 0;
-                    if (response.has("xp_points")) {
-                        xpPoints = response.getInt("xp_points");
-                    } else if (response.has("user") && response.getJSONObject("user").has("xp_points")) {
-                        xpPoints = response.getJSONObject("user").getInt("xp_points");
-                    }
-                    
-                    // Save XP and streak to SharedPreferences for ProfileFragment and HomeFragment
-                    SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
-                    SharedPreferences.Editor editor = prefs.edit();
-                    editor.putInt("xp_points", xpPoints);
-                    editor.putInt("xp_coins", xpPoints); // Also save as xp_coins for HomeFragment
-                    editor.putFloat("xp_points_float", (float) xpPoints);
-                    editor.putInt("streak_count", streakCount);
-                    editor.apply();
-                    Log.d(TAG, "Saved XP: " + xpPoints + ", Streak: " + streakCount + " to SharedPreferences");
-                    
-                    if (listener != null) {
-                        listener.onUserProfileLoaded(userName, streakCount, avatarUrl);
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error parsing user profile: " + e.getMessage());
-                    useDefaultUserProfile();
-                }
+                applyUserProfile(response);
             }
             
             @Override
@@ -475,6 +446,58 @@ public class TodayActivitiesManager {
         });
     }
     
+    /**
+     * Store and publish a profile in the get_user_profile.php shape
+     */
+    private void applyUserProfile(JSONObject response) {
+        try {
+            // Extract user name
+            String userName = "";
+            if (response.has("name")) {
+                userName = response.getString("name");
+            } else if (response.has("username")) {
+                userName = response.getString("username");
+            } else if (response.has("user") && response.getJSONObject("user").has("name")) {
+                userName = response.getJSONObject("user").getString("name");
+            }
+            
+            // Extract streak count
+            int streakCount = 0;
+            if (response.has("streak_count")) {
+                streakCount = response.getInt("streak_count");
+            } else if (response.has("streak")) {
+                streakCount = response.getInt("streak");
+            } else if (response.has("user") && response.getJSONObject("user").has("streak_count")) {
+                streakCount = response.getJSONObject("user").getInt("streak_count");
+            }
+            
+            // Extract avatar URL
+            String avatarUrl = "";
+            if (response.has("avatar")) {
+                avatarUrl = response.getString("avatar");
+            } else if (response.has("avatar_url")) {
+                avatarUrl = response.getString("avatar_url");
+            } else if (response.has("user") && response.getJSONObject("user").has("avatar")) {
+                avatarUrl = response.getJSONObject("user").getString("avatar");
+            }
+            
+            // Save streak to SharedPreferences for ProfileFragment and HomeFragment
+            SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
+            prefs.edit().putInt("streak_count", streakCount).apply();
+            Log.d(TAG, "Saved streak: " + streakCount + " to SharedPreferences");
+            
+            // XP comes from the ledger, which writes it to SharedPreferences after reconciling
+            XpLedger.getInstance(context).reconcile(null);
+            
+            if (listener != null) {
+                listener.onUserProfileLoaded(userName, streakCount, avatarUrl);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing user profile: " + e.getMessage());
+            useDefaultUserProfile();
+        }
+    }
+    
     /**
      * Use default user profile when server data is unavailable
      */
@@ -505,35 +528,16 @@ public class TodayActivitiesManager {
         TaskManager taskManager = new TaskManager(context, new TaskManager.TaskListener() {
             @Override
             public void onTasksLoaded(List<Task> tasks) {
-                // Convert Task objects to TaskItem objects
-                List<TaskItem> taskItems = new ArrayList<>();
+                List<Task> todayTasks = new ArrayList<>();
                 for (Task task : tasks) {
                     if (currentDate.equals(task.getDueDate())) {
-                        TaskItem item = new TaskItem(
-                            task.getTaskId(),
-                            task.getTitle(),
-                            task.getDescription(),
-                            formatTimeRange(task.getStartTime(), task.getEndTime()),
-                            calculateDuration(task.getStartTime(), task.getEndTime()),
-                            task.isCompleted() ? "completed" : "pending",
-                            task.getPriority(),
-                            task.getCurrentStreak()
-                        );
-                        
-                        // Set the task type
-                        item.setType(task.getType());
-                        
-                        // Store the start/end time on the object for use elsewhere
-                        item.setStartTime(task.getStartTime());
-                        item.setEndTime(task.getEndTime());
-                        
-                        taskItems.add(item);
+                        todayTasks.add(task);
                     }
                 }
                 
                 // Update UI with cached data first
-                if (listener != null && !taskItems.isEmpty()) {
-                    listener.onActivitiesLoaded(taskItems);
+                if (listener != null && !todayTasks.isEmpty()) {
+                    listener.onActivitiesLoaded(todayTasks);
                 }
                 
                 // Then fetch fresh data from server
@@ -569,7 +573,7 @@ public class TodayActivitiesManager {
             public void onSuccess(JSONObject response) {
                 Log.d(TAG, "Today's tasks response: " + response.toString());
                 
-                List<TaskItem> tasks = new ArrayList<>();
+                List<Task> tasks = new ArrayList<>();
                 
                 try {
                     // Look for tasks in various formats
@@ -624,8 +628,6 @@ public class TodayActivitiesManager {
                             // Extract time info
                             String startTime = taskObject.optString("start_time", "00:00");
                             String endTime = taskObject.optString("end_time", "23:59");
-                            String duration = calculateDuration(startTime, endTime);
-                            String timeRange = formatTimeRange(startTime, endTime);
                             
                             // Get status (default to "pending")
                             String status = taskObject.optString("status", "pending");
@@ -636,26 +638,19 @@ public class TodayActivitiesManager {
                             // Get streak (default to 0)
                             int streak = taskObject.optInt("current_streak", 0);
                             
-                            // Create TaskItem and add to list
-                            TaskItem task = new TaskItem(
-                                taskId,
-                                title,
-                                description,
-                                timeRange,
-                                duration,
-                                status,
-                                priority,
-                                streak
-                            );
-                            
-                            // Set the task type
-                            task.setType(taskType);
-                            
-                            // Store the start/end time on the object for use elsewhere
-                            task.setStartTime(startTime);
-                            task.setEndTime(endTime);
-                            
-                            tasks.add(task);
+                            tasks.add(Task.builder()
+                                .taskId(taskId)
+                                .userId(userId)
+                                .type(taskType)
+                                .title(title)
+                                .description(description)
+                                .startTime(startTime)
+                                .endTime(endTime)
+                                .dueDate(currentDate)
+                                .status(status)
+                                .priority(priority)
+                                .currentStreak(streak)
+                                .build());
                         }
                     }
                     
@@ -682,84 +677,6 @@ public class TodayActivitiesManager {
         });
     }
     
-    /**
-     * Format time range for display (e.g., "9:00 AM - 10:30 AM")
-     */
-    private String formatTimeRange(String startTime, String endTime) {
-        try {
-            // Check if we have a full datetime string (YYYY-MM-DD HH:MM:SS)
-            if (startTime.contains(" ") && endTime.contains(" ")) {
-                // Extract just the time part
-                startTime = startTime.split(" ")[1];
-                endTime = endTime.split(" ")[1];
-            }
-            
-            // Handle case when time doesn't include seconds
-            if (startTime.split(":").length < 3) {
-                startTime = startTime + ":00";
-            }
-            if (endTime.split(":").length < 3) {
-                endTime = endTime + ":00";
-            }
-            
-            SimpleDateFormat inputFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
-            SimpleDateFormat outputFormat = new SimpleDateFormat("h:mm a", Locale.getDefault());
-            
-            Date startDate = inputFormat.parse(startTime);
-            Date endDate = inputFormat.parse(endTime);
-            
-            if (startDate != null && endDate != null) {
-                return outputFormat.format(startDate) + " - " + outputFormat.format(endDate);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error formatting time range: " + e.getMessage(), e);
-        }
-        
-        return startTime + " - " + endTime;
-    }
-    
-    /**
-     * Calculate duration between start and end times (e.g., "1h 30m")
-     */
-    private String calculateDuration(String startTime, String endTime) {
-        try {
-            // Check if we have a full datetime string (YYYY-MM-DD HH:MM:SS)
-            if (startTime.contains(" ") && endTime.contains(" ")) {
-                // Extract just the time part
-                startTime = startTime.split(" ")[1];
-                endTime = endTime.split(" ")[1];
-            }
-            
-            // Handle case when time doesn't include seconds
-            if (startTime.split(":").length < 3) {
-                startTime = startTime + ":00";
-            }
-            if (endTime.split(":").length < 3) {
-                endTime = endTime + ":00";
-            }
-            
-            SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
-            Date startDate = format.parse(startTime);
-            Date endDate = format.parse(endTime);
-            
-            if (startDate != null && endDate != null) {
-                long durationMillis = endDate.getTime() - startDate.getTime();
-                long hours = durationMillis / (60 * 60 * 1000);
-                long minutes = (durationMillis % (60 * 60 * 1000)) / (60 * 1000);
-                
-                if (hours > 0) {
-                    return hours + "h " + (minutes > 0 ? minutes + "m" : "");
-                } else {
-                    return minutes + "m";
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error calculating duration: " + e.getMessage(), e);
-        }
-        
-        return "1h"; // Default duration if calculation fails
-    }
-    
     /**
      * Loads today's activities more quickly with optimized performance
      */
@@ -776,38 +693,9 @@ public class TodayActivitiesManager {
         TaskManager localCache = new TaskManager(context, new TaskManager.TaskListener() {
             @Override
             public void onTasksLoaded(List<Task> tasks) {
-                // Convert tasks to TaskItems for consistent interface
-                List<TaskItem> taskItems = new ArrayList<>();
-                for (Task task : tasks) {
-                    // Get task type, ensure it's lowercase
-                    String taskType = task.getType().toLowerCase();
-                    if (!taskType.equals("workflow") && !taskType.equals("remainder") && !taskType.equals("habit")) {
-                        taskType = "remainder"; // Default to remainder if unknown
-                    }
-                    
-                    // Use the constructor that takes a type parameter
-                    TaskItem item = new TaskItem(
-                        task.getTaskId(),
-                        task.getTitle(),
-                        taskType, // Pass the type explicitly
-                        task.getDescription(),
-                        formatTimeRange(task.getStartTime(), task.getEndTime()),
-                        calculateDuration(task.getStartTime(), task.getEndTime()),
-                        task.getStatus(),
-                        task.getPriority(),
-                        task.getCurrentStreak()
-                    );
-                    
-                    // Store the start/end time on the object for use elsewhere
-                    item.setStartTime(task.getStartTime());
-                    item.setEndTime(task.getEndTime());
-                    
-                    taskItems.add(item);
-                }
-                
                 // Always notify with the local cache first for immediate display
-                if (!taskItems.isEmpty()) {
-                    listener.onActivitiesLoaded(taskItems);
+                if (!tasks.isEmpty()) {
+                    listener.onActivitiesLoaded(tasks);
                     
                     // Then fetch server data in the background with a slightly longer timeout
                     fetchTodayActivitiesWithTimeout(currentDate, 3000);
@@ -851,7 +739,7 @@ public class TodayActivitiesManager {
             @Override
             public void onSuccess(JSONObject response) {
                 try {
-                    List<TaskItem> activities = new ArrayList<>();
+                    List<Task> activities = new ArrayList<>();
                     
                     // Look for tasks in various formats
                     JSONArray tasksArray = null;
@@ -900,8 +788,6 @@ public class TodayActivitiesManager {
                                     // Extract time info
                                     String startTime = taskObject.optString("start_time", "00:00");
                                     String endTime = taskObject.optString("end_time", "23:59");
-                                    String duration = calculateDuration(startTime, endTime);
-                                    String timeRange = formatTimeRange(startTime, endTime);
                                     
                                     // Get status (default to "pending")
                                     String status = taskObject.optString("status", "pending");
@@ -915,24 +801,19 @@ public class TodayActivitiesManager {
                                         streak = taskObject.getInt("streak");
                                     }
                                     
-                                    // Create TaskItem with the explicit type
-                                    TaskItem task = new TaskItem(
-                                        taskId,
-                                        title,
-                                        taskType, // Use explicit type
-                                        description,
-                                        timeRange,
-                                        duration,
-                                        status,
-                                        priority,
-                                        streak
-                                    );
-                                    
-                                    // Store the start/end time on the object for use elsewhere
-                                    task.setStartTime(startTime);
-                                    task.setEndTime(endTime);
-                                    
-                                    activities.add(task);
+                                    activities.add(Task.builder()
+                                        .taskId(taskId)
+                                        .userId(userId)
+                                        .type(taskType)
+                                        .title(title)
+                                        .description(description)
+                                        .startTime(startTime)
+                                        .endTime(endTime)
+                                        .dueDate(currentDate)
+                                        .status(status)
+                                        .priority(priority)
+                                        .currentStreak(streak)
+                                        .build());
                                 }
                             }
                             
@@ -995,29 +876,11 @@ public class TodayActivitiesManager {
             return "All Day";
         }
         
-        try {
-            // Check if we have a full datetime string (YYYY-MM-DD HH:MM:SS)
-            if (time.contains(" ")) {
-                // Extract just the time part
-                time = time.split(" ")[1];
-            }
-            
-            // Handle case when time doesn't include seconds
-            if (time.split(":").length < 3) {
-                time = time + ":00";
-            }
-            
-            SimpleDateFormat inputFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
-            SimpleDateFormat outputFormat = new SimpleDateFormat("h:mm a", Locale.getDefault());
-            
-            Date timeDate = inputFormat.parse(time);
-            
-            if (timeDate != null) {
-                return outputFormat.format(timeDate);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error formatting single time: " + e.getMessage(), e);
+        long millis = TimeFormats.parseTaskTime(time, null);
+        if (millis >= 0) {
+            return TimeFormats.formatTime(millis);
         }
+        Log.e(TAG, "Error formatting single time: " + time);
         
         return time;
     }
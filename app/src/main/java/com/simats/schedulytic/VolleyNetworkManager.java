@@ -1,6 +1,11 @@
 package com.simats.schedulytic;
 
 import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.util.Log;
 
 import com.android.volley.AuthFailureError;
@@ -12,18 +17,18 @@ import com.android.volley.RequestQueue;
 import com.android.volley.ServerError;
 import com.android.volley.TimeoutError;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonObjectRequest;
 import com.android.volley.toolbox.StringRequest;
 import com.android.volley.toolbox.Volley;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.ConcurrentHashMap;
 import com.android.volley.toolbox.HttpHeaderParser;
 import com.android.volley.Cache;
 import com.android.volley.Response;
@@ -32,27 +37,32 @@ import java.util.Date;
 import java.util.Locale;
 
 /**
- * A singleton class to manage all Volley network requests
+ * A singleton class to manage all Volley network requests.
+ * Identical JSON GETs are coalesced: callers asking for a URL that is already being
+ * fetched wait for that response, and for a few seconds afterwards the same URL is
+ * answered from memory. Any write through this class drops those responses.
  */
 public class VolleyNetworkManager {
     private static final String TAG = "VolleyNetworkManager";
-    // Primary URL should match IpV4Connection.java for consistency
-    private static final String BASE_URL = "http://14.139.187.229:8081/jan2025/Shedulytic/";
-    private static final String FALLBACK_URL = "http://localhost/shedulytic/";
-    private static final String LOCAL_URL = "http://10.0.2.2/shedulytic/";
-    
     // Reduced timeouts for better performance 
     private static final int DEFAULT_TIMEOUT_MS = 3000; // 3 seconds instead of 5
     private static final int FAST_TIMEOUT_MS = 1000; // 1 second for quick requests
     private static final int MAX_RETRIES = 1; // Reduce retries to speed up fallback
     private static final float BACKOFF_MULTIPLIER = 1.0f; // No backoff to speed up retries
+    // How long a GET response answers identical GETs without touching the network
+    private static final long RESPONSE_TTL_MS = 5000;
     
     private static VolleyNetworkManager instance;
     private RequestQueue requestQueue;
     private Context context;
-    private String activeBaseUrl = BASE_URL;
-    private ConcurrentHashMap<String, Long> lastUrlSuccessTime = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, String> endpointCache = new ConcurrentHashMap<>();
+    private final EndpointRegistry endpoints = EndpointRegistry.getInstance();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // GET coalescing, keyed by canonical URL: requests still waiting for the network,
+    // and recent response bodies. Both guarded by coalesceLock.
+    private final Object coalesceLock = new Object();
+    private final Map<String, InFlightGet> inFlightGets = new HashMap<>();
+    private final Map<String, RecentResponse> recentResponses = new HashMap<>();
 
     /**
      * Interface for JSON response listeners
@@ -70,6 +80,39 @@ public class VolleyNetworkManager {
         void onError(String message);
     }
 
+    /**
+     * Interface for listeners of responses decoded by a {@link JsonStreams.Parser}
+     */
+    public interface StreamResponseListener<T> {
+        void onSuccess(T response);
+        void onError(String message);
+    }
+
+    /**
+     * A caller waiting on a coalesced GET; the response is a JSONObject or JSONArray
+     */
+    private interface GetWaiter {
+        void onSuccess(Object response);
+        void onError(String message);
+    }
+
+    /**
+     * One GET on the network and everyone waiting for it
+     */
+    private static final class InFlightGet {
+        final List<GetWaiter> waiters = new ArrayList<>();
+    }
+
+    private static final class RecentResponse {
+        final String body;
+        final long receivedAt;
+
+        RecentResponse(String body, long receivedAt) {
+            this.body = body;
+            this.receivedAt = receivedAt;
+        }
+    }
+
     /**
      * Private constructor for singleton
      */
@@ -77,8 +120,8 @@ public class VolleyNetworkManager {
         this.context = context.getApplicationContext();
         this.requestQueue = getRequestQueue();
         
-        // Initialize with active URL check
-        findBestWorkingUrl();
+        // Start measuring the servers so the first requests can skip dead ones
+        endpoints.refresh(null);
     }
 
     /**
@@ -92,15 +135,11 @@ public class VolleyNetworkManager {
     }
 
     /**
-     * Get RequestQueue with custom cache settings
+     * Get the app-wide RequestQueue of the shared transport
      */
     private RequestQueue getRequestQueue() {
         if (requestQueue == null) {
-            // Create a request queue with a larger cache size
-            com.android.volley.toolbox.DiskBasedCache cache = new com.android.volley.toolbox.DiskBasedCache(context.getCacheDir(), 10 * 1024 * 1024); // 10MB cache
-            com.android.volley.Network network = new com.android.volley.toolbox.BasicNetwork(new com.android.volley.toolbox.HurlStack());
-            requestQueue = new RequestQueue(cache, network);
-            requestQueue.start();
+            requestQueue = HttpTransport.getInstance(context).getRequestQueue();
         }
         return requestQueue;
     }
@@ -123,43 +162,203 @@ public class VolleyNetworkManager {
     }
 
     /**
-     * Build URL with the most reliable base URL
+     * Build URL on the currently healthiest server
      */
     private String buildUrl(String endpoint) {
-        // Check if we have a cached successful endpoint
-        String cachedUrl = endpointCache.get(endpoint);
-        if (cachedUrl != null) {
-            // If cached URL was used successfully in the last 15 minutes, use it directly
-            Long lastSuccess = lastUrlSuccessTime.get(cachedUrl);
-            if (lastSuccess != null && System.currentTimeMillis() - lastSuccess < TimeUnit.MINUTES.toMillis(15)) {
-                Log.d(TAG, "Using cached URL: " + cachedUrl + " for endpoint: " + endpoint);
-                return cachedUrl;
-            }
-        }
-    
-        // Otherwise build from active base URL
         if (!endpoint.startsWith("http")) {
             // Only prepend base URL if not already a full URL
-            return activeBaseUrl + endpoint;
+            return endpoints.getBestBaseUrl() + endpoint;
         }
         return endpoint;
     }
 
     /**
-     * Build fallback URL
+     * The same request on the next healthy server, or null if the error does not say
+     * the server was unreachable (retrying elsewhere would not help) or none is left
      */
-    private String buildFallbackUrl(String endpoint) {
-        if (!endpoint.startsWith("http")) {
-            // Try all possible URLs in order of likely success
-            if (activeBaseUrl.equals(BASE_URL)) {
-                return LOCAL_URL + endpoint;
-            } else if (activeBaseUrl.equals(LOCAL_URL)) {
-                return FALLBACK_URL + endpoint;
+    private String fallbackFor(String url, VolleyError error) {
+        if (!EndpointRegistry.isConnectivityError(error)) {
+            return null;
+        }
+        return endpoints.getFallbackUrl(url);
+    }
+
+    /**
+     * Key that identical GETs share: the URL without the server base (so a request
+     * that fell back to another host still matches) and with its query sorted
+     */
+    private String canonicalKey(String url) {
+        String baseUrl = endpoints.baseUrlOf(url);
+        String path = baseUrl != null ? url.substring(baseUrl.length()) : url;
+        int queryStart = path.indexOf('?');
+        if (queryStart < 0) {
+            return path;
+        }
+        String[] params = path.substring(queryStart + 1).split("&");
+        Arrays.sort(params);
+        return path.substring(0, queryStart + 1) + String.join("&", params);
+    }
+
+    /**
+     * Attach the waiter to an identical GET that is still running, or answer it from a
+     * response received within {@link #RESPONSE_TTL_MS}.
+     * @return The new in-flight entry if the caller has to send the request, null if
+     * the waiter has been taken care of
+     */
+    private InFlightGet joinOrStartGet(String key, GetWaiter waiter) {
+        String cachedBody = null;
+        synchronized (coalesceLock) {
+            RecentResponse recent = recentResponses.get(key);
+            if (recent != null && SystemClock.elapsedRealtime() - recent.receivedAt < RESPONSE_TTL_MS) {
+                cachedBody = recent.body;
             } else {
-                return BASE_URL + endpoint;
+                recentResponses.remove(key);
+                InFlightGet inFlight = inFlightGets.get(key);
+                if (inFlight != null) {
+                    Log.d(TAG, "Joining in-flight GET: " + key);
+                    inFlight.waiters.add(waiter);
+                    return null;
+                }
+                inFlight = new InFlightGet();
+                inFlight.waiters.add(waiter);
+                inFlightGets.put(key, inFlight);
+                return inFlight;
             }
         }
-        return endpoint;
+
+        Log.d(TAG, "Serving GET from recent response: " + key);
+        String body = cachedBody;
+        // Still answer asynchronously, like a network response would be
+        mainHandler.post(() -> {
+            try {
+                waiter.onSuccess(copyOf(body));
+            } catch (JSONException e) {
+                waiter.onError("Error reading cached response: " + e.getMessage());
+            }
+        });
+        return null;
+    }
+
+    /**
+     * Hand a GET response to every waiter. The first one gets the parsed response and
+     * the others their own copy, so no caller sees another one's modifications.
+     */
+    private void completeGet(String key, InFlightGet inFlight, Object response) {
+        String body = response.toString();
+        List<GetWaiter> waiters;
+        synchronized (coalesceLock) {
+            waiters = new ArrayList<>(inFlight.waiters);
+            // Only cache if no write invalidated the responses while this was in flight
+            if (inFlightGets.get(key) == inFlight) {
+                inFlightGets.remove(key);
+                recentResponses.put(key, new RecentResponse(body, SystemClock.elapsedRealtime()));
+            }
+        }
+        if (waiters.size() > 1) {
+            Log.d(TAG, "Coalesced " + waiters.size() + " GETs for " + key);
+        }
+        for (int i = 0; i < waiters.size(); i++) {
+            GetWaiter waiter = waiters.get(i);
+            try {
+                waiter.onSuccess(i == 0 ? response : copyOf(body));
+            } catch (JSONException e) {
+                waiter.onError("Error reading response: " + e.getMessage());
+            } catch (RuntimeException e) {
+                // One failing listener must not starve the others of the response
+                Log.e(TAG, "Listener failed for " + key + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void failGet(String key, InFlightGet inFlight, String message) {
+        List<GetWaiter> waiters;
+        synchronized (coalesceLock) {
+            waiters = new ArrayList<>(inFlight.waiters);
+            if (inFlightGets.get(key) == inFlight) {
+                inFlightGets.remove(key);
+            }
+        }
+        for (GetWaiter waiter : waiters) {
+            try {
+                waiter.onError(message);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Listener failed for " + key + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static Object copyOf(String body) throws JSONException {
+        return body.startsWith("[") ? new JSONArray(body) : new JSONObject(body);
+    }
+
+    /**
+     * Drop recent GET responses and stop new GETs from joining ones already running,
+     * so reads after a write see the write. Called for every request that changes data.
+     */
+    public void invalidateRecentResponses() {
+        synchronized (coalesceLock) {
+            recentResponses.clear();
+            inFlightGets.clear();
+        }
+    }
+
+    private static GetWaiter waiterFor(JsonResponseListener listener) {
+        return new GetWaiter() {
+            @Override
+            public void onSuccess(Object response) {
+                listener.onSuccess((JSONObject) response);
+            }
+
+            @Override
+            public void onError(String message) {
+                listener.onError(message);
+            }
+        };
+    }
+
+    private static GetWaiter waiterFor(ArrayResponseListener listener) {
+        return new GetWaiter() {
+            @Override
+            public void onSuccess(Object response) {
+                listener.onSuccess((JSONArray) response);
+            }
+
+            @Override
+            public void onError(String message) {
+                listener.onError(message);
+            }
+        };
+    }
+
+    /**
+     * Listener for the one network request behind a coalesced GET
+     */
+    private JsonResponseListener coalescedListener(String key, InFlightGet inFlight) {
+        return new JsonResponseListener() {
+            @Override
+            public void onSuccess(JSONObject response) {
+                completeGet(key, inFlight, response);
+            }
+
+            @Override
+            public void onError(String message) {
+                failGet(key, inFlight, message);
+            }
+        };
+    }
+
+    private ArrayResponseListener coalescedArrayListener(String key, InFlightGet inFlight) {
+        return new ArrayResponseListener() {
+            @Override
+            public void onSuccess(JSONArray response) {
+                completeGet(key, inFlight, response);
+            }
+
+            @Override
+            public void onError(String message) {
+                failGet(key, inFlight, message);
+            }
+        };
     }
 
     /**
@@ -198,8 +397,6 @@ public class VolleyNetworkManager {
         Map<String, String> headers = new HashMap<>();
         headers.put("Accept", "application/json");
         headers.put("Content-Type", "application/json; charset=utf-8");
-        // Adding a Connection: close header to prevent connection pooling issues
-        headers.put("Connection", "close");
         return headers;
     }
 
@@ -406,166 +603,98 @@ public class VolleyNetworkManager {
     }
 
     /**
-     * Validates that the response is valid JSON and parses it
-     * @param response The server response string
-     * @param url The URL that was requested (for logging purposes)
-     * @return JSONObject if valid JSON, null if invalid
+     * Get specific URLs for commonly used endpoints
      */
-    private JSONObject validateAndParseJsonResponse(String response, String url) {
-        if (response == null || response.trim().isEmpty()) {
-            Log.e(TAG, "Empty response from " + url);
-            return null;
-        }
-        
-        // Trim whitespace
-        String trimmedResponse = response.trim();
-        
-        // Check if response starts with typical JSON characters
-        if (!trimmedResponse.startsWith("{") && !trimmedResponse.startsWith("[")) {
-            Log.d(TAG, "Response from " + url + " does not start with JSON - first 100 chars: " + 
-                  trimmedResponse.substring(0, Math.min(100, trimmedResponse.length())));
-            return null;
-        }
-        
-        // Check for HTML content (common when server returns error pages)
-        String lowerResponse = trimmedResponse.toLowerCase();
-        if (lowerResponse.contains("<!doctype html") || 
-            lowerResponse.contains("<html") || 
-            lowerResponse.contains("<body") ||
-            lowerResponse.contains("<head") ||
-            lowerResponse.contains("<br") ||
-            lowerResponse.contains("fatal error") ||
-            lowerResponse.contains("parse error") ||
-            lowerResponse.contains("warning:") ||
-            lowerResponse.contains("notice:")) {
-            Log.d(TAG, "Response from " + url + " contains HTML/PHP error content");
-            return null;
-        }
-        
-        // Try to parse as JSON
-        try {
-            JSONObject jsonResponse = new JSONObject(trimmedResponse);
-            Log.d(TAG, "Successfully parsed JSON response from " + url);
-            return jsonResponse;
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to parse JSON from " + url + ": " + e.getMessage());
-            Log.d(TAG, "Invalid JSON content (first 200 chars): " + 
-                  trimmedResponse.substring(0, Math.min(200, trimmedResponse.length())));
-            return null;
-        }
+    public String getTodayTasksUrl(String userId, String date) {
+        return getBaseUrl() + "get_today_tasks.php?date=" + date + "&user_id=" + userId;
     }
-
+    
     /**
-     * Find the best working server URL
+     * Get all tasks URL for a user (without date filter)
      */
-    public void findBestWorkingUrl() {
-        // Try to reach each URL with a minimal request
-        String[] urls = {BASE_URL, LOCAL_URL, FALLBACK_URL};
-        
-        // Use an atomic boolean to track if we found a working URL
-        AtomicBoolean foundWorkingUrl = new AtomicBoolean(false);
-        
-        for (String url : urls) {
-            // Make a very quick HEAD request to check connectivity
-            makeConnectionTest(url, new Response.Listener<String>() {
-                @Override
-                public void onResponse(String response) {
-                    if (!foundWorkingUrl.get()) {
-                        // We found a working URL, use it as active
-                        activeBaseUrl = url;
-                        foundWorkingUrl.set(true);
-                        Log.d(TAG, "Found working URL: " + url);
-                    }
-                }
-            });
-        }
+    public String getAllTasksUrl(String userId) {
+        // Pass all=true parameter to get all tasks regardless of date
+        return getBaseUrl() + "get_today_tasks.php?user_id=" + userId + "&all=true";
     }
 
     /**
-     * Make a lightweight connection test
+     * Get delta sync URL: task and habit changes after the given server version cursor
      */
-    private void makeConnectionTest(String url, Response.Listener<String> listener) {
-        // Use a custom StringRequest to just test connectivity
-        String testUrl = url + "ping.php";
-        StringRequest request = new StringRequest(Request.Method.GET, testUrl,
-                listener,
-                error -> {
-                    Log.d(TAG, "Connection test failed for " + url + ": " + getVolleyErrorMessage(error));
-                });
-        
-        // Set very short timeout for the test
-        request.setRetryPolicy(new DefaultRetryPolicy(
-                500, // 500ms timeout for the test
-                0,   // No retries for the test
-                BACKOFF_MULTIPLIER
-        ));
-        
-        addToRequestQueue(request);
+    public String getSyncChangesUrl(String userId, long since) {
+        return getBaseUrl() + "sync_changes.php?user_id=" + userId + "&since=" + since;
     }
 
     /**
-     * Get specific URLs for commonly used endpoints
+     * Get sync refetch URL: the current server rows of the given tasks and habits
      */
-    public String getTodayTasksUrl(String userId, String date) {
-        return activeBaseUrl + "get_today_tasks.php?date=" + date + "&user_id=" + userId;
+    public String getSyncRefetchUrl(String userId, List<String> taskIds, List<String> habitIds) {
+        return getBaseUrl() + "sync_changes.php?user_id=" + userId
+                + "&task_ids=" + Uri.encode(TextUtils.join(",", taskIds))
+                + "&habit_ids=" + Uri.encode(TextUtils.join(",", habitIds));
     }
-    
+
     /**
-     * Get all tasks URL for a user (without date filter)
+     * Get home snapshot URL: profile, today's tasks, habits and the streak window in one response
      */
-    public String getAllTasksUrl(String userId) {
-        // Pass all=true parameter to get all tasks regardless of date
-        return activeBaseUrl + "get_today_tasks.php?user_id=" + userId + "&all=true";
+    public String getHomeSnapshotUrl(String userId, String date, int streakDays) {
+        return getBaseUrl() + "get_home_snapshot.php?user_id=" + userId + "&date=" + date
+                + "&streak_days=" + streakDays;
     }
     
     /**
      * Get URL for updating tasks
      */
     public String getUpdateTaskUrl() {
-        return activeBaseUrl + "update_task.php";
+        return getBaseUrl() + "update_task.php";
     }
 
     /**
      * Get URL for adding tasks
      */
     public String getAddTaskUrl() {
-        return activeBaseUrl + "add_task.php";
+        return getBaseUrl() + "add_task.php";
     }
     
     /**
      * Get URL for task completion operations
      */
     public String getTaskCompletionUrl() {
-        return activeBaseUrl + "task_completion.php";
+        return getBaseUrl() + "task_completion.php";
     }
 
     /**
      * Make a GET request with a turbo timeout
      * Use this for data that needs to load very quickly, even if it means increased failure chance
      */
-    public void makeTurboGetRequest(String endpoint, JsonResponseListener listener) {
+    public void makeTurboGetRequest(String endpoint, JsonResponseListener callerListener) {
         // Skip network check for speed
         String url = buildUrl(endpoint);
+        String key = canonicalKey(url);
+        InFlightGet inFlight = joinOrStartGet(key, waiterFor(callerListener));
+        if (inFlight == null) {
+            return;
+        }
+        JsonResponseListener listener = coalescedListener(key, inFlight);
         Log.d(TAG, "Making turbo GET request to: " + url);
 
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.GET, url, null,
+        long startedAt = SystemClock.elapsedRealtime();
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(Request.Method.GET, url, null, JsonStreams::readObject,
                 response -> {
                     Log.d(TAG, "Turbo GET success from: " + url);
-                    // Cache successful URL for future requests
-                    endpointCache.put(endpoint, url);
-                    lastUrlSuccessTime.put(url, System.currentTimeMillis());
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
                     
                     listener.onSuccess(response);
                 },
                 error -> {
                     String errorMessage = getVolleyErrorMessage(error);
+                    endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                     Log.e(TAG, "Turbo GET error from " + url + ": " + errorMessage);
 
-                    // Try with fallback URL if this is the first attempt
-                        String fallbackUrl = buildFallbackUrl(endpoint);
-                        if (!fallbackUrl.equals(url)) {
+                    // Try the next healthy server if this one could not be reached
+                    String fallbackUrl = fallbackFor(url, error);
+                    if (fallbackUrl != null) {
                         Log.d(TAG, "Trying fallback for turbo GET: " + fallbackUrl);
-                            makeGetRequestWithUrl(fallbackUrl, listener);
+                        makeGetRequestWithUrl(fallbackUrl, listener, false);
                     } else {
                         listener.onError(errorMessage);
                     }
@@ -587,77 +716,6 @@ public class VolleyNetworkManager {
         addToRequestQueue(request);
     }
 
-    /**
-     * Execute multiple parallel requests to different endpoints and merge results
-     * This is used to improve reliability by trying multiple server options at once
-     */
-    public void makeBroadcastGetRequest(String[] endpoints, JsonResponseListener listener) {
-        final int requestCount = endpoints.length;
-        final AtomicBoolean hasResponded = new AtomicBoolean(false);
-        
-        for (String endpoint : endpoints) {
-            String url = buildUrl(endpoint);
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.GET, url, null,
-                response -> {
-                        // Only process the first successful response
-                        if (hasResponded.compareAndSet(false, true)) {
-                            Log.d(TAG, "Broadcast GET success from: " + url);
-                            
-                            // Remember this was a good URL
-                            lastUrlSuccessTime.put(url, System.currentTimeMillis());
-                            endpointCache.put(endpoint, url);
-                            
-                    listener.onSuccess(response);
-                        }
-                },
-                error -> {
-                        Log.e(TAG, "Broadcast GET error from " + url + ": " + getVolleyErrorMessage(error));
-                        // We do nothing on individual errors, only if all fail
-                }) {
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                return getCommonHeaders();
-            }
-        };
-
-            // Extra short timeout since we're making multiple parallel requests
-            request.setRetryPolicy(new DefaultRetryPolicy(
-                    FAST_TIMEOUT_MS, // 1 second timeout
-                    0,               // No retries 
-                    BACKOFF_MULTIPLIER
-            ));
-            
-            request.setShouldCache(true);
-        addToRequestQueue(request);
-        }
-        
-        // Add a final request as a fallback in case all endpoints fail
-        // This leverages the regular request mechanism with fallbacks
-        // We delay it slightly to give the parallel requests a chance
-        android.os.Handler handler = new android.os.Handler();
-        handler.postDelayed(() -> {
-            if (!hasResponded.get()) {
-                // All parallel requests failed, try the regular way
-                Log.d(TAG, "All broadcast requests failed, trying regular request");
-                makeGetRequestWithTimeout(endpoints[0], listener, DEFAULT_TIMEOUT_MS);
-            }
-        }, FAST_TIMEOUT_MS + 300); // Wait just slightly longer than the timeout
-    }
-
-    // Improved HurlStack with connection pooling
-    private static class CustomHurlStack extends com.android.volley.toolbox.HurlStack {
-        @Override
-        protected java.net.HttpURLConnection createConnection(java.net.URL url) throws java.io.IOException {
-            java.net.HttpURLConnection connection = super.createConnection(url);
-            // Disable connection pooling to prevent timeouts
-            connection.setRequestProperty("Connection", "close");
-            // Set shorter timeouts
-            connection.setConnectTimeout(1500);
-            connection.setReadTimeout(3000);
-            return connection;
-        }
-    }
-
     /**
      * Make a GET request
      */
@@ -667,54 +725,39 @@ public class VolleyNetworkManager {
             return;
         }
         
+        // Identical GETs share one request; the turbo and timeout variants do the same
         String url = buildUrl(endpoint);
-        makeGetRequestWithUrl(url, listener);
+        String key = canonicalKey(url);
+        InFlightGet inFlight = joinOrStartGet(key, waiterFor(listener));
+        if (inFlight != null) {
+            makeGetRequestWithUrl(url, coalescedListener(key, inFlight), true);
+        }
     }
     
     /**
      * Make a GET request with specific URL
      */
-    private void makeGetRequestWithUrl(String url, JsonResponseListener listener) {
+    private void makeGetRequestWithUrl(String url, JsonResponseListener listener, boolean allowFallback) {
         Log.d(TAG, "Making GET request to: " + url);
         
-        // Use StringRequest first to validate JSON before parsing
-        StringRequest request = new StringRequest(Request.Method.GET, url,
+        // Decoded as a stream; HTML/PHP noise only goes through the cleanup path if strict parsing fails
+        long startedAt = SystemClock.elapsedRealtime();
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(Request.Method.GET, url, null, JsonStreams::readObject,
                 response -> {
                     Log.d(TAG, "GET success from: " + url);
-                    
-                    // Validate that response is actual JSON before parsing
-                    JSONObject jsonResponse = validateAndParseJsonResponse(response, url);
-                    if (jsonResponse != null) {
-                        // Cache successful URL for future requests
-                        lastUrlSuccessTime.put(url, System.currentTimeMillis());
-                        listener.onSuccess(jsonResponse);
-                    } else {
-                        // Response was not valid JSON, treat as error
-                        String errorMsg = "Server returned non-JSON response: " + extractErrorFromHtmlOrPhp(response);
-                        if (errorMsg.isEmpty() || errorMsg.contains("Server returned non-JSON response: ")) {
-                            errorMsg = "Server returned invalid response format";
-                        }
-                        Log.e(TAG, "Invalid JSON response from " + url + ": " + response.substring(0, Math.min(200, response.length())));
-                        
-                        // Try with fallback URL if this is not already a fallback
-                        String fallbackUrl = buildFallbackUrl(url);
-                        if (!fallbackUrl.equals(url)) {
-                            Log.d(TAG, "Trying fallback for GET due to invalid JSON: " + fallbackUrl);
-                            makeGetRequestWithUrl(fallbackUrl, listener);
-                        } else {
-                            listener.onError(errorMsg);
-                        }
-                    }
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
+                    listener.onSuccess(response);
                 },
                 error -> {
                     String errorMessage = getVolleyErrorMessage(error);
+                    endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                     Log.e(TAG, "GET error from " + url + ": " + errorMessage);
                     
                     // Try with fallback URL if this is not already a fallback
-                    String fallbackUrl = buildFallbackUrl(url);
-                    if (!fallbackUrl.equals(url)) {
+                    String fallbackUrl = allowFallback ? fallbackFor(url, error) : null;
+                    if (fallbackUrl != null) {
                         Log.d(TAG, "Trying fallback for GET: " + fallbackUrl);
-                        makeGetRequestWithUrl(fallbackUrl, listener);
+                        makeGetRequestWithUrl(fallbackUrl, listener, false);
                     } else {
                         listener.onError(errorMessage);
                     }
@@ -732,31 +775,39 @@ public class VolleyNetworkManager {
     /**
      * Make a GET request with custom timeout
      */
-    public void makeGetRequestWithTimeout(String endpoint, JsonResponseListener listener, int timeoutMs) {
+    public void makeGetRequestWithTimeout(String endpoint, JsonResponseListener callerListener, int timeoutMs) {
         if (!isNetworkAvailable()) {
-            listener.onError("No network connection available");
+            callerListener.onError("No network connection available");
             return;
         }
         
         String url = buildUrl(endpoint);
+        String key = canonicalKey(url);
+        InFlightGet inFlight = joinOrStartGet(key, waiterFor(callerListener));
+        if (inFlight == null) {
+            return;
+        }
+        JsonResponseListener listener = coalescedListener(key, inFlight);
         Log.d(TAG, "Making GET request with timeout to: " + url);
 
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.GET, url, null,
+        long startedAt = SystemClock.elapsedRealtime();
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(Request.Method.GET, url, null, JsonStreams::readObject,
                 response -> {
                     Log.d(TAG, "GET success from: " + url);
-                    lastUrlSuccessTime.put(url, System.currentTimeMillis());
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
                     
                     listener.onSuccess(response);
                 },
                 error -> {
                     String errorMessage = getVolleyErrorMessage(error);
+                    endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                     Log.e(TAG, "GET error from " + url + ": " + errorMessage);
 
                     // Try with fallback URL
-                    String fallbackUrl = buildFallbackUrl(url);
-                        if (!fallbackUrl.equals(url)) {
+                    String fallbackUrl = fallbackFor(url, error);
+                    if (fallbackUrl != null) {
                         Log.d(TAG, "Trying fallback for GET: " + fallbackUrl);
-                        makeGetRequestWithUrl(fallbackUrl, listener);
+                        makeGetRequestWithUrl(fallbackUrl, listener, false);
                     } else {
                         listener.onError(errorMessage);
                     }
@@ -778,6 +829,62 @@ public class VolleyNetworkManager {
         addToRequestQueue(request);
     }
 
+    /**
+     * Make a GET request whose response is streamed straight into the parser's result
+     * on the network thread, without building a JSONObject tree or String first
+     */
+    public <T> void makeStreamingGetRequest(String endpoint, JsonStreams.Parser<T> parser,
+                                            StreamResponseListener<T> listener, int timeoutMs) {
+        if (!isNetworkAvailable()) {
+            listener.onError("No network connection available");
+            return;
+        }
+
+        makeStreamingGetRequestWithUrl(buildUrl(endpoint), parser, listener, timeoutMs, true);
+    }
+
+    private <T> void makeStreamingGetRequestWithUrl(String url, JsonStreams.Parser<T> parser,
+                                                    StreamResponseListener<T> listener, int timeoutMs,
+                                                    boolean allowFallback) {
+        Log.d(TAG, "Making streaming GET request to: " + url);
+
+        long startedAt = SystemClock.elapsedRealtime();
+        StreamingJsonRequest<T> request = new StreamingJsonRequest<>(Request.Method.GET, url, null, parser,
+                response -> {
+                    Log.d(TAG, "Streaming GET success from: " + url);
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
+                    listener.onSuccess(response);
+                },
+                error -> {
+                    String errorMessage = getVolleyErrorMessage(error);
+                    endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
+                    Log.e(TAG, "Streaming GET error from " + url + ": " + errorMessage);
+
+                    // Try with fallback URL
+                    String fallbackUrl = fallbackFor(url, error);
+                    if (allowFallback && fallbackUrl != null) {
+                        Log.d(TAG, "Trying fallback for streaming GET: " + fallbackUrl);
+                        makeStreamingGetRequestWithUrl(fallbackUrl, parser, listener, timeoutMs, false);
+                    } else {
+                        listener.onError(errorMessage);
+                    }
+                }) {
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                return getCommonHeaders();
+            }
+        };
+
+        request.setRetryPolicy(new DefaultRetryPolicy(
+                timeoutMs,
+                MAX_RETRIES,
+                BACKOFF_MULTIPLIER
+        ));
+
+        request.setShouldCache(true);
+        addToRequestQueue(request);
+    }
+
     /**
      * Make a POST request
      */
@@ -789,21 +896,26 @@ public class VolleyNetworkManager {
         
         String url = buildUrl(endpoint);
         Log.d(TAG, "Making POST request to: " + url);
+        invalidateRecentResponses();
         
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.POST, url, requestData,
+        long startedAt = SystemClock.elapsedRealtime();
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(Request.Method.POST, url, requestData, JsonStreams::readObject,
                 response -> {
                     Log.d(TAG, "POST success to: " + url);
-                    lastUrlSuccessTime.put(url, System.currentTimeMillis());
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
+                    // Reads that started while the write was on its way may predate it
+                    invalidateRecentResponses();
                     
                     listener.onSuccess(response);
                 },
                 error -> {
                     String errorMessage = getVolleyErrorMessage(error);
+                    endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                     Log.e(TAG, "POST error to " + url + ": " + errorMessage);
                     
                     // Try with fallback URL
-                    String fallbackUrl = buildFallbackUrl(url);
-                    if (!fallbackUrl.equals(url)) {
+                    String fallbackUrl = fallbackFor(url, error);
+                    if (fallbackUrl != null) {
                         Log.d(TAG, "Trying fallback for POST: " + fallbackUrl);
                         makePostRequestWithUrl(fallbackUrl, requestData, listener);
                     } else {
@@ -826,15 +938,19 @@ public class VolleyNetworkManager {
     private void makePostRequestWithUrl(String url, JSONObject requestData, JsonResponseListener listener) {
         Log.d(TAG, "Making POST request to: " + url);
         
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.POST, url, requestData,
+        long startedAt = SystemClock.elapsedRealtime();
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(Request.Method.POST, url, requestData, JsonStreams::readObject,
                 response -> {
                     Log.d(TAG, "POST success to: " + url);
-                    lastUrlSuccessTime.put(url, System.currentTimeMillis());
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
+                    // Reads that started while the write was on its way may predate it
+                    invalidateRecentResponses();
                     
                         listener.onSuccess(response);
                     },
                     error -> {
                         String errorMessage = getVolleyErrorMessage(error);
+                        endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                     Log.e(TAG, "POST error to " + url + ": " + errorMessage);
                         listener.onError(errorMessage);
                     }) {
@@ -852,6 +968,15 @@ public class VolleyNetworkManager {
      * Make a POST request with timeout
      */
     public void makePostRequestWithTimeout(String endpoint, JSONObject requestData, JsonResponseListener listener, int timeoutMs) {
+        makePostRequestWithTimeout(endpoint, requestData, listener, timeoutMs, false);
+    }
+
+    /**
+     * Make a POST request with timeout, optionally gzip-compressing the body.
+     * Only endpoints that inflate compressed bodies may be sent gzipped.
+     */
+    public void makePostRequestWithTimeout(String endpoint, JSONObject requestData, JsonResponseListener listener,
+                                           int timeoutMs, boolean gzipBody) {
         if (!isNetworkAvailable()) {
             listener.onError("No network connection available");
             return;
@@ -859,21 +984,26 @@ public class VolleyNetworkManager {
         
         String url = buildUrl(endpoint);
         Log.d(TAG, "Making POST request with timeout to: " + url);
+        invalidateRecentResponses();
         
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.POST, url, requestData,
+        long startedAt = SystemClock.elapsedRealtime();
+        StreamingJsonRequest<JSONObject> request = new StreamingJsonRequest<>(Request.Method.POST, url, requestData, JsonStreams::readObject,
                 response -> {
                     Log.d(TAG, "POST success to: " + url);
-                    lastUrlSuccessTime.put(url, System.currentTimeMillis());
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
+                    // Reads that started while the write was on its way may predate it
+                    invalidateRecentResponses();
                     
                     listener.onSuccess(response);
                 },
                 error -> {
                     String errorMessage = getVolleyErrorMessage(error);
+                    endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                     Log.e(TAG, "POST error to " + url + ": " + errorMessage);
                     
                     // Try with fallback URL
-                    String fallbackUrl = buildFallbackUrl(url);
-                    if (!fallbackUrl.equals(url)) {
+                    String fallbackUrl = fallbackFor(url, error);
+                    if (fallbackUrl != null) {
                         Log.d(TAG, "Trying fallback for POST: " + fallbackUrl);
                         makePostRequestWithUrl(fallbackUrl, requestData, listener);
                     } else {
@@ -882,9 +1012,12 @@ public class VolleyNetworkManager {
                 }) {
             @Override
             public Map<String, String> getHeaders() throws AuthFailureError {
-                return getCommonHeaders();
+                Map<String, String> headers = getCommonHeaders();
+                headers.putAll(getTransportHeaders());
+                return headers;
             }
         };
+        request.setGzipBody(gzipBody);
 
         // Custom timeout
         request.setRetryPolicy(new DefaultRetryPolicy(
@@ -901,7 +1034,7 @@ public class VolleyNetworkManager {
      * Get user streak URL
      */
     public String getUserStreakUrl(String userId, String startDate, String endDate) {
-        return activeBaseUrl + "get_user_streak.php?user_id=" + userId + 
+        return getBaseUrl() + "get_user_streak.php?user_id=" + userId + 
                "&start_date=" + startDate + "&end_date=" + endDate;
     }
     
@@ -909,25 +1042,21 @@ public class VolleyNetworkManager {
      * Get user profile URL
      */
     public String getUserProfileUrl(String userId) {
-        return activeBaseUrl + "get_user_profile.php?user_id=" + userId;
+        return getBaseUrl() + "get_user_profile.php?user_id=" + userId;
     }
 
     /**
      * Get URL for updating user activity
      */
     public String getUpdateUserActivityUrl() {
-        return activeBaseUrl + "update_user_activity.php";
+        return getBaseUrl() + "update_user_activity.php";
     }
 
     /**
-     * Find the best working server URL with a callback
+     * Re-probe the servers and run the callback on the main thread once health is known
      */
     public void findWorkingServerUrl(Runnable callback) {
-        // Find best working URL
-        findBestWorkingUrl();
-        
-        // Wait briefly and execute callback
-        new android.os.Handler().postDelayed(callback, 500);
+        endpoints.refresh(callback);
     }
 
     /**
@@ -936,6 +1065,9 @@ public class VolleyNetworkManager {
      */
     public <T> void makeCustomRequest(Request<T> request) {
         Log.d(TAG, "Making custom request to: " + request.getUrl());
+        if (request.getMethod() != Request.Method.GET) {
+            invalidateRecentResponses();
+        }
         
         // Configure the request with our standard settings
         setupRequestConfig(request);
@@ -947,31 +1079,39 @@ public class VolleyNetworkManager {
     /**
      * Make a GET request that expects a JSON array response (for handling habit data)
      */
-    public void makeArrayGetRequest(String endpoint, ArrayResponseListener listener) {
+    public void makeArrayGetRequest(String endpoint, ArrayResponseListener callerListener) {
         if (!isNetworkAvailable()) {
-            listener.onError("No network connection available");
+            callerListener.onError("No network connection available");
             return;
         }
         
         String url = buildUrl(endpoint);
+        // Array responses must never be handed to object listeners of the same URL
+        String key = "[]" + canonicalKey(url);
+        InFlightGet inFlight = joinOrStartGet(key, waiterFor(callerListener));
+        if (inFlight == null) {
+            return;
+        }
+        ArrayResponseListener listener = coalescedArrayListener(key, inFlight);
         Log.d(TAG, "Making JSON Array GET request to: " + url);
         
-        com.android.volley.toolbox.JsonArrayRequest request = new com.android.volley.toolbox.JsonArrayRequest(
-                Request.Method.GET, url, null,
+        long startedAt = SystemClock.elapsedRealtime();
+        StreamingJsonRequest<JSONArray> request = new StreamingJsonRequest<>(
+                Request.Method.GET, url, null, JsonStreams::readArray,
                 response -> {
                     Log.d(TAG, "JSON Array GET success from: " + url);
-                    // Cache successful URL for future requests
-                    lastUrlSuccessTime.put(url, System.currentTimeMillis());
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
                     
                     listener.onSuccess(response);
                 },
                 error -> {
                     String errorMessage = getVolleyErrorMessage(error);
+                    endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                     Log.e(TAG, "JSON Array GET error from " + url + ": " + errorMessage);
                     
                     // Try with fallback URL if this is not already a fallback
-                    String fallbackUrl = buildFallbackUrl(url);
-                    if (!fallbackUrl.equals(url)) {
+                    String fallbackUrl = fallbackFor(url, error);
+                    if (fallbackUrl != null) {
                         Log.d(TAG, "Trying fallback for JSON Array GET: " + fallbackUrl);
                         makeArrayGetRequestWithUrl(fallbackUrl, listener);
                     } else {
@@ -994,17 +1134,18 @@ public class VolleyNetworkManager {
     private void makeArrayGetRequestWithUrl(String url, ArrayResponseListener listener) {
         Log.d(TAG, "Making JSON Array GET request to: " + url);
         
-        com.android.volley.toolbox.JsonArrayRequest request = new com.android.volley.toolbox.JsonArrayRequest(
-                Request.Method.GET, url, null,
+        long startedAt = SystemClock.elapsedRealtime();
+        StreamingJsonRequest<JSONArray> request = new StreamingJsonRequest<>(
+                Request.Method.GET, url, null, JsonStreams::readArray,
                 response -> {
                     Log.d(TAG, "JSON Array GET success from: " + url);
-                    // Cache successful URL for future requests
-                    lastUrlSuccessTime.put(url, System.currentTimeMillis());
+                    endpoints.recordSuccess(url, SystemClock.elapsedRealtime() - startedAt);
                     
                     listener.onSuccess(response);
                 },
                 error -> {
                     String errorMessage = getVolleyErrorMessage(error);
+                    endpoints.recordError(url, error, SystemClock.elapsedRealtime() - startedAt);
                     Log.e(TAG, "JSON Array GET error from " + url + ": " + errorMessage);
                     listener.onError(errorMessage);
                 }) {
@@ -1022,13 +1163,27 @@ public class VolleyNetworkManager {
      * Get the current base URL being used
      */
     public String getBaseUrl() {
-        return activeBaseUrl;
+        return endpoints.getBestBaseUrl();
     }
     
     /**
      * Get the URL for deleting a task
      */
     public String getDeleteTaskUrl() {
-        return activeBaseUrl + "delete_task.php";
+        return getBaseUrl() + "delete_task.php";
+    }
+
+    /**
+     * Get URL for replaying a batch of queued mutations from the outbox
+     */
+    public String getReplayMutationsUrl() {
+        return getBaseUrl() + "replay_mutations.php";
+    }
+
+    /**
+     * Get URL for applying a batch of task status and time changes in one transaction
+     */
+    public String getBatchUpdateTasksUrl() {
+        return getBaseUrl() + "batch_update_tasks.php";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,359 @@
+package com.simats.schedulytic;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The user's XP as a ledger of entries, mirroring the server's xp_ledger (see
+ * server/xp_ledger.php).
+ *
+ * Every reward or penalty is an entry keyed by the completion it is for, so recording
+ * a completion twice adds nothing, and the server keeps the entry the device sends
+ * under the same key. All writes run on {@link AppExecutors#db()}, one at a time, and
+ * add to the stored totals in the same transaction as the entry: nothing reads a
+ * balance, adds to it and writes it back, so concurrent completions cannot lose XP.
+ *
+ * The balance is the server's balance at the last reconciliation plus the entries the
+ * server has not acknowledged yet. {@link #reconcile} sends only those entries and
+ * receives only the server's entries after the last acknowledged sequence number.
+ * After every change the balance and the per-reason totals are copied to the
+ * "UserPrefs" keys the profile and home screens read.
+ */
+public class XpLedger {
+    private static final String TAG = "XpLedger";
+    private static final String ENDPOINT = "sync_xp.php";
+    private static final int MAX_ENTRIES_PER_REQUEST = 500;
+
+    public static final String REASON_WORKFLOW = "workflow";
+    public static final String REASON_REMAINDER = "remainder";
+    public static final String REASON_HABIT = "habit";
+    public static final String REASON_PENALTY = "penalty";
+    private static final String REASON_OPENING = "opening";
+
+    private static XpLedger instance;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final AppExecutors executors = AppExecutors.getInstance();
+    private boolean reconciling;
+
+    private XpLedger(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    public static synchronized XpLedger getInstance(Context context) {
+        if (instance == null) {
+            instance = new XpLedger(context);
+        }
+        return instance;
+    }
+
+    private SharedPreferences getPrefs() {
+        return context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
+    }
+
+    private String getUserId() {
+        return getPrefs().getString("user_id", "");
+    }
+
+    /**
+     * Key of the XP entry for a task status change; same as taskXpKey() on the server
+     */
+    public static String taskEntryKey(String taskId, String date, String status) {
+        return "task:" + taskId + ":" + date + ":" + status;
+    }
+
+    /**
+     * Key of the XP entry for a day's completion of a habit; same as habitXpKey() on the server
+     */
+    public static String habitEntryKey(String habitId, String date) {
+        return "habit:" + habitId + ":" + date;
+    }
+
+    /**
+     * Add an entry unless one with the same key exists
+     * @param reason One of the {@code REASON_*} values
+     */
+    public void record(String entryKey, double amount, String reason) {
+        String userId = getUserId();
+        if (userId.isEmpty() || amount == 0) {
+            return;
+        }
+        executors.db().execute(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                ensureState(db, userId);
+                ContentValues values = new ContentValues();
+                values.put("user_id", userId);
+                values.put("entry_key", entryKey);
+                values.put("amount", amount);
+                values.put("reason", reason);
+                values.put("created_at", System.currentTimeMillis());
+                if (db.insertWithOnConflict("xp_ledger", null, values, SQLiteDatabase.CONFLICT_IGNORE) != -1) {
+                    addToTotals(db, userId, reason, amount, 1);
+                }
+                db.setTransactionSuccessful();
+            } catch (Exception e) {
+                Log.e(TAG, "Error recording XP entry " + entryKey + ": " + e.getMessage(), e);
+            } finally {
+                db.endTransaction();
+            }
+            publish(db, userId);
+        });
+    }
+
+    /**
+     * @return The current balance. Reads the database; call on {@link AppExecutors#db()}.
+     */
+    public double getBalance() {
+        String userId = getUserId();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ensureState(db, userId);
+        return readBalance(db, userId);
+    }
+
+    /**
+     * Exchange entries with the server. A reconciliation already running is not
+     * started again.
+     * @param onDone Run on the main thread once the balance is up to date; may be null
+     */
+    public void reconcile(Runnable onDone) {
+        String userId = getUserId();
+        if (userId.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (reconciling) {
+                return;
+            }
+            reconciling = true;
+        }
+        executors.db().execute(() -> sendPage(userId, null, onDone));
+    }
+
+    /**
+     * @param catchingUp Whether this run started from no acknowledged entries; null on the first page
+     */
+    private void sendPage(String userId, Boolean catchingUp, Runnable onDone) {
+        JSONObject request = new JSONObject();
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            ensureState(db, userId);
+            long afterSeq = readAckedSeq(db, userId);
+            if (catchingUp == null) {
+                catchingUp = afterSeq == 0;
+            }
+            request.put("user_id", userId);
+            request.put("after_seq", afterSeq);
+            JSONArray entries = new JSONArray();
+            try (Cursor cursor = db.query("xp_ledger", new String[]{"entry_key", "amount", "reason"},
+                    "user_id = ? AND server_seq IS NULL", new String[]{userId},
+                    null, null, "created_at", String.valueOf(MAX_ENTRIES_PER_REQUEST))) {
+                while (cursor.moveToNext()) {
+                    JSONObject entry = new JSONObject();
+                    entry.put("entry_key", cursor.getString(0));
+                    entry.put("amount", cursor.getDouble(1));
+                    entry.put("reason", cursor.getString(2));
+                    entries.put(entry);
+                }
+            }
+            request.put("entries", entries);
+        } catch (Exception e) {
+            Log.e(TAG, "Error preparing XP reconciliation: " + e.getMessage(), e);
+            finishReconcile(null);
+            return;
+        }
+
+        boolean firstCatchUp = catchingUp;
+        VolleyNetworkManager.getInstance(context).makePostRequest(ENDPOINT, request,
+                new VolleyNetworkManager.JsonResponseListener() {
+                    @Override
+                    public void onSuccess(JSONObject response) {
+                        if (!"success".equals(response.optString("status"))) {
+                            Log.e(TAG, "XP reconciliation failed: " + response.optString("message"));
+                            finishReconcile(null);
+                            return;
+                        }
+                        executors.db().execute(() -> {
+                            boolean hasMore = applyPage(userId, response, firstCatchUp);
+                            if (hasMore) {
+                                sendPage(userId, firstCatchUp, onDone);
+                            } else {
+                                finishReconcile(onDone);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        Log.e(TAG, "XP reconciliation failed: " + message);
+                        finishReconcile(null);
+                    }
+                });
+    }
+
+    private void finishReconcile(Runnable onDone) {
+        synchronized (this) {
+            reconciling = false;
+        }
+        if (onDone != null) {
+            executors.main().execute(onDone);
+        }
+    }
+
+    /**
+     * Store the server's entries and, once all are in, its balance
+     * @param catchingUp Whether these are the first entries pulled; they are history the
+     *                   totals seeded from "UserPrefs" already hold
+     * @return true if the server has more entries to send
+     */
+    private boolean applyPage(String userId, JSONObject response, boolean catchingUp) {
+        boolean hasMore = response.optBoolean("has_more", false);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            JSONArray entries = response.optJSONArray("entries");
+            for (int i = 0; entries != null && i < entries.length(); i++) {
+                JSONObject entry = entries.getJSONObject(i);
+                applyServerEntry(db, userId, entry, catchingUp);
+            }
+            ContentValues state = new ContentValues();
+            state.put("acked_seq", response.optLong("next_seq", 0));
+            if (!hasMore) {
+                // Every entry sent is now acknowledged, so nothing is counted twice
+                state.put("server_balance", response.optDouble("balance", 0));
+            }
+            db.update("xp_state", state, "user_id = ?", new String[]{userId});
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying XP entries: " + e.getMessage(), e);
+            hasMore = false;
+        } finally {
+            db.endTransaction();
+        }
+        publish(db, userId);
+        return hasMore;
+    }
+
+    private void applyServerEntry(SQLiteDatabase db, String userId, JSONObject entry, boolean catchingUp)
+            throws Exception {
+        String entryKey = entry.getString("entry_key");
+        double amount = entry.getDouble("amount");
+        String reason = entry.optString("reason", REASON_REMAINDER);
+        String[] keyArgs = {userId, entryKey};
+
+        double localAmount = 0;
+        boolean known = false;
+        try (Cursor cursor = db.query("xp_ledger", new String[]{"amount"},
+                "user_id = ? AND entry_key = ?", keyArgs, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                known = true;
+                localAmount = cursor.getDouble(0);
+            }
+        }
+
+        ContentValues values = new ContentValues();
+        values.put("amount", amount);
+        values.put("server_seq", entry.getLong("seq"));
+        if (known) {
+            // The server's amount wins, e.g. a penalty capped at the balance
+            db.update("xp_ledger", values, "user_id = ? AND entry_key = ?", keyArgs);
+            addToTotals(db, userId, reason, amount - localAmount, 0);
+        } else {
+            values.put("user_id", userId);
+            values.put("entry_key", entryKey);
+            values.put("reason", reason);
+            values.put("created_at", System.currentTimeMillis());
+            db.insert("xp_ledger", null, values);
+            if (!catchingUp) {
+                addToTotals(db, userId, reason, amount, 1);
+            }
+        }
+    }
+
+    /**
+     * Create the user's state on first use, starting from the XP last stored in "UserPrefs"
+     */
+    private void ensureState(SQLiteDatabase db, String userId) {
+        try (Cursor cursor = db.query("xp_state", new String[]{"user_id"}, "user_id = ?",
+                new String[]{userId}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return;
+            }
+        }
+        SharedPreferences prefs = getPrefs();
+        ContentValues state = new ContentValues();
+        state.put("user_id", userId);
+        state.put("acked_seq", 0);
+        state.put("server_balance", (double) prefs.getFloat("xp_points_float", prefs.getInt("xp_points", 0)));
+        db.insert("xp_state", null, state);
+        addToTotals(db, userId, REASON_WORKFLOW, prefs.getFloat("workflow_xp", 0f),
+                prefs.getInt("workflow_completed_count", 0));
+        addToTotals(db, userId, REASON_REMAINDER, prefs.getFloat("remainder_xp", 0f),
+                prefs.getInt("remainder_completed_count", 0));
+        addToTotals(db, userId, REASON_HABIT, prefs.getFloat("habit_xp", 0f),
+                prefs.getInt("habit_completed_count", 0));
+    }
+
+    private static void addToTotals(SQLiteDatabase db, String userId, String reason, double amount, int entries) {
+        if (REASON_OPENING.equals(reason) || (amount == 0 && entries == 0)) {
+            return;
+        }
+        db.execSQL("INSERT OR IGNORE INTO xp_totals (user_id, reason) VALUES (?, ?)", new Object[]{userId, reason});
+        db.execSQL("UPDATE xp_totals SET amount = amount + ?, entries = entries + ? WHERE user_id = ? AND reason = ?",
+                new Object[]{amount, entries, userId, reason});
+    }
+
+    private static long readAckedSeq(SQLiteDatabase db, String userId) {
+        try (Cursor cursor = db.query("xp_state", new String[]{"acked_seq"}, "user_id = ?",
+                new String[]{userId}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static double readBalance(SQLiteDatabase db, String userId) {
+        try (Cursor cursor = db.rawQuery(
+                "SELECT server_balance + (SELECT TOTAL(amount) FROM xp_ledger " +
+                        "WHERE user_id = ? AND server_seq IS NULL) FROM xp_state WHERE user_id = ?",
+                new String[]{userId, userId})) {
+            return cursor.moveToFirst() ? Math.max(0, cursor.getDouble(0)) : 0;
+        }
+    }
+
+    /**
+     * Copy the balance and the totals per reason to the "UserPrefs" keys read by the screens
+     */
+    private void publish(SQLiteDatabase db, String userId) {
+        try {
+            float balance = (float) readBalance(db, userId);
+            SharedPreferences.Editor editor = getPrefs().edit();
+            editor.putFloat("xp_points_float", balance);
+            editor.putInt("xp_points", (int) balance);
+            editor.putInt("xp_coins", (int) balance);
+            try (Cursor cursor = db.query("xp_totals", new String[]{"reason", "amount", "entries"},
+                    "user_id = ?", new String[]{userId}, null, null, null)) {
+                while (cursor.moveToNext()) {
+                    String reason = cursor.getString(0);
+                    if (REASON_WORKFLOW.equals(reason) || REASON_REMAINDER.equals(reason)
+                            || REASON_HABIT.equals(reason)) {
+                        editor.putFloat(reason + "_xp", (float) cursor.getDouble(1));
+                        editor.putInt(reason + "_completed_count", cursor.getInt(2));
+                    }
+                }
+            }
+            editor.apply();
+            Log.d(TAG, "XP balance: " + balance);
+        } catch (Exception e) {
+            Log.e(TAG, "Error publishing XP: " + e.getMessage(), e);
+        }
+    }
+}
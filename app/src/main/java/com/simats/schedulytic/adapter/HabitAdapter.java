@@ -15,9 +15,12 @@ import android.widget.TextView;
 import androidx.cardview.widget.CardView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.simats.schedulytic.R;
+import com.simats.schedulytic.TaskIds;
 import com.simats.schedulytic.model.Habit;
 import com.simats.schedulytic.PomodoroActivity;
 import com.simats.schedulytic.LocationVerificationActivity;
@@ -30,6 +33,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -39,6 +43,15 @@ import java.util.HashSet;
 import java.util.Set;
 // Potentially your DAO import: import com.simats.schedulytic.db.UserActivityLogDao; (or similar)
 
+/**
+ * Habit cards, kept up to date by diffing.
+ *
+ * Habits are mutable and the screens change them in place, so the adapter diffs
+ * {@link HabitRow} snapshots of what each card shows, taken when a list is submitted.
+ * The diff runs on a background thread and only the cards that changed are rebound;
+ * a change to just the completion or the streak rebinds only the views that show it,
+ * and each Pomodoro countdown tick updates only the timer of its card.
+ */
 public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHolder> {
     private static final String TAG = "HabitAdapter";
     
@@ -47,7 +60,31 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
     private static final int VIEW_TYPE_LOCATION = 1;
     private static final int VIEW_TYPE_POMODORO = 2;
     
-    private List<Habit> habitList;
+    // Change payloads: which part of a card to rebind
+    private static final int PAYLOAD_STATUS = 1;
+    private static final int PAYLOAD_STREAK = 1 << 1;
+    private static final int PAYLOAD_POMODORO = 1 << 2;
+    private static final int PAYLOAD_PROGRESS = 1 << 3;
+    
+    private static final DiffUtil.ItemCallback<HabitRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<HabitRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull HabitRow oldRow, @NonNull HabitRow newRow) {
+            return Objects.equals(oldRow.habitId, newRow.habitId);
+        }
+        
+        @Override
+        public boolean areContentsTheSame(@NonNull HabitRow oldRow, @NonNull HabitRow newRow) {
+            return oldRow.changedParts(newRow) == 0 && oldRow.sameLayout(newRow);
+        }
+        
+        @Override
+        public Object getChangePayload(@NonNull HabitRow oldRow, @NonNull HabitRow newRow) {
+            // Anything beyond completion and streak changed: rebind the whole card
+            return oldRow.sameLayout(newRow) ? oldRow.changedParts(newRow) : null;
+        }
+    };
+    
+    private final AsyncListDiffer<HabitRow> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private WeakReference<HabitInteractionListener> listenerRef;
     private WeakReference<Context> contextRef;
     private Map<String, Boolean> activePomodoros = new HashMap<>();
@@ -71,10 +108,55 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
         void onPomodoroStopClicked(String habitId);
     }
     
+    /**
+     * What one card shows of a habit, as it was when the list was submitted
+     */
+    private static final class HabitRow {
+        final Habit habit;
+        final String habitId;
+        final String title;
+        final boolean completed;
+        final int currentStreak;
+        final int totalCompletions;
+        final int viewType;
+        final String locationName;
+        
+        HabitRow(Habit habit) {
+            this.habit = habit;
+            this.habitId = habit.getHabitId();
+            this.title = habit.getTitle();
+            this.completed = habit.isCompleted();
+            this.currentStreak = habit.getCurrentStreak();
+            this.totalCompletions = habit.getTotalCompletions();
+            this.viewType = viewTypeOf(habit);
+            this.locationName = viewType == VIEW_TYPE_LOCATION ? locationNameOf(habit) : null;
+        }
+        
+        /**
+         * @return PAYLOAD_ flags of the parts that differ from the newer snapshot
+         */
+        int changedParts(HabitRow newer) {
+            int parts = 0;
+            if (completed != newer.completed) {
+                parts |= PAYLOAD_STATUS;
+            }
+            if (currentStreak != newer.currentStreak || totalCompletions != newer.totalCompletions) {
+                parts |= PAYLOAD_STREAK;
+            }
+            return parts;
+        }
+        
+        boolean sameLayout(HabitRow newer) {
+            return viewType == newer.viewType && Objects.equals(title, newer.title)
+                    && Objects.equals(locationName, newer.locationName);
+        }
+    }
+    
     public HabitAdapter(List<Habit> habitList, HabitInteractionListener listener, Context context) {
-        this.habitList = habitList != null ? habitList : new ArrayList<>();
         this.listenerRef = new WeakReference<>(listener);
         this.contextRef = new WeakReference<>(context);
+        setHasStableIds(true);
+        submitList(habitList);
     }
     
     // Constructor for backward compatibility
@@ -82,9 +164,48 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
         this(habitList, listener, listener instanceof Context ? (Context) listener : null);
     }
     
+    /**
+     * Show the given habits. Call again after changing a habit or the list; the
+     * changes are found by diffing against the previous call.
+     */
+    public void submitList(List<Habit> habits) {
+        List<HabitRow> rows = new ArrayList<>();
+        if (habits != null) {
+            for (Habit habit : habits) {
+                rows.add(new HabitRow(habit));
+            }
+        }
+        differ.submitList(rows);
+    }
+    
+    private Habit habitAt(int position) {
+        return differ.getCurrentList().get(position).habit;
+    }
+    
+    /**
+     * @return Position of the habit in the shown list, or -1 if it is not there
+     */
+    private int positionOf(String habitId) {
+        List<HabitRow> rows = differ.getCurrentList();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).habitId.equals(habitId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
     @Override
     public int getItemViewType(int position) {
-        Habit habit = habitList.get(position);
+        return differ.getCurrentList().get(position).viewType;
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        return TaskIds.stableId(differ.getCurrentList().get(position).habitId);
+    }
+    
+    private static int viewTypeOf(Habit habit) {
         String verificationMethod = habit.getVerificationMethod();
         
         // Check extra properties for trust_type if verification method is not set
@@ -141,9 +262,8 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
     
     @Override
     public void onBindViewHolder(@NonNull HabitViewHolder holder, int position) {
-        Habit habit = habitList.get(position);
+        Habit habit = habitAt(position);
         Context context = contextRef.get();
-        HabitInteractionListener listener = listenerRef.get();
         
         if (context == null) return;
         
@@ -152,22 +272,41 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
             holder.titleTextView.setText(habit.getTitle());
         }
         
-        // Calculate and set progress percentage based on daily completion rate
-        int progressPercent = calculateHabitProgress(habit);
-        
-        if (holder.habitProgress != null) {
-            holder.habitProgress.setProgress(progressPercent);
+        bindStreak(holder, habit);
+        bindStatus(holder, habit, context);
+    }
+    
+    @Override
+    public void onBindViewHolder(@NonNull HabitViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
         }
+        Habit habit = habitAt(position);
+        Context context = contextRef.get();
+        if (context == null) return;
         
-        if (holder.percentageTextView != null) {
-            holder.percentageTextView.setText(progressPercent + "%");
+        int parts = 0;
+        for (Object payload : payloads) {
+            if (payload instanceof Integer) {
+                parts |= (Integer) payload;
+            }
         }
-        
-        // Set streak info
-        if (holder.streakTextView != null) {
-            int streak = habit.getCurrentStreak();
-            holder.streakTextView.setText(streak + " day streak");
+        if ((parts & PAYLOAD_STATUS) != 0) {
+            // Completion changes the buttons, the fading and the progress
+            bindStatus(holder, habit, context);
+        } else if ((parts & PAYLOAD_POMODORO) != 0 && holder.viewType == VIEW_TYPE_POMODORO) {
+            bindPomodoroHabit(holder, habit, listenerRef.get(), context);
+        }
+        if ((parts & PAYLOAD_STREAK) != 0) {
+            bindStreak(holder, habit);
+        } else if ((parts & PAYLOAD_PROGRESS) != 0) {
+            bindProgress(holder, habit);
         }
+    }
+    
+    private void bindStatus(HabitViewHolder holder, Habit habit, Context context) {
+        HabitInteractionListener listener = listenerRef.get();
         
         // Bind type-specific views
         int viewType = holder.viewType;
@@ -188,16 +327,34 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
             holder.habitCard.setAlpha(habit.isCompleted() ? 0.7f : 1.0f);
         }
         
-        // Update progress from stored progress map if available
-        if (progressMap.containsKey(habit.getHabitId())) {
-            float storedProgress = progressMap.get(habit.getHabitId());
-            int storedPercent = Math.round(storedProgress * 100);
-            if (holder.habitProgress != null) {
-                holder.habitProgress.setProgress(storedPercent);
-            }
-            if (holder.percentageTextView != null) {
-                holder.percentageTextView.setText(storedPercent + "%");
-            }
+        bindProgress(holder, habit);
+    }
+    
+    private void bindStreak(HabitViewHolder holder, Habit habit) {
+        // Set streak info
+        if (holder.streakTextView != null) {
+            int streak = habit.getCurrentStreak();
+            holder.streakTextView.setText(streak + " day streak");
+        }
+        
+        bindProgress(holder, habit);
+    }
+    
+    private void bindProgress(HabitViewHolder holder, Habit habit) {
+        // Calculate progress percentage based on daily completion rate, unless
+        // a stored value from the progress map is available
+        int progressPercent = calculateHabitProgress(habit);
+        Float storedProgress = progressMap.get(habit.getHabitId());
+        if (storedProgress != null) {
+            progressPercent = Math.round(storedProgress * 100);
+        }
+        
+        if (holder.habitProgress != null) {
+            holder.habitProgress.setProgress(progressPercent);
+        }
+        
+        if (holder.percentageTextView != null) {
+            holder.percentageTextView.setText(progressPercent + "%");
         }
     }
     
@@ -271,7 +428,7 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
         }
     }
     
-    private void bindLocationHabit(HabitViewHolder holder, Habit habit, HabitInteractionListener listener, Context context) {
+    private static String locationNameOf(Habit habit) {
         // Get location name from habit extra properties
         String locName = "Location";
         JSONObject extraProps = habit.getExtraProperties();
@@ -281,9 +438,12 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
                 locName = extraProps.optString("address", "Location");
             }
         }
-        
+        return locName;
+    }
+    
+    private void bindLocationHabit(HabitViewHolder holder, Habit habit, HabitInteractionListener listener, Context context) {
         if (holder.locationName != null) {
-            holder.locationName.setText(locName);
+            holder.locationName.setText(locationNameOf(habit));
         }
         
         if (holder.locationDistance != null) {
@@ -365,15 +525,14 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
     
     @Override
     public int getItemCount() {
-        return habitList != null ? habitList.size() : 0;
+        return differ.getCurrentList().size();
     }
     
     /**
      * Update the habit list
      */
     public void updateHabits(List<Habit> newHabits) {
-        this.habitList = newHabits != null ? newHabits : new ArrayList<>();
-        notifyDataSetChanged();
+        submitList(newHabits);
     }
     
     public void updatePomodoroStatus(String habitId, long timeRemaining, int completedCount, int totalCount) {
@@ -381,12 +540,10 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
         pomodoroProgress.put(habitId, completedCount);
         pomodoroTotals.put(habitId, totalCount);
         
-        // Find the position of the habit in the list
-        for (int i = 0; i < habitList.size(); i++) {
-            if (habitList.get(i).getHabitId().equals(habitId)) {
-                notifyItemChanged(i);
-                break;
-            }
+        // Countdown tick: only the timer views of the habit's card
+        int position = positionOf(habitId);
+        if (position >= 0) {
+            notifyItemChanged(position, PAYLOAD_POMODORO);
         }
     }
     
@@ -399,12 +556,9 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
             pomodoroTotals.remove(habitId);
         }
         
-        // Find the position of the habit in the list
-        for (int i = 0; i < habitList.size(); i++) {
-            if (habitList.get(i).getHabitId().equals(habitId)) {
-                notifyItemChanged(i);
-                break;
-            }
+        int position = positionOf(habitId);
+        if (position >= 0) {
+            notifyItemChanged(position, PAYLOAD_POMODORO);
         }
     }
     
@@ -414,10 +568,10 @@ public class HabitAdapter extends RecyclerView.Adapter<HabitAdapter.HabitViewHol
             progressMap.clear();
             progressMap.putAll(habitProgress);
             
-            for (int i = 0; i < habitList.size(); i++) {
-                String habitId = habitList.get(i).getHabitId();
-                if (habitProgress.containsKey(habitId)) {
-                    notifyItemChanged(i);
+            for (String habitId : habitProgress.keySet()) {
+                int position = positionOf(habitId);
+                if (position >= 0) {
+                    notifyItemChanged(position, PAYLOAD_PROGRESS);
                 }
             }
         }
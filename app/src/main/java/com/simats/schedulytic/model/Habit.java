@@ -4,6 +4,7 @@ import android.os.Parcel;
 import android.os.Parcelable;
 import org.json.JSONException;
 import org.json.JSONObject;
+import java.time.LocalDate;
 import java.util.UUID;
 import java.util.Iterator;
 import java.io.Serializable;
@@ -25,6 +26,7 @@ public class Habit implements Parcelable, Serializable {
     private String frequency; // daily, weekly, weekdays, weekends, etc.
     private String verificationMethod; // checkbox, location, pomodoro
     private boolean completed;
+    private String lastCompletedDate; // yyyy-MM-dd of the latest completion on the server, if known
     private int currentStreak;
     private int totalCompletions;
     
@@ -137,6 +139,14 @@ public class Habit implements Parcelable, Serializable {
         this.completed = completed;
     }
     
+    public String getLastCompletedDate() {
+        return lastCompletedDate;
+    }
+    
+    public void setLastCompletedDate(String lastCompletedDate) {
+        this.lastCompletedDate = lastCompletedDate;
+    }
+    
     public int getCurrentStreak() {
         return currentStreak;
     }
@@ -357,8 +367,12 @@ public class Habit implements Parcelable, Serializable {
         
         android.util.Log.d("Habit", "Final verification method for " + habit.title + ": " + habit.verificationMethod);
         
-        // Check completed_today first (from server with habit_completions join), fallback to completed
-        if (json.has("completed_today")) {
+        // A completion date is compared with the device's today, so it cannot go stale at
+        // midnight; then completed_today (from server with habit_completions join), then completed
+        if (json.has("last_completed_date")) {
+            habit.lastCompletedDate = json.isNull("last_completed_date") ? null : json.optString("last_completed_date");
+            habit.completed = LocalDate.now().toString().equals(habit.lastCompletedDate);
+        } else if (json.has("completed_today")) {
             habit.completed = json.optInt("completed_today", 0) == 1;
             android.util.Log.d("Habit", "Using completed_today: " + habit.completed);
         } else {
@@ -406,6 +420,7 @@ public class Habit implements Parcelable, Serializable {
         description = in.readString();
         verificationMethod = in.readString();
         completed = in.readByte() != 0;
+        lastCompletedDate = in.readString();
         currentStreak = in.readInt();
         totalCompletions = in.readInt();
         frequency = in.readString();
@@ -452,6 +467,7 @@ public class Habit implements Parcelable, Serializable {
         dest.writeString(description);
         dest.writeString(verificationMethod);
         dest.writeByte((byte) (completed ? 1 : 0));
+        dest.writeString(lastCompletedDate);
         dest.writeInt(currentStreak);
         dest.writeInt(totalCompletions);
         dest.writeString(frequency);
@@ -0,0 +1,483 @@
+package com.simats.schedulytic.service;
+
+import android.Manifest;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.CurrentLocationRequest;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.location.GeofencingClient;
+import com.google.android.gms.location.GeofencingEvent;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.simats.schedulytic.AppExecutors;
+import com.simats.schedulytic.StreakEngine;
+import com.simats.schedulytic.model.Habit;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Location habits registered as system geofences, so a habit is verified when the user
+ * arrives at its place without the app keeping GPS on.
+ *
+ * Each location habit gets a circular geofence at its latitude and longitude that
+ * reports enter, dwell and exit transitions to {@link GeofenceReceiver}. On enter or
+ * dwell the receiver skips habits already completed today, then takes one
+ * high-accuracy fix, bounded by {@link #CONFIRM_TIMEOUT_MS}, and verifies through
+ * {@link HabitManagerService#verifyHabitWithLocation} the habits whose radius that fix
+ * is inside. Geofences are at least {@link #MIN_GEOFENCE_RADIUS_METERS} wide, so the
+ * user can be inside one but not yet inside the habit's smaller radius. Those habits
+ * are watched: a low-frequency location request checks them again every
+ * {@link #WATCH_INTERVAL_MS} until they are verified, the geofence reports an exit, or
+ * {@link #WATCH_DURATION_MS} has passed.
+ *
+ * The registered geofences are kept in preferences with their coordinates, so
+ * {@link #sync} only calls the geofencing API for habits added, moved or removed since,
+ * and {@link #restore} can register them again after a reboot, which clears them.
+ */
+public class HabitGeofenceManager {
+    private static final String TAG = "HabitGeofenceManager";
+    private static final String PREFS_NAME = "HabitGeofences";
+
+    // The system allows 100 geofences per app
+    private static final int MAX_GEOFENCES = 100;
+    private static final float DEFAULT_RADIUS_METERS = 100f;
+    // Geofences smaller than this trigger unreliably; the confirmation fix still checks the habit's own radius
+    private static final float MIN_GEOFENCE_RADIUS_METERS = 100f;
+    private static final int LOITERING_DELAY_MS = 60 * 1000;
+    private static final int RESPONSIVENESS_MS = 2 * 60 * 1000;
+    // Background broadcasts may run for about a minute; a cold GPS fix usually takes well under this
+    private static final long CONFIRM_TIMEOUT_MS = 20 * 1000;
+    private static final long MAX_FIX_AGE_MS = 30 * 1000;
+    private static final String WATCH_PREFS_NAME = "HabitGeofenceWatch";
+    private static final long WATCH_INTERVAL_MS = 60 * 1000;
+    private static final long WATCH_DURATION_MS = 30 * 60 * 1000;
+
+    private static HabitGeofenceManager instance;
+
+    private final Context context;
+    private final GeofencingClient geofencingClient;
+    private final FusedLocationProviderClient fusedLocationClient;
+
+    // Stored with each area; bumped when the registered transitions change, so geofences
+    // registered by an older version compare unequal in sync and are registered again
+    private static final int REGISTRATION_VERSION = 2;
+
+    /**
+     * Center and radius of a registered geofence, stored as
+     * "latitude,longitude,radius,version"; entries without a version are version 1
+     */
+    private static final class Area {
+        final double latitude;
+        final double longitude;
+        final float radiusMeters;
+
+        Area(double latitude, double longitude, float radiusMeters) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusMeters = radiusMeters;
+        }
+
+        static Area parse(Object stored) {
+            if (!(stored instanceof String)) {
+                return null;
+            }
+            String[] parts = ((String) stored).split(",");
+            if (parts.length != 3 && parts.length != 4) {
+                return null;
+            }
+            try {
+                return new Area(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                        Float.parseFloat(parts[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return latitude + "," + longitude + "," + radiusMeters + "," + REGISTRATION_VERSION;
+        }
+    }
+
+    private HabitGeofenceManager(Context context) {
+        this.context = context;
+        this.geofencingClient = LocationServices.getGeofencingClient(context);
+        this.fusedLocationClient = LocationServices.getFusedLocationProviderClient(context);
+    }
+
+    public static synchronized HabitGeofenceManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new HabitGeofenceManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if geofences can be registered and fire while the app is in the background
+     */
+    public static boolean hasBackgroundPermission(Context context) {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_BACKGROUND_LOCATION)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private SharedPreferences getPrefs() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Register a geofence for every location habit and remove those of habits that are
+     * gone or no longer location based. Geofences already registered with the same
+     * area are left alone, so calling this after every habit load is cheap.
+     * Must be called on the main thread.
+     */
+    public void sync(Collection<Habit> habits) {
+        Map<String, Area> wanted = new HashMap<>();
+        for (Habit habit : habits) {
+            if (wanted.size() == MAX_GEOFENCES) {
+                Log.w(TAG, "More than " + MAX_GEOFENCES + " location habits, the rest get no geofence");
+                break;
+            }
+            if (habit.isLocationBased() && habit.getHabitId() != null
+                    && (habit.getLatitude() != 0 || habit.getLongitude() != 0)) {
+                float radius = habit.getRadiusMeters() > 0 ? (float) habit.getRadiusMeters() : DEFAULT_RADIUS_METERS;
+                wanted.put(habit.getHabitId(), new Area(habit.getLatitude(), habit.getLongitude(), radius));
+            }
+        }
+
+        Map<String, ?> registered = getPrefs().getAll();
+        List<String> removed = new ArrayList<>();
+        for (String habitId : registered.keySet()) {
+            if (!wanted.containsKey(habitId)) {
+                removed.add(habitId);
+            }
+        }
+        Map<String, Area> added = new HashMap<>();
+        for (Map.Entry<String, Area> entry : wanted.entrySet()) {
+            if (!entry.getValue().toString().equals(registered.get(entry.getKey()))) {
+                added.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            geofencingClient.removeGeofences(removed)
+                    .addOnSuccessListener(unused -> {
+                        SharedPreferences.Editor editor = getPrefs().edit();
+                        for (String habitId : removed) {
+                            editor.remove(habitId);
+                        }
+                        editor.apply();
+                        updateWatch(removed, new ArrayList<>());
+                        Log.d(TAG, "Removed " + removed.size() + " habit geofences");
+                    })
+                    .addOnFailureListener(e -> Log.e(TAG, "Error removing habit geofences: " + e.getMessage()));
+        }
+        if (!added.isEmpty()) {
+            register(added);
+        }
+    }
+
+    /**
+     * Register the stored geofences again, e.g. after a reboot cleared them
+     */
+    public void restore() {
+        // Location updates do not survive a reboot; the initial trigger starts the watch again
+        getWatchPrefs().edit().clear().apply();
+        Map<String, Area> areas = new HashMap<>();
+        for (Map.Entry<String, ?> entry : getPrefs().getAll().entrySet()) {
+            Area area = Area.parse(entry.getValue());
+            if (area != null) {
+                areas.put(entry.getKey(), area);
+            }
+        }
+        if (!areas.isEmpty()) {
+            register(areas);
+        }
+    }
+
+    /**
+     * Add or replace the geofences; they are stored once the system has accepted them,
+     * so a failed registration is retried on the next sync
+     */
+    @SuppressWarnings("MissingPermission")
+    private void register(Map<String, Area> areas) {
+        if (!hasBackgroundPermission(context)) {
+            Log.w(TAG, "No background location permission, " + areas.size() + " habit geofences not registered");
+            return;
+        }
+
+        List<Geofence> geofences = new ArrayList<>();
+        for (Map.Entry<String, Area> entry : areas.entrySet()) {
+            Area area = entry.getValue();
+            geofences.add(new Geofence.Builder()
+                    .setRequestId(entry.getKey())
+                    .setCircularRegion(area.latitude, area.longitude,
+                            Math.max(area.radiusMeters, MIN_GEOFENCE_RADIUS_METERS))
+                    .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_DWELL
+                            | Geofence.GEOFENCE_TRANSITION_EXIT)
+                    .setLoiteringDelay(LOITERING_DELAY_MS)
+                    .setNotificationResponsiveness(RESPONSIVENESS_MS)
+                    .build());
+        }
+        // An initial trigger covers a user who is already there when the habit is added
+        GeofencingRequest request = new GeofencingRequest.Builder()
+                .setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER)
+                .addGeofences(geofences)
+                .build();
+
+        try {
+            geofencingClient.addGeofences(request, getPendingIntent())
+                    .addOnSuccessListener(unused -> {
+                        SharedPreferences.Editor editor = getPrefs().edit();
+                        for (Map.Entry<String, Area> entry : areas.entrySet()) {
+                            editor.putString(entry.getKey(), entry.getValue().toString());
+                        }
+                        editor.apply();
+                        Log.d(TAG, "Registered " + areas.size() + " habit geofences");
+                    })
+                    .addOnFailureListener(e -> Log.e(TAG, "Error registering habit geofences: " + e.getMessage()));
+        } catch (SecurityException e) {
+            Log.e(TAG, "Location permission revoked: " + e.getMessage());
+        }
+    }
+
+    private PendingIntent getPendingIntent() {
+        Intent intent = new Intent(context, GeofenceReceiver.class);
+        // Mutable: the system adds the geofencing event to the intent
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            flags |= PendingIntent.FLAG_MUTABLE;
+        }
+        return PendingIntent.getBroadcast(context, 0, intent, flags);
+    }
+
+    private PendingIntent getWatchPendingIntent() {
+        Intent intent = new Intent(context, GeofenceReceiver.class);
+        // Mutable: the system adds the location result to the intent
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            flags |= PendingIntent.FLAG_MUTABLE;
+        }
+        return PendingIntent.getBroadcast(context, 1, intent, flags);
+    }
+
+    private SharedPreferences getWatchPrefs() {
+        return context.getSharedPreferences(WATCH_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static float geofenceRadius(Area area) {
+        return Math.max(area.radiusMeters, MIN_GEOFENCE_RADIUS_METERS);
+    }
+
+    /**
+     * Check the habits whose geofence was entered, or that are being watched, against a
+     * location and verify those inside their radius. Without a location one
+     * high-accuracy fix is taken. onDone is run on the main thread.
+     * @param startWatching Whether habits still waiting should start or renew the watch
+     */
+    private void confirm(List<String> habitIds, Location location, boolean startWatching, Runnable onDone) {
+        Map<String, ?> registered = getPrefs().getAll();
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.db().execute(() -> {
+            Map<String, Area> pending = new HashMap<>();
+            LocalDate today = LocalDate.now();
+            StreakEngine streaks = StreakEngine.getInstance(context);
+            for (String habitId : habitIds) {
+                Area area = Area.parse(registered.get(habitId));
+                if (area != null
+                        && streaks.countActiveDays(StreakEngine.TYPE_HABIT, habitId, today, today) == 0) {
+                    pending.put(habitId, area);
+                }
+            }
+            executors.main().execute(() -> {
+                if (pending.isEmpty()) {
+                    updateWatch(habitIds, new ArrayList<>());
+                    onDone.run();
+                } else if (location != null) {
+                    settle(habitIds, pending, location, startWatching);
+                    onDone.run();
+                } else {
+                    requestFix(habitIds, pending, onDone);
+                }
+            });
+        });
+    }
+
+    @SuppressWarnings("MissingPermission")
+    private void requestFix(List<String> habitIds, Map<String, Area> pending, Runnable onDone) {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "Location permission revoked, habits not confirmed");
+            onDone.run();
+            return;
+        }
+
+        CurrentLocationRequest request = new CurrentLocationRequest.Builder()
+                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
+                .setDurationMillis(CONFIRM_TIMEOUT_MS)
+                .setMaxUpdateAgeMillis(MAX_FIX_AGE_MS)
+                .build();
+        fusedLocationClient.getCurrentLocation(request, null).addOnCompleteListener(task -> {
+            Location location = task.isSuccessful() ? task.getResult() : null;
+            if (location == null) {
+                // The geofence says the user is there; keep trying with the watch
+                Log.w(TAG, "No location fix to confirm " + pending.size() + " habits");
+                updateWatch(habitIds, new ArrayList<>(pending.keySet()));
+                startWatch();
+            } else {
+                settle(habitIds, pending, location, true);
+            }
+            onDone.run();
+        });
+    }
+
+    /**
+     * Verify the habits whose radius the location is inside and watch those whose
+     * geofence it may still be inside
+     */
+    private void settle(List<String> habitIds, Map<String, Area> pending, Location location, boolean startWatching) {
+        HabitManagerService habitManager = HabitManagerService.getInstance(context);
+        List<String> waiting = new ArrayList<>();
+        for (Map.Entry<String, Area> entry : pending.entrySet()) {
+            Area area = entry.getValue();
+            float[] results = new float[1];
+            Location.distanceBetween(location.getLatitude(), location.getLongitude(),
+                    area.latitude, area.longitude, results);
+            Log.d(TAG, "Habit " + entry.getKey() + " is " + results[0] + " m away (radius "
+                    + area.radiusMeters + " m)");
+            if (results[0] <= area.radiusMeters) {
+                habitManager.verifyHabitWithLocation(entry.getKey());
+            } else if (results[0] - location.getAccuracy() <= geofenceRadius(area)) {
+                waiting.add(entry.getKey());
+            }
+        }
+        updateWatch(habitIds, waiting);
+        if (startWatching && !waiting.isEmpty()) {
+            startWatch();
+        }
+    }
+
+    /**
+     * Replace the watch state of the checked habits: those waiting are watched, the rest
+     * are not. Location updates stop once no habit is watched.
+     */
+    private void updateWatch(Collection<String> checked, Collection<String> waiting) {
+        SharedPreferences.Editor editor = getWatchPrefs().edit();
+        for (String habitId : checked) {
+            editor.remove(habitId);
+        }
+        for (String habitId : waiting) {
+            editor.putBoolean(habitId, true);
+        }
+        editor.apply();
+        if (getWatchPrefs().getAll().isEmpty()) {
+            fusedLocationClient.removeLocationUpdates(getWatchPendingIntent());
+        }
+    }
+
+    /**
+     * Start, or renew for another {@link #WATCH_DURATION_MS}, the location updates
+     * delivered to {@link GeofenceReceiver} while habits are watched
+     */
+    @SuppressWarnings("MissingPermission")
+    private void startWatch() {
+        if (!hasBackgroundPermission(context)) {
+            return;
+        }
+        LocationRequest request = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, WATCH_INTERVAL_MS)
+                .setDurationMillis(WATCH_DURATION_MS)
+                .build();
+        try {
+            fusedLocationClient.requestLocationUpdates(request, getWatchPendingIntent())
+                    .addOnFailureListener(e -> Log.e(TAG, "Error watching habit locations: " + e.getMessage()));
+        } catch (SecurityException e) {
+            Log.e(TAG, "Location permission revoked: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Check the watched habits against a location update
+     */
+    private void onWatchLocation(Location location, Runnable onDone) {
+        List<String> habitIds = new ArrayList<>(getWatchPrefs().getAll().keySet());
+        if (habitIds.isEmpty()) {
+            fusedLocationClient.removeLocationUpdates(getWatchPendingIntent());
+            onDone.run();
+            return;
+        }
+        confirm(habitIds, location, false, onDone);
+    }
+
+    /**
+     * Receives the transitions of habit geofences and the location updates of watched habits
+     */
+    public static class GeofenceReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            HabitGeofenceManager manager = HabitGeofenceManager.getInstance(context);
+            if (LocationResult.hasResult(intent)) {
+                LocationResult locationResult = LocationResult.extractResult(intent);
+                Location location = locationResult != null ? locationResult.getLastLocation() : null;
+                if (location != null) {
+                    PendingResult result = goAsync();
+                    manager.onWatchLocation(location, result::finish);
+                }
+                return;
+            }
+
+            GeofencingEvent event = GeofencingEvent.fromIntent(intent);
+            if (event == null) {
+                return;
+            }
+            if (event.hasError()) {
+                Log.e(TAG, "Geofence error: " + GeofenceStatusCodes.getStatusCodeString(event.getErrorCode()));
+                return;
+            }
+            int transition = event.getGeofenceTransition();
+            List<Geofence> geofences = event.getTriggeringGeofences();
+            if (geofences == null || geofences.isEmpty()) {
+                return;
+            }
+            List<String> habitIds = new ArrayList<>();
+            for (Geofence geofence : geofences) {
+                habitIds.add(geofence.getRequestId());
+            }
+            Log.d(TAG, "Geofence transition " + transition + " for habits " + habitIds);
+
+            if (transition == Geofence.GEOFENCE_TRANSITION_EXIT) {
+                manager.updateWatch(habitIds, new ArrayList<>());
+                return;
+            }
+            if (transition != Geofence.GEOFENCE_TRANSITION_ENTER && transition != Geofence.GEOFENCE_TRANSITION_DWELL) {
+                return;
+            }
+            PendingResult result = goAsync();
+            manager.confirm(habitIds, null, true, result::finish);
+        }
+    }
+}
@@ -7,8 +7,14 @@ import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 import androidx.annotation.NonNull;
 
+import com.simats.schedulytic.AppExecutors;
 import com.simats.schedulytic.DatabaseHelper;
+import com.simats.schedulytic.MutationOutbox;
+import com.simats.schedulytic.StatsRepository;
+import com.simats.schedulytic.StreakEngine;
+import com.simats.schedulytic.SyncEngine;
 import com.simats.schedulytic.VolleyNetworkManager;
+import com.simats.schedulytic.XpLedger;
 import com.simats.schedulytic.model.Habit;
 
 import org.json.JSONArray;
@@ -16,6 +22,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
@@ -42,6 +49,13 @@ public class HabitManagerService {
     // Habit streak data
     private final Map<String, Integer> streakCache = new HashMap<>();
     
+    // Bumped on the main thread whenever server data reaches the cache, so a local
+    // load finishing after it does not report older rows
+    private int serverVersion;
+    
+    // Set once the cache holds the user's habits, so geofences are not synced against a partial list
+    private volatile boolean cacheLoaded;
+    
     // Listener interface for habit events
     public interface HabitListener {
         void onHabitsLoaded(List<Habit> habits);
@@ -104,6 +118,7 @@ public class HabitManagerService {
             if (listener != null) {
                 listener.onHabitAdded(habit);
             }
+            refreshGeofences();
             
             // Upload to server
             uploadHabitToServer(habit);
@@ -116,125 +131,255 @@ public class HabitManagerService {
     }
     
     /**
-     * Save habit to local database
+     * Save habit to local database. The row is taken from the habit now and written
+     * on the database thread.
      */
     private void saveHabitToLocalDb(Habit habit) {
+        android.content.ContentValues values;
         try {
-            SQLiteDatabase db = dbHelper.getWritableDatabase();
-            
-            // Check if habit already exists
-            String[] columns = {"habit_id"};
-            String selection = "habit_id = ?";
-            String[] selectionArgs = {habit.getHabitId()};
-            Cursor cursor = db.query("habits", columns, selection, selectionArgs, null, null, null);
-            boolean exists = cursor.getCount() > 0;
-            cursor.close();
-            
-            // Prepare values
-            android.content.ContentValues values = new android.content.ContentValues();
-            values.put("habit_id", habit.getHabitId());
-            values.put("user_id", habit.getUserId());
-            values.put("title", habit.getTitle());
-            values.put("description", habit.getDescription());
-            values.put("verification_method", habit.getVerificationMethod());
-            values.put("is_completed", habit.isCompleted() ? 1 : 0);
-            values.put("current_streak", habit.getCurrentStreak());
-            values.put("total_completions", habit.getTotalCompletions());
-            values.put("frequency", habit.getFrequency());
-            
-            // Method-specific data as JSON
-            JSONObject methodData = new JSONObject();
-            if (Habit.VERIFICATION_LOCATION.equals(habit.getVerificationMethod())) {
-                methodData.put("latitude", habit.getLatitude());
-                methodData.put("longitude", habit.getLongitude());
-                methodData.put("radius_meters", habit.getRadiusMeters());
-            } else if (Habit.VERIFICATION_POMODORO.equals(habit.getVerificationMethod())) {
-                methodData.put("pomodoro_count", habit.getPomodoroCount());
-                methodData.put("pomodoro_length", habit.getPomodoroLength());
+            values = habitValues(habit);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error saving habit to local database: " + e.getMessage());
+            return;
+        }
+        String title = habit.getTitle();
+        AppExecutors.getInstance().db().execute(() -> {
+            try {
+                SQLiteDatabase db = dbHelper.getWritableDatabase();
+                if (writeHabit(db, values)) {
+                    Log.d(TAG, "Updated habit in local database: " + title);
+                } else {
+                    Log.d(TAG, "Inserted habit in local database: " + title);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving habit to local database: " + e.getMessage());
             }
-            values.put("method_data", methodData.toString());
-            
-            // Insert or update
-            if (exists) {
-                db.update("habits", values, "habit_id = ?", new String[]{habit.getHabitId()});
-                Log.d(TAG, "Updated habit in local database: " + habit.getTitle());
-            } else {
-                db.insert("habits", null, values);
-                Log.d(TAG, "Inserted habit in local database: " + habit.getTitle());
+        });
+    }
+    
+    /**
+     * Insert or update one habit row
+     * @return true if an existing row was updated
+     */
+    private boolean writeHabit(SQLiteDatabase db, android.content.ContentValues values) {
+        // Update first so habit_completions rows are never cascaded away by a replace
+        if (db.update("habits", values, "habit_id = ?", new String[]{values.getAsString("habit_id")}) > 0) {
+            return true;
+        }
+        db.insert("habits", null, values);
+        return false;
+    }
+    
+    /**
+     * @return The habits row of the habit
+     */
+    private android.content.ContentValues habitValues(Habit habit) throws JSONException {
+        // Prepare values
+        android.content.ContentValues values = new android.content.ContentValues();
+        values.put("habit_id", habit.getHabitId());
+        values.put("user_id", habit.getUserId());
+        values.put("title", habit.getTitle());
+        values.put("description", habit.getDescription());
+        values.put("verification_method", habit.getVerificationMethod());
+        values.put("is_completed", habit.isCompleted() ? 1 : 0);
+        values.put("current_streak", habit.getCurrentStreak());
+        values.put("total_completions", habit.getTotalCompletions());
+        values.put("frequency", habit.getFrequency());
+        
+        // Method-specific data as JSON
+        JSONObject methodData = new JSONObject();
+        if (Habit.VERIFICATION_LOCATION.equals(habit.getVerificationMethod())) {
+            methodData.put("latitude", habit.getLatitude());
+            methodData.put("longitude", habit.getLongitude());
+            methodData.put("radius_meters", habit.getRadiusMeters());
+        } else if (Habit.VERIFICATION_POMODORO.equals(habit.getVerificationMethod())) {
+            methodData.put("pomodoro_count", habit.getPomodoroCount());
+            methodData.put("pomodoro_length", habit.getPomodoroLength());
+        }
+        values.put("method_data", methodData.toString());
+        return values;
+    }
+    
+    /**
+     * Write a server delta inside the caller's open transaction (see SyncEngine).
+     * In-memory state is updated separately by {@link #onHabitsSynced} once it commits.
+     * @return IDs of the deleted habits that were actually stored locally
+     */
+    public List<String> writeHabitDelta(SQLiteDatabase db, List<Habit> upserts, List<String> deletedIds)
+            throws JSONException {
+        StreakEngine streaks = StreakEngine.getInstance(context);
+        LocalDate today = LocalDate.now();
+        for (Habit habit : upserts) {
+            writeHabit(db, habitValues(habit));
+            StreakEngine.Cadence cadence = StreakEngine.Cadence.of(habit.getFrequency());
+            String lastCompleted = habit.getLastCompletedDate();
+            if (lastCompleted != null) {
+                // Completed on another device: count it on the day it happened, so both agree
+                // on the streak; a later day than that is not completed on the server
+                LocalDate day = LocalDate.parse(lastCompleted);
+                streaks.setCompleted(db, StreakEngine.TYPE_HABIT, habit.getHabitId(), cadence, day, true);
+                if (day.isBefore(today)) {
+                    streaks.setCompleted(db, StreakEngine.TYPE_HABIT, habit.getHabitId(), cadence, today, false);
+                }
+            } else if (habit.isCompleted()) {
+                streaks.setCompleted(db, StreakEngine.TYPE_HABIT, habit.getHabitId(), cadence, today, true);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving habit to local database: " + e.getMessage());
         }
+        List<String> removed = new ArrayList<>();
+        for (String habitId : deletedIds) {
+            if (db.delete("habits", "habit_id = ?", new String[]{habitId}) > 0) {
+                removed.add(habitId);
+            }
+        }
+        return removed;
+    }
+    
+    /**
+     * Update the habit cache after a committed server delta and notify the listener
+     * once with the full habit list. Must be called on the main thread.
+     */
+    public void onHabitsSynced(List<Habit> upserts, List<String> deletedIds) {
+        if (upserts.isEmpty() && deletedIds.isEmpty()) {
+            return;
+        }
+        for (Habit habit : upserts) {
+            habitsCache.put(habit.getHabitId(), habit);
+        }
+        for (String habitId : deletedIds) {
+            habitsCache.remove(habitId);
+            streakCache.remove(habitId);
+        }
+        serverVersion++;
+        Log.d(TAG, "Applied habit delta: " + upserts.size() + " upserts, " + deletedIds.size() + " deletions");
+        
+        if (listener != null) {
+            listener.onHabitsLoaded(new ArrayList<>(habitsCache.values()));
+        }
+        calculateHabitProgress();
+        cacheLoaded = true;
+        refreshGeofences();
     }
     
     /**
-     * Upload habit to server
+     * Queue the new habit for upload; the outbox swaps in the server ID once created
      */
     private void uploadHabitToServer(Habit habit) {
         try {
-            JSONObject habitJson = habit.toJson();
-            
-            networkManager.makePostRequest(
-                "add_habit.php",
-                habitJson,
-                new VolleyNetworkManager.JsonResponseListener() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        Log.d(TAG, "Habit uploaded successfully: " + response.toString());
-                        // Update with server ID if provided
-                        try {
-                            if (response.has("habit_id")) {
-                                String serverId = response.getString("habit_id");
-                                if (!serverId.equals(habit.getHabitId())) {
-                                    // Update local ID with server ID
-                                    habitsCache.remove(habit.getHabitId());
-                                    habit.setHabitId(serverId);
-                                    habitsCache.put(serverId, habit);
-                                    saveHabitToLocalDb(habit);
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing server response: " + e.getMessage());
-                        }
-                    }
-                    
-                    @Override
-                    public void onError(String errorMessage) {
-                        Log.e(TAG, "Error uploading habit: " + errorMessage);
-                        // Habit is still saved locally, so we can retry later
-                    }
-                }
-            );
+            MutationOutbox.getInstance(context).enqueue(
+                MutationOutbox.ENTITY_HABIT, habit.getHabitId(), MutationOutbox.OP_ADD_HABIT, habit.toJson());
         } catch (Exception e) {
             Log.e(TAG, "Error preparing habit for upload: " + e.getMessage());
         }
     }
     
     /**
-     * Load habits from local database and server
+     * Replace a locally created habit ID with the ID the server assigned
      */
-    public void loadHabits() {
-        // Load from local database first for immediate display
-        List<Habit> localHabits = loadHabitsFromLocalDb();
+    public void onHabitIdAssigned(String localId, String serverId) {
+        Habit cached = habitsCache.remove(localId);
+        android.content.ContentValues cachedValues = null;
+        if (cached != null) {
+            cached.setHabitId(serverId);
+            habitsCache.put(serverId, cached);
+            refreshGeofences();
+            try {
+                cachedValues = habitValues(cached);
+            } catch (JSONException e) {
+                Log.e(TAG, "Error moving habit to server ID: " + e.getMessage());
+                return;
+            }
+        }
         
-        if (!localHabits.isEmpty()) {
-            // Update cache
-            for (Habit habit : localHabits) {
-                habitsCache.put(habit.getHabitId(), habit);
+        android.content.ContentValues knownValues = cachedValues;
+        AppExecutors.getInstance().db().execute(() -> {
+            android.content.ContentValues habitRow = knownValues;
+            if (habitRow == null) {
+                Habit habit = loadHabitFromLocalDb(localId);
+                if (habit == null) {
+                    return;
+                }
+                habit.setHabitId(serverId);
+                habitsCache.put(serverId, habit);
+                try {
+                    habitRow = habitValues(habit);
+                } catch (JSONException e) {
+                    Log.e(TAG, "Error moving habit to server ID: " + e.getMessage());
+                    return;
+                }
             }
             
-            // Notify listener
-            if (listener != null) {
-                listener.onHabitsLoaded(localHabits);
+            // Insert under the new ID first so completions can move across before the old row goes
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                writeHabit(db, habitRow);
+                android.content.ContentValues values = new android.content.ContentValues();
+                values.put("habit_id", serverId);
+                db.update("habit_completions", values, "habit_id = ?", new String[]{localId});
+                StreakEngine.moveEntity(db, StreakEngine.TYPE_HABIT, localId, serverId);
+                db.delete("habits", "habit_id = ?", new String[]{localId});
+                db.setTransactionSuccessful();
+                Log.d(TAG, "Habit " + localId + " is now " + serverId);
+            } catch (Exception e) {
+                Log.e(TAG, "Error moving habit to server ID: " + e.getMessage());
+            } finally {
+                db.endTransaction();
             }
-        }
+        });
+    }
+    
+    /**
+     * Load habits from local database and server
+     */
+    public void loadHabits() {
+        // Load from local database first for immediate display
+        loadLocalHabits();
         
         // Then fetch from server for the latest data
         loadHabitsFromServer();
     }
     
     /**
-     * Load habits from local database
+     * Load habits from the local database only, e.g. while a home snapshot is in flight.
+     * The read runs on the database thread; the listener is called on the main thread,
+     * unless server data arrived first.
+     */
+    public void loadLocalHabits() {
+        int version = serverVersion;
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.db().execute(() -> {
+            List<Habit> localHabits = loadHabitsFromLocalDb();
+            executors.main().execute(() -> {
+                if (localHabits.isEmpty() || version != serverVersion) {
+                    return;
+                }
+                
+                // Update cache, keeping habits changed in memory while the read ran
+                for (Habit habit : localHabits) {
+                    habitsCache.putIfAbsent(habit.getHabitId(), habit);
+                }
+                cacheLoaded = true;
+                refreshGeofences();
+                
+                // Notify listener
+                if (listener != null) {
+                    listener.onHabitsLoaded(localHabits);
+                }
+            });
+        });
+    }
+    
+    /**
+     * Whether the habit's completion bitmap has today set. The stored is_completed flag
+     * belongs to the day it was written and goes stale at midnight.
+     */
+    private boolean isCompletedToday(String habitId) {
+        LocalDate today = LocalDate.now();
+        return StreakEngine.getInstance(context).countActiveDays(StreakEngine.TYPE_HABIT, habitId, today, today) > 0;
+    }
+    
+    /**
+     * Load habits from local database. Runs on the database thread.
      */
     private List<Habit> loadHabitsFromLocalDb() {
         List<Habit> habits = new ArrayList<>();
@@ -267,7 +412,7 @@ public class HabitManagerService {
                     habit.setTitle(cursor.getString(cursor.getColumnIndex("title")));
                     habit.setDescription(cursor.getString(cursor.getColumnIndex("description")));
                     habit.setVerificationMethod(cursor.getString(cursor.getColumnIndex("verification_method")));
-                    habit.setCompleted(cursor.getInt(cursor.getColumnIndex("is_completed")) == 1);
+                    habit.setCompleted(isCompletedToday(habit.getHabitId()));
                     habit.setCurrentStreak(cursor.getInt(cursor.getColumnIndex("current_streak")));
                     habit.setTotalCompletions(cursor.getInt(cursor.getColumnIndex("total_completions")));
                     habit.setFrequency(cursor.getString(cursor.getColumnIndex("frequency")));
@@ -301,10 +446,35 @@ public class HabitManagerService {
         
         return habits;
     }
-     /**
-     * Load habits from server
+    /**
+     * Load habit changes from server. Uses the delta sync so only habits changed since
+     * the last sync are transferred; falls back to a full list fetch if that fails.
      */
     private void loadHabitsFromServer() {
+        if (getUserId().isEmpty()) {
+            Log.e(TAG, "User ID is empty, cannot load habits from server");
+            return;
+        }
+
+        SyncEngine.getInstance(context).sync(new SyncEngine.SyncListener() {
+            @Override
+            public void onSyncComplete(int taskChanges, int habitChanges) {
+                // Changed habits were already delivered through onHabitsSynced
+                Log.d(TAG, "Habit sync complete: " + habitChanges + " changes");
+            }
+
+            @Override
+            public void onSyncFailed(String message) {
+                Log.w(TAG, "Habit delta sync failed, fetching full list: " + message);
+                loadAllHabitsFromServer();
+            }
+        });
+    }
+    
+    /**
+     * Load the full habit list from server
+     */
+    private void loadAllHabitsFromServer() {
         String userId = getUserId();
         if (userId.isEmpty()) {
             Log.e(TAG, "User ID is empty, cannot load habits from server");
@@ -340,6 +510,7 @@ public class HabitManagerService {
                             saveHabitToLocalDb(habit);
                         }
                         
+                        serverVersion++;
                         Log.d(TAG, "Loaded " + serverHabits.size() + " habits from server");
                         
                         // Notify listener
@@ -349,6 +520,8 @@ public class HabitManagerService {
                         
                         // Calculate overall progress
                         calculateHabitProgress();
+                        cacheLoaded = true;
+                        refreshGeofences();
                     } catch (Exception e) {
                         Log.e(TAG, "Error parsing habits from server: " + e.getMessage());
                         onError("Error parsing server response: " + e.getMessage());
@@ -393,6 +566,7 @@ public class HabitManagerService {
         Log.d(TAG, "Verifying habit: " + habitId + " with method: " + verificationMethod + ", completed: " + isCompleted);
         
         // Update habit completion status
+        boolean wasCompleted = habit.isCompleted();
         habit.setCompleted(isCompleted);
         
         // If completed, increment total completions
@@ -407,6 +581,7 @@ public class HabitManagerService {
         
         // Save to local database
         saveHabitToLocalDb(habit);
+        recordVerification(habit, wasCompleted);
         
         // Notify listener
         if (listener != null) {
@@ -442,7 +617,7 @@ public class HabitManagerService {
                 habit.setTitle(cursor.getString(cursor.getColumnIndexOrThrow("title")));
                 habit.setDescription(cursor.getString(cursor.getColumnIndexOrThrow("description")));
                 habit.setVerificationMethod(cursor.getString(cursor.getColumnIndexOrThrow("verification_method")));
-                habit.setCompleted(cursor.getInt(cursor.getColumnIndexOrThrow("is_completed")) == 1);
+                habit.setCompleted(isCompletedToday(habit.getHabitId()));
                 habit.setCurrentStreak(cursor.getInt(cursor.getColumnIndexOrThrow("current_streak")));
                 habit.setTotalCompletions(cursor.getInt(cursor.getColumnIndexOrThrow("total_completions")));
                 habit.setFrequency(cursor.getString(cursor.getColumnIndexOrThrow("frequency")));
@@ -478,6 +653,7 @@ public class HabitManagerService {
         Log.d(TAG, "Verifying location habit: " + habitId);
         
         // Mark as completed
+        boolean wasCompleted = habit.isCompleted();
         habit.setCompleted(true);
         habit.setTotalCompletions(habit.getTotalCompletions() + 1);
         habit.setCurrentStreak(habit.getCurrentStreak() + 1);
@@ -487,6 +663,7 @@ public class HabitManagerService {
         
         // Save to local database
         saveHabitToLocalDb(habit);
+        recordVerification(habit, wasCompleted);
         
         // Notify listener
         if (listener != null) {
@@ -522,6 +699,7 @@ public class HabitManagerService {
         Log.d(TAG, "Verifying pomodoro habit: " + habitId);
         
         // Mark as completed
+        boolean wasCompleted = habit.isCompleted();
         habit.setCompleted(true);
         habit.setTotalCompletions(habit.getTotalCompletions() + 1);
         habit.setCurrentStreak(habit.getCurrentStreak() + 1);
@@ -531,6 +709,7 @@ public class HabitManagerService {
         
         // Save to local database
         saveHabitToLocalDb(habit);
+        recordVerification(habit, wasCompleted);
         
         // Notify listener
         if (listener != null) {
@@ -547,6 +726,16 @@ public class HabitManagerService {
         updateHabitOnServer(habit, true);
     }
     
+    /**
+     * Count a change of today's completion in the stats rollup, by verification method
+     */
+    private void recordVerification(Habit habit, boolean wasCompleted) {
+        if (habit.isCompleted() != wasCompleted) {
+            StatsRepository.getInstance(context)
+                .recordHabitVerified(habit.getVerificationMethod(), habit.isCompleted());
+        }
+    }
+    
     /**
      * Update habit streak
      */
@@ -556,7 +745,8 @@ public class HabitManagerService {
             if (habit == null) return;
             
             // Get today's date for the streak
-            String currentDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
+            LocalDate today = LocalDate.now();
+            String currentDate = today.toString();
             
             // Prepare request data
             JSONObject requestData = new JSONObject();
@@ -565,87 +755,49 @@ public class HabitManagerService {
             requestData.put("date", currentDate);
             requestData.put("completed", isCompleted ? 1 : 0);
             
-            // Send to server
-            networkManager.makePostRequest(
-                "update_habit_streak.php",
-                requestData,
-                new VolleyNetworkManager.JsonResponseListener() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        try {
-                            // Parse streak from response
-                            int newStreak = 0;
-                            if (response.has("current_streak")) {
-                                newStreak = response.getInt("current_streak");
-                            } else if (response.has("data") && response.getJSONObject("data").has("current_streak")) {
-                                newStreak = response.getJSONObject("data").getInt("current_streak");
-                            }
-                            
-                            // Update streak in habit
-                            Habit updatedHabit = habitsCache.get(habitId);
-                            if (updatedHabit != null) {
-                                updatedHabit.setCurrentStreak(newStreak);
-                                habitsCache.put(habitId, updatedHabit);
-                                saveHabitToLocalDb(updatedHabit);
-                            }
-                            
-                            // Update streak cache
-                            streakCache.put(habitId, newStreak);
-                            
-                            // Notify listener
-                            if (listener != null) {
-                                listener.onHabitStreakUpdated(habitId, newStreak);
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing streak response: " + e.getMessage());
-                        }
-                    }
-                    
-                    @Override
-                    public void onError(String errorMessage) {
-                        Log.e(TAG, "Error updating streak: " + errorMessage);
-                        
-                        // Use local calculation as fallback
-                        int newStreak = calculateLocalStreak(habitId, isCompleted);
-                        
-                        // Update streak in habit
-                        Habit updatedHabit = habitsCache.get(habitId);
-                        if (updatedHabit != null) {
-                            updatedHabit.setCurrentStreak(newStreak);
-                            habitsCache.put(habitId, updatedHabit);
-                            saveHabitToLocalDb(updatedHabit);
-                        }
-                        
-                        // Update streak cache
-                        streakCache.put(habitId, newStreak);
-                        
-                        // Notify listener
-                        if (listener != null) {
-                            listener.onHabitStreakUpdated(habitId, newStreak);
-                        }
-                    }
+            // Apply the local streak as soon as it is recorded; the server value arrives via onServerStreak
+            String frequency = habit.getFrequency();
+            AppExecutors executors = AppExecutors.getInstance();
+            executors.db().execute(() -> {
+                try {
+                    int streak = StreakEngine.getInstance(context)
+                            .setCompleted(StreakEngine.TYPE_HABIT, habitId, frequency, today, isCompleted)
+                            .getCurrent(today);
+                    executors.main().execute(() -> applyStreak(habitId, streak));
+                } catch (Exception e) {
+                    Log.e(TAG, "Error recording habit completion: " + e.getMessage());
                 }
-            );
+            });
+            
+            MutationOutbox.getInstance(context).enqueue(
+                MutationOutbox.ENTITY_HABIT, habitId, MutationOutbox.OP_HABIT_STREAK, requestData);
         } catch (Exception e) {
             Log.e(TAG, "Error updating habit streak: " + e.getMessage());
         }
     }
     
     /**
-     * Calculate habit streak locally as a fallback
+     * Streak computed by the server when a queued streak update was replayed
      */
-    private int calculateLocalStreak(String habitId, boolean isCompleted) {
-        Habit habit = habitsCache.get(habitId);
-        if (habit == null) return 0;
+    public void onServerStreak(String habitId, int newStreak) {
+        applyStreak(habitId, newStreak);
+    }
+    
+    private void applyStreak(String habitId, int newStreak) {
+        // Update streak in habit
+        Habit updatedHabit = habitsCache.get(habitId);
+        if (updatedHabit != null) {
+            updatedHabit.setCurrentStreak(newStreak);
+            habitsCache.put(habitId, updatedHabit);
+            saveHabitToLocalDb(updatedHabit);
+        }
         
-        int currentStreak = habit.getCurrentStreak();
+        // Update streak cache
+        streakCache.put(habitId, newStreak);
         
-        if (isCompleted) {
-            // Increment streak if completed
-            return currentStreak + 1;
-        } else {
-            // Reset streak if not completed
-            return 0;
+        // Notify listener
+        if (listener != null) {
+            listener.onHabitStreakUpdated(habitId, newStreak);
         }
     }
     
@@ -666,58 +818,21 @@ public class HabitManagerService {
             // Current date
             String currentDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
             updateData.put("date", currentDate);
+            updateData.put("xp_entry_key", XpLedger.habitEntryKey(habit.getHabitId(), currentDate));
             
-            // Send to server
-            networkManager.makePostRequest(
-                "update_habit.php",
-                updateData,
-                new VolleyNetworkManager.JsonResponseListener() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        Log.d(TAG, "Habit updated on server: " + response.toString());
-                        
-                        // Update local XP if successful
-                        try {
-                            if (response.has("data")) {
-                                JSONObject data = response.getJSONObject("data");
-                                if (data.has("xp_earned")) {
-                                    float xpEarned = (float) data.getDouble("xp_earned");
-                                    if (xpEarned > 0) {
-                                        updateLocalXP(xpEarned, habit.getVerificationMethod());
-                                    }
-                                }
-                                if (data.has("streak")) {
-                                    int newStreak = data.getInt("streak");
-                                    habit.setCurrentStreak(newStreak);
-                                    habitsCache.put(habit.getHabitId(), habit);
-                                    if (listener != null) {
-                                        listener.onHabitStreakUpdated(habit.getHabitId(), newStreak);
-                                    }
-                                }
-                            }
-                        } catch (JSONException e) {
-                            Log.e(TAG, "Error parsing server response: " + e.getMessage());
-                        }
-                    }
-                    
-                    @Override
-                    public void onError(String errorMessage) {
-                        Log.e(TAG, "Error updating habit on server: " + errorMessage);
-                        // Still update local XP even if server fails (offline support)
-                        if (isCompleted) {
-                            float xpEarned = getXPForVerificationType(habit.getVerificationMethod());
-                            updateLocalXP(xpEarned, habit.getVerificationMethod());
-                        }
-                    }
-                }
-            );
+            MutationOutbox.getInstance(context).enqueue(
+                MutationOutbox.ENTITY_HABIT, habit.getHabitId(), MutationOutbox.OP_UPDATE_HABIT, updateData);
         } catch (Exception e) {
             Log.e(TAG, "Error preparing habit update: " + e.getMessage());
-            // Still update local XP on error
-            if (isCompleted) {
-                float xpEarned = getXPForVerificationType(habit.getVerificationMethod());
-                updateLocalXP(xpEarned, habit.getVerificationMethod());
-            }
+        }
+        
+        // The server grants the same XP under the same entry key when the update is replayed
+        if (isCompleted) {
+            float xpEarned = getXPForVerificationType(habit.getVerificationMethod());
+            String currentDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
+            XpLedger.getInstance(context).record(
+                    XpLedger.habitEntryKey(habit.getHabitId(), currentDate), xpEarned, XpLedger.REASON_HABIT);
+            StatsRepository.getInstance(context).recordXp(xpEarned);
         }
     }
     
@@ -736,34 +851,6 @@ public class HabitManagerService {
         }
     }
     
-    /**
-     * Update local XP in SharedPreferences
-     */
-    private void updateLocalXP(float xpEarned, String verificationType) {
-        SharedPreferences prefs = context.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        
-        // Update total XP
-        float totalXP = prefs.getFloat("xp_points_float", 0f);
-        totalXP += xpEarned;
-        editor.putFloat("xp_points_float", totalXP);
-        editor.putInt("xp_points", (int) totalXP);
-        editor.putInt("xp_coins", (int) totalXP); // Also update xp_coins for HomeFragment
-        
-        // Update habit-specific XP
-        float habitXP = prefs.getFloat("habit_xp", 0f);
-        habitXP += xpEarned;
-        editor.putFloat("habit_xp", habitXP);
-        
-        // Update habit completion count
-        int habitCount = prefs.getInt("habit_completed_count", 0);
-        editor.putInt("habit_completed_count", habitCount + 1);
-        
-        editor.apply();
-        
-        Log.d(TAG, "Updated local XP: +" + xpEarned + " (Total: " + totalXP + ", Habit XP: " + habitXP + ")");
-    }
-    
     /**
      * Calculate progress for all habits
      */
@@ -810,6 +897,17 @@ public class HabitManagerService {
         return score;
     }
     
+    /**
+     * Register geofences for the cached location habits and drop those of habits that
+     * are gone. Call again once the background location permission is granted.
+     */
+    public void refreshGeofences() {
+        if (!cacheLoaded) {
+            return;
+        }
+        HabitGeofenceManager.getInstance(context).sync(habitsCache.values());
+    }
+    
     /**
      * Get a habit by ID
      */
@@ -829,29 +927,16 @@ public class HabitManagerService {
             SQLiteDatabase db = dbHelper.getWritableDatabase();
             db.delete("habits", "habit_id = ?", new String[]{habitId});
             
-            // Delete from server
+            // Queue the server delete; an unsent add of this habit is cancelled with it
             JSONObject deleteData = new JSONObject();
             deleteData.put("habit_id", habitId);
             deleteData.put("user_id", getUserId());
-            
-            networkManager.makePostRequest(
-                "delete_habit.php",
-                deleteData,
-                new VolleyNetworkManager.JsonResponseListener() {
-                    @Override
-                    public void onSuccess(JSONObject response) {
-                        Log.d(TAG, "Habit deleted from server: " + response.toString());
-                    }
-                    
-                    @Override
-                    public void onError(String errorMessage) {
-                        Log.e(TAG, "Error deleting habit from server: " + errorMessage);
-                    }
-                }
-            );
+            MutationOutbox.getInstance(context).enqueue(
+                MutationOutbox.ENTITY_HABIT, habitId, MutationOutbox.OP_DELETE_HABIT, deleteData);
             
             // Recalculate progress
             calculateHabitProgress();
+            refreshGeofences();
         } catch (Exception e) {
             Log.e(TAG, "Error deleting habit: " + e.getMessage());
         }
@@ -867,13 +952,15 @@ public class HabitManagerService {
             Log.d(TAG, "Clearing habit cache and reloading from server...");
             
             // Clear in-memory cache
+            cacheLoaded = false;
             habitsCache.clear();
             streakCache.clear();
             
             // Clear local database
             clearHabitsFromLocalDb();
             
-            // Force reload from server
+            // Force a full reload from server: the sync cursor no longer matches local rows
+            SyncEngine.getInstance(context).resetCursor();
             loadHabitsFromServer();
             
             Log.d(TAG, "Habit cache cleared and reload initiated");
@@ -5,8 +5,8 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.util.Log;
 
-import java.net.HttpURLConnection;
-import java.net.URL;
+import com.simats.schedulytic.EndpointRegistry;
+
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -14,103 +14,15 @@ import java.util.Locale;
 public class IpV4Connection {
     private static final String TAG = "IpV4Connection";
 
-    // Your primary hosted server URL
-    // UPDATE THIS URL WHEN YOUR SERVER CHANGES
-    private static final String PRIMARY_SERVER_URL = "http://14.139.187.229:8081/jan2025/Shedulytic/";
-
-    private static final String[] FALLBACK_URLS = {
-            PRIMARY_SERVER_URL,      // Your hosted server
-            "http://10.0.2.2/shedulytic/",          // Android emulator special IP for host localhost
-            "http://10.0.2.2:80/shedulytic/",       // Android emulator with explicit port
-            // Add other potential IPs or hostnames if needed, but the above are most common for development.
-            // "http://127.0.0.1/shedulytic/", // Usually not for emulator to host unless special setup
-            // "http://localhost/shedulytic/"   // Usually not for emulator to host unless special setup
-    };
-
-    private static String cachedWorkingUrl = null;
-    private static long lastConnectionCheckTime = 0;
-    private static final long CONNECTION_CHECK_INTERVAL_MS = 2 * 60 * 1000; // Check every 2 minutes
-    private static int currentUrlIndex = 0; // To cycle through FALLBACK_URLS
-
-    public static synchronized String getBaseUrl() {
-        long currentTime = System.currentTimeMillis();
-
-        if (cachedWorkingUrl != null && (currentTime - lastConnectionCheckTime) < CONNECTION_CHECK_INTERVAL_MS) {
-            // Log.d(TAG, "Using cached working URL: " + cachedWorkingUrl);
-            return cachedWorkingUrl;
-        }
-
-        // Try each URL in order, starting from the current index
-        for (int i = 0; i < FALLBACK_URLS.length; i++) {
-            int indexToTry = (currentUrlIndex + i) % FALLBACK_URLS.length;
-            String urlToTest = FALLBACK_URLS[indexToTry];
-
-            if (isUrlReachable(urlToTest)) {
-                cachedWorkingUrl = urlToTest;
-                lastConnectionCheckTime = currentTime;
-                currentUrlIndex = indexToTry; // Remember this working index for next full check cycle
-                Log.i(TAG, "Established working base URL: " + cachedWorkingUrl);
-                return cachedWorkingUrl;
-            }
-        }
-
-        // If none of the FALLBACK_URLS are reachable, default to the first one (your primary)
-        // and reset currentUrlIndex. Log this as a warning.
-        currentUrlIndex = 0;
-        cachedWorkingUrl = FALLBACK_URLS[0]; // Default to your primary URL
-        lastConnectionCheckTime = currentTime; // Update time to prevent immediate re-check spam
-        Log.w(TAG, "No URLs were reachable. Defaulting to primary URL: " + cachedWorkingUrl + ". Check network/server.");
-        return cachedWorkingUrl;
+    // Server selection lives in EndpointRegistry; this class only builds endpoint URLs
+    public static String getBaseUrl() {
+        return EndpointRegistry.getInstance().getBestBaseUrl();
     }
 
-    // This method can be simplified if getBaseUrl() is robust
     public static String getFallbackUrl() {
-        Log.d(TAG, "getFallbackUrl() called, deferring to getBaseUrl().");
-        return getBaseUrl();
-    }
-
-    private static boolean isUrlReachable(String baseUrlString) {
-        if (baseUrlString == null || baseUrlString.isEmpty()) {
-            return false;
-        }
-        HttpURLConnection connection = null;
-        try {
-            // It's crucial that 'ping.php' (or a similar lightweight endpoint)
-            // exists at the root of your '/shedulytic/' directory on the server.
-            URL url = new URL(baseUrlString + "ping.php");
-            Log.d(TAG, "Attempting to ping: " + url.toString());
-
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setConnectTimeout(5000); // 5 seconds
-            connection.setReadTimeout(5000);    // 5 seconds
-            connection.setRequestMethod("GET");
-            connection.setInstanceFollowRedirects(false); // Avoid redirects for a simple ping
-            connection.setRequestProperty("Connection", "close"); // Important
-            connection.setRequestProperty("Cache-Control", "no-cache, no-store, must-revalidate");
-            connection.setRequestProperty("Pragma", "no-cache"); // For HTTP/1.0 proxies
-            connection.setRequestProperty("Expires", "0"); // For proxies
-
-
-            connection.connect();
-            int responseCode = connection.getResponseCode();
-            Log.d(TAG, "Response code from " + url.toString() + ": " + responseCode);
-
-            // HTTP_OK (200) is expected for a successful ping
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                Log.i(TAG, "Successfully connected to: " + baseUrlString);
-                return true;
-            } else {
-                Log.w(TAG, "Failed to connect to " + baseUrlString + " (ping.php) - HTTP Status: " + responseCode);
-                return false;
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking URL reachability for " + baseUrlString + ": " + e.getMessage());
-            return false;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
+        String baseUrl = getBaseUrl();
+        String fallbackUrl = EndpointRegistry.getInstance().getFallbackUrl(baseUrl);
+        return fallbackUrl != null ? fallbackUrl : baseUrl;
     }
 
     // --- Endpoint URL Methods ---
@@ -7,7 +7,7 @@ import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
 import com.simats.schedulytic.HabitManager;
-import com.simats.schedulytic.model.Task;
+import com.simats.schedulytic.Task;
 
 import java.util.List;
 
@@ -31,9 +31,10 @@ public class TaskViewModel extends ViewModel implements HabitManager.HabitListen
     public void onHabitCompleted(String taskId, int newStreak) {
         List<Task> currentTasks = taskList.getValue();
         if (currentTasks != null) {
-            for (Task task : currentTasks) {
+            for (int i = 0; i < currentTasks.size(); i++) {
+                Task task = currentTasks.get(i);
                 if (task.getTaskId().equals(taskId)) {
-                    task.setCurrentStreak(newStreak);
+                    currentTasks.set(i, task.withCurrentStreak(newStreak));
                     break;
                 }
             }
@@ -0,0 +1,146 @@
+package com.simats.schedulytic;
+
+import com.google.gson.stream.JsonReader;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the streaming readers in {@link JsonStreams}. The org.json
+ * tree readers are left to instrumented tests, as org.json is stubbed here.
+ */
+public class JsonStreamsTest {
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+
+    /**
+     * Reads "status" of a response object and skips the rest
+     */
+    private static final JsonStreams.Parser<String> STATUS = reader -> {
+        String status = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("status")) {
+                status = JsonStreams.readString(reader, null);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return status;
+    };
+
+    @Test
+    public void readsScalarsAsStrings() throws IOException {
+        JsonReader reader = reader("[\"text\", 42, 1.5, true, null, {\"a\": 1}, [1, 2], \"after\"]");
+        reader.beginArray();
+        assertEquals("text", JsonStreams.readString(reader, "x"));
+        assertEquals("42", JsonStreams.readString(reader, "x"));
+        assertEquals("1.5", JsonStreams.readString(reader, "x"));
+        assertEquals("true", JsonStreams.readString(reader, "x"));
+        assertEquals("x", JsonStreams.readString(reader, "x"));
+        assertEquals("x", JsonStreams.readString(reader, "x"));
+        assertEquals("x", JsonStreams.readString(reader, "x"));
+        // Objects and arrays are skipped whole
+        assertEquals("after", JsonStreams.readString(reader, "x"));
+        reader.endArray();
+    }
+
+    @Test
+    public void readsIntsSentAsStrings() throws IOException {
+        JsonReader reader = reader("[7, \"12\", \"3.0\", 4.9, \"n/a\", null, \"\"]");
+        reader.beginArray();
+        assertEquals(7, JsonStreams.readInt(reader, -1));
+        assertEquals(12, JsonStreams.readInt(reader, -1));
+        assertEquals(3, JsonStreams.readInt(reader, -1));
+        assertEquals(4, JsonStreams.readInt(reader, -1));
+        assertEquals(-1, JsonStreams.readInt(reader, -1));
+        assertEquals(-1, JsonStreams.readInt(reader, -1));
+        assertEquals(-1, JsonStreams.readInt(reader, -1));
+        reader.endArray();
+    }
+
+    @Test
+    public void stringListDropsNulls() throws IOException {
+        assertEquals(Arrays.asList("1", "two", "3"),
+                JsonStreams.readStringList(reader("[1, \"two\", null, \"3\"]")));
+        assertEquals(Collections.emptyList(), JsonStreams.readStringList(reader("null")));
+        assertEquals(Collections.emptyList(), JsonStreams.readStringList(reader("[]")));
+    }
+
+    @Test
+    public void listReadsEachElement() throws IOException, JSONException {
+        List<Integer> values = JsonStreams.readList(reader("[\"1\", 2, \"x\"]"), r -> JsonStreams.readInt(r, 0));
+        assertEquals(Arrays.asList(1, 2, 0), values);
+        assertTrue(JsonStreams.readList(reader("null"), r -> JsonStreams.readInt(r, 0)).isEmpty());
+    }
+
+    @Test
+    public void readsTaskRow() throws IOException {
+        Task task = JsonStreams.readTask(reader("{"
+                + "\"id\": 17, \"task_id\": \"ignored\", \"task_type\": \"Workflow\","
+                + "\"title\": \"Write report\", \"description\": \"Q2\","
+                + "\"start_time\": \"2025-06-03 09:00:00\", \"end_time\": \"2025-06-03 10:00:00\","
+                + "\"due_date\": \"2025-06-03\", \"status\": \"completed\","
+                + "\"repeat_frequency\": \"daily\", \"priority\": \"high\", \"current_streak\": \"5\","
+                + "\"extra\": {\"nested\": [1, 2]}}"), "u1");
+        assertEquals("17", task.getTaskId());
+        assertEquals("u1", task.getUserId());
+        assertEquals("workflow", task.getType());
+        assertEquals("Write report", task.getTitle());
+        assertEquals("Q2", task.getDescription());
+        assertEquals("2025-06-03 09:00:00", task.getStartTime());
+        assertEquals("2025-06-03 10:00:00", task.getEndTime());
+        assertEquals("2025-06-03", task.getDueDate());
+        assertEquals("completed", task.getStatus());
+        assertEquals("daily", task.getRepeat());
+        assertEquals("high", task.getPriority());
+        assertEquals(5, task.getCurrentStreak());
+    }
+
+    @Test
+    public void taskRowDefaults() throws IOException {
+        Task task = JsonStreams.readTask(reader("{\"task_id\": \"abc\", \"title\": null, \"type\": \"task\"}"), "u1");
+        assertEquals("abc", task.getTaskId());
+        assertEquals("Untitled Task", task.getTitle());
+        assertEquals("remainder", task.getType());
+        assertEquals("pending", task.getStatus());
+        assertEquals("medium", task.getPriority());
+        assertEquals(0, task.getCurrentStreak());
+    }
+
+    @Test
+    public void taskTypeFallsBackToType() throws IOException {
+        assertEquals("workflow", JsonStreams.readTask(reader("{\"id\": \"1\", \"type\": \"WORKFLOW\"}"), "u1").getType());
+        assertEquals("remainder", JsonStreams.readTask(reader("{\"id\": \"1\"}"), "u1").getType());
+    }
+
+    @Test
+    public void parsesStrictBytes() throws IOException, JSONException {
+        byte[] body = "{\"data\": [1, 2], \"status\": \"success\"}".getBytes(StandardCharsets.UTF_8);
+        assertEquals("success", JsonStreams.parse(body, "UTF-8", STATUS));
+    }
+
+    @Test
+    public void cleansPhpNoticesBeforeParsing() throws IOException, JSONException {
+        byte[] body = ("<br />\n<b>Notice</b>: Undefined index: id in <b>tasks.php</b><br />\n"
+                + "{\"status\": \"success\"}").getBytes(StandardCharsets.UTF_8);
+        assertEquals("success", JsonStreams.parse(body, "UTF-8", STATUS));
+    }
+
+    @Test(expected = JSONException.class)
+    public void emptyBodyFails() throws IOException, JSONException {
+        JsonStreams.parse(new byte[0], "UTF-8", STATUS);
+    }
+}
@@ -0,0 +1,157 @@
+package com.simats.schedulytic;
+
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RecurrenceEngine}: rule parsing and the dates the
+ * occurrence iterator produces. 2025-06-03 is a Tuesday.
+ */
+public class RecurrenceEngineTest {
+    private final RecurrenceEngine engine = RecurrenceEngine.getInstance();
+
+    private static Task task(String startTime, String endTime, String repeat) {
+        return Task.builder()
+                .taskId("recurrence_test")
+                .title("Recurrence test")
+                .startTime(startTime)
+                .endTime(endTime)
+                .dueDate(startTime.substring(0, 10))
+                .repeat(repeat)
+                .build();
+    }
+
+    private List<LocalDate> dates(Task task, String from, String to) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (RecurrenceEngine.Occurrence occurrence
+                : engine.occurrences(task, LocalDate.parse(from), LocalDate.parse(to))) {
+            dates.add(occurrence.getDate());
+        }
+        return dates;
+    }
+
+    private static List<LocalDate> days(String... dates) {
+        List<LocalDate> days = new ArrayList<>();
+        for (String date : dates) {
+            days.add(LocalDate.parse(date));
+        }
+        return days;
+    }
+
+    @Test
+    public void parsesFrequencyDaysAndUntil() {
+        RecurrenceEngine.Rule rule = engine.getRule("Daily; days=MO,we,FR ;until=2025-06-30");
+        assertEquals(RecurrenceEngine.Frequency.DAILY, rule.getFrequency());
+        assertEquals(EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY), rule.getDays());
+        assertEquals(LocalDate.of(2025, 6, 30), rule.getUntil());
+        assertTrue(rule.repeats());
+    }
+
+    @Test
+    public void plainAndUnknownValuesParse() {
+        assertEquals(RecurrenceEngine.Frequency.WEEKLY, engine.getRule("weekly").getFrequency());
+        assertTrue(engine.getRule("weekly").getDays().isEmpty());
+        assertNull(engine.getRule("weekly").getUntil());
+        assertFalse(engine.getRule("none").repeats());
+        assertFalse(engine.getRule("yearly").repeats());
+        assertFalse(engine.getRule(null).repeats());
+        assertFalse(engine.getRule("").repeats());
+    }
+
+    @Test
+    public void unreadableUntilIsIgnored() {
+        RecurrenceEngine.Rule rule = engine.getRule("daily;until=someday");
+        assertEquals(RecurrenceEngine.Frequency.DAILY, rule.getFrequency());
+        assertNull(rule.getUntil());
+    }
+
+    @Test
+    public void dailyWithDaysSkipsNonMatchingAnchor() {
+        // Tuesday anchor, but the rule only allows Monday, Wednesday and Friday
+        Task task = task("2025-06-03 09:00", "2025-06-03 10:00", "daily;days=MO,WE,FR");
+        assertEquals(days("2025-06-04", "2025-06-06", "2025-06-09"), dates(task, "2025-06-01", "2025-06-09"));
+        assertFalse(engine.occursOn(task, LocalDate.of(2025, 6, 3)));
+        assertTrue(engine.occursOn(task, LocalDate.of(2025, 6, 9)));
+    }
+
+    @Test
+    public void noOccurrencesBeforeAnchor() {
+        Task task = task("2025-06-03 09:00", "2025-06-03 10:00", "daily");
+        assertTrue(dates(task, "2025-05-01", "2025-06-02").isEmpty());
+        assertEquals(days("2025-06-03", "2025-06-04"), dates(task, "2025-05-01", "2025-06-04"));
+    }
+
+    @Test
+    public void untilBoundsOccurrencesInclusively() {
+        Task task = task("2025-06-03 09:00", "2025-06-03 10:00", "daily;until=2025-06-05");
+        assertEquals(days("2025-06-03", "2025-06-04", "2025-06-05"), dates(task, "2025-06-01", "2025-06-30"));
+        assertTrue(dates(task, "2025-06-06", "2025-06-30").isEmpty());
+    }
+
+    @Test
+    public void untilBeforeAnchorYieldsNothing() {
+        Task task = task("2025-06-03 09:00", "2025-06-03 10:00", "weekly;until=2025-06-01");
+        assertTrue(dates(task, "2025-06-01", "2025-06-30").isEmpty());
+    }
+
+    @Test
+    public void weeklyStartsAtFirstWeekInWindow() {
+        Task task = task("2025-06-03 09:00", "2025-06-03 10:00", "weekly");
+        assertEquals(days("2025-06-10", "2025-06-17", "2025-06-24"), dates(task, "2025-06-04", "2025-06-24"));
+    }
+
+    @Test
+    public void monthlyKeepsAnchorDayAfterShortMonth() {
+        Task task = task("2025-01-31 09:00", "2025-01-31 10:00", "monthly");
+        assertEquals(days("2025-02-28", "2025-03-31", "2025-04-30"), dates(task, "2025-02-01", "2025-04-30"));
+    }
+
+    @Test
+    public void nonRepeatingTaskOccursOnlyOnItsDate() {
+        Task task = task("2025-06-03 09:00", "2025-06-03 10:00", "none");
+        assertEquals(days("2025-06-03"), dates(task, "2025-06-01", "2025-06-30"));
+        assertTrue(engine.occursOn(task, LocalDate.of(2025, 6, 3)));
+        assertFalse(engine.occursOn(task, LocalDate.of(2025, 6, 4)));
+    }
+
+    @Test
+    public void occurrencesKeepTimeAndLength() {
+        Task task = task("2025-06-03 09:00", "2025-06-03 10:30", "daily");
+        RecurrenceEngine.Occurrence first = engine.occurrences(task,
+                LocalDate.of(2025, 6, 3), LocalDate.of(2025, 6, 3)).iterator().next();
+        RecurrenceEngine.Occurrence later = engine.occurrences(task,
+                LocalDate.of(2025, 6, 10), LocalDate.of(2025, 6, 10)).iterator().next();
+        assertTrue(first.isFirst());
+        assertFalse(later.isFirst());
+        assertEquals(task.getStartMillis(), first.getStartMillis());
+        assertEquals(90 * 60 * 1000L, later.getEndMillis() - later.getStartMillis());
+        assertEquals(TimeFormats.sameTimeOn(task.getStartMillis(), later.getStartMillis()), later.getStartMillis());
+    }
+
+    @Test
+    public void taskWithoutStartHasNoOccurrences() {
+        Task task = Task.builder().taskId("no_start").dueDate("2025-06-03").repeat("daily").build();
+        assertFalse(engine.occurrences(task, LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30))
+                .iterator().hasNext());
+    }
+
+    @Test
+    public void expandSortsOccurrencesOfAllTasksByStart() {
+        Task morning = task("2025-06-03 09:00", "2025-06-03 10:00", "daily");
+        Task early = task("2025-06-04 07:00", "2025-06-04 08:00", "none");
+        List<RecurrenceEngine.Occurrence> occurrences = engine.expand(Arrays.asList(morning, early),
+                LocalDate.of(2025, 6, 3), LocalDate.of(2025, 6, 4));
+        assertEquals(3, occurrences.size());
+        assertSame(morning, occurrences.get(0).getTask());
+        assertSame(early, occurrences.get(1).getTask());
+        assertSame(morning, occurrences.get(2).getTask());
+    }
+}
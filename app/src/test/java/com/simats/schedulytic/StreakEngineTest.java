@@ -0,0 +1,205 @@
+package com.simats.schedulytic;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the year bitmaps of {@link StreakEngine} and the streaks
+ * computed from them. 2025-06-09 is a Monday.
+ */
+public class StreakEngineTest {
+
+    private static long[] year(String... dates) {
+        long[] words = StreakEngine.emptyYear();
+        for (String date : dates) {
+            StreakEngine.setDay(words, LocalDate.parse(date), true);
+        }
+        return words;
+    }
+
+    private static StreakEngine.Streak streak(StreakEngine.Cadence cadence, String... dates) {
+        Map<Integer, long[]> years = new TreeMap<>();
+        for (String date : dates) {
+            LocalDate day = LocalDate.parse(date);
+            long[] words = years.get(day.getYear());
+            if (words == null) {
+                words = StreakEngine.emptyYear();
+                years.put(day.getYear(), words);
+            }
+            StreakEngine.setDay(words, day, true);
+        }
+        StreakEngine.Runs runs = new StreakEngine.Runs(cadence);
+        for (Map.Entry<Integer, long[]> entry : years.entrySet()) {
+            runs.addYear(entry.getKey(), entry.getValue());
+        }
+        return runs.toStreak();
+    }
+
+    private static int current(StreakEngine.Streak streak, String today) {
+        return streak.getCurrent(LocalDate.parse(today));
+    }
+
+    @Test
+    public void leapYearKeepsDecember31() {
+        long[] words = year("2024-12-31");
+        assertEquals(1, StreakEngine.countDays(words, 365, 365));
+        assertEquals(0, StreakEngine.countDays(words, 0, 364));
+        assertEquals(1L << 45, words[5]);
+    }
+
+    @Test
+    public void leapYearCountsAll366Days() {
+        long[] words = StreakEngine.emptyYear();
+        for (LocalDate day = LocalDate.of(2024, 1, 1); day.getYear() == 2024; day = day.plusDays(1)) {
+            StreakEngine.setDay(words, day, true);
+        }
+        assertEquals(366, StreakEngine.countDays(words, 0, 365));
+
+        StreakEngine.Runs runs = new StreakEngine.Runs(StreakEngine.Cadence.DAILY);
+        runs.addYear(2024, words);
+        StreakEngine.Streak streak = runs.toStreak();
+        assertEquals(366, streak.getLongest());
+        assertEquals(366, current(streak, "2024-12-31"));
+    }
+
+    @Test
+    public void encodeAndDecodeRoundTrip() {
+        long[] words = year("2024-01-01", "2024-03-05", "2024-12-31");
+        byte[] blob = StreakEngine.encode(words);
+        assertEquals(48, blob.length);
+        assertArrayEquals(words, StreakEngine.decode(blob));
+        assertArrayEquals(StreakEngine.emptyYear(), StreakEngine.decode(null));
+    }
+
+    @Test
+    public void setDayReportsPreviousState() {
+        long[] words = StreakEngine.emptyYear();
+        LocalDate day = LocalDate.of(2025, 6, 9);
+        assertFalse(StreakEngine.setDay(words, day, true));
+        assertTrue(StreakEngine.setDay(words, day, true));
+        assertTrue(StreakEngine.setDay(words, day, false));
+        assertFalse(StreakEngine.setDay(words, day, false));
+        assertEquals(0, StreakEngine.countDays(words, 0, 364));
+    }
+
+    @Test
+    public void countsAcrossWordBoundary() {
+        // Day 64 of 2025 is March 5, the last bit of the first word
+        long[] words = year("2025-03-05", "2025-03-06");
+        assertEquals(2, StreakEngine.countDays(words, 63, 64));
+        assertEquals(1, StreakEngine.countDays(words, 64, 364));
+        assertEquals(0, StreakEngine.countDays(words, 0, 62));
+    }
+
+    @Test
+    public void dailyRunAcrossWordBoundary() {
+        StreakEngine.Streak streak = streak(StreakEngine.Cadence.DAILY,
+                "2025-03-04", "2025-03-05", "2025-03-06", "2025-03-07");
+        assertEquals(4, streak.getLongest());
+        assertEquals(4, current(streak, "2025-03-08"));
+    }
+
+    @Test
+    public void dailyStreakCrossesNewYear() {
+        StreakEngine.Streak streak = streak(StreakEngine.Cadence.DAILY,
+                "2024-12-30", "2024-12-31", "2025-01-01", "2025-01-02");
+        assertEquals(4, streak.getLongest());
+        assertEquals(4, current(streak, "2025-01-02"));
+        assertEquals(4, current(streak, "2025-01-03"));
+        assertEquals(0, current(streak, "2025-01-04"));
+    }
+
+    @Test
+    public void gapStartsNewRunButKeepsLongest() {
+        StreakEngine.Streak streak = streak(StreakEngine.Cadence.DAILY,
+                "2025-06-01", "2025-06-02", "2025-06-03", "2025-06-05");
+        assertEquals(3, streak.getLongest());
+        assertEquals(1, current(streak, "2025-06-06"));
+    }
+
+    @Test
+    public void weeklyStreakCrossesNewYear() {
+        // Mon 2024-12-30 starts the week of 2025-01-01
+        StreakEngine.Streak streak = streak(StreakEngine.Cadence.WEEKLY,
+                "2024-12-27", "2025-01-02", "2025-01-08");
+        assertEquals(3, streak.getLongest());
+        assertEquals(3, current(streak, "2025-01-19"));
+        assertEquals(0, current(streak, "2025-01-20"));
+    }
+
+    @Test
+    public void monthlyStreakCrossesNewYear() {
+        StreakEngine.Streak streak = streak(StreakEngine.Cadence.MONTHLY,
+                "2024-12-15", "2025-01-31", "2025-02-01");
+        assertEquals(3, streak.getLongest());
+        assertEquals(3, current(streak, "2025-03-31"));
+        assertEquals(0, current(streak, "2025-04-01"));
+    }
+
+    @Test
+    public void weekdaysStreakSurvivesWeekend() {
+        StreakEngine.Streak streak = streak(StreakEngine.Cadence.WEEKDAYS, "2025-06-05", "2025-06-06");
+        assertEquals(2, current(streak, "2025-06-07"));
+        assertEquals(2, current(streak, "2025-06-09"));
+        assertEquals(0, current(streak, "2025-06-10"));
+
+        StreakEngine.Streak withMonday = streak(StreakEngine.Cadence.WEEKDAYS,
+                "2025-06-05", "2025-06-06", "2025-06-09");
+        assertEquals(3, withMonday.getLongest());
+        assertEquals(3, current(withMonday, "2025-06-10"));
+    }
+
+    @Test
+    public void weekendDaysDoNotCountForWeekdays() {
+        StreakEngine.Streak streak = streak(StreakEngine.Cadence.WEEKDAYS,
+                "2025-06-06", "2025-06-07", "2025-06-08", "2025-06-09");
+        assertEquals(2, streak.getLongest());
+        assertEquals(0, streak(StreakEngine.Cadence.WEEKDAYS, "2025-06-07", "2025-06-08").getLongest());
+    }
+
+    @Test
+    public void weekendsStreakSurvivesWeek() {
+        StreakEngine.Streak streak = streak(StreakEngine.Cadence.WEEKENDS,
+                "2025-06-07", "2025-06-08", "2025-06-14");
+        assertEquals(3, streak.getLongest());
+        assertEquals(3, current(streak, "2025-06-15"));
+        assertEquals(0, current(streak, "2025-06-16"));
+    }
+
+    @Test
+    public void mondayFloorsToPreviousSunday() {
+        StreakEngine.Cadence weekends = StreakEngine.Cadence.WEEKENDS;
+        long sunday = LocalDate.of(2025, 6, 8).toEpochDay();
+        long monday = LocalDate.of(2025, 6, 9).toEpochDay();
+        long saturday = LocalDate.of(2025, 6, 14).toEpochDay();
+        assertEquals(weekends.period(sunday), weekends.floorPeriod(monday));
+        assertEquals(weekends.period(saturday), weekends.ceilPeriod(monday));
+        assertFalse(weekends.isScheduled(monday));
+
+        StreakEngine.Cadence weekdays = StreakEngine.Cadence.WEEKDAYS;
+        assertEquals(weekdays.period(monday), weekdays.ceilPeriod(sunday));
+        assertEquals(weekdays.period(monday), weekdays.period(LocalDate.of(2025, 6, 6).toEpochDay()) + 1);
+    }
+
+    @Test
+    public void parsesCadence() {
+        assertEquals(StreakEngine.Cadence.WEEKLY, StreakEngine.Cadence.of(" Weekly "));
+        assertEquals(StreakEngine.Cadence.MONTHLY, StreakEngine.Cadence.of("monthly"));
+        assertEquals(StreakEngine.Cadence.WEEKDAYS, StreakEngine.Cadence.of("WEEKDAYS"));
+        assertEquals(StreakEngine.Cadence.WEEKENDS, StreakEngine.Cadence.of("weekends"));
+        assertEquals(StreakEngine.Cadence.DAILY, StreakEngine.Cadence.of("none"));
+        assertEquals(StreakEngine.Cadence.DAILY, StreakEngine.Cadence.of(null));
+    }
+
+    @Test
+    public void noCompletionsIsNoStreak() {
+        StreakEngine.Streak streak = streak(StreakEngine.Cadence.DAILY);
+        assertEquals(0, streak.getLongest());
+        assertEquals(0, current(streak, "2025-06-09"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.simats.schedulytic;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TaskIds}
+ */
+public class TaskIdsTest {
+
+    @Test
+    public void newIdsAreClientIds() {
+        String id = TaskIds.newId();
+        assertTrue(TaskIds.isClientId(id));
+        assertNotEquals(id, TaskIds.newId());
+    }
+
+    @Test
+    public void serverIdsAreNotClientIds() {
+        assertFalse(TaskIds.isClientId("42"));
+        assertFalse(TaskIds.isClientId(null));
+        assertFalse(TaskIds.isClientId(""));
+        // 36 characters, but not a UUID
+        assertFalse(TaskIds.isClientId("zzzzzzzz-zzzz-zzzz-zzzz-zzzzzzzzzzzz"));
+        // A valid UUID string that is not in canonical form
+        assertFalse(TaskIds.isClientId("1-2-3-4-5"));
+    }
+
+    @Test
+    public void numericIdsKeepTheirNotificationId() {
+        assertEquals(42, TaskIds.notificationId("42"));
+        assertEquals(0, TaskIds.notificationId(null));
+    }
+
+    @Test
+    public void otherIdsAreHashedWithFnv1a() {
+        assertEquals(0x811c9dc5, TaskIds.notificationId(""));
+        assertEquals(0xe40c292c, TaskIds.notificationId("a"));
+        assertEquals(0x1a47e90b, TaskIds.notificationId("abc"));
+        String id = "3f2b8c1e-9a4d-4e7b-8c21-5d6f7a8b9c0d";
+        assertEquals(TaskIds.notificationId(id), TaskIds.notificationId(new String(id)));
+    }
+
+    @Test
+    public void stableIdOfNumericIdIsTheNumber() {
+        assertEquals(42L, TaskIds.stableId("42"));
+        assertEquals(10000000000L, TaskIds.stableId("10000000000"));
+        assertEquals(0L, TaskIds.stableId(null));
+    }
+
+    @Test
+    public void stableIdOfUuidFoldsBothHalves() {
+        String id = "3f2b8c1e-9a4d-4e7b-8c21-5d6f7a8b9c0d";
+        UUID uuid = UUID.fromString(id);
+        assertEquals(uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits(), TaskIds.stableId(id));
+    }
+
+    @Test
+    public void stableIdOfOtherIdsCombinesBothHashes() {
+        assertEquals(((long) "abc".hashCode() << 32) | 0x1a47e90bL, TaskIds.stableId("abc"));
+    }
+
+    @Test
+    public void requestCodesAreDistinctPerSlot() {
+        assertEquals(4201, TaskIds.requestCode("42", 1));
+        assertEquals(4202, TaskIds.requestCode("42", 2));
+        assertNotEquals(TaskIds.requestCode("abc", 1), TaskIds.requestCode("abc", 2));
+    }
+
+    @Test
+    public void requestCodesDoNotOverflow() {
+        // FNV-1a of "abc" is 440920331, whose key is reduced modulo 21474836
+        assertEquals(1142361101, TaskIds.requestCode("abc", 1));
+        assertEquals(21474831 * 100 + 3, TaskIds.requestCode("-5", 3));
+        assertEquals(2147483599, TaskIds.requestCode("21474835", 99));
+        for (int i = 0; i < 1000; i++) {
+            int code = TaskIds.requestCode(TaskIds.newId(), 99);
+            assertTrue(code >= 0);
+            assertEquals(99, code % 100);
+        }
+    }
+
+    @Test
+    public void idsThatCollidedOnOverflowGetDistinctCodes() {
+        // 1 * 100 and (1 + 2^30) * 100 were equal modulo 2^32 before keys were reduced
+        assertNotEquals(TaskIds.requestCode("1", 0), TaskIds.requestCode("1073741825", 0));
+    }
+}
@@ -0,0 +1,131 @@
+package com.simats.schedulytic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TimeFormats}
+ */
+public class TimeFormatsTest {
+    private static final long MINUTE_MS = 60 * 1000L;
+
+    private Locale previousLocale;
+
+    @Before
+    public void useUsLocale() {
+        previousLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void restoreLocale() {
+        Locale.setDefault(previousLocale);
+    }
+
+    private static long millis(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void parsesDateAndTime() {
+        assertEquals(millis(2025, 6, 3, 9, 30), TimeFormats.parseTaskTime("2025-06-03 09:30", null));
+        assertEquals(millis(2025, 6, 3, 9, 30), TimeFormats.parseTaskTime("2025-06-03 09:30:00", "2025-01-01"));
+        assertEquals(millis(2025, 6, 3, 9, 30) + 15000, TimeFormats.parseTaskTime(" 2025-06-03 09:30:15 ", null));
+    }
+
+    @Test
+    public void parsesTimeOnDueDate() {
+        assertEquals(millis(2025, 6, 3, 14, 0), TimeFormats.parseTaskTime("14:00", "2025-06-03"));
+        assertEquals(millis(2025, 6, 3, 14, 0), TimeFormats.parseTaskTime("14:00:00", "2025-06-03"));
+    }
+
+    @Test
+    public void timeWithoutDateFallsOnToday() {
+        LocalDate today = LocalDate.now();
+        long expected = today.atTime(8, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(expected, TimeFormats.parseTaskTime("08:00", ""));
+    }
+
+    @Test
+    public void unreadableTimesAreMinusOne() {
+        assertEquals(-1, TimeFormats.parseTaskTime(null, "2025-06-03"));
+        assertEquals(-1, TimeFormats.parseTaskTime("", "2025-06-03"));
+        assertEquals(-1, TimeFormats.parseTaskTime("9am", "2025-06-03"));
+        assertEquals(-1, TimeFormats.parseTaskTime("25:00", "2025-06-03"));
+        assertEquals(-1, TimeFormats.parseTaskTime("09:00", "June 3"));
+    }
+
+    @Test
+    public void parsesDateAtStartOfDay() {
+        assertEquals(millis(2025, 6, 3, 0, 0), TimeFormats.parseDate("2025-06-03"));
+        assertEquals(-1, TimeFormats.parseDate(null));
+        assertEquals(-1, TimeFormats.parseDate(""));
+        assertEquals(-1, TimeFormats.parseDate("2025-13-01"));
+    }
+
+    @Test
+    public void formatsTimeOfDay() {
+        assertEquals("9:30 AM", TimeFormats.formatTime(millis(2025, 6, 3, 9, 30)));
+        assertEquals("12:00 PM", TimeFormats.formatTime(millis(2025, 6, 3, 12, 0)));
+        assertEquals("11:05 PM", TimeFormats.formatTime(millis(2025, 6, 3, 23, 5)));
+        // Seconds within the minute share the cached string
+        assertEquals("9:30 AM", TimeFormats.formatTime(millis(2025, 6, 3, 9, 30) + 59000));
+    }
+
+    @Test
+    public void formatsTimeRange() {
+        assertEquals("9:00 AM - 10:30 AM",
+                TimeFormats.formatTimeRange(millis(2025, 6, 3, 9, 0), millis(2025, 6, 3, 10, 30)));
+    }
+
+    @Test
+    public void formatCacheFollowsLocale() {
+        long time = millis(2025, 6, 3, 21, 15);
+        assertEquals("9:15 PM", TimeFormats.formatTime(time));
+        Locale.setDefault(Locale.KOREA);
+        String expected = DateTimeFormatter.ofPattern("h:mm a", Locale.KOREA)
+                .format(Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()));
+        assertNotEquals("9:15 PM", expected);
+        assertEquals(expected, TimeFormats.formatTime(time));
+    }
+
+    @Test
+    public void formatsDuration() {
+        long start = millis(2025, 6, 3, 9, 0);
+        assertEquals("45m", TimeFormats.formatDuration(start, start + 45 * MINUTE_MS));
+        assertEquals("1h 30m", TimeFormats.formatDuration(start, start + 90 * MINUTE_MS));
+        assertEquals("2h", TimeFormats.formatDuration(start, start + 120 * MINUTE_MS));
+        assertEquals("0m", TimeFormats.formatDuration(start, start));
+    }
+
+    @Test
+    public void durationEndingBeforeStartRunsPastMidnight() {
+        assertEquals("2h", TimeFormats.formatDuration(millis(2025, 6, 3, 23, 0), millis(2025, 6, 3, 1, 0)));
+    }
+
+    @Test
+    public void movesTimeToAnotherDay() {
+        long time = millis(2025, 6, 3, 9, 45);
+        assertEquals(millis(2025, 6, 20, 9, 45), TimeFormats.sameTimeOn(time, millis(2025, 6, 20, 18, 0)));
+    }
+
+    @Test
+    public void taskEndBeforeStartIsOnNextDay() {
+        Task task = Task.builder().taskId("overnight").dueDate("2025-06-03")
+                .startTime("23:00").endTime("01:00").build();
+        assertEquals(millis(2025, 6, 3, 23, 0), task.getStartMillis());
+        assertEquals(task.getStartMillis() + 120 * MINUTE_MS, task.getEndMillis());
+        assertEquals(millis(2025, 6, 3, 0, 0), task.getDueDateMillis());
+    }
+}
@@ -0,0 +1,129 @@
+<?php
+include 'db.php';
+include 'mutation_operations.php';
+
+header('Content-Type: application/json');
+
+// Applies a batch of task status, completion and time changes in one transaction,
+// so completing, skipping or rescheduling several tasks costs one round trip and one
+// commit. Request and result shapes match replay_mutations.php:
+//   { "user_id": 1, "changes": [ { "idempotency_key", "operation", "payload" } ] }
+// with operation one of update_task_status, task_completion or update_task.
+//
+// A rejected change is rolled back to its own savepoint and the rest still commit.
+// Any other failure rolls back the whole batch and every change is reported as error.
+// Keys already in applied_mutations return their stored result without re-applying.
+
+$allowed_operations = ['update_task_status', 'task_completion', 'update_task'];
+
+if ($_SERVER['REQUEST_METHOD'] !== 'POST') {
+    echo json_encode(['status' => 'error', 'message' => 'Invalid request method. Only POST is allowed.']);
+    exit;
+}
+
+$data = readRequestBody();
+
+$user_id = $data['user_id'] ?? null;
+$changes = $data['changes'] ?? null;
+
+if (empty($user_id)) {
+    echo json_encode(['status' => 'error', 'message' => 'User ID is required.']);
+    exit;
+}
+
+if (!is_array($changes) || empty($changes)) {
+    echo json_encode(['status' => 'error', 'message' => 'Changes are required.']);
+    exit;
+}
+
+// Must be a JSON list; an object's keys are client data
+if ($changes !== array_values($changes)) {
+    echo json_encode(['status' => 'error', 'message' => 'Changes must be a list.']);
+    exit;
+}
+
+if (count($changes) > 100) {
+    echo json_encode(['status' => 'error', 'message' => 'Too many changes in one batch.']);
+    exit;
+}
+
+$results = [];
+try {
+    $pdo->beginTransaction();
+
+    $select_applied = $pdo->prepare("SELECT response FROM applied_mutations WHERE idempotency_key = :key FOR UPDATE");
+    $insert_applied = $pdo->prepare("
+        INSERT INTO applied_mutations (idempotency_key, user_id, operation, response)
+        VALUES (:key, :user_id, :operation, :response)
+    ");
+
+    $savepoint_count = 0;
+    foreach ($changes as $change) {
+        if (!is_array($change)) {
+            $results[] = ['idempotency_key' => '', 'status' => 'rejected', 'message' => 'Malformed change.'];
+            continue;
+        }
+        $key = $change['idempotency_key'] ?? '';
+        $operation = $change['operation'] ?? '';
+        $payload = $change['payload'] ?? [];
+
+        if (!is_string($key) || $key === '' || !in_array($operation, $allowed_operations, true) || !is_array($payload)) {
+            $results[] = ['idempotency_key' => $key, 'status' => 'rejected', 'message' => 'Malformed change.'];
+            continue;
+        }
+
+        $select_applied->execute([':key' => $key]);
+        $stored = $select_applied->fetchColumn();
+        $select_applied->closeCursor();
+        if ($stored !== false) {
+            $result = json_decode($stored, true) ?: [];
+            $result['idempotency_key'] = $key;
+            $result['status'] = 'success';
+            $result['duplicate'] = true;
+            $results[] = $result;
+            continue;
+        }
+
+        // Named from a local counter only, never from request data
+        $savepoint = 'change_' . (++$savepoint_count);
+        $pdo->exec("SAVEPOINT $savepoint");
+        try {
+            $result = ['status' => 'success', 'data' => runOperation($pdo, $user_id, $operation, $payload)];
+            $insert_applied->execute([
+                ':key' => $key,
+                ':user_id' => $user_id,
+                ':operation' => $operation,
+                ':response' => json_encode($result)
+            ]);
+            $pdo->exec("RELEASE SAVEPOINT $savepoint");
+            $result['idempotency_key'] = $key;
+            $results[] = $result;
+        } catch (RejectedMutation $e) {
+            $pdo->exec("ROLLBACK TO SAVEPOINT $savepoint");
+            $results[] = ['idempotency_key' => $key, 'status' => 'rejected', 'message' => $e->getMessage()];
+        }
+    }
+
+    $pdo->commit();
+} catch (Exception $e) {
+    if ($pdo->inTransaction()) {
+        $pdo->rollBack();
+    }
+    error_log("Error in batch_update_tasks.php: " . $e->getMessage());
+
+    // Nothing was committed, so every change has to be retried
+    $results = [];
+    foreach ($changes as $change) {
+        $results[] = [
+            'idempotency_key' => $change['idempotency_key'] ?? '',
+            'status' => 'error',
+            'message' => 'Database error: ' . $e->getMessage()
+        ];
+    }
+}
+
+echo json_encode([
+    'status' => 'success',
+    'results' => $results
+]);
+?>
@@ -5,7 +5,7 @@
  * This script handles:
  * - Task completion status update
  * - XP reward (+2.0) for on-time completion
- * - XP penalty (-0.5) for skipped tasks
+ * - XP penalty (-0.5) for skipped tasks, as entries in the XP ledger
  * - Logging completion time and status
  */
 
@@ -22,6 +22,8 @@ if ($_SERVER['REQUEST_METHOD'] === 'OPTIONS') {
 
 // Database connection
 require_once 'db_connect.php';
+require_once 'mutation_operations.php';
+require_once 'xp_ledger.php';
 
 if ($_SERVER['REQUEST_METHOD'] !== 'POST') {
     echo json_encode(['status' => 'error', 'message' => 'Only POST method allowed']);
@@ -65,6 +67,16 @@ try {
     // Start transaction
     $pdo->beginTransaction();
     
+    // Tasks created on a device are known by their client UUID; the tables below use the row id
+    $task_key = $task_id;
+    try {
+        $task_id = resolveTaskId($pdo, $user_id, $task_key);
+    } catch (RejectedMutation $e) {
+        $pdo->rollBack();
+        echo json_encode(['status' => 'error', 'message' => 'Task not found']);
+        exit;
+    }
+    
     // 1. Update task status
     $update_task_sql = "UPDATE tasks SET 
                         status = :status, 
@@ -86,28 +98,17 @@ try {
         exit;
     }
     
-    // 2. Update user XP points
-    $current_xp = 0;
-    $new_xp = 0;
-    
-    // Get current XP
-    $get_xp_sql = "SELECT xp_points FROM users WHERE id = :user_id";
-    $xp_stmt = $pdo->prepare($get_xp_sql);
-    $xp_stmt->execute([':user_id' => $user_id]);
-    $user_row = $xp_stmt->fetch(PDO::FETCH_ASSOC);
-    
-    if ($user_row) {
-        $current_xp = floatval($user_row['xp_points']);
-        $new_xp = max(0, $current_xp + floatval($xp_change)); // Prevent negative XP
-        
-        // Update XP
-        $update_xp_sql = "UPDATE users SET xp_points = :xp_points WHERE id = :user_id";
-        $update_xp_stmt = $pdo->prepare($update_xp_sql);
-        $update_xp_stmt->execute([
-            ':xp_points' => $new_xp,
-            ':user_id' => $user_id
-        ]);
+    // 2. Add the XP entry for this completion; a retried request finds it and adds nothing
+    $xp = ['added' => false, 'amount' => 0.0, 'balance' => 0.0];
+    if (floatval($xp_change) != 0) {
+        $xp_key = $data['xp_entry_key'] ?? taskXpKey($task_key, substr($completed_at, 0, 10), $status);
+        $xp_reason = $data['xp_reason'] ?? (floatval($xp_change) < 0 ? 'penalty' : 'remainder');
+        $xp = addXpEntry($pdo, $user_id, $xp_key, floatval($xp_change), $xp_reason);
+    } else {
+        $xp['balance'] = readXpBalance($pdo, $user_id);
     }
+    $new_xp = $xp['balance'];
+    $current_xp = $new_xp - $xp['amount'];
     
     // 3. Log the completion in task_completions table (create if not exists)
     $create_log_table = "CREATE TABLE IF NOT EXISTS task_completions (
@@ -144,6 +145,7 @@ try {
                          ON DUPLICATE KEY UPDATE created_at = NOW()";
         $activity_stmt = $pdo->prepare($activity_sql);
         $activity_stmt->execute([':user_id' => $user_id]);
+        recordActiveDay($pdo, $user_id, date('Y-m-d'));
     }
     
     // Commit transaction
@@ -154,9 +156,10 @@ try {
         'status' => 'success',
         'message' => 'Task ' . $status . ' successfully',
         'data' => [
-            'task_id' => $task_id,
+            'task_id' => $task_key,
             'new_status' => $status,
             'xp_change' => floatval($xp_change),
+            'xp_applied' => $xp['amount'],
             'previous_xp' => $current_xp,
             'new_xp' => $new_xp,
             'completed_at' => $completed_at
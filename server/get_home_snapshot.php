@@ -0,0 +1,110 @@
+<?php
+include 'db.php';
+include 'user_streaks.php';
+
+header('Content-Type: application/json');
+
+// Everything the home screen shows on open in one response: profile and XP,
+// today's tasks, habits with today's completion, and the streak window.
+// Row shapes match sync_changes.php (tasks, habits), get_user_profile.php (profile)
+// and get_user_streak.php (streak), so the client reuses its existing parsers.
+if ($_SERVER['REQUEST_METHOD'] === 'GET') {
+    $user_id = $_GET['user_id'] ?? null;
+    $date = $_GET['date'] ?? date('Y-m-d');
+    $streak_days = isset($_GET['streak_days']) ? (int)$_GET['streak_days'] : 30;
+
+    // Validate inputs
+    if (empty($user_id)) {
+        echo json_encode(['status' => 'error', 'message' => 'User ID is required.']);
+        exit;
+    }
+
+    if (!preg_match('/^\d{4}-\d{2}-\d{2}$/', $date)) {
+        echo json_encode(['status' => 'error', 'message' => 'Invalid date format. Use YYYY-MM-DD.']);
+        exit;
+    }
+
+    $streak_days = max(1, min($streak_days, 60));
+    $streak_start = date('Y-m-d', strtotime($date . ' -' . ($streak_days - 1) . ' days'));
+
+    try {
+        $stmt = $pdo->prepare("SELECT name, avatar_url, xp_points FROM users WHERE user_id = :user_id");
+        $stmt->execute([':user_id' => $user_id]);
+        $user = $stmt->fetch(PDO::FETCH_ASSOC) ?: [];
+        $streak = readUserStreak($pdo, $user_id);
+        $profile = [
+            'name' => $user['name'] ?? '',
+            'avatar_url' => $user['avatar_url'] ?? '',
+            'streak_count' => $streak['streak_count'],
+            'xp_points' => (int)($user['xp_points'] ?? 0)
+        ];
+
+        // Same status rule as get_today_tasks.php: a completion on the due date wins
+        $stmt = $pdo->prepare("
+            SELECT COALESCE(t.client_id, t.id) AS id, COALESCE(t.client_id, t.id) AS task_id, t.user_id, t.title, t.description, t.start_time, t.end_time,
+                   DATE(t.due_date) AS due_date, t.repeat_frequency, t.priority, t.current_streak,
+                   CASE
+                       WHEN t.task_type = '' OR t.task_type IS NULL THEN 'remainder'
+                       ELSE t.task_type
+                   END AS task_type,
+                   CASE
+                       WHEN EXISTS (
+                           SELECT 1 FROM task_completions tc
+                           WHERE tc.task_id = t.id
+                           AND tc.user_id = t.user_id
+                           AND tc.completion_date = DATE(t.due_date)
+                       ) THEN 'completed'
+                       ELSE t.status
+                   END AS status
+            FROM tasks t
+            WHERE t.user_id = :user_id AND DATE(t.due_date) = :date
+            ORDER BY t.start_time
+        ");
+        $stmt->execute([':user_id' => $user_id, ':date' => $date]);
+        $tasks = $stmt->fetchAll(PDO::FETCH_ASSOC);
+
+        $stmt = $pdo->prepare("
+            SELECT h.*,
+                   CASE WHEN hc.completion_date IS NOT NULL THEN 1 ELSE 0 END AS completed_today
+            FROM habits h
+            LEFT JOIN habit_completions hc
+                ON h.habit_id = hc.habit_id
+                AND hc.user_id = h.user_id
+                AND hc.completion_date = :date
+            WHERE h.user_id = :user_id
+        ");
+        $stmt->execute([':user_id' => $user_id, ':date' => $date]);
+        $habits = $stmt->fetchAll(PDO::FETCH_ASSOC);
+
+        $stmt = $pdo->prepare("
+            SELECT active_date FROM user_active_days
+            WHERE user_id = :user_id AND active_date BETWEEN :start_date AND :end_date
+            ORDER BY active_date
+        ");
+        $stmt->execute([':user_id' => $user_id, ':start_date' => $streak_start, ':end_date' => $date]);
+        $streak_data = [];
+        foreach ($stmt->fetchAll(PDO::FETCH_COLUMN) as $active_date) {
+            $streak_data[] = ['date' => $active_date, 'has_activity' => true];
+        }
+
+        echo json_encode([
+            'status' => 'success',
+            'date' => $date,
+            'profile' => $profile,
+            'tasks' => $tasks,
+            'habits' => $habits,
+            'streak' => [
+                'streak_count' => $streak['streak_count'],
+                'longest_streak' => $streak['longest_streak'],
+                'streak_data' => $streak_data,
+                'start_date' => $streak_start,
+                'end_date' => $date
+            ]
+        ]);
+    } catch (PDOException $e) {
+        echo json_encode(['status' => 'error', 'message' => 'Database error: ' . $e->getMessage()]);
+    }
+} else {
+    echo json_encode(['status' => 'error', 'message' => 'Invalid request method. Only GET is allowed.']);
+}
+?>
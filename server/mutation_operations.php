@@ -0,0 +1,348 @@
+<?php
+// Task and habit write operations shared by replay_mutations.php and
+// batch_update_tasks.php. Each function runs inside the caller's transaction and
+// returns the result data; it throws RejectedMutation for input that can never succeed.
+
+include_once 'user_streaks.php';
+include_once 'xp_ledger.php';
+
+class RejectedMutation extends Exception {}
+
+// Request body of a batch endpoint. The client gzips large outbox batches and marks
+// them with Content-Encoding: gzip; anything else is read as plain JSON.
+function readRequestBody() {
+    $input = file_get_contents('php://input');
+    $encoding = strtolower($_SERVER['HTTP_CONTENT_ENCODING'] ?? '');
+    if ($encoding === 'gzip') {
+        $input = gzdecode($input);
+        if ($input === false) {
+            return null;
+        }
+    }
+    return json_decode($input, true);
+}
+
+function runOperation($pdo, $user_id, $operation, $payload) {
+    switch ($operation) {
+        case 'add_task':
+            return addTask($pdo, $user_id, $payload);
+        case 'update_task':
+            return updateTask($pdo, $user_id, $payload);
+        case 'update_task_status':
+            return updateTaskStatus($pdo, $user_id, $payload);
+        case 'task_completion':
+            return taskCompletion($pdo, $user_id, $payload);
+        case 'delete_task':
+            return deleteTask($pdo, $user_id, $payload);
+        case 'add_habit':
+            return addHabit($pdo, $user_id, $payload);
+        case 'update_habit':
+            return updateHabit($pdo, $user_id, $payload);
+        case 'habit_streak':
+            return habitStreak($pdo, $user_id, $payload);
+        case 'delete_habit':
+            return deleteHabit($pdo, $user_id, $payload);
+        default:
+            throw new RejectedMutation('Unknown operation: ' . $operation);
+    }
+}
+
+function requireField($payload, $field) {
+    if (!isset($payload[$field]) || $payload[$field] === '') {
+        throw new RejectedMutation(ucfirst(str_replace('_', ' ', $field)) . ' is required.');
+    }
+    return $payload[$field];
+}
+
+// Tasks created on a device are identified by a client-generated UUID
+function isClientTaskId($task_id) {
+    return is_string($task_id)
+        && preg_match('/^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$/i', $task_id) === 1;
+}
+
+// Numeric row id of the user's task, given its numeric id or its client UUID
+function resolveTaskId($pdo, $user_id, $task_id) {
+    if (!isClientTaskId($task_id)) {
+        return $task_id;
+    }
+    $stmt = $pdo->prepare("SELECT id FROM tasks WHERE client_id = :client_id AND user_id = :user_id");
+    $stmt->execute([':client_id' => $task_id, ':user_id' => $user_id]);
+    $id = $stmt->fetchColumn();
+    if ($id === false) {
+        throw new RejectedMutation('Task not found or access denied.');
+    }
+    return $id;
+}
+
+// Same columns and defaults as add_task.php. A client UUID in task_id is kept as the
+// task's ID, and doubles as an idempotency key: adding it again returns the same task.
+function addTask($pdo, $user_id, $payload) {
+    $title = trim($payload['title'] ?? '');
+    $task_type = requireField($payload, 'task_type');
+    if ($title === '') {
+        throw new RejectedMutation('Title is required.');
+    }
+
+    $client_id = isClientTaskId($payload['task_id'] ?? null) ? strtolower($payload['task_id']) : null;
+    if ($client_id !== null) {
+        $stmt = $pdo->prepare("SELECT 1 FROM tasks WHERE client_id = :client_id AND user_id = :user_id");
+        $stmt->execute([':client_id' => $client_id, ':user_id' => $user_id]);
+        if ($stmt->fetchColumn() !== false) {
+            return ['task_id' => $client_id];
+        }
+    }
+
+    $stmt = $pdo->prepare("
+        INSERT INTO tasks (user_id, client_id, task_type, title, description, start_time, end_time, due_date, status, repeat_frequency, priority)
+        VALUES (:user_id, :client_id, :task_type, :title, :description, :start_time, :end_time, :due_date, :status, :repeat_frequency, :priority)
+    ");
+    $stmt->execute([
+        ':user_id' => $user_id,
+        ':client_id' => $client_id,
+        ':task_type' => $task_type,
+        ':title' => $title,
+        ':description' => $payload['description'] ?? '',
+        ':start_time' => $payload['start_time'] ?? null,
+        ':end_time' => $payload['end_time'] ?? null,
+        ':due_date' => $payload['due_date'] ?? null,
+        ':status' => $payload['status'] ?? 'pending',
+        ':repeat_frequency' => $payload['repeat_frequency'] ?? 'none',
+        ':priority' => $payload['priority'] ?? 'medium'
+    ]);
+
+    return ['task_id' => $client_id ?? $pdo->lastInsertId()];
+}
+
+// Same fields as update_task.php, restricted to the user's own task
+function updateTask($pdo, $user_id, $payload) {
+    $task_key = requireField($payload, 'task_id');
+    $task_id = resolveTaskId($pdo, $user_id, $task_key);
+
+    $updates = [];
+    $params = [];
+    foreach (['status', 'priority', 'start_time', 'end_time'] as $field) {
+        if (!empty($payload[$field])) {
+            $updates[] = "$field = :$field";
+            $params[":$field"] = $payload[$field];
+        }
+    }
+    if (empty($updates)) {
+        throw new RejectedMutation('No fields to update.');
+    }
+
+    $params[':task_id'] = $task_id;
+    $params[':user_id'] = $user_id;
+    $stmt = $pdo->prepare("UPDATE tasks SET " . implode(", ", $updates) . " WHERE id = :task_id AND user_id = :user_id");
+    $stmt->execute($params);
+
+    return ['task_id' => $task_key];
+}
+
+// Same validation as update_task_status.php
+function updateTaskStatus($pdo, $user_id, $payload) {
+    $task_key = requireField($payload, 'task_id');
+    $task_id = resolveTaskId($pdo, $user_id, $task_key);
+    $status = requireField($payload, 'status');
+
+    $validStatuses = ['pending', 'in_progress', 'completed', 'cancelled', 'skipped_today'];
+    if (!in_array($status, $validStatuses)) {
+        throw new RejectedMutation('Invalid status value.');
+    }
+
+    $stmt = $pdo->prepare("UPDATE tasks SET status = :status WHERE id = :task_id AND user_id = :user_id");
+    $stmt->execute([':status' => $status, ':task_id' => $task_id, ':user_id' => $user_id]);
+
+    return ['task_id' => $task_key, 'new_status' => $status];
+}
+
+// Same effect as task_completion.php; completing twice on one date is a no-op
+function taskCompletion($pdo, $user_id, $payload) {
+    $task_key = requireField($payload, 'task_id');
+    $task_id = resolveTaskId($pdo, $user_id, $task_key);
+    $date = $payload['date'] ?? date('Y-m-d');
+    $action = ($payload['action'] ?? 'complete') === 'remove' ? 'remove' : 'complete';
+
+    $stmt = $pdo->prepare("SELECT task_type FROM tasks WHERE id = :task_id AND user_id = :user_id");
+    $stmt->execute([':task_id' => $task_id, ':user_id' => $user_id]);
+    if ($stmt->fetch(PDO::FETCH_ASSOC) === false) {
+        throw new RejectedMutation('Task not found or access denied.');
+    }
+
+    $params = [':task_id' => $task_id, ':user_id' => $user_id, ':date' => $date];
+    if ($action === 'complete') {
+        $stmt = $pdo->prepare("
+            SELECT 1 FROM task_completions
+            WHERE task_id = :task_id AND user_id = :user_id AND completion_date = :date
+        ");
+        $stmt->execute($params);
+        if ($stmt->fetchColumn() === false) {
+            $stmt = $pdo->prepare("
+                INSERT INTO task_completions (task_id, user_id, completion_date, completion_time)
+                VALUES (:task_id, :user_id, :date, NOW())
+            ");
+            $stmt->execute($params);
+        }
+        recordActiveDay($pdo, $user_id, $date);
+        $new_status = 'completed';
+    } else {
+        $stmt = $pdo->prepare("
+            DELETE FROM task_completions
+            WHERE task_id = :task_id AND user_id = :user_id AND completion_date = :date
+        ");
+        $stmt->execute($params);
+        $new_status = 'pending';
+    }
+
+    $stmt = $pdo->prepare("UPDATE tasks SET status = :status, updated_at = NOW() WHERE id = :task_id AND user_id = :user_id");
+    $stmt->execute([':status' => $new_status, ':task_id' => $task_id, ':user_id' => $user_id]);
+
+    return ['task_id' => $task_key, 'action' => $action, 'date' => $date];
+}
+
+function deleteTask($pdo, $user_id, $payload) {
+    $task_key = requireField($payload, 'task_id');
+    try {
+        $task_id = resolveTaskId($pdo, $user_id, $task_key);
+    } catch (RejectedMutation $e) {
+        // Already gone; deleting it again changes nothing
+        return ['task_id' => $task_key];
+    }
+
+    $stmt = $pdo->prepare("DELETE FROM tasks WHERE id = :task_id AND user_id = :user_id");
+    $stmt->execute([':task_id' => $task_id, ':user_id' => $user_id]);
+
+    return ['task_id' => $task_key];
+}
+
+// Same columns and trust_type mapping as add_habit.php
+function addHabit($pdo, $user_id, $payload) {
+    $title = requireField($payload, 'title');
+    $trust_type = $payload['trust_type'] ?? 'checkbox';
+    if ($trust_type === 'location') {
+        $trust_type = 'map';
+    }
+
+    $stmt = $pdo->prepare("
+        INSERT INTO habits (user_id, title, reminder_date, reminder_time, frequency, trust_type, map_lat, map_lon, pomodoro_duration, created_at)
+        VALUES (:user_id, :title, :reminder_date, :reminder_time, :frequency, :trust_type, :map_lat, :map_lon, :pomodoro_duration, :created_at)
+    ");
+    $stmt->execute([
+        ':user_id' => $user_id,
+        ':title' => $title,
+        ':reminder_date' => $payload['reminder_date'] ?? null,
+        ':reminder_time' => $payload['reminder_time'] ?? null,
+        ':frequency' => $payload['frequency'] ?? 'none',
+        ':trust_type' => $trust_type,
+        ':map_lat' => $payload['map_lat'] ?? null,
+        ':map_lon' => $payload['map_lon'] ?? null,
+        ':pomodoro_duration' => $payload['pomodoro_duration'] ?? null,
+        ':created_at' => date("Y-m-d H:i")
+    ]);
+
+    return ['habit_id' => $pdo->lastInsertId()];
+}
+
+// Same steps as update_habit.php
+function updateHabit($pdo, $user_id, $payload) {
+    $habit_id = requireField($payload, 'habit_id');
+    if (!isset($payload['completed'])) {
+        throw new RejectedMutation('Completed status is required.');
+    }
+    $completed = (int)$payload['completed'];
+    $date = $payload['date'] ?? date('Y-m-d');
+    $verification_type = $payload['verification_type'] ?? 'checkbox';
+
+    $xp_rewards = [
+        'checkbox' => 1.0,
+        'location' => 1.5,
+        'pomodoro' => 2.0
+    ];
+    $xp_change = $completed ? ($xp_rewards[$verification_type] ?? 1.0) : 0;
+
+    $stmt = $pdo->prepare("SELECT completion_id FROM completions WHERE habit_id = :habit_id AND date = :date");
+    $stmt->execute([':habit_id' => $habit_id, ':date' => $date]);
+    $existing = $stmt->fetch(PDO::FETCH_ASSOC);
+
+    $progress = $completed ? 'completed' : 'not_completed';
+    $is_trusted = $verification_type === 'checkbox' ? 0 : 1;
+    if ($existing) {
+        $stmt = $pdo->prepare("UPDATE completions SET progress = :progress, is_trusted = :is_trusted WHERE completion_id = :completion_id");
+        $stmt->execute([
+            ':progress' => $progress,
+            ':is_trusted' => $is_trusted,
+            ':completion_id' => $existing['completion_id']
+        ]);
+    } else {
+        $stmt = $pdo->prepare("INSERT INTO completions (habit_id, date, progress, is_trusted) VALUES (:habit_id, :date, :progress, :is_trusted)");
+        $stmt->execute([
+            ':habit_id' => $habit_id,
+            ':date' => $date,
+            ':progress' => $progress,
+            ':is_trusted' => $is_trusted
+        ]);
+    }
+
+    $stmt = $pdo->prepare("
+        UPDATE habits SET current_streak = :current_streak, total_completions = :total_completions,
+                          last_completed_date = :last_completed_date
+        WHERE habit_id = :habit_id AND user_id = :user_id
+    ");
+    $stmt->execute([
+        ':current_streak' => $payload['current_streak'] ?? 0,
+        ':total_completions' => $payload['total_completions'] ?? 0,
+        ':last_completed_date' => $completed ? $date : null,
+        ':habit_id' => $habit_id,
+        ':user_id' => $user_id
+    ]);
+
+    if ($completed && $xp_change > 0) {
+        addXpEntry($pdo, $user_id, $payload['xp_entry_key'] ?? habitXpKey($habit_id, $date), $xp_change, 'habit');
+
+        $stmt = $pdo->prepare("
+            INSERT INTO user_activity_log (user_id, activity_type, activity_data, created_at)
+            VALUES (:user_id, 'habit_completed', :activity_data, NOW())
+        ");
+        $stmt->execute([
+            ':user_id' => $user_id,
+            ':activity_data' => json_encode([
+                'habit_id' => $habit_id,
+                'date' => $date,
+                'verification_type' => $verification_type,
+                'xp_earned' => $xp_change
+            ])
+        ]);
+    }
+    if ($completed) {
+        recordActiveDay($pdo, $user_id, $date);
+    }
+
+    return ['habit_id' => $habit_id, 'completed' => $completed, 'xp_earned' => $xp_change, 'date' => $date];
+}
+
+// Same streak rule as update_habit_streak.php
+function habitStreak($pdo, $user_id, $payload) {
+    $habit_id = requireField($payload, 'habit_id');
+
+    $stmt = $pdo->prepare("
+        SELECT COUNT(DISTINCT completion_date) AS streak
+        FROM habit_completions
+        WHERE habit_id = :habit_id AND user_id = :user_id
+        AND completion_date >= DATE_SUB(CURDATE(), INTERVAL 7 DAY)
+    ");
+    $stmt->execute([':habit_id' => $habit_id, ':user_id' => $user_id]);
+    $streak = (int)$stmt->fetchColumn();
+
+    // users.streak_count is the user's day streak, kept by recordActiveDay(); a habit's
+    // weekly count is not written to it
+    return ['habit_id' => $habit_id, 'streak' => $streak];
+}
+
+function deleteHabit($pdo, $user_id, $payload) {
+    $habit_id = requireField($payload, 'habit_id');
+
+    $stmt = $pdo->prepare("DELETE FROM habits WHERE habit_id = :habit_id AND user_id = :user_id");
+    $stmt->execute([':habit_id' => $habit_id, ':user_id' => $user_id]);
+
+    return ['habit_id' => $habit_id];
+}
+?>
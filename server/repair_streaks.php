@@ -0,0 +1,59 @@
+<?php
+include 'db.php';
+include 'user_streaks.php';
+
+header('Content-Type: application/json');
+
+// Recomputes materialized user streaks from user_active_days. Meant for cron, e.g.
+// every few minutes in the default mode and nightly as a sweep; each run handles at
+// most `batch` users, each in its own short transaction.
+//
+//   mode=dirty (default)  users whose streak was marked by a back-dated activity
+//   mode=sweep&after=N    every user with user_id > N, to repair any other drift;
+//                         pass the returned next_after to continue, until it is null
+//
+// Also runs from the command line: php repair_streaks.php mode=sweep after=0
+if (PHP_SAPI === 'cli') {
+    parse_str(implode('&', array_slice($argv, 1)), $_GET);
+}
+
+$mode = ($_GET['mode'] ?? 'dirty') === 'sweep' ? 'sweep' : 'dirty';
+$after = isset($_GET['after']) ? (int)$_GET['after'] : 0;
+$batch = isset($_GET['batch']) ? (int)$_GET['batch'] : 200;
+$batch = max(1, min($batch, 1000));
+
+try {
+    if ($mode === 'dirty') {
+        $stmt = $pdo->prepare("SELECT user_id FROM users WHERE streak_dirty = 1 ORDER BY user_id LIMIT :batch");
+    } else {
+        $stmt = $pdo->prepare("SELECT user_id FROM users WHERE user_id > :after ORDER BY user_id LIMIT :batch");
+        $stmt->bindValue(':after', $after, PDO::PARAM_INT);
+    }
+    $stmt->bindValue(':batch', $batch, PDO::PARAM_INT);
+    $stmt->execute();
+    $user_ids = $stmt->fetchAll(PDO::FETCH_COLUMN);
+
+    $repaired = 0;
+    foreach ($user_ids as $user_id) {
+        $pdo->beginTransaction();
+        try {
+            recomputeUserStreak($pdo, $user_id);
+            $pdo->commit();
+            $repaired++;
+        } catch (Exception $e) {
+            $pdo->rollBack();
+            error_log('repair_streaks: user ' . $user_id . ': ' . $e->getMessage());
+        }
+    }
+
+    echo json_encode([
+        'status' => 'success',
+        'mode' => $mode,
+        'repaired' => $repaired,
+        // Only a sweep pages; dirty users drop out of the query once repaired
+        'next_after' => ($mode === 'sweep' && count($user_ids) === $batch) ? (int)end($user_ids) : null
+    ]);
+} catch (Exception $e) {
+    echo json_encode(['status' => 'error', 'message' => 'Database error: ' . $e->getMessage()]);
+}
+?>
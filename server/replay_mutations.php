@@ -0,0 +1,105 @@
+<?php
+include 'db.php';
+include 'mutation_operations.php';
+
+header('Content-Type: application/json');
+
+// Applies a batch of queued client mutations (the device outbox) in order.
+// Each mutation carries an idempotency key: it runs in its own transaction together
+// with the insert into applied_mutations, so a retried batch never applies a
+// mutation twice and gets the originally stored result back instead.
+//
+// Result status per mutation:
+//   success  - applied now, or already applied earlier under the same key
+//   rejected - invalid or refers to something that no longer exists; do not retry
+//   error    - failed on the server; the client should retry later
+
+if ($_SERVER['REQUEST_METHOD'] !== 'POST') {
+    echo json_encode(['status' => 'error', 'message' => 'Invalid request method. Only POST is allowed.']);
+    exit;
+}
+
+$data = readRequestBody();
+
+$user_id = $data['user_id'] ?? null;
+$mutations = $data['mutations'] ?? null;
+
+if (empty($user_id)) {
+    echo json_encode(['status' => 'error', 'message' => 'User ID is required.']);
+    exit;
+}
+
+if (!is_array($mutations) || empty($mutations)) {
+    echo json_encode(['status' => 'error', 'message' => 'Mutations are required.']);
+    exit;
+}
+
+if (count($mutations) > 100) {
+    echo json_encode(['status' => 'error', 'message' => 'Too many mutations in one batch.']);
+    exit;
+}
+
+$results = [];
+foreach ($mutations as $mutation) {
+    $results[] = applyMutation($pdo, $user_id, $mutation);
+}
+
+echo json_encode([
+    'status' => 'success',
+    'results' => $results
+]);
+
+function applyMutation($pdo, $user_id, $mutation) {
+    $key = $mutation['idempotency_key'] ?? '';
+    $operation = $mutation['operation'] ?? '';
+    $payload = $mutation['payload'] ?? [];
+
+    if (empty($key) || empty($operation) || !is_array($payload)) {
+        return ['idempotency_key' => $key, 'status' => 'rejected', 'message' => 'Malformed mutation.'];
+    }
+
+    try {
+        $pdo->beginTransaction();
+
+        $stmt = $pdo->prepare("SELECT response FROM applied_mutations WHERE idempotency_key = :key FOR UPDATE");
+        $stmt->execute([':key' => $key]);
+        $stored = $stmt->fetchColumn();
+        if ($stored !== false) {
+            $pdo->commit();
+            $result = json_decode($stored, true) ?: [];
+            $result['idempotency_key'] = $key;
+            $result['status'] = 'success';
+            $result['duplicate'] = true;
+            return $result;
+        }
+
+        $result_data = runOperation($pdo, $user_id, $operation, $payload);
+        $result = ['status' => 'success', 'data' => $result_data];
+
+        $stmt = $pdo->prepare("
+            INSERT INTO applied_mutations (idempotency_key, user_id, operation, response)
+            VALUES (:key, :user_id, :operation, :response)
+        ");
+        $stmt->execute([
+            ':key' => $key,
+            ':user_id' => $user_id,
+            ':operation' => $operation,
+            ':response' => json_encode($result)
+        ]);
+
+        $pdo->commit();
+        $result['idempotency_key'] = $key;
+        return $result;
+    } catch (RejectedMutation $e) {
+        if ($pdo->inTransaction()) {
+            $pdo->rollBack();
+        }
+        return ['idempotency_key' => $key, 'status' => 'rejected', 'message' => $e->getMessage()];
+    } catch (Exception $e) {
+        if ($pdo->inTransaction()) {
+            $pdo->rollBack();
+        }
+        return ['idempotency_key' => $key, 'status' => 'error', 'message' => 'Database error: ' . $e->getMessage()];
+    }
+}
+?>
@@ -0,0 +1,198 @@
+<?php
+include 'db.php';
+
+header('Content-Type: application/json');
+
+// Returns every task/habit change for a user after the given sync cursor:
+// upserted rows plus tombstones for deleted rows, ordered by server version.
+// The client stores the returned cursor and passes it back as "since".
+// With task_ids/habit_ids it instead returns the current rows of just those
+// entities, without a cursor; requested IDs missing from the response no
+// longer exist.
+const MAX_REFETCH_IDS = 100;
+
+// Task status mirrors get_today_tasks.php: a completion on the due date wins
+$task_select = "
+    SELECT COALESCE(t.client_id, t.id) AS id, t.user_id, t.title, t.description, t.start_time, t.end_time,
+           DATE(t.due_date) AS due_date, t.repeat_frequency, t.priority,
+           t.current_streak, t.sync_version,
+           CASE
+               WHEN t.task_type = '' OR t.task_type IS NULL THEN 'remainder'
+               ELSE t.task_type
+           END AS task_type,
+           CASE
+               WHEN EXISTS (
+                   SELECT 1 FROM task_completions tc
+                   WHERE tc.task_id = t.id
+                   AND tc.user_id = t.user_id
+                   AND tc.completion_date = DATE(t.due_date)
+               ) THEN 'completed'
+               ELSE t.status
+           END AS status
+    FROM tasks t
+";
+
+// Habit rows mirror get_habits.php, but carry the latest completion date instead of a
+// completed_today flag: the client compares it with its own today, so a row synced
+// yesterday does not stay completed after midnight
+$habit_select = "
+    SELECT h.*,
+           (SELECT MAX(hc.completion_date) FROM habit_completions hc
+            WHERE hc.habit_id = h.habit_id AND hc.user_id = h.user_id) AS last_completed_date
+    FROM habits h
+";
+
+function parse_id_list($value) {
+    $ids = array_values(array_unique(array_filter(array_map('trim', explode(',', (string)$value)), 'strlen')));
+    return array_slice($ids, 0, MAX_REFETCH_IDS);
+}
+
+if ($_SERVER['REQUEST_METHOD'] === 'GET') {
+    $user_id = $_GET['user_id'] ?? null;
+    $since = isset($_GET['since']) ? (int)$_GET['since'] : 0;
+    $limit = isset($_GET['limit']) ? (int)$_GET['limit'] : 500;
+
+    // Validate inputs
+    if (empty($user_id)) {
+        echo json_encode(['status' => 'error', 'message' => 'User ID is required.']);
+        exit;
+    }
+
+    if (isset($_GET['task_ids']) || isset($_GET['habit_ids'])) {
+        $task_ids = parse_id_list($_GET['task_ids'] ?? '');
+        $habit_ids = parse_id_list($_GET['habit_ids'] ?? '');
+
+        try {
+            $tasks = [];
+            if (!empty($task_ids)) {
+                $placeholders = implode(',', array_fill(0, count($task_ids), '?'));
+                $stmt = $pdo->prepare($task_select . "
+                    WHERE t.user_id = ? AND (t.client_id IN ($placeholders) OR t.id IN ($placeholders))
+                ");
+                $stmt->execute(array_merge([$user_id], $task_ids, $task_ids));
+                foreach ($stmt->fetchAll(PDO::FETCH_ASSOC) as $row) {
+                    $row['task_id'] = $row['id'];
+                    $tasks[] = $row;
+                }
+            }
+
+            $habits = [];
+            if (!empty($habit_ids)) {
+                $placeholders = implode(',', array_fill(0, count($habit_ids), '?'));
+                $stmt = $pdo->prepare($habit_select . "
+                    WHERE h.user_id = ? AND h.habit_id IN ($placeholders)
+                ");
+                $stmt->execute(array_merge([$user_id], $habit_ids));
+                $habits = $stmt->fetchAll(PDO::FETCH_ASSOC);
+            }
+
+            echo json_encode([
+                'status' => 'success',
+                'tasks' => ['upserts' => $tasks, 'deleted' => []],
+                'habits' => ['upserts' => $habits, 'deleted' => []]
+            ]);
+        } catch (PDOException $e) {
+            echo json_encode(['status' => 'error', 'message' => 'Database error: ' . $e->getMessage()]);
+        }
+        exit;
+    }
+
+    if ($since < 0) {
+        echo json_encode(['status' => 'error', 'message' => 'Invalid sync cursor.']);
+        exit;
+    }
+
+    $limit = max(1, min($limit, 1000));
+
+    try {
+        $stmt = $pdo->prepare($task_select . "
+            WHERE t.user_id = :user_id AND t.sync_version > :since
+            ORDER BY t.sync_version
+            LIMIT $limit
+        ");
+        $stmt->execute([':user_id' => $user_id, ':since' => $since]);
+        $tasks = $stmt->fetchAll(PDO::FETCH_ASSOC);
+
+        $stmt = $pdo->prepare($habit_select . "
+            WHERE h.user_id = :user_id AND h.sync_version > :since
+            ORDER BY h.sync_version
+            LIMIT $limit
+        ");
+        $stmt->execute([':user_id' => $user_id, ':since' => $since]);
+        $habits = $stmt->fetchAll(PDO::FETCH_ASSOC);
+
+        $stmt = $pdo->prepare("
+            SELECT entity_type, entity_id, sync_version
+            FROM sync_tombstones
+            WHERE user_id = :user_id AND sync_version > :since
+            ORDER BY sync_version
+            LIMIT $limit
+        ");
+        $stmt->execute([':user_id' => $user_id, ':since' => $since]);
+        $tombstones = $stmt->fetchAll(PDO::FETCH_ASSOC);
+
+        // Merge the three streams by version. Versions are unique across all of them;
+        // a stream that hit the limit may have more rows just past its last version,
+        // so nothing newer than that can be returned yet without skipping them.
+        $ceiling = PHP_INT_MAX;
+        foreach ([$tasks, $habits, $tombstones] as $stream) {
+            if (count($stream) === $limit) {
+                $ceiling = min($ceiling, (int)$stream[$limit - 1]['sync_version']);
+            }
+        }
+
+        $changes = [];
+        foreach ($tasks as $row) {
+            $changes[] = ['version' => (int)$row['sync_version'], 'kind' => 'task', 'row' => $row];
+        }
+        foreach ($habits as $row) {
+            $changes[] = ['version' => (int)$row['sync_version'], 'kind' => 'habit', 'row' => $row];
+        }
+        foreach ($tombstones as $row) {
+            $changes[] = ['version' => (int)$row['sync_version'], 'kind' => 'tombstone', 'row' => $row];
+        }
+        $changes = array_filter($changes, function ($change) use ($ceiling) {
+            return $change['version'] <= $ceiling;
+        });
+        usort($changes, function ($a, $b) {
+            return $a['version'] <=> $b['version'];
+        });
+
+        $has_more = $ceiling !== PHP_INT_MAX || count($changes) > $limit;
+        $changes = array_slice($changes, 0, $limit);
+
+        $cursor = $since;
+        $result = [
+            'tasks' => ['upserts' => [], 'deleted' => []],
+            'habits' => ['upserts' => [], 'deleted' => []]
+        ];
+
+        foreach ($changes as $change) {
+            $cursor = $change['version'];
+            $row = $change['row'];
+            if ($change['kind'] === 'task') {
+                $row['task_id'] = $row['id'];
+                $result['tasks']['upserts'][] = $row;
+            } elseif ($change['kind'] === 'habit') {
+                $result['habits']['upserts'][] = $row;
+            } elseif ($row['entity_type'] === 'task') {
+                $result['tasks']['deleted'][] = (string)$row['entity_id'];
+            } else {
+                $result['habits']['deleted'][] = (string)$row['entity_id'];
+            }
+        }
+
+        echo json_encode([
+            'status' => 'success',
+            'cursor' => $cursor,
+            'has_more' => $has_more,
+            'tasks' => $result['tasks'],
+            'habits' => $result['habits']
+        ]);
+    } catch (PDOException $e) {
+        echo json_encode(['status' => 'error', 'message' => 'Database error: ' . $e->getMessage()]);
+    }
+} else {
+    echo json_encode(['status' => 'error', 'message' => 'Invalid request method. Only GET is allowed.']);
+}
+?>
@@ -0,0 +1,64 @@
+<?php
+include 'db.php';
+include 'xp_ledger.php';
+
+header('Content-Type: application/json');
+
+// XP reconciliation with a device. The request carries the device's entries the server
+// has not acknowledged yet and the last sequence number the device has; each entry is
+// added in its own transaction and is a no-op if the server already has it. The
+// response holds the server's entries after that sequence number (including the ones
+// just added), the next sequence number to ask from, and the balance.
+//
+// Request:  {user_id, after_seq, entries: [{entry_key, amount, reason}]}
+// Response: {status, entries: [{seq, entry_key, amount, reason, created_at}],
+//            next_seq, has_more, balance}
+
+const XP_PAGE_SIZE = 500;
+
+if ($_SERVER['REQUEST_METHOD'] !== 'POST') {
+    echo json_encode(['status' => 'error', 'message' => 'Invalid request method. Only POST is allowed.']);
+    exit;
+}
+
+$data = json_decode(file_get_contents('php://input'), true);
+$user_id = $data['user_id'] ?? null;
+$after_seq = (int)($data['after_seq'] ?? 0);
+$entries = $data['entries'] ?? [];
+
+if (empty($user_id)) {
+    echo json_encode(['status' => 'error', 'message' => 'User ID is required.']);
+    exit;
+}
+
+if (!is_array($entries) || count($entries) > XP_PAGE_SIZE) {
+    echo json_encode(['status' => 'error', 'message' => 'Invalid entries.']);
+    exit;
+}
+
+try {
+    foreach ($entries as $entry) {
+        $entry_key = $entry['entry_key'] ?? '';
+        if ($entry_key === '' || !isset($entry['amount'])) {
+            continue;
+        }
+        $pdo->beginTransaction();
+        addXpEntry($pdo, $user_id, $entry_key, (float)$entry['amount'], $entry['reason'] ?? 'task');
+        $pdo->commit();
+    }
+
+    $page = xpEntriesAfter($pdo, $user_id, $after_seq, XP_PAGE_SIZE);
+    echo json_encode([
+        'status' => 'success',
+        'entries' => $page,
+        'next_seq' => empty($page) ? $after_seq : end($page)['seq'],
+        'has_more' => count($page) === XP_PAGE_SIZE,
+        'balance' => readXpBalance($pdo, $user_id)
+    ]);
+} catch (PDOException $e) {
+    if ($pdo->inTransaction()) {
+        $pdo->rollBack();
+    }
+    echo json_encode(['status' => 'error', 'message' => 'Database error: ' . $e->getMessage()]);
+}
+?>
@@ -22,6 +22,8 @@ if ($_SERVER['REQUEST_METHOD'] === 'OPTIONS') {
 
 // Database connection
 require_once 'db_connect.php';
+require_once 'user_streaks.php';
+require_once 'xp_ledger.php';
 
 if ($_SERVER['REQUEST_METHOD'] !== 'POST') {
     echo json_encode(['status' => 'error', 'message' => 'Only POST method allowed']);
@@ -114,27 +116,12 @@ try {
         ':habit_id' => $habit_id
     ]);
     
-    // 3. Update user XP points if completing
+    // 3. Add the XP entry for today's completion of the habit, once per day
     $new_xp = 0;
     if ($completed && $xp_change > 0) {
-        // Get current XP
-        $get_xp_sql = "SELECT xp_points FROM users WHERE user_id = :user_id";
-        $xp_stmt = $pdo->prepare($get_xp_sql);
-        $xp_stmt->execute([':user_id' => $user_id]);
-        $user_row = $xp_stmt->fetch(PDO::FETCH_ASSOC);
-        
-        if ($user_row) {
-            $current_xp = floatval($user_row['xp_points'] ?? 0);
-            $new_xp = $current_xp + floatval($xp_change);
-            
-            // Update XP
-            $update_xp_sql = "UPDATE users SET xp_points = :xp_points WHERE user_id = :user_id";
-            $update_xp_stmt = $pdo->prepare($update_xp_sql);
-            $update_xp_stmt->execute([
-                ':xp_points' => $new_xp,
-                ':user_id' => $user_id
-            ]);
-        }
+        $xp_key = $data['xp_entry_key'] ?? habitXpKey($habit_id, $date);
+        $xp = addXpEntry($pdo, $user_id, $xp_key, $xp_change, 'habit');
+        $new_xp = $xp['balance'];
     }
     
     // 4. Log activity for streak tracking
@@ -164,6 +151,7 @@ try {
                 'xp_earned' => $xp_change
             ])
         ]);
+        recordActiveDay($pdo, $user_id, $date);
     }
     
     // Commit transaction
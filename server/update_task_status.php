@@ -1,5 +1,6 @@
 <?php
 include 'db.php';
+include 'mutation_operations.php';
 
 if ($_SERVER['REQUEST_METHOD'] === 'POST') {
     // Get raw POST data
@@ -29,8 +30,9 @@ if ($_SERVER['REQUEST_METHOD'] === 'POST') {
     }
 
     try {
-        // Update task status
-        $sql = "UPDATE tasks SET status = :status WHERE id = :task_id";
+        // Update task status; tasks created on a device are addressed by their client UUID
+        $id_column = isClientTaskId($task_id) ? 'client_id' : 'id';
+        $sql = "UPDATE tasks SET status = :status WHERE $id_column = :task_id";
         $stmt = $pdo->prepare($sql);
         $stmt->bindValue(':status', $status);
         $stmt->bindValue(':task_id', $task_id);
@@ -0,0 +1,102 @@
+<?php
+// The user's activity streak, kept on the users row so reading it is one primary-key
+// lookup. user_active_days holds one row per user and day with any activity (login,
+// task or habit completion); streak_count is the run of consecutive active days ending
+// on last_active_date and longest_streak the longest run so far.
+//
+// recordActiveDay() runs inside the caller's transaction and costs the same however
+// old the account is. A day landing before last_active_date (a replayed offline
+// completion) may join two runs, which cannot be known from the row alone, so it only
+// sets streak_dirty; repair_streaks.php recomputes those users from their active days.
+
+// Count a day of activity for the user; a day already counted changes nothing
+function recordActiveDay($pdo, $user_id, $date) {
+    $stmt = $pdo->prepare("INSERT IGNORE INTO user_active_days (user_id, active_date) VALUES (:user_id, :date)");
+    $stmt->execute([':user_id' => $user_id, ':date' => $date]);
+    if ($stmt->rowCount() === 0) {
+        return;
+    }
+
+    // MySQL applies the assignments left to right, each seeing the ones before it:
+    // streak_dirty and streak_count read the old last_active_date, longest_streak the
+    // new streak_count
+    $stmt = $pdo->prepare("
+        UPDATE users SET
+            streak_dirty = CASE WHEN last_active_date > :date1 THEN 1 ELSE streak_dirty END,
+            streak_count = CASE
+                WHEN last_active_date IS NULL OR :date2 > DATE_ADD(last_active_date, INTERVAL 1 DAY) THEN 1
+                WHEN :date3 = DATE_ADD(last_active_date, INTERVAL 1 DAY) THEN COALESCE(streak_count, 0) + 1
+                ELSE streak_count
+            END,
+            longest_streak = GREATEST(longest_streak, streak_count),
+            last_active_date = GREATEST(COALESCE(last_active_date, :date4), :date5)
+        WHERE user_id = :user_id
+    ");
+    $stmt->execute([
+        ':date1' => $date,
+        ':date2' => $date,
+        ':date3' => $date,
+        ':date4' => $date,
+        ':date5' => $date,
+        ':user_id' => $user_id
+    ]);
+}
+
+// Current streak as shown to the user: a run that ended before yesterday is over
+function readUserStreak($pdo, $user_id) {
+    $stmt = $pdo->prepare("
+        SELECT CASE WHEN last_active_date >= DATE_SUB(CURDATE(), INTERVAL 1 DAY) THEN streak_count ELSE 0 END
+                   AS streak_count,
+               longest_streak, last_active_date
+        FROM users WHERE user_id = :user_id
+    ");
+    $stmt->execute([':user_id' => $user_id]);
+    $row = $stmt->fetch(PDO::FETCH_ASSOC);
+    if ($row === false) {
+        return ['streak_count' => 0, 'longest_streak' => 0, 'last_active_date' => null];
+    }
+    return [
+        'streak_count' => (int)$row['streak_count'],
+        'longest_streak' => (int)$row['longest_streak'],
+        'last_active_date' => $row['last_active_date']
+    ];
+}
+
+// Rebuild the user's streak columns from all their active days. Runs inside the
+// caller's transaction and locks the user row first, so a concurrent
+// recordActiveDay() either lands before the read or waits for the rewrite.
+function recomputeUserStreak($pdo, $user_id) {
+    $stmt = $pdo->prepare("SELECT user_id FROM users WHERE user_id = :user_id FOR UPDATE");
+    $stmt->execute([':user_id' => $user_id]);
+    if ($stmt->fetchColumn() === false) {
+        return null;
+    }
+
+    $stmt = $pdo->prepare("SELECT active_date FROM user_active_days WHERE user_id = :user_id ORDER BY active_date");
+    $stmt->execute([':user_id' => $user_id]);
+    $current = 0;
+    $longest = 0;
+    $previous = null;
+    $last_date = null;
+    while (($date = $stmt->fetchColumn()) !== false) {
+        $day = intdiv(strtotime($date . ' 00:00:00 UTC'), 86400);
+        $current = ($previous !== null && $day === $previous + 1) ? $current + 1 : 1;
+        $longest = max($longest, $current);
+        $previous = $day;
+        $last_date = $date;
+    }
+
+    $stmt = $pdo->prepare("
+        UPDATE users SET streak_count = :current, longest_streak = :longest,
+                         last_active_date = :last_date, streak_dirty = 0
+        WHERE user_id = :user_id
+    ");
+    $stmt->execute([
+        ':current' => $current,
+        ':longest' => $longest,
+        ':last_date' => $last_date,
+        ':user_id' => $user_id
+    ]);
+    return ['streak_count' => $current, 'longest_streak' => $longest, 'last_active_date' => $last_date];
+}
+?>
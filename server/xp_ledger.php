@@ -0,0 +1,79 @@
+<?php
+// Every XP change is an entry in xp_ledger, and users.xp_points is the running sum of
+// the user's entries. An entry is keyed per user by the completion it is for (see the
+// key functions below, mirrored by the app's XpLedger), so recording it again - a
+// retried request, or both the device and the server recording one completion -
+// changes nothing. Devices exchange entries after the last sequence number they
+// acknowledged through sync_xp.php.
+
+function taskXpKey($task_id, $date, $status) {
+    return 'task:' . $task_id . ':' . $date . ':' . $status;
+}
+
+function habitXpKey($habit_id, $date) {
+    return 'habit:' . $habit_id . ':' . $date;
+}
+
+// Add an entry and apply it to the balance, inside the caller's transaction. The user
+// row is locked first, so concurrent entries of one user apply one after the other. A
+// penalty never takes the balance below zero; the entry holds the amount applied.
+// Returns ['added' => false, ...] with the unchanged balance for an existing entry.
+function addXpEntry($pdo, $user_id, $entry_key, $amount, $reason) {
+    $stmt = $pdo->prepare("SELECT xp_points FROM users WHERE user_id = :user_id FOR UPDATE");
+    $stmt->execute([':user_id' => $user_id]);
+    $balance = $stmt->fetchColumn();
+    if ($balance === false) {
+        return ['added' => false, 'amount' => 0.0, 'balance' => 0.0];
+    }
+    $balance = (float)$balance;
+    $applied = round(max((float)$amount, -$balance), 2);
+
+    $stmt = $pdo->prepare("
+        INSERT IGNORE INTO xp_ledger (user_id, entry_key, amount, reason)
+        VALUES (:user_id, :entry_key, :amount, :reason)
+    ");
+    $stmt->execute([
+        ':user_id' => $user_id,
+        ':entry_key' => $entry_key,
+        ':amount' => $applied,
+        ':reason' => $reason
+    ]);
+    if ($stmt->rowCount() === 0) {
+        return ['added' => false, 'amount' => 0.0, 'balance' => $balance];
+    }
+
+    $stmt = $pdo->prepare("UPDATE users SET xp_points = xp_points + :amount WHERE user_id = :user_id");
+    $stmt->execute([':amount' => $applied, ':user_id' => $user_id]);
+    return ['added' => true, 'amount' => $applied, 'balance' => $balance + $applied];
+}
+
+// Entries after the given sequence number, oldest first
+function xpEntriesAfter($pdo, $user_id, $after_seq, $limit) {
+    $stmt = $pdo->prepare("
+        SELECT seq, entry_key, amount, reason, created_at FROM xp_ledger
+        WHERE user_id = :user_id AND seq > :after_seq
+        ORDER BY seq LIMIT :limit
+    ");
+    $stmt->bindValue(':user_id', $user_id);
+    $stmt->bindValue(':after_seq', (int)$after_seq, PDO::PARAM_INT);
+    $stmt->bindValue(':limit', (int)$limit, PDO::PARAM_INT);
+    $stmt->execute();
+    $entries = [];
+    foreach ($stmt->fetchAll(PDO::FETCH_ASSOC) as $row) {
+        $entries[] = [
+            'seq' => (int)$row['seq'],
+            'entry_key' => $row['entry_key'],
+            'amount' => (float)$row['amount'],
+            'reason' => $row['reason'],
+            'created_at' => $row['created_at']
+        ];
+    }
+    return $entries;
+}
+
+function readXpBalance($pdo, $user_id) {
+    $stmt = $pdo->prepare("SELECT xp_points FROM users WHERE user_id = :user_id");
+    $stmt->execute([':user_id' => $user_id]);
+    return (float)($stmt->fetchColumn() ?: 0);
+}
+?>